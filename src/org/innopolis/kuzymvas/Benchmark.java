@@ -0,0 +1,908 @@
+package org.innopolis.kuzymvas;
+
+import org.innopolis.kuzymvas.generic.hashmap.BasicBucketFactory;
+import org.innopolis.kuzymvas.generic.hashmap.BasicCodecs;
+import org.innopolis.kuzymvas.generic.hashmap.BasicHashStrategy;
+import org.innopolis.kuzymvas.generic.hashmap.BucketAgnosticHashMap;
+import org.innopolis.kuzymvas.generic.hashmap.ConcurrentBucketAgnosticHashMap;
+import org.innopolis.kuzymvas.generic.hashmap.CopyOnWriteBucketAgnosticHashMap;
+import org.innopolis.kuzymvas.generic.hashmap.CuckooHashMap;
+import org.innopolis.kuzymvas.generic.hashmap.DurableMap;
+import org.innopolis.kuzymvas.generic.hashmap.HashStrategy;
+import org.innopolis.kuzymvas.generic.hashmap.IntObjectHashMap;
+import org.innopolis.kuzymvas.generic.hashmap.MappedHashMap;
+import org.innopolis.kuzymvas.generic.hashmap.OffHeapHashMap;
+import org.innopolis.kuzymvas.generic.hashmap.OpenAddressingHashMap;
+import org.innopolis.kuzymvas.generic.hashmap.RobinHoodHashMap;
+import org.innopolis.kuzymvas.generic.hashmap.SwissHashMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Простые замеры производительности хэш таблиц.
+ * Без аргументов выполняет все замеры, иначе - только замеры с перечисленными в аргументах именами.
+ * Результаты ориентировочные: для точных измерений следует использовать специализированные инструменты.
+ */
+public class Benchmark {
+
+    private static final int WARMUP_ROUNDS = 5; // Число прогонов для разогрева JIT компилятора
+    private static final int MEASURED_ROUNDS = 5; // Число измеряемых прогонов, из которых берется лучший
+    private static long sink; // Накопитель результатов, не дающий JIT компилятору выбросить замеряемый код
+    private static Object retained; // Объект, объем которого замеряется
+
+    public static void main(String[] args) {
+        final Set<String> selected = new HashSet<>(Arrays.asList(args));
+        if (selected.isEmpty() || selected.contains("miss-heavy")) {
+            missHeavyLookups();
+        }
+        if (selected.isEmpty() || selected.contains("hash-distribution")) {
+            hashDistribution();
+        }
+        if (selected.isEmpty() || selected.contains("engines")) {
+            compareEngines();
+        }
+        if (selected.isEmpty() || selected.contains("load-factors")) {
+            compareLoadFactors();
+        }
+        if (selected.isEmpty() || selected.contains("tail-latency")) {
+            compareTailLatency();
+        }
+        if (selected.isEmpty() || selected.contains("primitive-keys")) {
+            comparePrimitiveKeys();
+        }
+        if (selected.isEmpty() || selected.contains("off-heap")) {
+            compareOffHeap();
+        }
+        if (selected.isEmpty() || selected.contains("mapped-reopen")) {
+            measureMappedReopen();
+        }
+        if (selected.isEmpty() || selected.contains("snapshot")) {
+            measureSnapshot();
+        }
+        if (selected.isEmpty() || selected.contains("write-ahead-log")) {
+            measureWriteAheadLog();
+        }
+        if (selected.isEmpty() || selected.contains("concurrent")) {
+            compareConcurrentMaps();
+        }
+        if (selected.isEmpty() || selected.contains("concurrent-resize")) {
+            measureConcurrentResize();
+        }
+        if (selected.isEmpty() || selected.contains("copy-on-write")) {
+            compareCopyOnWrite();
+        }
+        System.out.println("sink = " + sink);
+    }
+
+    /**
+     * Замеряет время поиска в таблицах с разной долей промахов.
+     * Таблица заполняется четными ключами, промахи обеспечиваются поиском нечетных.
+     */
+    private static void missHeavyLookups() {
+        final int mapSize = 100_000;
+        final int lookupCount = 1_000_000;
+        System.out.println("miss-heavy: поиск в таблице из " + mapSize + " пар, нс на операцию");
+        for (BasicBucketFactory.BucketType bucketType : BasicBucketFactory.BucketType.values()) {
+            final Map<Integer, String> map = BucketAgnosticHashMap.withExpectedSize(
+                    new BasicBucketFactory<>(bucketType), mapSize);
+            for (int i = 0; i < mapSize; i++) {
+                map.put(2 * i, "Value_" + i);
+            }
+            for (int missPercent : new int[]{0, 40, 90}) {
+                final Integer[] lookups = new Integer[lookupCount];
+                final Random random = new Random(42);
+                for (int i = 0; i < lookupCount; i++) {
+                    final int key = 2 * random.nextInt(mapSize);
+                    lookups[i] = (random.nextInt(100) < missPercent) ? key + 1 : key;
+                }
+                final double nanos = measure(() -> {
+                    long found = 0;
+                    for (Integer key : lookups) {
+                        if (map.get(key) != null) {
+                            found++;
+                        }
+                    }
+                    sink += found;
+                }, lookupCount);
+                System.out.printf("  %-10s промахов %2d%%: %8.1f%n", bucketType, missPercent, nanos);
+            }
+        }
+    }
+
+    /**
+     * Сравнивает стратегии хэширования на распространенных типах ключей:
+     * заполненность корзин (доля пустых корзин и длина самой длинной цепочки)
+     * и время добавления и поиска в таблице фиксированного размера.
+     * При случайном распределении и заполнении 0.75 пустых корзин должно быть около 47%.
+     */
+    private static void hashDistribution() {
+        final int bucketNumber = 1 << 16;
+        final int keyCount = bucketNumber / 4 * 3;
+        final Map<String, Object[]> keySets = new LinkedHashMap<>();
+        final Object[] sequentialIntegers = new Object[keyCount];
+        final Object[] sequentialLongs = new Object[keyCount];
+        final Object[] highWordLongs = new Object[keyCount];
+        final Object[] wholeDoubles = new Object[keyCount];
+        final Object[] strings = new Object[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            sequentialIntegers[i] = i;
+            sequentialLongs[i] = (long) i;
+            highWordLongs[i] = (long) i << 32;
+            wholeDoubles[i] = (double) i;
+            strings[i] = "key_" + i;
+        }
+        keySets.put("Integer i", sequentialIntegers);
+        keySets.put("Long i", sequentialLongs);
+        keySets.put("Long i<<32", highWordLongs);
+        keySets.put("Double i", wholeDoubles);
+        keySets.put("String", strings);
+        System.out.println("hash-distribution: " + keyCount + " ключей в " + bucketNumber + " корзинах");
+        System.out.println("  ключи        стратегия        пустых  макс. цепочка  нс на операцию");
+        for (Map.Entry<String, Object[]> keySet : keySets.entrySet()) {
+            final Object[] keys = keySet.getValue();
+            for (BasicHashStrategy.StrategyType strategyType : BasicHashStrategy.StrategyType.values()) {
+                final HashStrategy strategy = new BasicHashStrategy(strategyType);
+                final int[] chainLengths = new int[bucketNumber];
+                for (Object key : keys) {
+                    chainLengths[strategy.hash(key) & (bucketNumber - 1)]++;
+                }
+                int emptyBuckets = 0;
+                int longestChain = 0;
+                for (int chainLength : chainLengths) {
+                    emptyBuckets += (chainLength == 0) ? 1 : 0;
+                    longestChain = Math.max(longestChain, chainLength);
+                }
+                final double nanos = measure(() -> {
+                    final Map<Object, Object> map = new BucketAgnosticHashMap<>(
+                            new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), strategy, bucketNumber);
+                    for (Object key : keys) {
+                        map.put(key, key);
+                    }
+                    long found = 0;
+                    for (Object key : keys) {
+                        if (map.get(key) != null) {
+                            found++;
+                        }
+                    }
+                    sink += found;
+                }, 2 * keyCount);
+                System.out.printf("  %-12s %-15s %6.1f%% %14d %15.1f%n", keySet.getKey(), strategyType,
+                                  100.0 * emptyBuckets / bucketNumber, longestChain, nanos);
+            }
+        }
+    }
+
+    /**
+     * Сравнивает реализации таблиц: приблизительный объем занятой таблицей памяти
+     * и время поиска присутствующих и отсутствующих ключей
+     */
+    private static void compareEngines() {
+        final int mapSize = 100_000;
+        final int lookupCount = 1_000_000;
+        final Map<String, Supplier<Map<Integer, Integer>>> engines = new LinkedHashMap<>();
+        engines.put("LIST", () -> BucketAgnosticHashMap.withExpectedSize(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), mapSize));
+        engines.put("AVL_TREE", () -> BucketAgnosticHashMap.withExpectedSize(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.AVL_TREE), mapSize));
+        engines.put("ARRAY", () -> BucketAgnosticHashMap.withExpectedSize(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.ARRAY), mapSize));
+        engines.put("ADAPTIVE", () -> BucketAgnosticHashMap.withExpectedSize(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.ADAPTIVE), mapSize));
+        engines.put("OpenAddressing", () -> new OpenAddressingHashMap<>(mapSize * 2));
+        engines.put("RobinHood", () -> new RobinHoodHashMap<>(mapSize * 2));
+        engines.put("Cuckoo", () -> new CuckooHashMap<>(mapSize / 2));
+        engines.put("Swiss", () -> new SwissHashMap<>(mapSize * 2));
+        final Random random = new Random(42);
+        final Set<Integer> keySet = new HashSet<>();
+        while (keySet.size() < mapSize) {
+            keySet.add(random.nextInt());
+        }
+        final Integer[] keys = keySet.toArray(new Integer[0]);
+        final Integer[] hits = new Integer[lookupCount];
+        final Integer[] misses = new Integer[lookupCount];
+        for (int i = 0; i < lookupCount; i++) {
+            hits[i] = keys[random.nextInt(mapSize)];
+            do {
+                misses[i] = random.nextInt();
+            } while (keySet.contains(misses[i]));
+        }
+        System.out.println("engines: таблицы из " + mapSize + " случайных ключей");
+        System.out.println("  таблица          байт на пару  нс на попадание  нс на промах");
+        for (Map.Entry<String, Supplier<Map<Integer, Integer>>> engine : engines.entrySet()) {
+            measureEngine(engine.getKey(), engine.getValue(), keys, hits, misses);
+        }
+    }
+
+    /**
+     * Замеряет объем заполненной таблицы и время поиска в ней
+     *
+     * @param name        - название таблицы
+     * @param mapSupplier - создатель пустой таблицы
+     * @param keys        - добавляемые ключи
+     * @param hits        - ключи для поиска с попаданием
+     * @param misses      - ключи для поиска с промахом
+     */
+    private static void measureEngine(String name, Supplier<Map<Integer, Integer>> mapSupplier, Integer[] keys,
+                                      Integer[] hits, Integer[] misses) {
+        final long footprint = measureFootprint(mapSupplier, keys);
+        final Map<Integer, Integer> map = mapSupplier.get();
+        for (Integer key : keys) {
+            map.put(key, key);
+        }
+        final double hitNanos = measure(() -> sink += countFound(map, hits), hits.length);
+        final double missNanos = measure(() -> sink += countFound(map, misses), misses.length);
+        System.out.printf("  %-16s %12.1f %16.1f %13.1f%n", name, (double) footprint / keys.length,
+                          hitNanos, missNanos);
+        sink += map.size();
+    }
+
+    /**
+     * Сравнивает таблицы при одинаковом отношении числа пар к числу ячеек (корзин) от 0.5 до 0.95.
+     * Размер таблиц фиксирован, чтобы они не перестраивались, ключи случайны.
+     * Для таблицы Robin Hood дополнительно выводятся средняя и наибольшая длины пробирования.
+     */
+    private static void compareLoadFactors() {
+        final int capacity = 1 << 17;
+        final int lookupCount = 1_000_000;
+        System.out.println("load-factors: " + capacity + " ячеек (корзин), нс на попадание / промах");
+        System.out.println("  заполнение  LIST           AVL_TREE       OpenAddressing  RobinHood      " +
+                           "ср./макс. проба");
+        for (float loadFactor : new float[]{0.5f, 0.75f, 0.9f, 0.95f}) {
+            final int mapSize = (int) (capacity * loadFactor);
+            final Random random = new Random(42);
+            final Set<Integer> keySet = new HashSet<>();
+            while (keySet.size() < mapSize) {
+                keySet.add(random.nextInt());
+            }
+            final Integer[] keys = keySet.toArray(new Integer[0]);
+            final Integer[] hits = new Integer[lookupCount];
+            final Integer[] misses = new Integer[lookupCount];
+            for (int i = 0; i < lookupCount; i++) {
+                hits[i] = keys[random.nextInt(mapSize)];
+                do {
+                    misses[i] = random.nextInt();
+                } while (keySet.contains(misses[i]));
+            }
+            final List<Map<Integer, Integer>> maps = Arrays.asList(
+                    new BucketAgnosticHashMap<>(new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST),
+                                                capacity),
+                    new BucketAgnosticHashMap<>(new BasicBucketFactory<>(BasicBucketFactory.BucketType.AVL_TREE),
+                                                capacity),
+                    new OpenAddressingHashMap<>(capacity, 0.96f),
+                    new RobinHoodHashMap<>(capacity, 0.96f));
+            final StringBuilder line = new StringBuilder(String.format("  %10.2f", loadFactor));
+            for (Map<Integer, Integer> map : maps) {
+                for (Integer key : keys) {
+                    map.put(key, key);
+                }
+                final double hitNanos = measure(() -> sink += countFound(map, hits), lookupCount);
+                final double missNanos = measure(() -> sink += countFound(map, misses), lookupCount);
+                line.append(String.format("  %5.1f / %5.1f", hitNanos, missNanos));
+            }
+            final RobinHoodHashMap<Integer, Integer> robinHood = (RobinHoodHashMap<Integer, Integer>) maps.get(3);
+            line.append(String.format("  %5.2f / %d", robinHood.getMeanProbeLength(), robinHood.getMaxProbeLength()));
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Сравнивает распределение времени отдельных поисков при перекошенных хэшах:
+     * ключи Double с целыми значениями различаются лишь старшими битами хэш кода,
+     * а все таблицы используют хэш код без изменений (стратегия IDENTITY).
+     * Время каждого поиска включает накладные расходы System.nanoTime, одинаковые для всех таблиц.
+     */
+    private static void compareTailLatency() {
+        final int mapSize = 50_000;
+        final int lookupCount = 1_000_000;
+        final HashStrategy identity = new BasicHashStrategy(BasicHashStrategy.StrategyType.IDENTITY);
+        final Map<String, Map<Double, Double>> maps = new LinkedHashMap<>();
+        maps.put("LIST", new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), identity, 1 << 16, 0.75f, false));
+        maps.put("AVL_TREE", new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.AVL_TREE), identity, 1 << 16, 0.75f, false));
+        maps.put("ADAPTIVE", new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.ADAPTIVE), identity, 1 << 16, 0.75f, false));
+        maps.put("RobinHood", new RobinHoodHashMap<>(identity, 1 << 16, 0.9f));
+        maps.put("Cuckoo", new CuckooHashMap<>(identity, 1 << 14, 0.9f));
+        final Double[] lookups = new Double[lookupCount];
+        final Random random = new Random(42);
+        for (int i = 0; i < lookupCount; i++) {
+            lookups[i] = (double) random.nextInt(mapSize);
+        }
+        System.out.println("tail-latency: " + mapSize + " ключей Double, стратегия IDENTITY, нс на поиск");
+        System.out.println("  таблица         p50      p99    p99.9");
+        for (Map.Entry<String, Map<Double, Double>> entry : maps.entrySet()) {
+            final Map<Double, Double> map = entry.getValue();
+            for (int i = 0; i < mapSize; i++) {
+                map.put((double) i, (double) i);
+            }
+            final long[] latencies = new long[lookupCount];
+            for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+                for (int i = 0; i < lookupCount; i++) {
+                    final long start = System.nanoTime();
+                    sink += (map.get(lookups[i]) != null) ? 1 : 0;
+                    latencies[i] = System.nanoTime() - start;
+                }
+            }
+            Arrays.sort(latencies);
+            System.out.printf("  %-12s %6d %8d %8d%n", entry.getKey(), latencies[lookupCount / 2],
+                              latencies[(int) (lookupCount * 0.99)], latencies[(int) (lookupCount * 0.999)]);
+        }
+    }
+
+    /**
+     * Сравнивает таблицу с ключами int и таблицы с упакованными ключами Integer.
+     * Ключи хранятся в массиве int[] и упаковываются при добавлении и поиске, как в коде,
+     * работающем с примитивами, поэтому объем упакованных ключей входит в объем таблиц.
+     * Все пары имеют одно и то же значение, чтобы замерялся только объем самих таблиц.
+     */
+    private static void comparePrimitiveKeys() {
+        final int mapSize = 100_000;
+        final int lookupCount = 1_000_000;
+        final Random random = new Random(42);
+        final int[] keys = random.ints().distinct().limit(mapSize).toArray();
+        final int[] hits = new int[lookupCount];
+        for (int i = 0; i < lookupCount; i++) {
+            hits[i] = keys[random.nextInt(mapSize)];
+        }
+        final Object value = new Object();
+        final Map<String, Supplier<Map<Integer, Object>>> boxedMaps = new LinkedHashMap<>();
+        boxedMaps.put("HashMap", () -> new HashMap<>(mapSize * 2));
+        boxedMaps.put("OpenAddressing", () -> new OpenAddressingHashMap<>(mapSize * 2));
+        System.out.println("primitive-keys: таблицы из " + mapSize + " случайных ключей int");
+        System.out.println("  таблица          байт на пару  нс на попадание");
+        for (Map.Entry<String, Supplier<Map<Integer, Object>>> entry : boxedMaps.entrySet()) {
+            final long footprint = measureRetained(() -> {
+                final Map<Integer, Object> map = entry.getValue().get();
+                for (int key : keys) {
+                    map.put(key, value);
+                }
+                return map;
+            });
+            final Map<Integer, Object> map = entry.getValue().get();
+            for (int key : keys) {
+                map.put(key, value);
+            }
+            final double hitNanos = measure(() -> {
+                for (int key : hits) {
+                    if (map.get(key) != null) {
+                        sink++;
+                    }
+                }
+            }, lookupCount);
+            System.out.printf("  %-16s %12.1f %16.1f%n", entry.getKey(), (double) footprint / mapSize, hitNanos);
+        }
+        final long footprint = measureRetained(() -> {
+            final IntObjectHashMap<Object> map = new IntObjectHashMap<>(mapSize * 2);
+            for (int key : keys) {
+                map.put(key, value);
+            }
+            return map;
+        });
+        final IntObjectHashMap<Object> map = new IntObjectHashMap<>(mapSize * 2);
+        for (int key : keys) {
+            map.put(key, value);
+        }
+        final double hitNanos = measure(() -> {
+            for (int key : hits) {
+                if (map.get(key) != null) {
+                    sink++;
+                }
+            }
+        }, lookupCount);
+        System.out.printf("  %-16s %12.1f %16.1f%n", "IntObject", (double) footprint / mapSize, hitNanos);
+    }
+
+    /**
+     * Сравнивает таблицу, хранящую пары вне кучи, с таблицами в куче: объем кучи и памяти вне ее,
+     * занятый таблицей со строковыми ключами и значениями, и время поиска с восстановлением значения
+     */
+    private static void compareOffHeap() {
+        final int mapSize = 100_000;
+        final int lookupCount = 1_000_000;
+        final String[] keys = new String[mapSize];
+        for (int i = 0; i < mapSize; i++) {
+            keys[i] = "key_" + i;
+        }
+        final Random random = new Random(42);
+        final String[] hits = new String[lookupCount];
+        for (int i = 0; i < lookupCount; i++) {
+            hits[i] = keys[random.nextInt(mapSize)];
+        }
+        final Map<String, Supplier<Map<String, String>>> maps = new LinkedHashMap<>();
+        maps.put("HashMap", () -> new HashMap<>(mapSize * 2));
+        maps.put("OpenAddressing", () -> new OpenAddressingHashMap<>(mapSize * 2));
+        maps.put("OffHeap", () -> new OffHeapHashMap<>(BasicCodecs.STRING, BasicCodecs.STRING, mapSize * 2));
+        System.out.println("off-heap: таблицы из " + mapSize + " строковых пар");
+        System.out.println("  таблица          байт кучи на пару  байт вне кучи на пару  нс на попадание");
+        for (Map.Entry<String, Supplier<Map<String, String>>> entry : maps.entrySet()) {
+            final long footprint = measureRetained(() -> {
+                final Map<String, String> map = entry.getValue().get();
+                for (String key : keys) {
+                    map.put(key, "value_" + key);
+                }
+                return map;
+            });
+            final Map<String, String> map = entry.getValue().get();
+            for (String key : keys) {
+                map.put(key, "value_" + key);
+            }
+            final long offHeapBytes = (map instanceof OffHeapHashMap) ?
+                    ((OffHeapHashMap<String, String>) map).getAllocatedBytes() : 0;
+            final double hitNanos = measure(() -> {
+                for (String key : hits) {
+                    sink += map.get(key).length();
+                }
+            }, lookupCount);
+            System.out.printf("  %-16s %17.1f %22.1f %16.1f%n", entry.getKey(), (double) footprint / mapSize,
+                              (double) offHeapBytes / mapSize, hitNanos);
+        }
+    }
+
+    /**
+     * Сравнивает время заполнения таблицы, хранящей пары в отображенных в память файлах,
+     * со временем ее повторного открытия после закрытия
+     */
+    private static void measureMappedReopen() {
+        final int mapSize = 1_000_000;
+        try {
+            final Path directory = Files.createTempDirectory("mapped-reopen");
+            long start = System.nanoTime();
+            try (MappedHashMap<String, String> map = MappedHashMap.open(directory, BasicCodecs.STRING,
+                                                                        BasicCodecs.STRING)) {
+                for (int i = 0; i < mapSize; i++) {
+                    map.put("key_" + i, "value_" + i);
+                }
+            }
+            final double fillMillis = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            try (MappedHashMap<String, String> map = MappedHashMap.open(directory, BasicCodecs.STRING,
+                                                                        BasicCodecs.STRING)) {
+                final double reopenMillis = (System.nanoTime() - start) / 1e6;
+                sink += map.get("key_" + (mapSize / 2)).length();
+                System.out.println("mapped-reopen: таблица из " + mapSize + " строковых пар");
+                System.out.printf("  заполнение и закрытие %.1f мс, повторное открытие %.1f мс%n", fillMillis,
+                                  reopenMillis);
+            }
+            deleteDirectory(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Сравнивает время записи снимка таблицы в файл и его загрузки со временем построения ее текстового описания
+     */
+    private static void measureSnapshot() {
+        final int mapSize = 1_000_000;
+        final BucketAgnosticHashMap<String, String> map = BucketAgnosticHashMap.withExpectedSize(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), mapSize);
+        for (int i = 0; i < mapSize; i++) {
+            map.put("key_" + i, "value_" + i);
+        }
+        try {
+            final Path file = Files.createTempFile("snapshot", ".bin");
+            long start = System.nanoTime();
+            sink += map.toString().length();
+            final double textMillis = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                map.snapshotTo(channel, BasicCodecs.STRING, BasicCodecs.STRING);
+            }
+            final double writeMillis = (System.nanoTime() - start) / 1e6;
+            final double megabytes = Files.size(file) / 1e6;
+            double loadMillis = Double.MAX_VALUE;
+            for (int round = 0; round < MEASURED_ROUNDS; round++) {
+                final BucketAgnosticHashMap<String, String> loaded = new BucketAgnosticHashMap<>(
+                        new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), 16, 0.75f);
+                start = System.nanoTime();
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    loaded.loadFrom(channel, BasicCodecs.STRING, BasicCodecs.STRING);
+                }
+                loadMillis = Math.min(loadMillis, (System.nanoTime() - start) / 1e6);
+                sink += loaded.size();
+            }
+            Files.delete(file);
+            System.out.println("snapshot: таблица из " + mapSize + " строковых пар, снимок " +
+                               String.format("%.1f", megabytes) + " МБ");
+            System.out.printf("  toString %.1f мс, запись снимка %.1f мс, загрузка снимка %.1f мс (%.0f МБ/с)%n",
+                              textMillis, writeMillis, loadMillis, megabytes / loadMillis * 1000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Замеряет пропускную способность таблицы с журналом упреждающей записи:
+     * при асинхронной фиксации из одного потока и при синхронной фиксации из одного и нескольких потоков.
+     * При синхронной фиксации каждый поток ждет сброса своей записи на диск,
+     * и только групповая фиксация позволяет нескольким потокам делить один сброс.
+     */
+    private static void measureWriteAheadLog() {
+        System.out.println("write-ahead-log: задержка фиксации 1 мс");
+        measureDurableWrites("асинхронная фиксация, 1 поток", false, 1, 500_000);
+        measureDurableWrites("синхронная фиксация, 1 поток", true, 1, 2_000);
+        measureDurableWrites("синхронная фиксация, 64 потока", true, 64, 100_000);
+    }
+
+    private static void measureDurableWrites(String name, boolean synchronousCommit, int threadCount,
+                                             int writeCount) {
+        try {
+            final Path directory = Files.createTempDirectory("write-ahead-log");
+            try (DurableMap<String, String> map = DurableMap.open(
+                    directory, new BucketAgnosticHashMap<>(
+                            new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), 16, 0.75f),
+                    BasicCodecs.STRING, BasicCodecs.STRING, 1 << 26, 1000, synchronousCommit)) {
+                final Thread[] threads = new Thread[threadCount];
+                final long start = System.nanoTime();
+                for (int t = 0; t < threadCount; t++) {
+                    final int thread = t;
+                    threads[t] = new Thread(() -> {
+                        for (int i = thread; i < writeCount; i += threadCount) {
+                            map.put("key_" + i, "value_" + i);
+                        }
+                    });
+                    threads[t].start();
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                map.sync();
+                final double seconds = (System.nanoTime() - start) / 1e9;
+                sink += map.size();
+                System.out.printf("  %-32s %10.0f записей/с%n", name, writeCount / seconds);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            deleteDirectory(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Сравнивает пропускную способность потокобезопасных таблиц при 90% чтений и 10% записей
+     * в зависимости от числа потоков. Рост пропускной способности с числом потоков
+     * ограничен числом доступных процессоров.
+     */
+    private static void compareConcurrentMaps() {
+        final int mapSize = 100_000;
+        final int operationsPerThread = 1_000_000;
+        final Map<String, Supplier<Map<Integer, Integer>>> maps = new LinkedHashMap<>();
+        maps.put("synchronizedMap(BAHM)", () -> Collections.synchronizedMap(BucketAgnosticHashMap.withExpectedSize(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), mapSize)));
+        maps.put("Concurrent BAHM(LIST)", () -> new ConcurrentBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST)));
+        maps.put("Concurrent BAHM(LOCK_FREE)", () -> new ConcurrentBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LOCK_FREE_LIST)));
+        maps.put("Concurrent BAHM(PERSISTENT_AVL)", () -> new ConcurrentBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.PERSISTENT_AVL_TREE)));
+        maps.put("ConcurrentHashMap", ConcurrentHashMap::new);
+        final int[] threadCounts = {1, 2, 4, 8, 16, 64};
+        System.out.println("concurrent: " + mapSize + " ключей, 90% get / 10% put, процессоров: "
+                           + Runtime.getRuntime().availableProcessors());
+        System.out.print("  млн операций/с, потоков:         ");
+        for (int threadCount : threadCounts) {
+            System.out.printf("%8d", threadCount);
+        }
+        System.out.println();
+        for (Map.Entry<String, Supplier<Map<Integer, Integer>>> entry : maps.entrySet()) {
+            final Map<Integer, Integer> map = entry.getValue().get();
+            for (int i = 0; i < mapSize; i++) {
+                map.put(i, i);
+            }
+            System.out.printf("  %-32s", entry.getKey());
+            for (int threadCount : threadCounts) {
+                System.out.printf("%8.1f", measureMixedThroughput(map, mapSize, threadCount, operationsPerThread));
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * Замеряет заполнение пустой потокобезопасной таблицы несколькими потоками, при котором таблица
+     * многократно меняет размер, и наибольшую задержку поиска в параллельно читающем потоке.
+     * Задержка чтения показывает, останавливает ли изменение размера остальные операции.
+     */
+    private static void measureConcurrentResize() {
+        final int writerCount = 4;
+        final int keysPerWriter = 250_000;
+        final Map<String, Supplier<Map<Integer, Integer>>> maps = new LinkedHashMap<>();
+        maps.put("Concurrent BAHM(LIST)", () -> new ConcurrentBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST)));
+        maps.put("Concurrent BAHM(LOCK_FREE)", () -> new ConcurrentBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LOCK_FREE_LIST)));
+        maps.put("Concurrent BAHM(PERSISTENT_AVL)", () -> new ConcurrentBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.PERSISTENT_AVL_TREE)));
+        maps.put("ConcurrentHashMap", ConcurrentHashMap::new);
+        System.out.println("concurrent-resize: " + writerCount + " потока по " + keysPerWriter
+                           + " ключей в пустую таблицу, процессоров: " + Runtime.getRuntime().availableProcessors());
+        System.out.println("  таблица                            млн записей/с   макс. задержка get, мкс");
+        for (Map.Entry<String, Supplier<Map<Integer, Integer>>> entry : maps.entrySet()) {
+            double bestThroughput = 0;
+            long bestMaxLatency = Long.MAX_VALUE;
+            for (int repeat = 0; repeat < 3; repeat++) {
+                final Map<Integer, Integer> map = entry.getValue().get();
+                map.put(-1, -1);
+                final AtomicBoolean writing = new AtomicBoolean(true);
+                final long[] maxLatency = new long[1];
+                final Thread reader = new Thread(() -> {
+                    long found = 0;
+                    while (writing.get()) {
+                        final long start = System.nanoTime();
+                        if (map.get(-1) != null) {
+                            found++;
+                        }
+                        maxLatency[0] = Math.max(maxLatency[0], System.nanoTime() - start);
+                    }
+                    sink += found;
+                });
+                final Thread[] writers = new Thread[writerCount];
+                final long start = System.nanoTime();
+                for (int t = 0; t < writerCount; t++) {
+                    final int writer = t;
+                    writers[t] = new Thread(() -> {
+                        for (int i = writer; i < writerCount * keysPerWriter; i += writerCount) {
+                            map.put(i, i);
+                        }
+                    });
+                    writers[t].start();
+                }
+                reader.start();
+                try {
+                    for (Thread writer : writers) {
+                        writer.join();
+                    }
+                    final double seconds = (System.nanoTime() - start) / 1e9;
+                    writing.set(false);
+                    reader.join();
+                    bestThroughput = Math.max(bestThroughput, writerCount * keysPerWriter / seconds / 1e6);
+                    bestMaxLatency = Math.min(bestMaxLatency, maxLatency[0]);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            System.out.printf("  %-32s%16.2f%26.1f%n", entry.getKey(), bestThroughput, bestMaxLatency / 1e3);
+        }
+    }
+
+    /**
+     * Сравнивает пропускную способность чтения потокобезопасных таблиц без записей в зависимости от числа потоков,
+     * а также обновление части пар таблицы с копированием при записи отдельными put и одним пакетом update.
+     */
+    private static void compareCopyOnWrite() {
+        final int mapSize = 10_000;
+        final int operationsPerThread = 2_000_000;
+        final Map<String, Supplier<Map<Integer, Integer>>> maps = new LinkedHashMap<>();
+        maps.put("synchronizedMap(BAHM)", () -> Collections.synchronizedMap(BucketAgnosticHashMap.withExpectedSize(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), mapSize)));
+        maps.put("Concurrent BAHM(LIST)", () -> new ConcurrentBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST)));
+        maps.put("CopyOnWrite BAHM(LIST)", () -> new CopyOnWriteBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST)));
+        maps.put("ConcurrentHashMap", ConcurrentHashMap::new);
+        final int[] threadCounts = {1, 4, 16};
+        System.out.println("copy-on-write: " + mapSize + " ключей, только get, процессоров: "
+                           + Runtime.getRuntime().availableProcessors());
+        System.out.print("  млн операций/с, потоков:         ");
+        for (int threadCount : threadCounts) {
+            System.out.printf("%8d", threadCount);
+        }
+        System.out.println();
+        for (Map.Entry<String, Supplier<Map<Integer, Integer>>> entry : maps.entrySet()) {
+            final Map<Integer, Integer> map = entry.getValue().get();
+            final Map<Integer, Integer> fill = new HashMap<>();
+            for (int i = 0; i < mapSize; i++) {
+                fill.put(i, i);
+            }
+            map.putAll(fill);
+            System.out.printf("  %-32s", entry.getKey());
+            for (int threadCount : threadCounts) {
+                System.out.printf("%8.1f", measureReadThroughput(map, mapSize, threadCount, operationsPerThread));
+            }
+            System.out.println();
+        }
+        final int refreshSize = 1_000;
+        final CopyOnWriteBucketAgnosticHashMap<Integer, Integer> map = new CopyOnWriteBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST));
+        for (int i = 0; i < mapSize; i++) {
+            map.put(i, i);
+        }
+        final double putNanos = measure(() -> {
+            for (int i = 0; i < refreshSize; i++) {
+                map.put(i, -i);
+            }
+        }, refreshSize);
+        final double updateNanos = measure(() -> map.update(batch -> {
+            for (int i = 0; i < refreshSize; i++) {
+                batch.put(i, i);
+            }
+        }), refreshSize);
+        System.out.printf("  обновление %d из %d пар, нс на пару: отдельные put - %.0f, один update - %.0f%n",
+                          refreshSize, mapSize, putNanos, updateNanos);
+    }
+
+    /**
+     * Замеряет пропускную способность таблицы при поиске случайных ключей без записей
+     *
+     * @param map                 - заполненная таблица
+     * @param keyRange            - число ключей таблицы
+     * @param threadCount         - число потоков
+     * @param operationsPerThread - число операций каждого потока
+     * @return - миллионов операций в секунду
+     */
+    private static double measureReadThroughput(Map<Integer, Integer> map, int keyRange, int threadCount,
+                                                int operationsPerThread) {
+        final Thread[] threads = new Thread[threadCount];
+        final long[] found = new long[threadCount];
+        final long start = System.nanoTime();
+        for (int t = 0; t < threadCount; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> {
+                final Random random = new Random(thread);
+                long threadFound = 0;
+                for (int i = 0; i < operationsPerThread; i++) {
+                    if (map.get(random.nextInt(keyRange)) != null) {
+                        threadFound++;
+                    }
+                }
+                found[thread] = threadFound;
+            });
+            threads[t].start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        for (long threadFound : found) {
+            sink += threadFound;
+        }
+        return (double) threadCount * operationsPerThread / seconds / 1e6;
+    }
+
+    /**
+     * Замеряет пропускную способность таблицы при 90% чтений и 10% записей случайных ключей
+     *
+     * @param map                 - заполненная таблица
+     * @param keyRange            - число ключей таблицы
+     * @param threadCount         - число потоков
+     * @param operationsPerThread - число операций каждого потока
+     * @return - миллионов операций в секунду
+     */
+    private static double measureMixedThroughput(Map<Integer, Integer> map, int keyRange, int threadCount,
+                                                 int operationsPerThread) {
+        final Thread[] threads = new Thread[threadCount];
+        final long[] found = new long[threadCount];
+        final long start = System.nanoTime();
+        for (int t = 0; t < threadCount; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> {
+                final Random random = new Random(thread);
+                long threadFound = 0;
+                for (int i = 0; i < operationsPerThread; i++) {
+                    final Integer key = random.nextInt(keyRange);
+                    if (random.nextInt(10) == 0) {
+                        map.put(key, i);
+                    } else if (map.get(key) != null) {
+                        threadFound++;
+                    }
+                }
+                found[thread] = threadFound;
+            });
+            threads[t].start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        for (long threadFound : found) {
+            sink += threadFound;
+        }
+        return (double) threadCount * operationsPerThread / seconds / 1e6;
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static long countFound(Map<Integer, Integer> map, Integer[] lookups) {
+        long found = 0;
+        for (Integer key : lookups) {
+            if (map.get(key) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Замеряет объем памяти, занятой заполненной таблицей
+     *
+     * @param mapSupplier - создатель пустой таблицы
+     * @param keys        - добавляемые ключи, они же значения
+     * @return - объем таблицы в байтах
+     */
+    private static long measureFootprint(Supplier<Map<Integer, Integer>> mapSupplier, Integer[] keys) {
+        return measureRetained(() -> {
+            final Map<Integer, Integer> map = mapSupplier.get();
+            for (Integer key : keys) {
+                map.put(key, key);
+            }
+            return map;
+        });
+    }
+
+    /**
+     * Замеряет объем памяти, занятой построенным объектом, как разницу занятой памяти до и после его освобождения.
+     * Объект доступен только через статическое поле, чтобы его не удерживали локальные переменные.
+     *
+     * @param builder - создатель замеряемого объекта
+     * @return - объем объекта в байтах
+     */
+    private static long measureRetained(Supplier<Object> builder) {
+        retained = builder.get();
+        final long usedWithObject = usedMemory();
+        retained = null;
+        return usedWithObject - usedMemory();
+    }
+
+    /**
+     * Возвращает объем занятой памяти кучи после сборки мусора.
+     * Ключи, созданные до замера, в объем таблицы не входят.
+     *
+     * @return - объем занятой памяти в байтах
+     */
+    private static long usedMemory() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Выполняет замеряемый код несколько раз и возвращает лучшее время в пересчете на одну операцию
+     *
+     * @param round          - замеряемый код, выполняющий заданное число операций
+     * @param operationCount - число операций за один прогон
+     * @return - лучшее время одной операции в наносекундах
+     */
+    private static double measure(Runnable round, int operationCount) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            final long start = System.nanoTime();
+            round.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / operationCount;
+    }
+}
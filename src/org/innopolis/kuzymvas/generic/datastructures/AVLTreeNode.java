@@ -7,6 +7,12 @@ import java.util.*;
 /**
  *
  * Класс узла АВЛ-дерева, хранящего пару ключ-значение.
+ * Ключи упорядочиваются компаратором, либо, если он не задан, естественным порядком (Comparable).
+ * Компаратор передается всем узлам дерева.
+ * С компаратором TieBreakingComparator (например, HashOrderComparator) дерево может хранить ключи
+ * без естественного порядка: ключи, неразличимые в порядке поиска, сравниваются через equals.
+ * Все операции выполняются без рекурсии: спуск по дереву запоминает пройденные узлы в массиве,
+ * длина которого ограничена высотой дерева, а балансировка идет по нему в обратном порядке.
  *
  * @param <K> - тип ключа
  * @param <V> - тип значения
@@ -14,6 +20,7 @@ import java.util.*;
 public class AVLTreeNode<K, V> {
 
     private final Comparator<K> comparator;
+    private final TieBreakingComparator<K> tieBreaker; // Тот же компаратор, если он TieBreakingComparator, иначе null
     private KeyValuePair<K, V> pair;
     private int height; // Высота узла в дереве (у листьев = 1)
     private AVLTreeNode<K, V> left; // Ссылки на ветви дерева
@@ -31,6 +38,7 @@ public class AVLTreeNode<K, V> {
         right = null;
         pair = new KeyValuePair<>(key, value);
         comparator = null;
+        tieBreaker = null;
     }
 
     /**
@@ -46,6 +54,33 @@ public class AVLTreeNode<K, V> {
         right = null;
         pair = new KeyValuePair<>(key, value);
         this.comparator = comparator;
+        this.tieBreaker = tieBreakerOf(comparator);
+    }
+
+    /**
+     * Создает новый узел дерева (и  корень дерева из одного узла), содержащий уже существующую пару ключ-значение.
+     * Пара не копируется, поэтому полученные ранее ссылки на нее продолжают отражать изменения значения.
+     *
+     * @param pair - пара ключ-значение, хранимая в узле дерева
+     */
+    public AVLTreeNode(KeyValuePair<K, V> pair) {
+        this(pair, null);
+    }
+
+    /**
+     * Создает новый узел дерева (и  корень дерева из одного узла), содержащий уже существующую пару ключ-значение.
+     * Пара не копируется, поэтому полученные ранее ссылки на нее продолжают отражать изменения значения.
+     *
+     * @param pair       - пара ключ-значение, хранимая в узле дерева
+     * @param comparator - компаратор для сравнения ключей узлов дерева между собой, либо null
+     */
+    public AVLTreeNode(KeyValuePair<K, V> pair, Comparator<K> comparator) {
+        height = 1;
+        left = null;
+        right = null;
+        this.pair = pair;
+        this.comparator = comparator;
+        this.tieBreaker = tieBreakerOf(comparator);
     }
 
     /**
@@ -90,12 +125,12 @@ public class AVLTreeNode<K, V> {
         node.updateHeight();
         final int balance = node.getBalance();
         if (balance > 1) {
-            if (node.right.getRightHeight() <= node.right.getLeftHeight()) {
+            if (node.right.getRightHeight() < node.right.getLeftHeight()) {
                 node.right = rotateRight(node.right);
             }
             node = rotateLeft(node);
         } else if (balance < -1) {
-            if (node.left.getLeftHeight() <= node.left.getRightHeight()) {
+            if (node.left.getLeftHeight() < node.left.getRightHeight()) {
                 node.left = rotateLeft(node.left);
             }
             node = rotateRight(node);
@@ -109,17 +144,20 @@ public class AVLTreeNode<K, V> {
      * @return -  максимальный по модулю показатель сбалансированноси в дереве
      */
     public int getMaxAbsTreeBalance() {
-        int balance = getBalance();
-        if (left != null) {
-            final int leftBalance = left.getMaxAbsTreeBalance();
-            if (Math.abs(balance) < Math.abs(leftBalance)) {
-                balance = leftBalance;
+        final AVLTreeNode<K, V>[] stack = newNodeArray(height + 1);
+        int stackSize = 0;
+        stack[stackSize++] = this;
+        int balance = 0;
+        while (stackSize > 0) {
+            final AVLTreeNode<K, V> node = stack[--stackSize];
+            if (Math.abs(balance) < Math.abs(node.getBalance())) {
+                balance = node.getBalance();
             }
-        }
-        if (right != null) {
-            final int rightBalance = right.getMaxAbsTreeBalance();
-            if (Math.abs(balance) < Math.abs(rightBalance)) {
-                balance = rightBalance;
+            if (node.left != null) {
+                stack[stackSize++] = node.left;
+            }
+            if (node.right != null) {
+                stack[stackSize++] = node.right;
             }
         }
         return balance;
@@ -139,23 +177,37 @@ public class AVLTreeNode<K, V> {
      * @return - новый корень дерева
      */
     public AVLTreeNode<K, V> insert(K key, V value) {
-        final int comparison = getComparison(this.pair.getKey(), key);
-        if (comparison > 0) {
-            if (right == null) {
-                right = new AVLTreeNode<>(key, value);
-            } else {
-                right = right.insert(key, value);
-            }
-        } else if (comparison < 0) {
-            if (left == null) {
-                left = new AVLTreeNode<>(key, value);
-            } else {
-                left = left.insert(key, value);
-            }
-        } else {
-            this.pair = new KeyValuePair<>(key, value);
-        }
-        return rebalance(this);
+        @SuppressWarnings({"unchecked", "rawtypes"}) final KeyValuePair<K, V>[] previous = new KeyValuePair[1];
+        return insertPair(new KeyValuePair<>(key, value), previous);
+    }
+
+    /**
+     * Если ключ отсутствует в дереве, начинающемся с данного узла,
+     * то вставляет в это дерево новый узел, содержащий заданную пару ключ-значение
+     * Если заданный ключ уже есть в дереве, то заменяет соответствуюзеее ему значение.
+     * В отличие от insert(key, value) сообщает прежнее значение ключа за тот же спуск по дереву.
+     *
+     * @param key      - ключ, добавляемый в дерево
+     * @param value    - значение, добавляемое в дерево
+     * @param previous - массив из одного элемента, в который записывается пара из ключа и его прежнего значения.
+     *                 Не изменяется, если в дерево был добавлен новый узел.
+     * @return - новый корень дерева
+     */
+    public AVLTreeNode<K, V> insert(K key, V value, KeyValuePair<K, V>[] previous) {
+        return insertPair(new KeyValuePair<>(key, value), previous);
+    }
+
+    /**
+     * Если ключ заданной пары отсутствует в дереве, начинающемся с данного узла,
+     * то вставляет в это дерево новый узел, содержащий саму эту пару (без копирования).
+     * Если ключ уже есть в дереве, то заменяет соответствующее ему значение значением пары.
+     *
+     * @param pair - пара ключ-значение, добавляемая в дерево
+     * @return - новый корень дерева
+     */
+    public AVLTreeNode<K, V> insert(KeyValuePair<K, V> pair) {
+        @SuppressWarnings({"unchecked", "rawtypes"}) final KeyValuePair<K, V>[] previous = new KeyValuePair[1];
+        return insertPair(pair, previous);
     }
 
     /**
@@ -166,26 +218,49 @@ public class AVLTreeNode<K, V> {
      * @throws KeyNotPresentException - выбрасывается, если в дереве нет узла с заданным ключем.
      */
     public AVLTreeNode<K, V> remove(Object key) throws KeyNotPresentException {
-        final int comparison = getComparison(this.pair.getKey(), key);
-        if (comparison > 0) {
-            if (right == null) {
-                throw new KeyNotPresentException("Specified to be removed key do not exist on the tree");
-            }
-            right = right.remove(key);
-        } else if (comparison < 0) {
-            if (left == null) {
-                throw new KeyNotPresentException("Specified to be removed key do not exist on the tree");
-            }
-            left = left.remove(key);
-        } else {
-            if (left == null || right == null) {
-                return (left == null) ? right : left;
+        @SuppressWarnings({"unchecked", "rawtypes"}) final KeyValuePair<K, V>[] removed = new KeyValuePair[1];
+        final AVLTreeNode<K, V> newRoot = remove(key, removed);
+        if (removed[0] == null) {
+            throw new KeyNotPresentException("Specified to be removed key do not exist on the tree");
+        }
+        return newRoot;
+    }
+
+    /**
+     * Удаляет из дерева, начинающегося с данного узла узел с заданным ключем, если он есть в дереве.
+     * В отличие от remove(key) не выбрасывает исключение при отсутствии ключа
+     * и сообщает удаленную пару за тот же спуск по дереву.
+     *
+     * @param key     - ключ удаляемого узла
+     * @param removed - массив из одного элемента, в который записывается пара удаленного узла.
+     *                Не изменяется, если ключа в дереве нет.
+     * @return - новый корень дерева
+     */
+    public AVLTreeNode<K, V> remove(Object key, KeyValuePair<K, V>[] removed) {
+        final AVLTreeNode<K, V>[] path = newNodeArray(height);
+        int depth = findPath(key, path);
+        if (depth < 0) {
+            return this;
+        }
+        final AVLTreeNode<K, V> target = path[depth];
+        removed[0] = target.pair;
+        if (target.left != null && target.right != null) {
+            // Пара узла заменяется парой крайнего левого узла правого поддерева, удаляется же тот узел
+            AVLTreeNode<K, V> leftmost = target.right;
+            path[++depth] = leftmost;
+            while (leftmost.left != null) {
+                leftmost = leftmost.left;
+                path[++depth] = leftmost;
             }
-            AVLTreeNode<K, V> leftmostChildOnRight = right.getLeftmostChild();
-            this.pair = leftmostChildOnRight.pair;
-            right = right.remove(leftmostChildOnRight.pair.getKey());
+            target.pair = leftmost.pair;
+        }
+        final AVLTreeNode<K, V> removedNode = path[depth];
+        final AVLTreeNode<K, V> replacement = (removedNode.left == null) ? removedNode.right : removedNode.left;
+        if (depth == 0) {
+            return replacement;
         }
-        return rebalance(this);
+        path[depth - 1].replaceChild(removedNode, replacement);
+        return rebalancePath(path, depth - 1);
     }
 
     /**
@@ -195,43 +270,35 @@ public class AVLTreeNode<K, V> {
      * @throws KeyNotPresentException - выбрасывается, если в списке нет узла с заданным ключем.
      */
     public V getValue(Object key) throws KeyNotPresentException {
-        final int comparison = getComparison(this.pair.getKey(), key);
-        if (comparison > 0) {
-            if (right == null) {
-                throw new KeyNotPresentException("Specified to be retrieved key do not exist on the tree");
-            }
-            return right.getValue(key);
-        } else if (comparison < 0) {
-            if (left == null) {
-                throw new KeyNotPresentException("Specified to be retrieved key do not exist on the tree");
-            }
-            return left.getValue(key);
-        } else {
-            return pair.getValue();
+        final Map.Entry<K, V> entry = getEntry(key);
+        if (entry == null) {
+            throw new KeyNotPresentException("Specified to be retrieved key do not exist on the tree");
         }
+        return entry.getValue();
     }
 
     /**
-     * Возвращает пару ключ-значение, хранимую в узле дерева с заданным ключом
+     * Возвращает пару ключ-значение, хранимую в узле дерева с заданным ключом.
+     * Основной способ поиска по дереву: отсутствие ключа не приводит к исключению.
      *
      * @param key - искомый ключ
-     * @return - пара ключ-значение
+     * @return - пара ключ-значение, либо null, если ключа в дереве нет
      */
     public Map.Entry<K, V> getEntry(Object key) {
-        final int comparison = getComparison(this.pair.getKey(), key);
-        if (comparison > 0) {
-            if (right == null) {
-                return null;
-            }
-            return right.getEntry(key);
-        } else if (comparison < 0) {
-            if (left == null) {
-                return null;
+        AVLTreeNode<K, V> node = this;
+        while (node != null) {
+            final int comparison = getComparison(node.pair.getKey(), key);
+            if (comparison > 0) {
+                node = node.right;
+            } else if (comparison < 0) {
+                node = node.left;
+            } else if (node.isSameKey(key)) {
+                return node.pair;
+            } else {
+                return node.getEntryAmongTies(key);
             }
-            return left.getEntry(key);
-        } else {
-            return pair;
         }
+        return null;
     }
 
     /**
@@ -242,20 +309,11 @@ public class AVLTreeNode<K, V> {
      * @throws KeyNotPresentException - выбрасывается, если в дереве нет узла с заданным ключем.
      */
     public void replaceValue(K key, V value) throws KeyNotPresentException {
-        final int comparison = getComparison(this.pair.getKey(), key);
-        if (comparison > 0) {
-            if (right == null) {
-                throw new KeyNotPresentException("Specified for value replacement key do not exist on the tree");
-            }
-            right.replaceValue(key, value);
-        } else if (comparison < 0) {
-            if (left == null) {
-                throw new KeyNotPresentException("Specified for value replacement key do not exist on the tree");
-            }
-            left.replaceValue(key, value);
-        } else {
-            this.pair.setValue(value);
+        final Map.Entry<K, V> entry = getEntry(key);
+        if (entry == null) {
+            throw new KeyNotPresentException("Specified for value replacement key do not exist on the tree");
         }
+        entry.setValue(value);
     }
 
     /**
@@ -265,20 +323,7 @@ public class AVLTreeNode<K, V> {
      * @return - true, если ключ хранится в одном из узлов дерева, false в противном случае
      */
     public boolean containsKey(Object key) {
-        final int comparison = getComparison(this.pair.getKey(), key);
-        if (comparison > 0) {
-            if (right == null) {
-                return false;
-            }
-            return right.containsKey(key);
-        } else if (comparison < 0) {
-            if (left == null) {
-                return false;
-            }
-            return left.containsKey(key);
-        } else {
-            return true;
-        }
+        return getEntry(key) != null;
     }
 
     /**
@@ -288,36 +333,21 @@ public class AVLTreeNode<K, V> {
      * @return - true, если пара хранится в одном из узлов дерева, false в противном случае
      */
     public boolean containsPair(KeyValuePair<?, ?> pair) {
-        final int comparison = getComparison(this.pair.getKey(), pair.getKey());
-        if (comparison > 0) {
-            if (right == null) {
-                return false;
-            }
-            return right.containsPair(pair);
-        } else if (comparison < 0) {
-            if (left == null) {
-                return false;
-            }
-            return left.containsPair(pair);
-        } else {
-            return this.pair.equals(pair);
-        }
+        final Map.Entry<K, V> entry = getEntry(pair.getKey());
+        return entry != null && entry.equals(pair);
     }
 
     /**
-     * Возвращает список всех пар ключ-значение, хранимых в дереве, начинающемся с данного узла
+     * Возвращает список всех пар ключ-значение, хранимых в дереве, начинающемся с данного узла.
+     * Пары перечисляются в порядке обхода дерева, список создается сразу нужного размера.
      *
      * @return - список пар ключ-значение, минимум 1 пара.
      */
     public List<KeyValuePair<K, V>> getKeyValuePairs() {
-
-        List<KeyValuePair<K, V>> pairs = new ArrayList<>();
-        if (left != null) {
-            pairs.addAll(left.getKeyValuePairs());
-        }
-        pairs.add(this.pair);
-        if (right != null) {
-            pairs.addAll(right.getKeyValuePairs());
+        final AVLTreeNode<K, V>[] nodes = getNodesInOrder();
+        final List<KeyValuePair<K, V>> pairs = new ArrayList<>(nodes.length);
+        for (AVLTreeNode<K, V> node : nodes) {
+            pairs.add(node.pair);
         }
         return pairs;
     }
@@ -328,10 +358,10 @@ public class AVLTreeNode<K, V> {
      * @return - массив хэшей пар ключ-значение, минимум 1 хэш.
      */
     public int[] getKeyValuePairsHashes() {
-        final List<KeyValuePair<K, V>> pairs = getKeyValuePairs();
-        final int[] hashes = new int[pairs.size()];
-        for (int i = 0; i < pairs.size(); i++) {
-            hashes[i] = pairs.get(i).hashCode();
+        final AVLTreeNode<K, V>[] nodes = getNodesInOrder();
+        final int[] hashes = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            hashes[i] = nodes[i].pair.hashCode();
         }
         return hashes;
     }
@@ -342,12 +372,8 @@ public class AVLTreeNode<K, V> {
      * @param strB - StringBuilder, в который следует добавить описания.
      */
     public void describeTree(StringBuilder strB) {
-        if (left != null) {
-            left.describeTree(strB);
-        }
-        pair.describeSelf(strB);
-        if (right != null) {
-            right.describeTree(strB);
+        for (AVLTreeNode<K, V> node : getNodesInOrder()) {
+            node.pair.describeSelf(strB);
         }
     }
 
@@ -380,23 +406,257 @@ public class AVLTreeNode<K, V> {
         return "AVLTree{" + strB + "}";
     }
 
+    /**
+     * Вставляет заданную пару в дерево, начинающееся с данного узла, либо заменяет значение ее ключа
+     *
+     * @param newPair  - пара ключ-значение, добавляемая в дерево
+     * @param previous - массив из одного элемента, в который записывается пара из ключа и его прежнего значения
+     * @return - новый корень дерева
+     */
+    private AVLTreeNode<K, V> insertPair(KeyValuePair<K, V> newPair, KeyValuePair<K, V>[] previous) {
+        final K key = newPair.getKey();
+        final AVLTreeNode<K, V>[] path = newNodeArray(height);
+        boolean searched = false; // Искали ли ключ в обоих поддеревьях узла с неразличимым ключом
+        AVLTreeNode<K, V> node = this;
+        int depth = 0;
+        while (true) {
+            path[depth] = node;
+            int comparison = getComparison(node.pair.getKey(), key);
+            if (comparison == 0) {
+                if (node.isSameKey(key)) {
+                    previous[0] = new KeyValuePair<>(node.pair.getKey(), node.pair.setValue(newPair.getValue()));
+                    return this;
+                }
+                // Ключ неразличим компаратором с ключом узла: ищем его в обоих поддеревьях один раз
+                if (!searched) {
+                    searched = true;
+                    Map.Entry<K, V> entry = (node.left == null) ? null : node.left.getEntry(key);
+                    if (entry == null && node.right != null) {
+                        entry = node.right.getEntry(key);
+                    }
+                    if (entry != null) {
+                        previous[0] = new KeyValuePair<>(entry.getKey(), entry.setValue(newPair.getValue()));
+                        return this;
+                    }
+                }
+                comparison = tieBreaker.tieBreakOrder(node.pair.getKey(), key);
+                if (comparison == 0) {
+                    comparison = -1;
+                }
+            }
+            final AVLTreeNode<K, V> child = (comparison > 0) ? node.right : node.left;
+            if (child == null) {
+                final AVLTreeNode<K, V> newNode = new AVLTreeNode<>(newPair, comparator);
+                if (comparison > 0) {
+                    node.right = newNode;
+                } else {
+                    node.left = newNode;
+                }
+                return rebalancePath(path, depth);
+            }
+            node = child;
+            depth++;
+        }
+    }
+
+    /**
+     * Ищет заданный ключ в поддеревьях узла, ключ которого неразличим с заданным компаратором, но не равен ему.
+     * Неразличимые ключи могут оказаться в обоих поддеревьях, поэтому при каждом таком совпадении
+     * одно из поддеревьев откладывается и просматривается, если ключ не найден в другом.
+     *
+     * @param key - искомый ключ
+     * @return - пара ключ-значение, либо null, если ключа в поддеревьях нет
+     */
+    private Map.Entry<K, V> getEntryAmongTies(Object key) {
+        final AVLTreeNode<K, V>[] pending = newNodeArray(height);
+        int pendingSize = 0;
+        if (right != null) {
+            pending[pendingSize++] = right;
+        }
+        AVLTreeNode<K, V> node = left;
+        while (true) {
+            while (node != null) {
+                final int comparison = getComparison(node.pair.getKey(), key);
+                if (comparison > 0) {
+                    node = node.right;
+                } else if (comparison < 0) {
+                    node = node.left;
+                } else if (node.isSameKey(key)) {
+                    return node.pair;
+                } else {
+                    if (node.right != null) {
+                        pending[pendingSize++] = node.right;
+                    }
+                    node = node.left;
+                }
+            }
+            if (pendingSize == 0) {
+                return null;
+            }
+            node = pending[--pendingSize];
+        }
+    }
+
+    /**
+     * Ищет узел с заданным ключом, запоминая путь к нему от данного узла
+     *
+     * @param key  - искомый ключ
+     * @param path - массив длиной не меньше высоты дерева, в который записываются узлы пути
+     * @return - глубина найденного узла (его позиция в path), либо -1, если ключа в дереве нет
+     */
+    private int findPath(Object key, AVLTreeNode<K, V>[] path) {
+        AVLTreeNode<K, V> node = this;
+        int depth = 0;
+        AVLTreeNode<K, V>[] pending = null; // Поддеревья, которые осталось просмотреть из-за неразличимых ключей
+        int[] pendingDepths = null;
+        int pendingSize = 0;
+        while (true) {
+            while (node != null) {
+                path[depth] = node;
+                final int comparison = getComparison(node.pair.getKey(), key);
+                if (comparison > 0) {
+                    node = node.right;
+                } else if (comparison < 0) {
+                    node = node.left;
+                } else if (node.isSameKey(key)) {
+                    return depth;
+                } else {
+                    // Путь к узлу из отложенного поддерева совпадает с уже записанным до его родителя
+                    if (node.right != null) {
+                        if (pending == null) {
+                            pending = newNodeArray(height);
+                            pendingDepths = new int[height];
+                        }
+                        pending[pendingSize] = node.right;
+                        pendingDepths[pendingSize++] = depth + 1;
+                    }
+                    node = node.left;
+                }
+                depth++;
+            }
+            if (pendingSize == 0) {
+                return -1;
+            }
+            node = pending[--pendingSize];
+            depth = pendingDepths[pendingSize];
+        }
+    }
+
+    /**
+     * Балансирует узлы пути снизу вверх после вставки или удаления узла ниже последнего из них.
+     * Останавливается, как только высота очередного узла не изменилась: выше по пути изменений нет.
+     *
+     * @param path - узлы пути от корня дерева
+     * @param last - позиция последнего изменившегося узла пути
+     * @return - новый корень дерева
+     */
+    private AVLTreeNode<K, V> rebalancePath(AVLTreeNode<K, V>[] path, int last) {
+        for (int i = last; i >= 0; i--) {
+            final AVLTreeNode<K, V> node = path[i];
+            final int oldHeight = node.height;
+            final AVLTreeNode<K, V> newNode = rebalance(node);
+            if (i == 0) {
+                return newNode;
+            }
+            if (newNode == node && node.height == oldHeight) {
+                return this;
+            }
+            path[i - 1].replaceChild(node, newNode);
+        }
+        return this;
+    }
+
+    /**
+     * Заменяет ссылку на дочерний узел
+     *
+     * @param child       - заменяемый дочерний узел
+     * @param replacement - новый дочерний узел, либо null
+     */
+    private void replaceChild(AVLTreeNode<K, V> child, AVLTreeNode<K, V> replacement) {
+        if (left == child) {
+            left = replacement;
+        } else {
+            right = replacement;
+        }
+    }
+
+    /**
+     * Возвращает все узлы дерева, начинающегося с данного узла, в порядке обхода.
+     * Сначала подсчитывает узлы, чтобы создать массив нужного размера.
+     *
+     * @return - массив узлов дерева, минимум 1 узел
+     */
+    private AVLTreeNode<K, V>[] getNodesInOrder() {
+        final AVLTreeNode<K, V>[] stack = newNodeArray(height + 1);
+        int stackSize = 0;
+        int count = 0;
+        stack[stackSize++] = this;
+        while (stackSize > 0) {
+            final AVLTreeNode<K, V> node = stack[--stackSize];
+            count++;
+            if (node.left != null) {
+                stack[stackSize++] = node.left;
+            }
+            if (node.right != null) {
+                stack[stackSize++] = node.right;
+            }
+        }
+        final AVLTreeNode<K, V>[] nodes = newNodeArray(count);
+        int index = 0;
+        AVLTreeNode<K, V> node = this;
+        while (node != null || stackSize > 0) {
+            while (node != null) {
+                stack[stackSize++] = node;
+                node = node.left;
+            }
+            node = stack[--stackSize];
+            nodes[index++] = node;
+            node = node.right;
+        }
+        return nodes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> AVLTreeNode<K, V>[] newNodeArray(int length) {
+        return (AVLTreeNode<K, V>[]) new AVLTreeNode<?, ?>[length];
+    }
+
     /**
      * Выполняет сравнение между нашим ключом и данным ключом
-     * Если не задан компаратор и ключи не реализуют Comparable, возникнет исключение
+     * Если не задан компаратор и ключи не реализуют Comparable, возникнет исключение.
+     * Компаратор TieBreakingComparator сравнивает ключи только в порядке поиска.
      *
      * @param ourKey   - наш ключ
      * @param otherKey - данный ключ
-     * @return - отрицательно число, если наш ключ меньше, 0, если ключи равны
-     * и положительное число, если наш ключ больше.
+     * @return - отрицательно число, если наш ключ меньше, 0, если ключи равны (либо неразличимы
+     * для TieBreakingComparator) и положительное число, если наш ключ больше.
      */
+    @SuppressWarnings("unchecked")
     private int getComparison(K ourKey, Object otherKey) {
-        if (comparator != null) {
+        if (tieBreaker != null) {
+            return tieBreaker.compareForSearch(ourKey, otherKey);
+        } else if (comparator != null) {
             return comparator.compare(ourKey, (K) otherKey);
         } else {
             return ((Comparable<K>) ourKey).compareTo((K) otherKey);
         }
     }
 
+    /**
+     * Проверяет, хранит ли узел заданный ключ, если компаратор признал ключи равными.
+     * Для TieBreakingComparator равенство проверяется через equals, для остальных порядков - гарантировано.
+     *
+     * @param key - ключ, признанный компаратором равным ключу узла
+     * @return - true, если узел хранит заданный ключ, false в противном случае
+     */
+    private boolean isSameKey(Object key) {
+        return tieBreaker == null || Objects.equals(this.pair.getKey(), key);
+    }
+
+    private static <K> TieBreakingComparator<K> tieBreakerOf(Comparator<K> comparator) {
+        return (comparator instanceof TieBreakingComparator) ? (TieBreakingComparator<K>) comparator : null;
+    }
+
     /**
      * Проверяет является ли логически данное дерево подмножеством другого:
      * т. е. входят ли все элементы данного дерева и в другое тоже.
@@ -447,17 +707,4 @@ public class AVLTreeNode<K, V> {
     private int getBalance() {
         return getRightHeight() - getLeftHeight();
     }
-
-    /**
-     * Возвращает самый левый лист в в дереве, начинающейся с этой вершины
-     *
-     * @return - крайний левый лист в дереве, начинающемся с этой вершины
-     */
-    private AVLTreeNode<K, V> getLeftmostChild() {
-        if (this.left == null) {
-            return this;
-        } else {
-            return left.getLeftmostChild();
-        }
-    }
 }
@@ -0,0 +1,60 @@
+package org.innopolis.kuzymvas.generic.datastructures;
+
+import java.util.Objects;
+
+/**
+ * Компаратор, упорядочивающий ключи любых классов: сначала по полному хэш коду,
+ * затем по естественному порядку, если ключи принадлежат одному классу, реализующему Comparable,
+ * и, наконец, по имени класса и системному хэш коду объекта.
+ * Позволяет хранить в АВЛ дереве ключи без естественного порядка.
+ * Последний шаг не согласован с equals: равные, но разные объекты различаются системным хэш кодом,
+ * поэтому первые два шага образуют порядок поиска (compareForSearch), а последний - упорядочивание
+ * неразличимых ключей (tieBreakOrder), см. TieBreakingComparator.
+ *
+ * @param <K> - тип ключа
+ */
+public class HashOrderComparator<K> implements TieBreakingComparator<K> {
+
+    /**
+     * Сравнивает ключи по полному хэш коду, а при его равенстве - по естественному порядку,
+     * если ключи принадлежат одному классу, реализующему Comparable
+     *
+     * @param first  - первый ключ
+     * @param second - второй ключ
+     * @return - отрицательное число, если первый ключ меньше, положительное, если больше,
+     * и 0, если ключи этими способами неразличимы
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public int compareForSearch(Object first, Object second) {
+        final int comparison = Integer.compare(Objects.hashCode(first), Objects.hashCode(second));
+        if (comparison != 0) {
+            return comparison;
+        }
+        if (first instanceof Comparable && second != null && first.getClass() == second.getClass()) {
+            return ((Comparable<Object>) first).compareTo(second);
+        }
+        return 0;
+    }
+
+    /**
+     * Упорядочивает ключи, неразличимые по хэш коду и естественному порядку:
+     * по имени класса (null меньше любого ключа), затем по системному хэш коду объекта.
+     *
+     * @param first  - первый ключ
+     * @param second - второй ключ
+     * @return - отрицательное число, если первый ключ меньше, положительное, если больше,
+     * и 0, если совпадают и классы, и системные хэш коды
+     */
+    @Override
+    public int tieBreakOrder(Object first, Object second) {
+        if (first == null || second == null) {
+            return (first == null) ? ((second == null) ? 0 : -1) : 1;
+        }
+        final int comparison = first.getClass().getName().compareTo(second.getClass().getName());
+        if (comparison != 0) {
+            return comparison;
+        }
+        return Integer.compare(System.identityHashCode(first), System.identityHashCode(second));
+    }
+}
@@ -4,7 +4,9 @@ import java.util.Map;
 import java.util.Objects;
 
 /**
- * Мутабельная пара ключа и значения
+ * Мутабельная пара ключа и значения.
+ * Описание, хэш код и сравнение используют getKey и getValue,
+ * поэтому наследники могут хранить значение вне пары.
  *
  * @param <K> - тип ключа
  * @param <V> - тип значения
@@ -59,15 +61,15 @@ public class KeyValuePair<K, V> implements Map.Entry<K, V> {
      */
     public void describeSelf(StringBuilder strB) {
         strB.append("{key=");
-        strB.append(key);
+        strB.append(getKey());
         strB.append(", value=");
-        strB.append(value);
+        strB.append(getValue());
         strB.append("}");
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(key) ^ Objects.hashCode(value);
+        return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
     }
 
     @Override
@@ -79,8 +81,8 @@ public class KeyValuePair<K, V> implements Map.Entry<K, V> {
             return false;
         }
         final Map.Entry<?, ?> that = (Map.Entry<?, ?>) o;
-        return (Objects.equals(key, that.getKey()) &&
-                Objects.equals(value, that.getValue()));
+        return (Objects.equals(getKey(), that.getKey()) &&
+                Objects.equals(getValue(), that.getValue()));
     }
 
     @Override
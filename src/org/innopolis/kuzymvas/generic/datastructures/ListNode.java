@@ -4,11 +4,14 @@ import org.innopolis.kuzymvas.exceptions.KeyNotPresentException;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Класс узла списка - обертки вокруг пары ключ-значение.
+ * Все операции проходят список циклом, поэтому длинные списки не переполняют стек вызовов.
+ * Узлы не хранят длину списка: при необходимости ее хранит владелец головы списка.
  *
  * @param <K> - тип ключа
  * @param <V> - тип значения
@@ -17,7 +20,6 @@ public class ListNode<K, V> {
 
     private final KeyValuePair<K, V> pair;
     private ListNode<K, V> next; // Ссылка для организации односвязного списка
-    private long height; // Высота списка
 
     /**
      * Создает новый узел списка (и тем самым новый список из одного элемента), содержащий заданные ключ и значение.
@@ -26,10 +28,22 @@ public class ListNode<K, V> {
      * @param value - значение, хранимое в узле списка
      */
     public ListNode(K key, V value) {
-        height = 1L;
         this.pair = new KeyValuePair<>(key, value);
     }
 
+    /**
+     * Создает новую голову списка, содержащую уже существующую пару ключ-значение.
+     * Пара не копируется, поэтому полученные ранее ссылки на нее продолжают отражать изменения значения.
+     * Ключ пары не должен присутствовать в присоединяемом списке.
+     *
+     * @param pair - пара ключ-значение, хранимая в узле
+     * @param next - список, к которому присоединяется новый узел, либо null
+     */
+    public ListNode(KeyValuePair<K, V> pair, ListNode<K, V> next) {
+        this.pair = pair;
+        this.next = next;
+    }
+
     /**
      * Если ключ отсутствует в списке, начинающемся с данного узла,
      * то вставляет в этот список новый узел, содержащий заданную пару ключ-значение
@@ -41,20 +55,31 @@ public class ListNode<K, V> {
      * и размер списка не изменился.
      */
     public boolean putIntoList(K key, V value) {
-        if (pair.hasKey(key)) {
-            pair.setValue(value);
-            return false;
-        }
-        if (next != null) {
-            boolean res = next.putIntoList(key, value);
-            if (res) {
-                height++;
+        return putIntoListAndGetPrevious(key, value) == null;
+    }
+
+    /**
+     * Если ключ отсутствует в списке, начинающемся с данного узла,
+     * то вставляет в этот список новый узел, содержащий заданную пару ключ-значение
+     * Если заданный ключ уже есть в списке, то заменяет соответствуюзеее ему значение.
+     * В отличие от putIntoList сообщает прежнее значение ключа за тот же проход по списку.
+     *
+     * @param key   - ключ, хранимый в добавляемом узле списка
+     * @param value - значение, хранимое в добавляемом узле списка
+     * @return - пара из заданного ключа и его прежнего значения, если ключ уже был в списке,
+     * null - если в список был добавлен новый узел
+     */
+    public KeyValuePair<K, V> putIntoListAndGetPrevious(K key, V value) {
+        ListNode<K, V> node = this;
+        while (true) {
+            if (node.pair.hasKey(key)) {
+                return new KeyValuePair<>(node.pair.getKey(), node.pair.setValue(value));
             }
-            return res;
-        } else {
-            next = new ListNode<>(key, value);
-            height++;
-            return true;
+            if (node.next == null) {
+                node.next = new ListNode<>(key, value);
+                return null;
+            }
+            node = node.next;
         }
     }
 
@@ -66,18 +91,39 @@ public class ListNode<K, V> {
      * @throws KeyNotPresentException - выбрасывается, если в списке нет узла с заданным ключем.
      */
     public ListNode<K, V> removeFromList(Object key) throws KeyNotPresentException {
+        @SuppressWarnings({"unchecked", "rawtypes"}) final KeyValuePair<K, V>[] removed = new KeyValuePair[1];
+        final ListNode<K, V> newHead = removeFromList(key, removed);
+        if (removed[0] == null) {
+            throw new KeyNotPresentException("Specified to be removed key do not exist on the list");
+        }
+        return newHead;
+    }
+
+    /**
+     * Удаляет из списка, начинающегося с данного узла, узел с заданным ключем, если он есть в списке.
+     * В отличие от removeFromList не выбрасывает исключение при отсутствии ключа
+     * и сообщает удаленную пару за тот же проход по списку.
+     *
+     * @param key     - ключ удаляемого узла
+     * @param removed - массив из одного элемента, в который записывается пара удаленного узла.
+     *                Не изменяется, если ключа в списке нет.
+     * @return - новая голова списка.
+     */
+    public ListNode<K, V> removeFromList(Object key, KeyValuePair<K, V>[] removed) {
         if (pair.hasKey(key)) {
-            height--;
+            removed[0] = pair;
             return this.next;
-        } else {
-            if (this.next != null) {
-                this.next = this.next.removeFromList(key);
-                height--;
-                return this;
-            } else {
-                throw new KeyNotPresentException("Specified to be removed key do not exist on the list");
+        }
+        ListNode<K, V> previous = this;
+        while (previous.next != null) {
+            if (previous.next.pair.hasKey(key)) {
+                removed[0] = previous.next.pair;
+                previous.next = previous.next.next;
+                break;
             }
+            previous = previous.next;
         }
+        return this;
     }
 
     /**
@@ -87,14 +133,7 @@ public class ListNode<K, V> {
      * @return - true, если ключ хранится в одном из узлов списка, false в противном случае
      */
     public boolean containsKey(Object key) {
-        if (pair.hasKey(key)) {
-            return true;
-        }
-        if (next != null) {
-            return next.containsKey(key);
-        } else {
-            return false;
-        }
+        return getEntry(key) != null;
     }
 
     /**
@@ -104,14 +143,12 @@ public class ListNode<K, V> {
      * @return - true, если пара хранится в одном из узлов списка, false в противном случае
      */
     public boolean containsPair(KeyValuePair<?, ?> pair) {
-        if (this.pair.equals(pair)) {
-            return true;
-        }
-        if (next != null) {
-            return next.containsPair(pair);
-        } else {
-            return false;
+        for (ListNode<K, V> node = this; node != null; node = node.next) {
+            if (node.pair.equals(pair)) {
+                return true;
+            }
         }
+        return false;
     }
 
     /**
@@ -123,15 +160,11 @@ public class ListNode<K, V> {
      * @throws KeyNotPresentException - выбрасывается, если в списке нет узла с заданным ключем.
      */
     public void replaceValue(K key, V value) throws KeyNotPresentException {
-        if (pair.hasKey(key)) {
-            pair.setValue(value);
-            return;
-        }
-        if (next != null) {
-            next.replaceValue(key, value);
-        } else {
+        final Map.Entry<K, V> entry = getEntry(key);
+        if (entry == null) {
             throw new KeyNotPresentException("Specified for value replacement key do not exist on the list");
         }
+        entry.setValue(value);
     }
 
     /**
@@ -142,31 +175,40 @@ public class ListNode<K, V> {
      * @throws KeyNotPresentException - выбрасывается, если в списке нет узла с заданным ключем.
      */
     public V getValue(Object key) throws KeyNotPresentException {
-        if (pair.hasKey(key)) {
-            return pair.getValue();
-        }
-        if (next != null) {
-            return next.getValue(key);
-        } else {
+        final Map.Entry<K, V> entry = getEntry(key);
+        if (entry == null) {
             throw new KeyNotPresentException("Specified to be retrieved key do not exist on the list");
         }
+        return entry.getValue();
     }
 
     /**
-     * Возвращает пару ключ-значение, которая хранится в узле с заданным ключом
+     * Возвращает пару ключ-значение, которая хранится в узле с заданным ключом.
+     * Основной способ поиска по списку: отсутствие ключа не приводит к исключению.
      *
      * @param key - искомый ключ
-     * @return - пара ключ-значение
+     * @return - пара ключ-значение, либо null, если ключа в списке нет
      */
     public Map.Entry<K, V> getEntry(Object key) {
-        if (pair.hasKey(key)) {
-            return pair;
+        for (ListNode<K, V> node = this; node != null; node = node.next) {
+            if (node.pair.hasKey(key)) {
+                return node.pair;
+            }
         }
-        if (next != null) {
-            return next.getEntry(key);
-        } else {
-            return null;
+        return null;
+    }
+
+    /**
+     * Возвращает число узлов в списке, начинающемся с данного узла
+     *
+     * @return - длина списка, минимум 1
+     */
+    public int getLength() {
+        int length = 0;
+        for (ListNode<K, V> node = this; node != null; node = node.next) {
+            length++;
         }
+        return length;
     }
 
     /**
@@ -175,24 +217,33 @@ public class ListNode<K, V> {
      * @return - массив  пар ключ-значение, минимум 1 пара.
      */
     public List<KeyValuePair<K, V>> getKeyValuePairs() {
-        List<KeyValuePair<K, V>> pairs = new ArrayList<>();
-        if (next != null) {
-            pairs.addAll(next.getKeyValuePairs());
-        }
-        pairs.add(pair);
+        final List<KeyValuePair<K, V>> pairs = new ArrayList<>();
+        collectKeyValuePairs(pairs);
         return pairs;
     }
 
+    /**
+     * Добавляет все пары ключ-значение, хранимые в списке, начинающемся с данного узла, в заданную коллекцию.
+     * Позволяет владельцу списка, знающему его длину, заранее выделить коллекцию нужного размера.
+     *
+     * @param output - коллекция, в которую добавляются пары в порядке следования в списке
+     */
+    public void collectKeyValuePairs(Collection<? super KeyValuePair<K, V>> output) {
+        for (ListNode<K, V> node = this; node != null; node = node.next) {
+            output.add(node.pair);
+        }
+    }
+
     /**
      * Возвращает массив хэшей всех пар ключ-значение, хранимых в списке, начинающемся с данного узла
      *
      * @return - массив хэшей пар ключ-значение, минимум 1 хэш.
      */
     public int[] getKeyValuePairsHashes() {
-        final List<KeyValuePair<K, V>> pairs = getKeyValuePairs();
-        final int[] hashes = new int[pairs.size()];
-        for (int i = 0; i < pairs.size(); i++) {
-            hashes[i] = pairs.get(i).hashCode();
+        final int[] hashes = new int[getLength()];
+        int index = 0;
+        for (ListNode<K, V> node = this; node != null; node = node.next) {
+            hashes[index++] = node.pair.hashCode();
         }
         return hashes;
     }
@@ -205,9 +256,9 @@ public class ListNode<K, V> {
      */
     public void describeList(StringBuilder strB) {
         pair.describeSelf(strB);
-        if (this.next != null) {
+        for (ListNode<K, V> node = next; node != null; node = node.next) {
             strB.append(",");
-            this.next.describeList(strB);
+            node.pair.describeSelf(strB);
         }
     }
 
@@ -227,7 +278,7 @@ public class ListNode<K, V> {
             return false;
         }
         final ListNode<?, ?> listNode = (ListNode<?, ?>) o;
-        if (this.height != listNode.height) { // Если у списков разная длина - не равны
+        if (getLength() != listNode.getLength()) { // Если у списков разная длина - не равны
             return false;
         }
         return isSubListOf(listNode); // Если длина одинакова, то вхождение равносильно эквивалентности.
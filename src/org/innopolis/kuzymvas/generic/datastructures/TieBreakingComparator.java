@@ -0,0 +1,44 @@
+package org.innopolis.kuzymvas.generic.datastructures;
+
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Компаратор, сравнение которого разделено на две ступени: порядок поиска и упорядочивание неразличимых ключей.
+ * Порядок поиска согласован с equals лишь частично: равные ключи в нем неразличимы,
+ * но неразличимые ключи не обязательно равны. АВЛ дерево ищет ключи только в порядке поиска,
+ * а при неразличимости проверяет ключи через equals и просматривает оба поддерева.
+ * Вторая ступень нужна только для выбора поддерева при вставке нового ключа.
+ *
+ * @param <K> - тип ключа
+ */
+public interface TieBreakingComparator<K> extends Comparator<K> {
+
+    /**
+     * Сравнивает ключи в порядке поиска
+     *
+     * @param first  - первый ключ
+     * @param second - второй ключ
+     * @return - отрицательное число, если первый ключ меньше, положительное, если больше,
+     * и 0, если ключи в порядке поиска неразличимы
+     */
+    int compareForSearch(Object first, Object second);
+
+    /**
+     * Упорядочивает ключи, неразличимые в порядке поиска
+     *
+     * @param first  - первый ключ
+     * @param second - второй ключ
+     * @return - отрицательное число, если первый ключ меньше, положительное, если больше, либо 0
+     */
+    int tieBreakOrder(Object first, Object second);
+
+    @Override
+    default int compare(K first, K second) {
+        final int comparison = compareForSearch(first, second);
+        if (comparison != 0 || Objects.equals(first, second)) {
+            return comparison;
+        }
+        return tieBreakOrder(first, second);
+    }
+}
@@ -5,31 +5,49 @@ import org.innopolis.kuzymvas.generic.datastructures.AVLTreeNode;
 import org.innopolis.kuzymvas.generic.datastructures.KeyValuePair;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
 /**
- *  Корзина хэш таблицы, использующая АВЛ дерево для хранения пар ключ-значение внутри себя
+ *  Корзина хэш таблицы, использующая АВЛ дерево для хранения пар ключ-значение внутри себя.
+ *  Без компаратора ключи должны реализовывать Comparable.
  * @param <K> - тип ключа
  * @param <V> - тип значения
  */
 public class AVLTreeBucket<K, V> implements Bucket<K, V> {
 
+    private final Comparator<K> comparator; // Порядок ключей в дереве. null - естественный порядок
     private AVLTreeNode<K, V> root;
 
     public AVLTreeBucket() {
+        this(null);
+    }
+
+    /**
+     * Создает корзину, упорядочивающую ключи в дереве заданным компаратором
+     *
+     * @param comparator - компаратор ключей, либо null для естественного порядка (Comparable)
+     */
+    public AVLTreeBucket(Comparator<K> comparator) {
+        this.comparator = comparator;
         root = null;
     }
 
     @Override
     public boolean put(K key, V value) {
+        return putAndGetPrevious(key, value) == null;
+    }
+
+    @Override
+    public Map.Entry<K, V> putAndGetPrevious(K key, V value) {
         if (root == null) {
-            root = new AVLTreeNode<>(key, value);
-            return true;
+            root = new AVLTreeNode<>(key, value, comparator);
+            return null;
         } else {
-            final boolean retVal = !(root.containsKey(key));
-            root = root.insert(key, value);
-            return retVal;
+            @SuppressWarnings({"unchecked", "rawtypes"}) final KeyValuePair<K, V>[] previous = new KeyValuePair[1];
+            root = root.insert(key, value, previous);
+            return previous[0];
         }
     }
 
@@ -41,6 +59,15 @@ public class AVLTreeBucket<K, V> implements Bucket<K, V> {
         root.replaceValue(key, value);
     }
 
+    @Override
+    public Map.Entry<K, V> replaceAndGetPrevious(K key, V value) {
+        final Map.Entry<K, V> entry = getEntry(key);
+        if (entry == null) {
+            return null;
+        }
+        return new KeyValuePair<>(entry.getKey(), entry.setValue(value));
+    }
+
     @Override
     public V get(Object key) throws KeyNotPresentException {
         if (root == null) {
@@ -57,6 +84,16 @@ public class AVLTreeBucket<K, V> implements Bucket<K, V> {
         root = root.remove(key);
     }
 
+    @Override
+    public Map.Entry<K, V> removeAndGetPrevious(Object key) {
+        if (root == null) {
+            return null;
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"}) final KeyValuePair<K, V>[] removed = new KeyValuePair[1];
+        root = root.remove(key, removed);
+        return removed[0];
+    }
+
     @Override
     public boolean containsKey(Object key) {
         if (root == null) {
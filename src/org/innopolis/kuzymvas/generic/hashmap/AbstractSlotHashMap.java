@@ -0,0 +1,203 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.util.*;
+
+/**
+ * Общая основа хэш таблиц, хранящих пары в пронумерованных ячейках (слотах) без отдельных объектов пар:
+ * OpenAddressingHashMap, RobinHoodHashMap, CuckooHashMap, SwissHashMap и OffHeapHashMap.
+ * Реализует представление таблицы в виде множества пар, пару, возвращаемую при обходе,
+ * и каркас итератора, а таблицам остается доступ к ячейкам по номеру.
+ * Также содержит вспомогательные функции округления числа ячеек и замены null ключа.
+ *
+ * @param <K> - тип ключа таблицы
+ * @param <V> - тип значения таблицы
+ */
+abstract class AbstractSlotHashMap<K, V> extends AbstractMap<K, V> {
+
+    static final int NO_SLOT = Integer.MIN_VALUE; // Номер, обозначающий отсутствие ячейки
+    static final Object NULL_KEY = new Object(); // Заменитель null ключа в массивах, где null - пустая ячейка
+
+    private final EntrySet entrySet = new EntrySet(); // Представление таблицы в виде множества пар
+    int modCount; // Число структурных изменений таблицы для обнаружения изменений во время обхода
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return entrySet;
+    }
+
+    /**
+     * Находит ячейку пары с заданным ключом
+     *
+     * @param key - искомый ключ
+     * @return - номер ячейки, либо NO_SLOT, если ключа в таблице нет
+     */
+    abstract int slotOf(Object key);
+
+    /**
+     * Возвращает ключ пары из занятой ячейки
+     *
+     * @param slot - номер ячейки
+     * @return - ключ пары
+     */
+    abstract K keyAt(int slot);
+
+    /**
+     * Возвращает значение пары из занятой ячейки
+     *
+     * @param slot - номер ячейки
+     * @return - значение пары
+     */
+    abstract V valueAt(int slot);
+
+    /**
+     * Удаляет пару из занятой ячейки
+     *
+     * @param slot - номер ячейки
+     */
+    abstract void deleteAt(int slot);
+
+    /**
+     * Создает итератор по парам таблицы
+     *
+     * @return - итератор
+     */
+    abstract SlotIterator entryIterator();
+
+    /**
+     * Округляет положительное число ячеек вверх до ближайшей степени двойки в заданных границах
+     *
+     * @param capacity    - число ячеек
+     * @param minCapacity - нижняя граница. Степень двойки
+     * @param maxCapacity - верхняя граница. Степень двойки
+     * @return - округленное число ячеек
+     */
+    static int roundToPowerOfTwo(int capacity, int minCapacity, int maxCapacity) {
+        if (capacity >= maxCapacity) {
+            return maxCapacity;
+        }
+        return (capacity <= minCapacity) ? minCapacity : Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    static Object maskNull(Object key) {
+        return (key == null) ? NULL_KEY : key;
+    }
+
+    static Object unmaskNull(Object key) {
+        return (key == NULL_KEY) ? null : key;
+    }
+
+    /**
+     * Пара ключ-значение, возвращаемая при обходе таблицы.
+     * Изменение значения пары изменяет значение ключа в таблице.
+     */
+    final class MapEntry extends SimpleEntry<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        MapEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            super.setValue(value);
+            return put(getKey(), value);
+        }
+    }
+
+    /**
+     * Класс множества пар ключ-значения, содержащихся в таблице
+     * Множество является представлением таблицы и удаление пары из него приводит к удалению пары из таблицы
+     * Пары не могут быть добавлены в множество.
+     */
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return entryIterator();
+        }
+
+        @Override
+        public int size() {
+            return AbstractSlotHashMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            final int slot = slotOf(entry.getKey());
+            return slot != NO_SLOT && Objects.equals(valueAt(slot), entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            AbstractSlotHashMap.this.remove(((Map.Entry<?, ?>) o).getKey());
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            AbstractSlotHashMap.this.clear();
+        }
+    }
+
+    /**
+     * Каркас итератора по парам таблицы: проверяет изменение таблицы во время обхода
+     * и удаляет последнюю возвращенную пару. Порядок обхода ячеек задает таблица.
+     */
+    abstract class SlotIterator implements Iterator<Map.Entry<K, V>> {
+
+        private int lastSlot = NO_SLOT; // Ячейка последней возвращенной пары, NO_SLOT - если ее нельзя удалить
+        private int expectedModCount = modCount;
+
+        /**
+         * Возвращает номер ячейки следующей пары и переходит за нее. Вызывается после того,
+         * как hasNext() вернул true.
+         *
+         * @return - номер ячейки
+         */
+        abstract int nextSlot();
+
+        /**
+         * Вызывается после удаления пары через итератор, чтобы итератор учел перемещение следующих пар
+         *
+         * @param slot - номер ячейки удаленной пары
+         */
+        void removed(int slot) {
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            checkForModification();
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more pairs in hash map");
+            }
+            lastSlot = nextSlot();
+            return new MapEntry(keyAt(lastSlot), valueAt(lastSlot));
+        }
+
+        @Override
+        public void remove() {
+            if (lastSlot == NO_SLOT) {
+                throw new IllegalStateException("Nothing to remove");
+            }
+            checkForModification();
+            deleteAt(lastSlot);
+            removed(lastSlot);
+            lastSlot = NO_SLOT;
+            expectedModCount = modCount;
+        }
+
+        private void checkForModification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException("Hash map was modified during iteration");
+            }
+        }
+    }
+}
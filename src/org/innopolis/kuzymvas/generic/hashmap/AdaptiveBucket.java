@@ -0,0 +1,358 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.innopolis.kuzymvas.exceptions.KeyNotPresentException;
+import org.innopolis.kuzymvas.generic.datastructures.AVLTreeNode;
+import org.innopolis.kuzymvas.generic.datastructures.KeyValuePair;
+import org.innopolis.kuzymvas.generic.datastructures.ListNode;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Корзина хэш таблицы, хранящая пары в односвязном списке, пока их немного,
+ * и перестраивающая их в АВЛ дерево, когда число пар достигает порога.
+ * Когда число пар падает до нижнего порога, дерево снова перестраивается в список.
+ * Разница порогов не дает корзине перестраиваться при каждом добавлении и удалении на границе.
+ * Если компаратор не задан, в дерево перестраиваются только корзины,
+ * все ключи которых принадлежат одному классу, реализующему Comparable. Неудачная попытка перестроения
+ * запоминается и не повторяется, пока не удален помешавший ей ключ или число пар не упало ниже порога.
+ * С компаратором (например, HashOrderComparator) в дерево перестраиваются корзины с ключами любых классов.
+ * Пары при перестроении не копируются, поэтому полученные ранее ссылки на них остаются связанными с корзиной.
+ *
+ * @param <K> - тип ключа
+ * @param <V> - тип значения
+ */
+public class AdaptiveBucket<K, V> implements Bucket<K, V> {
+
+    public static final int DEFAULT_TREEIFY_THRESHOLD = 8; // Число пар, при котором список перестраивается в дерево
+    public static final int DEFAULT_UNTREEIFY_THRESHOLD = 6; // Число пар, при котором дерево перестраивается в список
+    private static final Object NOT_FOUND = new Object(); // Результат поиска ключа дерева, если равного ключа нет
+
+    private final int treeifyThreshold;
+    private final int untreeifyThreshold;
+    private final Comparator<K> comparator; // Порядок ключей в дереве. null - естественный порядок
+    private ListNode<K, V> head; // Голова списка пар. null - если корзина пуста или пары хранятся в дереве
+    private AVLTreeNode<K, V> root; // Корень дерева пар. null - если пары хранятся в списке
+    private Class<?> treeKeyClass; // Класс всех ключей дерева без компаратора. null - если пары хранятся в списке
+    private int size; // Число пар в корзине
+    private boolean treeifyBlocked; // Перестроение в дерево не удалось и пока не повторяется
+    private Object treeifyBlocker; // Ключ, помешавший перестроению в дерево
+
+    /**
+     * Создает корзину с порогами перестроения по умолчанию
+     */
+    public AdaptiveBucket() {
+        this(DEFAULT_TREEIFY_THRESHOLD, DEFAULT_UNTREEIFY_THRESHOLD, null);
+    }
+
+    /**
+     * Создает корзину с заданными порогами перестроения и естественным порядком ключей в дереве
+     *
+     * @param treeifyThreshold   - число пар, при достижении которого список перестраивается в дерево.
+     *                           Должно быть строго больше нижнего порога
+     * @param untreeifyThreshold - число пар, при снижении до которого дерево перестраивается в список.
+     *                           Должно быть не меньше 0
+     * @throws IllegalArgumentException - выбрасывается при недопустимых порогах
+     */
+    public AdaptiveBucket(int treeifyThreshold, int untreeifyThreshold) throws IllegalArgumentException {
+        this(treeifyThreshold, untreeifyThreshold, null);
+    }
+
+    /**
+     * Создает корзину с заданными порогами перестроения и порядком ключей в дереве
+     *
+     * @param treeifyThreshold   - число пар, при достижении которого список перестраивается в дерево.
+     *                           Должно быть строго больше нижнего порога
+     * @param untreeifyThreshold - число пар, при снижении до которого дерево перестраивается в список.
+     *                           Должно быть не меньше 0
+     * @param comparator         - компаратор ключей в дереве, либо null для естественного порядка (Comparable)
+     * @throws IllegalArgumentException - выбрасывается при недопустимых порогах
+     */
+    public AdaptiveBucket(int treeifyThreshold, int untreeifyThreshold, Comparator<K> comparator)
+            throws IllegalArgumentException {
+        checkThresholds(treeifyThreshold, untreeifyThreshold);
+        this.treeifyThreshold = treeifyThreshold;
+        this.untreeifyThreshold = untreeifyThreshold;
+        this.comparator = comparator;
+        size = 0;
+    }
+
+    /**
+     * Проверяет допустимость порогов перестроения корзины
+     *
+     * @param treeifyThreshold   - порог перестроения списка в дерево
+     * @param untreeifyThreshold - порог перестроения дерева в список
+     * @throws IllegalArgumentException - выбрасывается, если нижний порог отрицателен или не меньше верхнего
+     */
+    static void checkThresholds(int treeifyThreshold, int untreeifyThreshold) throws IllegalArgumentException {
+        if (untreeifyThreshold < 0) {
+            throw new IllegalArgumentException("Untreeify threshold can't be negative");
+        }
+        if (treeifyThreshold <= untreeifyThreshold) {
+            throw new IllegalArgumentException("Treeify threshold must be greater than untreeify threshold");
+        }
+    }
+
+    /**
+     * Сообщает, хранятся ли пары корзины в дереве
+     *
+     * @return - true, если пары хранятся в АВЛ дереве, false - если в списке
+     */
+    public boolean isTreeified() {
+        return root != null;
+    }
+
+    @Override
+    public boolean put(K key, V value) {
+        return putAndGetPrevious(key, value) == null;
+    }
+
+    @Override
+    public Map.Entry<K, V> putAndGetPrevious(K key, V value) {
+        if (root != null) {
+            if (isTreeKey(key)) {
+                @SuppressWarnings({"unchecked", "rawtypes"}) final KeyValuePair<K, V>[] previous = new KeyValuePair[1];
+                root = root.insert(key, value, previous);
+                if (previous[0] == null) {
+                    size++;
+                }
+                return previous[0];
+            }
+            untreeify(); // Ключ нельзя сравнить с ключами дерева
+        }
+        if (head == null) {
+            head = new ListNode<>(key, value);
+            size++;
+            return null;
+        }
+        final KeyValuePair<K, V> previous = head.putIntoListAndGetPrevious(key, value);
+        if (previous == null) {
+            size++;
+            if (size >= treeifyThreshold && !treeifyBlocked) {
+                treeify();
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public void replace(K key, V value) throws KeyNotPresentException {
+        final Map.Entry<K, V> entry = getEntry(key);
+        if (entry == null) {
+            throw new KeyNotPresentException("Specified for value replacement key do not exist in the bucket");
+        }
+        entry.setValue(value);
+    }
+
+    @Override
+    public Map.Entry<K, V> replaceAndGetPrevious(K key, V value) {
+        final Map.Entry<K, V> entry = getEntry(key);
+        if (entry == null) {
+            return null;
+        }
+        return new KeyValuePair<>(entry.getKey(), entry.setValue(value));
+    }
+
+    @Override
+    public V get(Object key) throws KeyNotPresentException {
+        final Map.Entry<K, V> entry = getEntry(key);
+        if (entry == null) {
+            throw new KeyNotPresentException("Specified to be retrieved key do not exist in the bucket");
+        }
+        return entry.getValue();
+    }
+
+    @Override
+    public void remove(Object key) throws KeyNotPresentException {
+        if (removeAndGetPrevious(key) == null) {
+            throw new KeyNotPresentException("Specified to be removed key do not exist in the bucket");
+        }
+    }
+
+    @Override
+    public Map.Entry<K, V> removeAndGetPrevious(Object key) {
+        @SuppressWarnings({"unchecked", "rawtypes"}) final KeyValuePair<K, V>[] removed = new KeyValuePair[1];
+        if (root != null) {
+            final Object treeKey = findTreeKey(key);
+            if (treeKey == NOT_FOUND) {
+                return null;
+            }
+            root = root.remove(treeKey, removed);
+            if (removed[0] != null) {
+                size--;
+                if (size <= untreeifyThreshold) {
+                    untreeify();
+                }
+            }
+            return removed[0];
+        }
+        if (head == null) {
+            return null;
+        }
+        head = head.removeFromList(key, removed);
+        if (removed[0] != null) {
+            size--;
+            if (treeifyBlocked && (size < treeifyThreshold || removed[0].getKey() == treeifyBlocker)) {
+                treeifyBlocked = false;
+                treeifyBlocker = null;
+            }
+        }
+        return removed[0];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getEntry(key) != null;
+    }
+
+    @Override
+    public void describeBucket(StringBuilder strB) {
+        if (root != null) {
+            root.describeTree(strB);
+        } else if (head != null) {
+            head.describeList(strB);
+        }
+    }
+
+    @Override
+    public List<KeyValuePair<K, V>> getKeyValuePairs() {
+        if (root != null) {
+            return root.getKeyValuePairs();
+        }
+        if (head != null) {
+            return head.getKeyValuePairs();
+        }
+        return new ArrayList<>();
+    }
+
+    @Override
+    public int[] getKeyValuePairsHashes() {
+        if (root != null) {
+            return root.getKeyValuePairsHashes();
+        }
+        if (head != null) {
+            return head.getKeyValuePairsHashes();
+        }
+        return new int[0];
+    }
+
+    @Override
+    public Map.Entry<K, V> getEntry(Object key) {
+        if (root != null) {
+            final Object treeKey = findTreeKey(key);
+            return (treeKey == NOT_FOUND) ? null : root.getEntry(treeKey);
+        }
+        if (head == null) {
+            return null;
+        }
+        return head.getEntry(key);
+    }
+
+    @Override
+    public void clear() {
+        head = null;
+        root = null;
+        treeKeyClass = null;
+        size = 0;
+        treeifyBlocked = false;
+        treeifyBlocker = null;
+    }
+
+    /**
+     * Проверяет, можно ли сравнивать ключ с ключами дерева
+     *
+     * @param key - проверяемый ключ
+     * @return - true, если задан компаратор или ключ принадлежит тому же классу, что и ключи дерева,
+     * false в противном случае
+     */
+    private boolean isTreeKey(Object key) {
+        return comparator != null || (key != null && key.getClass() == treeKeyClass);
+    }
+
+    /**
+     * Возвращает ключ, по которому следует искать заданный ключ в дереве.
+     * Ключ другого класса нельзя сравнить с ключами дерева,
+     * поэтому равный ему ключ дерева ищется перебором.
+     *
+     * @param key - искомый ключ
+     * @return - ключ для поиска в дереве (в том числе null), либо NOT_FOUND, если равного ключа в дереве заведомо нет
+     */
+    private Object findTreeKey(Object key) {
+        if (isTreeKey(key)) {
+            return key;
+        }
+        for (KeyValuePair<K, V> pair : root.getKeyValuePairs()) {
+            if (pair.hasKey(key)) {
+                return pair.getKey();
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Перестраивает список пар в АВЛ дерево, если задан компаратор или все ключи списка принадлежат одному классу,
+     * реализующему Comparable. В противном случае оставляет пары в списке и запоминает ключ,
+     * помешавший перестроению.
+     */
+    private void treeify() {
+        final List<KeyValuePair<K, V>> pairs = head.getKeyValuePairs();
+        Class<?> keyClass = null;
+        if (comparator == null) {
+            final Object firstKey = pairs.get(0).getKey();
+            if (!(firstKey instanceof Comparable)) {
+                blockTreeify(firstKey);
+                return;
+            }
+            keyClass = firstKey.getClass();
+            for (KeyValuePair<K, V> pair : pairs) {
+                if (pair.getKey() == null || pair.getKey().getClass() != keyClass) {
+                    blockTreeify(pair.getKey());
+                    return;
+                }
+            }
+        }
+        AVLTreeNode<K, V> newRoot = new AVLTreeNode<>(pairs.get(0), comparator);
+        for (int i = 1; i < pairs.size(); i++) {
+            newRoot = newRoot.insert(pairs.get(i));
+        }
+        root = newRoot;
+        treeKeyClass = keyClass;
+        head = null;
+    }
+
+    /**
+     * Запоминает неудачное перестроение в дерево, чтобы не повторять перебор пар при каждом добавлении
+     *
+     * @param blocker - ключ, помешавший перестроению
+     */
+    private void blockTreeify(Object blocker) {
+        treeifyBlocked = true;
+        treeifyBlocker = blocker;
+    }
+
+    /**
+     * Сообщает, отложено ли перестроение в дерево после неудачной попытки
+     *
+     * @return - true, если перестроение не повторяется до удаления мешающего ключа или уменьшения корзины
+     */
+    boolean isTreeifyBlocked() {
+        return treeifyBlocked;
+    }
+
+    /**
+     * Перестраивает дерево пар обратно в список
+     */
+    private void untreeify() {
+        ListNode<K, V> newHead = null;
+        if (root != null) {
+            for (KeyValuePair<K, V> pair : root.getKeyValuePairs()) {
+                newHead = new ListNode<>(pair, newHead);
+            }
+        }
+        head = newHead;
+        root = null;
+        treeKeyClass = null;
+    }
+}
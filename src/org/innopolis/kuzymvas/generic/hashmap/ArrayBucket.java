@@ -0,0 +1,241 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.innopolis.kuzymvas.exceptions.KeyNotPresentException;
+import org.innopolis.kuzymvas.generic.datastructures.KeyValuePair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Корзина хэш таблицы, хранящая пары в двух параллельных массивах: хэш коды ключей
+ * и чередующиеся ключи и значения (ключ i-ой пары в ячейке 2i, значение - в ячейке 2i + 1).
+ * Поиск последовательно просматривает массив хэш кодов и сравнивает через equals только ключи с совпавшим хэш кодом.
+ * Для коротких корзин непрерывный просмотр массива быстрее перехода по ссылкам между узлами списка.
+ * Массивы создаются при первом добавлении и растут вдвое при заполнении.
+ *
+ * @param <K> - тип ключа
+ * @param <V> - тип значения
+ */
+public class ArrayBucket<K, V> implements Bucket<K, V> {
+
+    private static final int INITIAL_CAPACITY = 1; // Число пар, под которое выделяются массивы при первом добавлении
+
+    private int[] hashes; // Хэш коды ключей. null - если корзина еще не содержала пар
+    private Object[] slots; // Ключи и значения пар: ключ i-ой пары в ячейке 2i, значение в ячейке 2i + 1
+    private int size; // Число пар в корзине
+
+    public ArrayBucket() {
+        size = 0;
+    }
+
+    @Override
+    public boolean put(K key, V value) {
+        return putAndGetPrevious(key, value) == null;
+    }
+
+    @Override
+    public Map.Entry<K, V> putAndGetPrevious(K key, V value) {
+        final int hash = Objects.hashCode(key);
+        final int index = indexOf(key, hash);
+        if (index >= 0) {
+            final KeyValuePair<K, V> previous = new KeyValuePair<>(key, valueAt(index));
+            slots[2 * index + 1] = value;
+            return previous;
+        }
+        if (hashes == null) {
+            hashes = new int[INITIAL_CAPACITY];
+            slots = new Object[2 * INITIAL_CAPACITY];
+        } else if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            slots = Arrays.copyOf(slots, size * 4);
+        }
+        hashes[size] = hash;
+        slots[2 * size] = key;
+        slots[2 * size + 1] = value;
+        size++;
+        return null;
+    }
+
+    @Override
+    public void replace(K key, V value) throws KeyNotPresentException {
+        final int index = indexOf(key, Objects.hashCode(key));
+        if (index < 0) {
+            throw new KeyNotPresentException("Specified for value replacement key do not exist in the bucket");
+        }
+        slots[2 * index + 1] = value;
+    }
+
+    @Override
+    public Map.Entry<K, V> replaceAndGetPrevious(K key, V value) {
+        final int index = indexOf(key, Objects.hashCode(key));
+        if (index < 0) {
+            return null;
+        }
+        final KeyValuePair<K, V> previous = new KeyValuePair<>(key, valueAt(index));
+        slots[2 * index + 1] = value;
+        return previous;
+    }
+
+    @Override
+    public V get(Object key) throws KeyNotPresentException {
+        final int index = indexOf(key, Objects.hashCode(key));
+        if (index < 0) {
+            throw new KeyNotPresentException("Specified to be retrieved key do not exist in the bucket");
+        }
+        return valueAt(index);
+    }
+
+    @Override
+    public void remove(Object key) throws KeyNotPresentException {
+        if (removeAndGetPrevious(key) == null) {
+            throw new KeyNotPresentException("Specified to be removed key do not exist in the bucket");
+        }
+    }
+
+    @Override
+    public Map.Entry<K, V> removeAndGetPrevious(Object key) {
+        final int index = indexOf(key, Objects.hashCode(key));
+        if (index < 0) {
+            return null;
+        }
+        final KeyValuePair<K, V> removed = new KeyValuePair<>(keyAt(index), valueAt(index));
+        size--;
+        // Порядок пар в корзине не важен: на место удаленной переносится последняя
+        hashes[index] = hashes[size];
+        slots[2 * index] = slots[2 * size];
+        slots[2 * index + 1] = slots[2 * size + 1];
+        slots[2 * size] = null;
+        slots[2 * size + 1] = null;
+        return removed;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key, Objects.hashCode(key)) >= 0;
+    }
+
+    @Override
+    public void describeBucket(StringBuilder strB) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                strB.append(",");
+            }
+            strB.append("{key=").append(slots[2 * i]).append(", value=").append(slots[2 * i + 1]).append("}");
+        }
+    }
+
+    @Override
+    public List<KeyValuePair<K, V>> getKeyValuePairs() {
+        final List<KeyValuePair<K, V>> pairs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            pairs.add(new SlotPair(i));
+        }
+        return pairs;
+    }
+
+    @Override
+    public int[] getKeyValuePairsHashes() {
+        final int[] pairHashes = new int[size];
+        for (int i = 0; i < size; i++) {
+            pairHashes[i] = hashes[i] ^ Objects.hashCode(slots[2 * i + 1]);
+        }
+        return pairHashes;
+    }
+
+    @Override
+    public Map.Entry<K, V> getEntry(Object key) {
+        final int index = indexOf(key, Objects.hashCode(key));
+        return (index < 0) ? null : new SlotPair(index);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        final int index = indexOf(key, Objects.hashCode(key));
+        return (index < 0) ? defaultValue : valueAt(index);
+    }
+
+    @Override
+    public void clear() {
+        hashes = null;
+        slots = null;
+        size = 0;
+    }
+
+    /**
+     * Находит позицию ключа в корзине
+     *
+     * @param key  - искомый ключ
+     * @param hash - хэш код ключа
+     * @return - позиция ключа, либо -1, если ключа в корзине нет
+     */
+    private int indexOf(Object key, int hash) {
+        for (int i = 0; i < size; i++) {
+            if (hashes[i] == hash && Objects.equals(slots[2 * i], key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private K keyAt(int index) {
+        return (K) slots[2 * index];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index) {
+        return (V) slots[2 * index + 1];
+    }
+
+    /**
+     * Пара ключ-значение, связанная с ключом в корзине.
+     * Позиция ключа в массивах может меняться при удалении других пар,
+     * поэтому при каждом обращении к значению пара проверяет запомненную позицию и при необходимости ищет ключ заново.
+     * После удаления ключа из корзины пара хранит последнее известное значение.
+     */
+    final class SlotPair extends KeyValuePair<K, V> {
+
+        private final int hash; // Хэш код ключа
+        private int index; // Последняя известная позиция ключа в массивах
+
+        SlotPair(int index) {
+            super(keyAt(index), valueAt(index));
+            this.hash = hashes[index];
+            this.index = index;
+        }
+
+        @Override
+        public V getValue() {
+            if (locate()) {
+                super.setValue(valueAt(index));
+            }
+            return super.getValue();
+        }
+
+        @Override
+        public V setValue(V value) {
+            final V previous = getValue();
+            if (locate()) {
+                slots[2 * index + 1] = value;
+            }
+            super.setValue(value);
+            return previous;
+        }
+
+        /**
+         * Обновляет позицию ключа пары в массивах корзины
+         *
+         * @return - true, если ключ все еще в корзине, false в противном случае
+         */
+        private boolean locate() {
+            if (index < size && slots[2 * index] == getKey()) {
+                return true;
+            }
+            index = indexOf(getKey(), hash);
+            return index >= 0;
+        }
+    }
+}
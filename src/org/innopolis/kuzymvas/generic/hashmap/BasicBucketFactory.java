@@ -1,6 +1,7 @@
 package org.innopolis.kuzymvas.generic.hashmap;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -11,18 +12,81 @@ import java.util.List;
 public class BasicBucketFactory<K, V> implements BucketFactory<K, V> {
 
     private final BucketType targetType;
+    private final int treeifyThreshold; // Пороги перестроения адаптивных корзин
+    private final int untreeifyThreshold;
+    private final Comparator<K> treeComparator; // Порядок ключей в деревьях корзин. null - естественный порядок
 
     public BasicBucketFactory(BucketType targetType) {
+        this(targetType, null);
+    }
+
+    /**
+     * Создает фабрику корзин, упорядочивающих ключи в деревьях заданным компаратором.
+     * Компаратор используется корзинами типов AVL_TREE и ADAPTIVE. Корзины PERSISTENT_AVL_TREE его не используют:
+     * они всегда упорядочивают ключи по хэш коду и естественному порядку (HashOrderComparator.compareForSearch).
+     * С компаратором HashOrderComparator эти корзины могут хранить ключи без естественного порядка.
+     *
+     * @param targetType     - тип создаваемых корзин
+     * @param treeComparator - компаратор ключей в деревьях, либо null для естественного порядка (Comparable)
+     */
+    public BasicBucketFactory(BucketType targetType, Comparator<K> treeComparator) {
+        this.targetType = targetType;
+        this.treeifyThreshold = AdaptiveBucket.DEFAULT_TREEIFY_THRESHOLD;
+        this.untreeifyThreshold = AdaptiveBucket.DEFAULT_UNTREEIFY_THRESHOLD;
+        this.treeComparator = treeComparator;
+    }
+
+    /**
+     * Создает фабрику корзин с заданными порогами перестроения адаптивных корзин.
+     * Для остальных типов корзин пороги не используются.
+     *
+     * @param targetType         - тип создаваемых корзин
+     * @param treeifyThreshold   - число пар, при достижении которого список адаптивной корзины перестраивается в дерево.
+     *                           Должно быть строго больше нижнего порога
+     * @param untreeifyThreshold - число пар, при снижении до которого дерево адаптивной корзины
+     *                           перестраивается в список. Должно быть не меньше 0
+     * @throws IllegalArgumentException - выбрасывается при недопустимых порогах
+     */
+    public BasicBucketFactory(BucketType targetType, int treeifyThreshold, int untreeifyThreshold)
+            throws IllegalArgumentException {
+        this(targetType, null, treeifyThreshold, untreeifyThreshold);
+    }
+
+    /**
+     * Создает фабрику корзин с заданными компаратором ключей в деревьях и порогами перестроения адаптивных корзин.
+     *
+     * @param targetType         - тип создаваемых корзин
+     * @param treeComparator     - компаратор ключей в деревьях, либо null для естественного порядка (Comparable)
+     * @param treeifyThreshold   - число пар, при достижении которого список адаптивной корзины перестраивается в дерево.
+     *                           Должно быть строго больше нижнего порога
+     * @param untreeifyThreshold - число пар, при снижении до которого дерево адаптивной корзины
+     *                           перестраивается в список. Должно быть не меньше 0
+     * @throws IllegalArgumentException - выбрасывается при недопустимых порогах
+     */
+    public BasicBucketFactory(BucketType targetType, Comparator<K> treeComparator, int treeifyThreshold,
+                              int untreeifyThreshold) throws IllegalArgumentException {
+        AdaptiveBucket.checkThresholds(treeifyThreshold, untreeifyThreshold);
         this.targetType = targetType;
+        this.treeifyThreshold = treeifyThreshold;
+        this.untreeifyThreshold = untreeifyThreshold;
+        this.treeComparator = treeComparator;
     }
 
     @Override
     public Bucket<K, V> createBucket() {
         switch (targetType) {
             case AVL_TREE:
-                return new AVLTreeBucket<>();
+                return new AVLTreeBucket<>(treeComparator);
             case LIST:
                 return new ListBucket<>();
+            case ARRAY:
+                return new ArrayBucket<>();
+            case ADAPTIVE:
+                return new AdaptiveBucket<>(treeifyThreshold, untreeifyThreshold, treeComparator);
+            case LOCK_FREE_LIST:
+                return new LockFreeListBucket<>();
+            case PERSISTENT_AVL_TREE:
+                return new PersistentAVLTreeBucket<>();
             default:
                 return null;
         }
@@ -30,7 +94,7 @@ public class BasicBucketFactory<K, V> implements BucketFactory<K, V> {
 
     @Override
     public List<Bucket<K, V>> createBuckets(int bucketNumber) {
-        final List<Bucket<K, V>> bucketList = new ArrayList<>();
+        final List<Bucket<K, V>> bucketList = new ArrayList<>(bucketNumber);
         for (int i = 0; i < bucketNumber; i++) {
             bucketList.add(createBucket());
         }
@@ -42,6 +106,10 @@ public class BasicBucketFactory<K, V> implements BucketFactory<K, V> {
      */
     public enum BucketType {
         AVL_TREE, // Коризна, основанная на АВЛ дереве
-        LIST // Корзина, основанная на односвязном списке
+        LIST, // Корзина, основанная на односвязном списке
+        ARRAY, // Корзина, основанная на массиве чередующихся ключей и значений и массиве хэш кодов
+        ADAPTIVE, // Корзина, перестраивающая список в АВЛ дерево и обратно в зависимости от числа пар
+        LOCK_FREE_LIST, // Корзина, основанная на неблокирующем односвязном списке
+        PERSISTENT_AVL_TREE // Корзина, основанная на неизменяемом АВЛ дереве с копированием пути
     }
 }
@@ -0,0 +1,60 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Кодеки распространенных типов ключей и значений
+ */
+public final class BasicCodecs {
+
+    /**
+     * Кодек строк в кодировке UTF-8
+     */
+    public static final Codec<String> STRING = new Codec<String>() {
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(ByteBuffer source, int offset, int length) {
+            final byte[] bytes = new byte[length];
+            source.get(offset, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Кодек 32-битных целых чисел (4 байта, старший байт первым)
+     */
+    public static final Codec<Integer> INTEGER = new Codec<Integer>() {
+        @Override
+        public byte[] encode(Integer value) {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+        }
+
+        @Override
+        public Integer decode(ByteBuffer source, int offset, int length) {
+            return source.getInt(offset);
+        }
+    };
+
+    /**
+     * Кодек 64-битных целых чисел (8 байт, старший байт первым)
+     */
+    public static final Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public byte[] encode(Long value) {
+            return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+        }
+
+        @Override
+        public Long decode(ByteBuffer source, int offset, int length) {
+            return source.getLong(offset);
+        }
+    };
+
+    private BasicCodecs() {
+    }
+}
@@ -0,0 +1,100 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Класс стратегии хэширования, вычисляющий хэш ключа заданным при создании способом.
+ * Хэш null ключа вычисляется как хэш нулевого хэш кода.
+ */
+public class BasicHashStrategy implements HashStrategy {
+
+    private final StrategyType type;
+    private final int seed; // Затравка, смешиваемая с хэш кодом. Используется только SEEDED_MURMUR3
+
+    /**
+     * Создает стратегию хэширования заданного типа.
+     * Стратегия типа SEEDED_MURMUR3 получает случайную затравку.
+     *
+     * @param type - тип стратегии. Не может быть null
+     * @throws IllegalArgumentException - выбрасывается, если тип не задан
+     */
+    public BasicHashStrategy(StrategyType type) throws IllegalArgumentException {
+        this(type, ThreadLocalRandom.current().nextInt());
+    }
+
+    /**
+     * Создает стратегию хэширования заданного типа с заданной затравкой.
+     * Затравка влияет только на стратегию типа SEEDED_MURMUR3.
+     *
+     * @param type - тип стратегии. Не может быть null
+     * @param seed - затравка
+     * @throws IllegalArgumentException - выбрасывается, если тип не задан
+     */
+    public BasicHashStrategy(StrategyType type, int seed) throws IllegalArgumentException {
+        if (type == null) {
+            throw new IllegalArgumentException("Hash strategy type can't be null");
+        }
+        this.type = type;
+        this.seed = seed;
+    }
+
+    /**
+     * Перемешивает биты заданного числа финализатором хэш функции Murmur3 (fmix32):
+     * каждый бит результата зависит от каждого бита аргумента.
+     *
+     * @param h - исходное число
+     * @return - перемешанное число
+     */
+    public static int murmurMix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Перемешивает биты заданного числа 64-битным финализатором хэш функции Murmur3 (fmix64)
+     * и сворачивает результат до int, так что старшие биты аргумента тоже влияют на результат.
+     *
+     * @param h - исходное число
+     * @return - перемешанное число
+     */
+    public static int murmurMix(long h) {
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return (int) (h ^ (h >>> 33));
+    }
+
+    @Override
+    public int hash(Object key) {
+        final int hashCode = (key == null) ? 0 : key.hashCode();
+        switch (type) {
+            case IDENTITY:
+                return hashCode;
+            case SPREAD:
+                return hashCode ^ (hashCode >>> 16);
+            case MURMUR3:
+                return murmurMix(hashCode);
+            case SEEDED_MURMUR3:
+                return murmurMix(hashCode ^ seed);
+            default:
+                throw new IllegalStateException("Unknown hash strategy type " + type);
+        }
+    }
+
+    public StrategyType getType() {
+        return type;
+    }
+
+    /**
+     * Перечисление возможных способов вычисления хэша
+     */
+    public enum StrategyType {
+        IDENTITY, // Хэш код ключа без изменений
+        SPREAD, // Хэш код, старшие 16 бит которого подмешаны в младшие, как в java.util.HashMap
+        MURMUR3, // Хэш код, перемешанный финализатором Murmur3
+        SEEDED_MURMUR3 // Хэш код, смешанный со случайной для каждой стратегии затравкой и перемешанный Murmur3
+    }
+}
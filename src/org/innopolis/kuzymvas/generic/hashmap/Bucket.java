@@ -23,6 +23,18 @@ public interface Bucket<K, V> {
      */
     boolean put(K key, V value);
 
+    /**
+     * Помещает заданную пару ключ-знаение в корзину, если такого ключа в ней нет
+     * Перезаписывает значение ключа данным, если он уже присустствует в корзине.
+     * В отличие от put сообщает прежнее значение ключа, выполняя поиск ключа в корзине однократно.
+     *
+     * @param key   - заданный ключ
+     * @param value - значение для ключа
+     * @return - пара из ключа и его прежнего значения, если значение было перезаписано,
+     * null, если в корзину была добавлена новая пара
+     */
+    Map.Entry<K, V> putAndGetPrevious(K key, V value);
+
     /**
      * Заменяет значение, связанное с данным ключом в корзине, на данное.
      * Бросает исключение, если ключа  в корзине нет
@@ -33,6 +45,16 @@ public interface Bucket<K, V> {
      */
     void replace(K key, V value) throws KeyNotPresentException;
 
+    /**
+     * Заменяет значение, связанное с данным ключом в корзине, на данное, если ключ есть в корзине.
+     * В отличие от replace не бросает исключение при отсутствии ключа.
+     *
+     * @param key   - заданный ключ
+     * @param value - новое значение для ключа
+     * @return - пара из ключа и его прежнего значения, либо null, если ключа нет в корзине
+     */
+    Map.Entry<K, V> replaceAndGetPrevious(K key, V value);
+
     /**
      * Возвращает значение, связанное с заданным ключом.
      * Бросает исключение, если ключа нет в корзине
@@ -52,6 +74,15 @@ public interface Bucket<K, V> {
      */
     void remove(Object key) throws KeyNotPresentException;
 
+    /**
+     * Убирает из корзины пару ключ-значение, определяемую заданным ключом, если она есть в корзине.
+     * В отличие от remove не бросает исключение и выполняет поиск ключа в корзине однократно.
+     *
+     * @param key - заданный ключ
+     * @return - удаленная пара ключ-значение, либо null, если ключа нет в корзине
+     */
+    Map.Entry<K, V> removeAndGetPrevious(Object key);
+
     /**
      * Проверяет, содержится ли заданный ключ в корзине
      *
@@ -82,15 +113,40 @@ public interface Bucket<K, V> {
     int[] getKeyValuePairsHashes();
 
     /**
-     * Возвращает хранимую пару ключ-значение с заданным ключом
+     * Возвращает хранимую пару ключ-значение с заданным ключом.
+     * Основной способ поиска в корзине: отсутствие ключа не приводит к исключению,
+     * поэтому промахи не требуют создания исключений.
      *
      * @param key - искомый ключ
-     * @return - пара ключ-значение, его содержащая.
+     * @return - пара ключ-значение, его содержащая, либо null, если ключа нет в корзине.
      */
     Map.Entry<K, V> getEntry(Object key);
 
+    /**
+     * Возвращает значение, связанное с ключом, либо значение по умолчанию, если ключа нет в корзине.
+     * Корзины, не хранящие пары в виде объектов, могут переопределить метод, чтобы не создавать пару при поиске.
+     *
+     * @param key          - искомый ключ
+     * @param defaultValue - значение, возвращаемое при отсутствии ключа
+     * @return - значение, связанное с ключом, либо defaultValue
+     */
+    default V getOrDefault(Object key, V defaultValue) {
+        final Map.Entry<K, V> entry = getEntry(key);
+        return (entry == null) ? defaultValue : entry.getValue();
+    }
+
     /**
      * Очищает корзину от всех пар ключей-значение.
      */
     void clear();
+
+    /**
+     * Сообщает, допускает ли корзина поиск (getEntry, getOrDefault, containsKey) без блокировок
+     * одновременно с ее изменением другим потоком. Потокобезопасные таблицы читают такие корзины без блокировок.
+     *
+     * @return - true, если поиск в корзине безопасен во время ее изменения, false в противном случае
+     */
+    default boolean supportsConcurrentReads() {
+        return false;
+    }
 }
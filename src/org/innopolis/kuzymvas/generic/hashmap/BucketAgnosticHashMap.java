@@ -1,9 +1,18 @@
 package org.innopolis.kuzymvas.generic.hashmap;
 
-import org.innopolis.kuzymvas.exceptions.KeyNotPresentException;
 import org.innopolis.kuzymvas.generic.datastructures.KeyValuePair;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *  Класс хэш таблицы, независимой от реализации своих корзин
@@ -12,11 +21,31 @@ import java.util.*;
  */
 public class BucketAgnosticHashMap<K, V> implements Map<K, V> {
 
-    private final List<Bucket<K, V>> buckets; // Массив корзин для каждого из возможных значений хэша
-    private final EntrySet entrySet;
+    private static final int DEFAULT_BUCKET_NUMBER = 1024; // Число корзин по умолчанию
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f; // Коэффициент заполнения по умолчанию
+    private static final int MAX_BUCKET_NUMBER = 1 << 30; // Верхняя граница числа корзин при росте таблицы
+    private static final int REHASH_STEP = 4; // Наименьшее число корзин, переносимых за одну операцию при перестроении
+    private static final int LOAD_RANGES = 1024; // Число диапазонов корзин, заполняемых независимо при загрузке снимка
+    private static final HashStrategy DEFAULT_HASH_STRATEGY = // Стратегия хэширования по умолчанию
+            new BasicHashStrategy(BasicHashStrategy.StrategyType.SPREAD);
+
+    private final BucketFactory<K, V> factory; // Фабрика, создающая корзины (в том числе при изменении размера)
+    private final HashStrategy hashStrategy; // Стратегия, вычисляющая хэш ключа для выбора корзины
+    private final float loadFactor; // Коэффициент заполнения. 0 - размер таблицы фиксирован
+    private final int minBucketNumber; // Число корзин, меньше которого таблица не сжимается
+    private final boolean incrementalRehash; // Перестраивать ли таблицу постепенно, а не за одну операцию
+    private final EntrySet entrySet; // Представления таблицы, не хранящие собственных копий пар
     private final KeySet keySet;
-    private final ValueList valueList;
+    private final ValueCollection valueCollection;
+    // При постепенном перестроении корзины нового массива создаются по мере переноса пар, а до этого равны null
+    private List<Bucket<K, V>> buckets; // Массив корзин для каждого из возможных значений хэша. Размер - степень двойки
+    private List<Bucket<K, V>> oldBuckets; // Массив корзин до перестроения. null, если перестроение не идет
+    private int migrationIndex; // Номер первой корзины старого массива, которая еще не перенесена
+    private int migrationStep; // Число корзин, переносимых за одну операцию при текущем перестроении
     private int size; // Число пар ключ-значение в хранилище
+    private int modCount; // Число структурных изменений таблицы для обнаружения изменений во время обхода
+    private int growThreshold; // Число пар, при превышении которого таблица растет
+    private int shrinkThreshold; // Число пар, при падении ниже которого таблица сжимается
 
     /**
      * Создает хэш таблицу с 1024 корзинами
@@ -24,30 +53,315 @@ public class BucketAgnosticHashMap<K, V> implements Map<K, V> {
      * @param factory - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
      */
     public BucketAgnosticHashMap(BucketFactory<K, V> factory) {
-        this(factory, 1024);
+        this(factory, DEFAULT_BUCKET_NUMBER);
     }
 
     /**
-     * Создаем хэш таблицу с заданным положительным числом корзин
+     * Создаем хэш таблицу с заданным положительным числом корзин, округленным вверх до степени двойки.
+     * Число корзин такой таблицы не меняется.
      *
      * @param factory      - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
      * @param bucketNumber - число корзин. Должно быть строго больше 0
      * @throws IllegalArgumentException - выбрасывается, если число корзин меньше, либо равно нулю.
      */
     public BucketAgnosticHashMap(BucketFactory<K, V> factory, int bucketNumber) throws IllegalArgumentException {
+        this(factory, DEFAULT_HASH_STRATEGY, bucketNumber);
+    }
+
+    /**
+     * Создает хэш таблицу фиксированного размера, аналогичную {@link #BucketAgnosticHashMap(BucketFactory, int)},
+     * которая выбирает корзины по хэшу, вычисленному заданной стратегией.
+     *
+     * @param factory      - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
+     * @param hashStrategy - стратегия вычисления хэша ключей. Не может быть null
+     * @param bucketNumber - число корзин. Должно быть строго больше 0
+     * @throws IllegalArgumentException - выбрасывается, если фабрика или стратегия не заданы
+     *                                  или число корзин меньше, либо равно нулю.
+     */
+    public BucketAgnosticHashMap(BucketFactory<K, V> factory, HashStrategy hashStrategy, int bucketNumber)
+            throws IllegalArgumentException {
+        this(factory, hashStrategy, bucketNumber, 0.0f, false, false);
+    }
+
+    /**
+     * Создает хэш таблицу с заданным начальным числом корзин, которая меняет свой размер,
+     * поддерживая среднее число пар в корзине не выше коэффициента заполнения.
+     * Таблица удваивает число корзин при превышении коэффициента заполнения и вдвое сокращает его,
+     * когда заполненность падает ниже четверти от коэффициента, но не ниже начального числа корзин.
+     * Начальное число корзин округляется вверх до степени двойки.
+     *
+     * @param factory      - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
+     * @param bucketNumber - начальное (и минимальное) число корзин. Должно быть строго больше 0
+     * @param loadFactor   - коэффициент заполнения. Должен быть строго больше 0
+     * @throws IllegalArgumentException - выбрасывается, если число корзин или коэффициент заполнения
+     *                                  меньше, либо равны нулю.
+     */
+    public BucketAgnosticHashMap(BucketFactory<K, V> factory, int bucketNumber, float loadFactor)
+            throws IllegalArgumentException {
+        this(factory, DEFAULT_HASH_STRATEGY, bucketNumber, loadFactor, true, false);
+    }
+
+    /**
+     * Создает изменяющую размер хэш таблицу, аналогичную
+     * {@link #BucketAgnosticHashMap(BucketFactory, int, float)}, с возможностью постепенного перестроения.
+     * При постепенном перестроении таблица хранит старый и новый массивы корзин одновременно
+     * и за каждую добавляющую или удаляющую пару операцию переносит в новый массив лишь несколько корзин.
+     * Поиск ключа ведется в той корзине старого или нового массива, где ключ находится в данный момент.
+     *
+     * @param factory           - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
+     * @param bucketNumber      - начальное (и минимальное) число корзин. Должно быть строго больше 0
+     * @param loadFactor        - коэффициент заполнения. Должен быть строго больше 0
+     * @param incrementalRehash - true, если таблицу следует перестраивать постепенно,
+     *                          false, если за одну операцию
+     * @throws IllegalArgumentException - выбрасывается, если число корзин или коэффициент заполнения
+     *                                  меньше, либо равны нулю.
+     */
+    public BucketAgnosticHashMap(BucketFactory<K, V> factory, int bucketNumber, float loadFactor,
+                                 boolean incrementalRehash) throws IllegalArgumentException {
+        this(factory, DEFAULT_HASH_STRATEGY, bucketNumber, loadFactor, true, incrementalRehash);
+    }
+
+    /**
+     * Создает изменяющую размер хэш таблицу, аналогичную
+     * {@link #BucketAgnosticHashMap(BucketFactory, int, float, boolean)},
+     * которая выбирает корзины по хэшу, вычисленному заданной стратегией.
+     *
+     * @param factory           - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
+     * @param hashStrategy      - стратегия вычисления хэша ключей. Не может быть null
+     * @param bucketNumber      - начальное (и минимальное) число корзин. Должно быть строго больше 0
+     * @param loadFactor        - коэффициент заполнения. Должен быть строго больше 0
+     * @param incrementalRehash - true, если таблицу следует перестраивать постепенно,
+     *                          false, если за одну операцию
+     * @throws IllegalArgumentException - выбрасывается, если фабрика или стратегия не заданы,
+     *                                  или число корзин или коэффициент заполнения меньше, либо равны нулю.
+     */
+    public BucketAgnosticHashMap(BucketFactory<K, V> factory, HashStrategy hashStrategy, int bucketNumber,
+                                 float loadFactor, boolean incrementalRehash) throws IllegalArgumentException {
+        this(factory, hashStrategy, bucketNumber, loadFactor, true, incrementalRehash);
+    }
+
+    private BucketAgnosticHashMap(BucketFactory<K, V> factory, HashStrategy hashStrategy, int bucketNumber,
+                                  float loadFactor, boolean resizable, boolean incrementalRehash)
+            throws IllegalArgumentException {
         size = 0;
         if (factory == null) {
             throw new IllegalArgumentException("Bucket factory can't be null");
         }
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Hash strategy can't be null");
+        }
         if (bucketNumber <= 0) {
             throw new IllegalArgumentException("Hash map can't have 0 or less buckets");
         }
-        buckets = factory.createBuckets(bucketNumber);
+        if (resizable && !(loadFactor > 0.0f && !Float.isInfinite(loadFactor))) {
+            throw new IllegalArgumentException("Load factor must be a positive finite number");
+        }
+        this.factory = factory;
+        this.hashStrategy = hashStrategy;
+        this.loadFactor = loadFactor;
+        this.minBucketNumber = roundToPowerOfTwo(bucketNumber);
+        this.incrementalRehash = incrementalRehash;
+        buckets = factory.createBuckets(minBucketNumber);
+        oldBuckets = null;
+        migrationIndex = 0;
+        updateThresholds();
         entrySet = new EntrySet();
         keySet = new KeySet();
-        valueList = new ValueList();
+        valueCollection = new ValueCollection();
+    }
+
+    /**
+     * Создает изменяющую размер хэш таблицу с коэффициентом заполнения 0.75,
+     * которая вместит заданное число пар без перестроения.
+     *
+     * @param factory      - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
+     * @param expectedSize - ожидаемое число пар ключ-значение. Не может быть отрицательным
+     * @return - новая пустая хэш таблица
+     * @throws IllegalArgumentException - выбрасывается, если ожидаемое число пар отрицательно
+     */
+    public static <K, V> BucketAgnosticHashMap<K, V> withExpectedSize(BucketFactory<K, V> factory,
+                                                                      int expectedSize)
+            throws IllegalArgumentException {
+        return withExpectedSize(factory, expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Создает изменяющую размер хэш таблицу с заданным коэффициентом заполнения,
+     * которая вместит заданное число пар без перестроения.
+     *
+     * @param factory      - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
+     * @param expectedSize - ожидаемое число пар ключ-значение. Не может быть отрицательным
+     * @param loadFactor   - коэффициент заполнения. Должен быть строго больше 0
+     * @return - новая пустая хэш таблица
+     * @throws IllegalArgumentException - выбрасывается, если ожидаемое число пар отрицательно
+     *                                  или коэффициент заполнения меньше, либо равен нулю
+     */
+    public static <K, V> BucketAgnosticHashMap<K, V> withExpectedSize(BucketFactory<K, V> factory,
+                                                                      int expectedSize, float loadFactor)
+            throws IllegalArgumentException {
+        return withExpectedSize(factory, DEFAULT_HASH_STRATEGY, expectedSize, loadFactor);
+    }
+
+    /**
+     * Создает изменяющую размер хэш таблицу с заданными стратегией хэширования и коэффициентом заполнения,
+     * которая вместит заданное число пар без перестроения.
+     *
+     * @param factory      - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
+     * @param hashStrategy - стратегия вычисления хэша ключей. Не может быть null
+     * @param expectedSize - ожидаемое число пар ключ-значение. Не может быть отрицательным
+     * @param loadFactor   - коэффициент заполнения. Должен быть строго больше 0
+     * @return - новая пустая хэш таблица
+     * @throws IllegalArgumentException - выбрасывается, если ожидаемое число пар отрицательно
+     *                                  или коэффициент заполнения меньше, либо равен нулю
+     */
+    public static <K, V> BucketAgnosticHashMap<K, V> withExpectedSize(BucketFactory<K, V> factory,
+                                                                      HashStrategy hashStrategy,
+                                                                      int expectedSize, float loadFactor)
+            throws IllegalArgumentException {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size can't be negative");
+        }
+        if (!(loadFactor > 0.0f && !Float.isInfinite(loadFactor))) {
+            throw new IllegalArgumentException("Load factor must be a positive finite number");
+        }
+        final double bucketNumber = Math.ceil(expectedSize / (double) loadFactor);
+        return new BucketAgnosticHashMap<>(factory, hashStrategy,
+                                           (int) Math.max(1, Math.min(bucketNumber, MAX_BUCKET_NUMBER)),
+                                           loadFactor, false);
+    }
+
+    /**
+     * Возвращает текущее число корзин в таблице
+     *
+     * @return - число корзин
+     */
+    public int getBucketNumber() {
+        return buckets.size();
+    }
+
+    /**
+     * Проверяет, идет ли в данный момент постепенное перестроение таблицы
+     *
+     * @return - true, если часть пар еще находится в старом массиве корзин, false в противном случае
+     */
+    public boolean isRehashing() {
+        return oldBuckets != null;
+    }
+
+    /**
+     * Переносит в новый массив не более заданного числа корзин незавершенного постепенного перестроения.
+     * Позволяет продвигать перестроение в периоды простоя, не дожидаясь операций над таблицей.
+     * Как и остальные методы таблицы, не является потокобезопасным.
+     *
+     * @param bucketCount - максимальное число переносимых корзин. Должно быть строго больше 0
+     * @return - true, если перестроение еще не завершено, false в противном случае
+     * @throws IllegalArgumentException - выбрасывается, если число корзин меньше, либо равно нулю.
+     */
+    public boolean rehashStep(int bucketCount) throws IllegalArgumentException {
+        if (bucketCount <= 0) {
+            throw new IllegalArgumentException("Rehash step must move at least one bucket");
+        }
+        if (oldBuckets != null) {
+            migrateBuckets(bucketCount);
+        }
+        return oldBuckets != null;
+    }
+
+    /**
+     * Записывает снимок таблицы в канал в двоичном формате с контрольными суммами (см. SnapshotFormat).
+     * Ключи и значения преобразуются в байты заданными кодеками. Таблица не должна изменяться во время записи.
+     *
+     * @param channel    - канал, в который пишется снимок. Не может быть null
+     * @param keyCodec   - кодек ключей. Не может быть null
+     * @param valueCodec - кодек значений. Не может быть null
+     * @throws IOException              - выбрасывается при ошибке записи.
+     * @throws IllegalArgumentException - выбрасывается, если канал или кодек не заданы.
+     */
+    public void snapshotTo(WritableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException, IllegalArgumentException {
+        if (channel == null || keyCodec == null || valueCodec == null) {
+            throw new IllegalArgumentException("Channel and codecs can't be null");
+        }
+        SnapshotFormat.writeHeader(channel, size);
+        final SnapshotFormat.PartitionWriter writer = new SnapshotFormat.PartitionWriter(channel);
+        for (Bucket<K, V> bucket : getAllBuckets()) {
+            for (KeyValuePair<K, V> pair : bucket.getKeyValuePairs()) {
+                final K key = pair.getKey();
+                final V value = pair.getValue();
+                writer.add((key == null) ? null : keyCodec.encode(key),
+                           (value == null) ? null : valueCodec.encode(value));
+            }
+        }
+        writer.flush();
     }
 
+    /**
+     * Добавляет в таблицу пары из снимка, записанного snapshotTo(), заменяя значения совпадающих ключей.
+     * Изменяющая размер таблица заранее увеличивается до размера, вмещающего все пары снимка.
+     * Разделы снимка читаются последовательно, а проверяются, разбираются и добавляются в таблицу
+     * параллельно пулом потоков по числу процессоров: пары раздела группируются по диапазонам корзин,
+     * и каждый диапазон заполняется под своей блокировкой.
+     * Кодеки должны допускать одновременное использование из нескольких потоков.
+     * При ошибке таблица может содержать часть пар снимка.
+     *
+     * @param channel    - канал, из которого читается снимок. Не может быть null
+     * @param keyCodec   - кодек ключей. Не может быть null
+     * @param valueCodec - кодек значений. Не может быть null
+     * @throws IOException              - выбрасывается при ошибке чтения, а также если снимок поврежден,
+     *                                  обрезан или записан в неизвестной версии формата.
+     * @throws IllegalArgumentException - выбрасывается, если канал или кодек не заданы.
+     */
+    public void loadFrom(ReadableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException, IllegalArgumentException {
+        if (channel == null || keyCodec == null || valueCodec == null) {
+            throw new IllegalArgumentException("Channel and codecs can't be null");
+        }
+        final int pairCount = SnapshotFormat.readHeader(channel);
+        ensureCapacity((long) size + pairCount);
+        final int rangeCount = Math.min(buckets.size(), LOAD_RANGES);
+        final Object[] rangeLocks = new Object[rangeCount];
+        for (int i = 0; i < rangeCount; i++) {
+            rangeLocks[i] = new Object();
+        }
+        final AtomicInteger added = new AtomicInteger();
+        final int threadCount = Runtime.getRuntime().availableProcessors();
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        final Semaphore inFlight = new Semaphore(2 * threadCount); // Ограничивает число прочитанных разделов в памяти
+        final List<Future<?>> results = new ArrayList<>();
+        boolean readCompleted = false;
+        try {
+            int read = 0;
+            while (read < pairCount) {
+                final SnapshotFormat.Partition partition = SnapshotFormat.readPartition(channel);
+                read += partition.getPairCount();
+                if (read < 0 || read > pairCount) {
+                    throw new IOException("Snapshot has more pairs than its header declares");
+                }
+                inFlight.acquire();
+                results.add(executor.submit(() -> {
+                    try {
+                        loadPartition(partition, keyCodec, valueCodec, rangeLocks, added);
+                    } finally {
+                        inFlight.release();
+                    }
+                    return null;
+                }));
+            }
+            readCompleted = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Snapshot loading was interrupted");
+        } finally {
+            // Задачи изменяют корзины, поэтому их нужно дождаться и при ошибке чтения
+            final Throwable failure = awaitAll(results);
+            executor.shutdown();
+            size += added.get();
+            modCount++;
+            if (readCompleted) {
+                rethrow(failure);
+            }
+        }
+    }
 
     @Override
     public int size() {
@@ -61,65 +375,53 @@ public class BucketAgnosticHashMap<K, V> implements Map<K, V> {
 
     @Override
     public boolean containsKey(Object key) {
-        final int keyHash = getKeyBucket(key);
-        return buckets.get(keyHash).containsKey(key);
+        return getBucket(key).containsKey(key);
     }
 
     @Override
     public boolean containsValue(Object value) {
-        return valueList.contains(value);
+        for (Bucket<K, V> bucket : getAllBuckets()) {
+            for (KeyValuePair<K, V> pair : bucket.getKeyValuePairs()) {
+                if (Objects.equals(pair.getValue(), value)) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     @Override
     public V get(Object key) {
-        final int keyHash = getKeyBucket(key);
-        try {
-            return buckets.get(keyHash).get(key);
-        } catch (KeyNotPresentException e) {
-            return null;
-        }
+        return getBucket(key).getOrDefault(key, null);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        return getBucket(key).getOrDefault(key, defaultValue);
     }
 
     @Override
     public V put(K key, V value) {
-        final int keyHash = getKeyBucket(key);
-        V oldValue = null;
-        if (buckets.get(keyHash).containsKey(key)) {
-            try {
-                oldValue = buckets.get(keyHash).get(key);
-            } catch (KeyNotPresentException e) {
-                e.printStackTrace();
-            }
-        }
-        if (buckets.get(keyHash).put(key, value)) {
-            entrySet.addFromMap(buckets.get(keyHash).getEntry(key));
-            keySet.addFromMap(key);
-            valueList.addFromMap(value);
+        final Bucket<K, V> bucket = getBucket(key);
+        final Map.Entry<K, V> previous = bucket.putAndGetPrevious(key, value);
+        if (previous == null) {
             size++;
+            modCount++;
+            if (size > growThreshold) {
+                resize(buckets.size() * 2);
+            } else if (oldBuckets != null) {
+                migrateBuckets(migrationStep);
+            }
+            return null;
         } else {
-            valueList.removeFromMap(oldValue);
-            valueList.addFromMap(value);
+            return previous.getValue();
         }
-        return oldValue;
     }
 
     @Override
     public V remove(Object key) {
-        final int keyHash = getKeyBucket(key);
-        try {
-            Map.Entry<K, V> entry = buckets.get(keyHash).getEntry(key);
-            if (entry == null) {
-                return null;
-            }
-            buckets.get(keyHash).remove(key);
-            entrySet.removeFromMap(entry);
-            keySet.removeFromMap(key);
-            valueList.removeFromMap(entry.getValue());
-            size--;
-            return entry.getValue();
-        } catch (KeyNotPresentException e) {
-            return null;
-        }
+        final Map.Entry<K, V> entry = removeEntry(key);
+        return (entry == null) ? null : entry.getValue();
     }
 
     @Override
@@ -133,12 +435,17 @@ public class BucketAgnosticHashMap<K, V> implements Map<K, V> {
     @Override
     public void clear() {
         size = 0;
-        for (Bucket<K, V> bucket : buckets) {
-            bucket.clear();
+        if (oldBuckets != null) {
+            // Часть корзин нового массива еще не создана, поэтому он заменяется целиком
+            buckets = factory.createBuckets(buckets.size());
+            oldBuckets = null;
+            migrationIndex = 0;
+        } else {
+            for (Bucket<K, V> bucket : buckets) {
+                bucket.clear();
+            }
         }
-        entrySet.clearFromMap();
-        keySet.clearFromMap();
-        valueList.clearFromMap();
+        modCount++;
     }
 
     @Override
@@ -148,7 +455,7 @@ public class BucketAgnosticHashMap<K, V> implements Map<K, V> {
 
     @Override
     public Collection<V> values() {
-        return valueList;
+        return valueCollection;
     }
 
     @Override
@@ -158,22 +465,42 @@ public class BucketAgnosticHashMap<K, V> implements Map<K, V> {
 
     @Override
     public V replace(K key, V value) {
-        final int keyHash = getKeyBucket(key);
-        try {
-            final Entry<K, V> oldEntry = buckets.get(keyHash).getEntry(key);
-            if (oldEntry != null) {
-                entrySet.removeFromMap(oldEntry);
-                V oldValue = oldEntry.getValue();
-                buckets.get(keyHash).replace(key, value);
-                entrySet.addFromMap(buckets.get(keyHash).getEntry(key));
-                valueList.removeFromMap(oldValue);
-                valueList.addFromMap(value);
-                return oldValue;
-            }
-            return null;
-        } catch (KeyNotPresentException e) {
+        final Map.Entry<K, V> previous = getBucket(key).replaceAndGetPrevious(key, value);
+        return (previous == null) ? null : previous.getValue();
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        final Map.Entry<K, V> entry = getBucket(key).getEntry(key);
+        if (entry == null || !Objects.equals(entry.getValue(), oldValue)) {
+            return false;
+        }
+        entry.setValue(newValue);
+        return true;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        final Map.Entry<K, V> entry = getBucket(key).getEntry(key);
+        if (entry == null) {
+            put(key, value);
             return null;
         }
+        final V currentValue = entry.getValue();
+        if (currentValue == null) {
+            entry.setValue(value);
+        }
+        return currentValue;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        final Map.Entry<K, V> entry = getBucket(key).getEntry(key);
+        if (entry == null || !Objects.equals(entry.getValue(), value)) {
+            return false;
+        }
+        removeEntry(key);
+        return true;
     }
 
     /**
@@ -187,7 +514,7 @@ public class BucketAgnosticHashMap<K, V> implements Map<K, V> {
     public int hashCode() {
         final int[] nodeHashes = new int[size]; // Массив хэшей по числу элементов
         int currPos = 0;
-        for (Bucket<K, V> bucket : buckets) { // Перебираем ведра
+        for (Bucket<K, V> bucket : getAllBuckets()) { // Перебираем ведра
             if (bucket != null) {
                 final int[] bucketHashes = bucket.getKeyValuePairsHashes(); // Получаем все хэши в ведре
                 System.arraycopy(bucketHashes, 0, nodeHashes, currPos, bucketHashes.length); // Пишем их в массив
@@ -220,7 +547,7 @@ public class BucketAgnosticHashMap<K, V> implements Map<K, V> {
         {
             return false;
         }
-        for (Bucket<K, V> bucket : buckets) { // Из каждого ведра
+        for (Bucket<K, V> bucket : getAllBuckets()) { // Из каждого ведра
             List<KeyValuePair<K, V>> pairs = bucket.getKeyValuePairs();
             if (!that.entrySet().containsAll(pairs)) {
                 return false;
@@ -232,151 +559,510 @@ public class BucketAgnosticHashMap<K, V> implements Map<K, V> {
     @Override
     public String toString() {
         final StringBuilder strB = new StringBuilder("SimpleHashMap{ size=").append(size).append(", buckets=");
-        for (int i = 0; i < buckets.size(); i++) {
+        final List<Bucket<K, V>> allBuckets = getAllBuckets();
+        for (int i = 0; i < allBuckets.size(); i++) {
             strB.append("bucket[").append(i).append("]{");
-            buckets.get(i).describeBucket(strB);
-            strB.append((i < buckets.size() - 1) ? "}," : "}");
+            allBuckets.get(i).describeBucket(strB);
+            strB.append((i < allBuckets.size() - 1) ? "}," : "}");
         }
         strB.append(" }");
         return strB.toString();
     }
 
     /**
-     * Определяет номер корзины, соответствующей ключу
+     * Определяет корзину, в которой находится (или должен находиться) ключ.
+     * Во время постепенного перестроения ключи из еще не перенесенных корзин находятся в старом массиве.
      *
      * @param key - ключ
+     * @return корзина, соответствующая ключу
+     */
+    private Bucket<K, V> getBucket(Object key) {
+        if (oldBuckets != null) {
+            final int oldIndex = getKeyBucket(key, oldBuckets.size());
+            if (oldIndex >= migrationIndex) {
+                return oldBuckets.get(oldIndex);
+            }
+        }
+        return buckets.get(getKeyBucket(key, buckets.size()));
+    }
+
+    /**
+     * Возвращает все корзины, которые могут содержать пары:
+     * текущий массив и еще не перенесенную часть старого массива
+     *
+     * @return - список корзин таблицы
+     */
+    private List<Bucket<K, V>> getAllBuckets() {
+        if (oldBuckets == null) {
+            return buckets;
+        }
+        final List<Bucket<K, V>> allBuckets = new ArrayList<>(buckets.size() + oldBuckets.size() - migrationIndex);
+        for (Bucket<K, V> bucket : buckets) {
+            if (bucket != null) {
+                allBuckets.add(bucket);
+            }
+        }
+        allBuckets.addAll(oldBuckets.subList(migrationIndex, oldBuckets.size()));
+        return allBuckets;
+    }
+
+    /**
+     * Определяет номер корзины, соответствующей ключу, в массиве корзин заданного размера.
+     * Номер составляют младшие биты хэша ключа, поэтому он всегда неотрицателен.
+     *
+     * @param key          - ключ
+     * @param bucketNumber - число корзин в массиве. Степень двойки
      * @return номер корзины в массиве коризн
      */
-    private int getKeyBucket(Object key) {
+    private int getKeyBucket(Object key, int bucketNumber) {
+        return hashStrategy.hash(key) & (bucketNumber - 1);
+    }
 
-        return (key == null) ? 0 : Math.abs(key.hashCode()) % buckets.size();
+    /**
+     * Округляет положительное число корзин вверх до ближайшей степени двойки, не превышающей 2^30
+     *
+     * @param bucketNumber - число корзин
+     * @return - округленное число корзин
+     */
+    private static int roundToPowerOfTwo(int bucketNumber) {
+        if (bucketNumber >= MAX_BUCKET_NUMBER) {
+            return MAX_BUCKET_NUMBER;
+        }
+        return (bucketNumber == 1) ? 1 : Integer.highestOneBit(bucketNumber - 1) << 1;
     }
 
     /**
-     * Класс множества пар ключ-значения, содержащихся в таблице
-     * Множество связано с таблицей и удаление пары из него приводит к удалению пары из таблицы
-     * Пары не могут быть добавлены в множество.
+     * Пересчитывает границы числа пар, при пересечении которых таблица меняет размер.
+     * Для таблицы фиксированного размера границы недостижимы.
      */
-    final class EntrySet extends HashSet<Map.Entry<K, V>> {
+    private void updateThresholds() {
+        if (loadFactor == 0.0f) {
+            growThreshold = Integer.MAX_VALUE;
+            shrinkThreshold = Integer.MIN_VALUE;
+            return;
+        }
+        final int bucketNumber = buckets.size();
+        growThreshold = (bucketNumber >= MAX_BUCKET_NUMBER) ? Integer.MAX_VALUE :
+                (int) Math.min(Integer.MAX_VALUE, (long) Math.ceil(bucketNumber * (double) loadFactor));
+        shrinkThreshold = (bucketNumber <= minBucketNumber) ? Integer.MIN_VALUE :
+                (int) (bucketNumber * (double) loadFactor / 4);
+    }
 
-        @Override
-        public boolean add(Entry<K, V> kvEntry) {
-            throw new UnsupportedOperationException("Add is unsupported");
+    /**
+     * Перестраивает таблицу с заданным числом корзин: создает новые корзины при помощи фабрики
+     * и перераспределяет по ним все хранимые пары ключ-значение.
+     * При постепенном перестроении новый массив создается пустым, а его корзины - по мере переноса в них пар.
+     * Сразу переносится лишь несколько корзин, а остальные - при последующих операциях, причем за операцию
+     * переносится столько корзин, чтобы перенос завершился раньше, чем таблица достигнет следующего порога
+     * изменения размера. Незавершенное предыдущее перестроение (возможное после rehashStep и ensureCapacity)
+     * предварительно доводится до конца.
+     *
+     * @param newBucketNumber - новое число корзин
+     */
+    private void resize(int newBucketNumber) {
+        if (oldBuckets != null) {
+            migrateBuckets(oldBuckets.size());
+        }
+        if (newBucketNumber == buckets.size()) {
+            return;
+        }
+        oldBuckets = buckets;
+        migrationIndex = 0;
+        if (!incrementalRehash) {
+            buckets = factory.createBuckets(newBucketNumber);
+            updateThresholds();
+            migrateBuckets(oldBuckets.size());
+            return;
         }
+        buckets = newBucketList(newBucketNumber);
+        updateThresholds();
+        // Каждое изменение числа пар до следующего порога переносит migrationStep корзин
+        final long operations = 1 + Math.max(0, Math.min((long) growThreshold - size, (long) size - shrinkThreshold));
+        migrationStep = (int) Math.max(REHASH_STEP, (oldBuckets.size() + operations - 1) / operations);
+        migrateBuckets(migrationStep);
+    }
 
-        @Override
-        public boolean remove(Object o) {
-            if (!(o instanceof Map.Entry)) {
-                return false;
-            }
-            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
-            if (BucketAgnosticHashMap.this.containsKey(entry.getKey())) {
-                BucketAgnosticHashMap.this.remove(entry.getKey());
-                return true;
+    /**
+     * Создает массив корзин заданного размера, корзины которого еще не созданы
+     *
+     * @param bucketNumber - число корзин
+     * @return - массив из null заданного размера
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> List<Bucket<K, V>> newBucketList(int bucketNumber) {
+        return Arrays.asList((Bucket<K, V>[]) new Bucket<?, ?>[bucketNumber]);
+    }
+
+    /**
+     * Переносит не более заданного числа корзин из старого массива в новый.
+     * Перед переносом создаются еще не созданные корзины нового массива, в которые могут попасть пары
+     * переносимой корзины: ключи перенесенных корзин ищутся уже в новом массиве.
+     * По завершении переноса старый массив отбрасывается.
+     *
+     * @param bucketCount - максимальное число переносимых корзин
+     */
+    private void migrateBuckets(int bucketCount) {
+        final int bucketNumber = buckets.size();
+        final int oldBucketNumber = oldBuckets.size();
+        final int end = (int) Math.min(oldBucketNumber, (long) migrationIndex + bucketCount);
+        for (; migrationIndex < end; migrationIndex++) {
+            if (bucketNumber > oldBucketNumber) {
+                for (int index = migrationIndex; index < bucketNumber; index += oldBucketNumber) {
+                    createMissingBucket(index);
+                }
             } else {
-                return false;
+                createMissingBucket(migrationIndex & (bucketNumber - 1));
             }
+            final Bucket<K, V> oldBucket = oldBuckets.get(migrationIndex);
+            for (KeyValuePair<K, V> pair : oldBucket.getKeyValuePairs()) {
+                final Bucket<K, V> newBucket = buckets.get(getKeyBucket(pair.getKey(), bucketNumber));
+                newBucket.put(pair.getKey(), pair.getValue());
+            }
+            oldBucket.clear();
+        }
+        if (migrationIndex == oldBuckets.size()) {
+            oldBuckets = null;
+            migrationIndex = 0;
         }
+        modCount++;
+    }
 
-        @Override
-        public void clear() {
-            BucketAgnosticHashMap.this.clear();
+    private void createMissingBucket(int index) {
+        if (buckets.get(index) == null) {
+            buckets.set(index, factory.createBucket());
         }
+    }
 
-        private void removeFromMap(Object o) {
-            super.remove(o);
+    /**
+     * Увеличивает изменяющую размер таблицу так, чтобы она вместила заданное число пар без перестроения,
+     * и завершает незаконченное постепенное перестроение
+     *
+     * @param expectedSize - ожидаемое число пар
+     */
+    private void ensureCapacity(long expectedSize) {
+        if (loadFactor != 0.0f) {
+            final double bucketNumber = Math.ceil(expectedSize / (double) loadFactor);
+            final int newBucketNumber = roundToPowerOfTwo((int) Math.max(1, Math.min(bucketNumber,
+                                                                                     MAX_BUCKET_NUMBER)));
+            if (newBucketNumber > buckets.size()) {
+                resize(newBucketNumber);
+            }
+        }
+        if (oldBuckets != null) {
+            migrateBuckets(oldBuckets.size());
+        }
+    }
+
+    /**
+     * Проверяет и разбирает раздел снимка и добавляет его пары в таблицу.
+     * Пары группируются по диапазонам корзин, каждый диапазон заполняется под своей блокировкой,
+     * поэтому разделы можно загружать одновременно.
+     *
+     * @param partition  - раздел снимка
+     * @param keyCodec   - кодек ключей
+     * @param valueCodec - кодек значений
+     * @param rangeLocks - блокировки диапазонов корзин. Их число - степень двойки, не большая числа корзин
+     * @param added      - счетчик добавленных в таблицу новых ключей
+     * @throws IOException - выбрасывается, если раздел поврежден.
+     */
+    @SuppressWarnings("unchecked")
+    private void loadPartition(SnapshotFormat.Partition partition, Codec<K> keyCodec, Codec<V> valueCodec,
+                               Object[] rangeLocks, AtomicInteger added) throws IOException {
+        partition.verify();
+        final int pairCount = partition.getPairCount();
+        final Object[] keys = new Object[pairCount];
+        final Object[] values = new Object[pairCount];
+        final int[] bucketIndexes = new int[pairCount];
+        final int[] rangeStarts = new int[rangeLocks.length + 1];
+        final int bucketNumber = buckets.size();
+        final int rangeShift = Integer.numberOfTrailingZeros(bucketNumber / rangeLocks.length);
+        for (int i = 0; i < pairCount; i++) {
+            keys[i] = partition.next(keyCodec);
+            values[i] = partition.next(valueCodec);
+            bucketIndexes[i] = getKeyBucket(keys[i], bucketNumber);
+            rangeStarts[(bucketIndexes[i] >>> rangeShift) + 1]++;
+        }
+        // Сортировка подсчетом: пары каждого диапазона располагаются подряд
+        for (int range = 0; range < rangeLocks.length; range++) {
+            rangeStarts[range + 1] += rangeStarts[range];
         }
+        final int[] order = new int[pairCount];
+        final int[] nextPosition = Arrays.copyOf(rangeStarts, rangeLocks.length);
+        for (int i = 0; i < pairCount; i++) {
+            order[nextPosition[bucketIndexes[i] >>> rangeShift]++] = i;
+        }
+        for (int range = 0; range < rangeLocks.length; range++) {
+            if (rangeStarts[range] == rangeStarts[range + 1]) {
+                continue;
+            }
+            int newKeys = 0;
+            synchronized (rangeLocks[range]) {
+                for (int position = rangeStarts[range]; position < rangeStarts[range + 1]; position++) {
+                    final int i = order[position];
+                    if (buckets.get(bucketIndexes[i]).putAndGetPrevious((K) keys[i], (V) values[i]) == null) {
+                        newKeys++;
+                    }
+                }
+            }
+            added.addAndGet(newKeys);
+        }
+    }
 
-        private void addFromMap(Entry<K, V> kvEntry) {
-            super.add(kvEntry);
+    /**
+     * Дожидается завершения всех задач
+     *
+     * @param results - результаты задач
+     * @return - первая ошибка, с которой завершилась задача, либо null, если ошибок не было
+     */
+    private static Throwable awaitAll(List<Future<?>> results) {
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<?> result : results) {
+            while (true) {
+                try {
+                    result.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                    break;
+                }
+            }
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return failure;
+    }
 
-        private void clearFromMap() {
-            super.clear();
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
         }
     }
 
     /**
-     * Класс множества ключей, содержащихся в таблице
-     * Множество связано с таблицей и удаление ключа из него приводит к удалению пары с этим ключом из таблицы
-     * Ключи не могут быть добавлены в множество.
+     * Удаляет пару с заданным ключом из таблицы и при необходимости сжимает таблицу
+     * или продолжает ее постепенное перестроение.
+     *
+     * @param key - ключ удаляемой пары
+     * @return - удаленная пара, либо null, если ключа в таблице нет
      */
-    final class KeySet extends HashSet<K> {
+    private Map.Entry<K, V> removeEntry(Object key) {
+        final Map.Entry<K, V> entry = detachEntry(key);
+        if (entry != null) {
+            if (size < shrinkThreshold) {
+                resize(Math.max(minBucketNumber, buckets.size() / 2));
+            } else if (oldBuckets != null) {
+                migrateBuckets(migrationStep);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Удаляет пару с заданным ключом из ее корзины, не меняя расположения остальных пар.
+     * Используется при удалении во время обхода таблицы.
+     *
+     * @param key - ключ удаляемой пары
+     * @return - удаленная пара, либо null, если ключа в таблице нет
+     */
+    private Map.Entry<K, V> detachEntry(Object key) {
+        final Map.Entry<K, V> entry = getBucket(key).removeAndGetPrevious(key);
+        if (entry != null) {
+            size--;
+            modCount++;
+        }
+        return entry;
+    }
+
+    /**
+     * Итератор по парам таблицы, последовательно обходящий ее корзины.
+     * Не хранит копий пар таблицы, кроме пар текущей корзины.
+     * Удаление через итератор удаляет пару из таблицы.
+     *
+     * @param <T> - тип возвращаемых итератором элементов
+     */
+    abstract class BucketIterator<T> implements Iterator<T> {
+
+        private final List<Bucket<K, V>> iteratedBuckets = getAllBuckets();
+        private int bucketIndex; // Номер следующей корзины для обхода
+        private List<KeyValuePair<K, V>> bucketPairs = Collections.emptyList(); // Пары текущей корзины
+        private int pairIndex; // Номер следующей пары в текущей корзине
+        private KeyValuePair<K, V> lastReturned; // Последняя возвращенная пара, null - если ее нельзя удалить
+        private int expectedModCount = modCount;
 
         @Override
-        public boolean add(K key) {
-            throw new UnsupportedOperationException("Add is unsupported");
+        public boolean hasNext() {
+            while (pairIndex >= bucketPairs.size()) {
+                if (bucketIndex >= iteratedBuckets.size()) {
+                    return false;
+                }
+                bucketPairs = iteratedBuckets.get(bucketIndex++).getKeyValuePairs();
+                pairIndex = 0;
+            }
+            return true;
         }
 
         @Override
-        public boolean remove(Object o) {
-            if (BucketAgnosticHashMap.this.containsKey(o)) {
-                BucketAgnosticHashMap.this.remove(o);
-                return true;
-            } else {
-                return false;
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException("Nothing to remove");
+            }
+            checkForModification();
+            detachEntry(lastReturned.getKey());
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Возвращает следующую пару таблицы
+         *
+         * @return - следующая пара таблицы
+         * @throws NoSuchElementException          - выбрасывается, если пары закончились
+         * @throws ConcurrentModificationException - выбрасывается, если таблица была изменена не через итератор
+         */
+        KeyValuePair<K, V> nextPair() {
+            checkForModification();
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more pairs in hash map");
             }
+            lastReturned = bucketPairs.get(pairIndex++);
+            return lastReturned;
         }
 
+        private void checkForModification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException("Hash map was modified during iteration");
+            }
+        }
+    }
+
+    /**
+     * Класс множества пар ключ-значения, содержащихся в таблице
+     * Множество является представлением таблицы и удаление пары из него приводит к удалению пары из таблицы
+     * Пары не могут быть добавлены в множество.
+     */
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
         @Override
-        public void clear() {
-            BucketAgnosticHashMap.this.clear();
+        public Iterator<Entry<K, V>> iterator() {
+            return new BucketIterator<Entry<K, V>>() {
+                @Override
+                public Entry<K, V> next() {
+                    return nextPair();
+                }
+            };
         }
 
-        private void removeFromMap(Object o) {
-            super.remove(o);
+        @Override
+        public int size() {
+            return size;
         }
 
-        private void addFromMap(K key) {
-            super.add(key);
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            final Map.Entry<K, V> ourEntry = getBucket(entry.getKey()).getEntry(entry.getKey());
+            return ourEntry != null && Objects.equals(ourEntry.getValue(), entry.getValue());
         }
 
-        private void clearFromMap() {
-            super.clear();
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            removeEntry(((Map.Entry<?, ?>) o).getKey());
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            BucketAgnosticHashMap.this.clear();
         }
     }
 
     /**
-     * Класс коллекции значений, содержащихся в таблице
-     * Коллекция связана с таблицей и его очистка приведет к удалению всех пар ключ-значение из таблицы
-     * Значения не могут быть добавлены или удалены из множества.
+     * Класс множества ключей, содержащихся в таблице
+     * Множество является представлением таблицы и удаление ключа из него приводит к удалению пары с этим ключом из таблицы
+     * Ключи не могут быть добавлены в множество.
      */
-    final class ValueList extends LinkedList<V> {
+    final class KeySet extends AbstractSet<K> {
+
         @Override
-        public boolean removeAll(Collection<?> c) {
-            throw new UnsupportedOperationException("Remove is unsupported");
+        public Iterator<K> iterator() {
+            return new BucketIterator<K>() {
+                @Override
+                public K next() {
+                    return nextPair().getKey();
+                }
+            };
         }
 
         @Override
-        public boolean add(V value) {
-            throw new UnsupportedOperationException("Add is unsupported");
+        public int size() {
+            return size;
         }
 
         @Override
-        public boolean remove(Object o) {
-            throw new UnsupportedOperationException("Remove is unsupported");
+        public boolean contains(Object o) {
+            return containsKey(o);
         }
 
         @Override
-        public boolean addAll(Collection<? extends V> c) {
-            throw new UnsupportedOperationException("Add is unsupported");
+        public boolean remove(Object o) {
+            return removeEntry(o) != null;
         }
 
         @Override
         public void clear() {
             BucketAgnosticHashMap.this.clear();
         }
+    }
+
+    /**
+     * Класс коллекции значений, содержащихся в таблице
+     * Коллекция является представлением таблицы и удаление значения из нее приводит к удалению из таблицы
+     * пары с этим значением, а очистка - к удалению всех пар ключ-значение из таблицы.
+     * Значения не могут быть добавлены в коллекцию.
+     */
+    final class ValueCollection extends AbstractCollection<V> {
+
+        @Override
+        public Iterator<V> iterator() {
+            return new BucketIterator<V>() {
+                @Override
+                public V next() {
+                    return nextPair().getValue();
+                }
+            };
+        }
 
-        private void removeFromMap(Object o) {
-            super.remove(o);
+        @Override
+        public int size() {
+            return size;
         }
 
-        private void addFromMap(V value) {
-            super.add(value);
+        @Override
+        public boolean contains(Object o) {
+            return containsValue(o);
         }
 
-        private void clearFromMap() {
-            super.clear();
+        @Override
+        public void clear() {
+            BucketAgnosticHashMap.this.clear();
         }
     }
 }
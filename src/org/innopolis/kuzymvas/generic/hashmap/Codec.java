@@ -0,0 +1,34 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Интерфейс преобразования объектов в последовательность байт и обратно.
+ * Используется таблицами, хранящими ключи и значения вне кучи.
+ * Таблица сравнивает ключи по их байтовому представлению,
+ * поэтому кодек ключей должен превращать равные объекты в одинаковые последовательности байт,
+ * а восстановленный объект должен быть равен исходному и иметь тот же хэш код.
+ *
+ * @param <T> - тип преобразуемых объектов
+ */
+public interface Codec<T> {
+
+    /**
+     * Преобразует объект в последовательность байт
+     *
+     * @param value - преобразуемый объект, не null
+     * @return - байтовое представление объекта
+     */
+    byte[] encode(T value);
+
+    /**
+     * Восстанавливает объект из последовательности байт, записанной в буфер.
+     * Позиция и границы буфера не изменяются.
+     *
+     * @param source - буфер с байтовым представлением объекта
+     * @param offset - номер первого байта представления в буфере
+     * @param length - длина представления в байтах
+     * @return - восстановленный объект
+     */
+    T decode(ByteBuffer source, int offset, int length);
+}
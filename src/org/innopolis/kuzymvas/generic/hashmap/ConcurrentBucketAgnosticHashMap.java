@@ -0,0 +1,973 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.innopolis.kuzymvas.generic.datastructures.KeyValuePair;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Класс потокобезопасной хэш таблицы, независимой от реализации своих корзин.
+ * Корзины защищены набором блокировок ReentrantLock: корзина с номером i защищена блокировкой
+ * с номером i mod (число блокировок). Число корзин не меньше числа блокировок, и оба числа - степени двойки,
+ * поэтому при удвоении таблицы пары корзины остаются под той же блокировкой.
+ * Потоки, работающие с корзинами под разными блокировками, не мешают друг другу.
+ * Блокировки ReentrantLock, в отличие от synchronized, не закрепляют виртуальный поток за потоком платформы.
+ * Число пар хранится в распределенном счетчике LongAdder, чтобы добавления не конкурировали за одну переменную.
+ * Операции putIfAbsent, compute, computeIfAbsent, computeIfPresent, merge, replace и remove(key, value)
+ * атомарны по отношению к своему ключу. Переданные им функции выполняются под блокировкой корзины
+ * и не должны изменять таблицу.
+ * Если корзины допускают поиск во время изменения (Bucket.supportsConcurrentReads(), например LockFreeListBucket),
+ * get, getOrDefault и containsKey выполняются без блокировок и не ждут изменяющих потоков.
+ * Размер таблицы меняется без общей остановки, как в ConcurrentHashMap: пары переносятся в новый массив корзин
+ * единицами - группами корзин старого и нового массивов, защищенными одной блокировкой.
+ * Вместо перенесенной корзины в старый массив помещается метка ForwardingBucket, ведущая в новый массив,
+ * поэтому операции над перенесенными корзинами продолжаются в новом массиве, а над остальными - в старом.
+ * Поток, изменивший таблицу во время переноса, захватывает и переносит еще не захваченные единицы,
+ * так что перенос распределяется между всеми пишущими потоками.
+ * Итераторы представлений слабо согласованы: не выбрасывают ConcurrentModificationException,
+ * возвращают каждую пару не более одного раза и отражают изменения, сделанные после их создания, не обязательно.
+ * Как и ConcurrentHashMap, таблица не допускает null ключей и значений.
+ *
+ * @param <K> - тип ключа таблицы
+ * @param <V> - тип значения таблицы
+ */
+public class ConcurrentBucketAgnosticHashMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    private static final int DEFAULT_BUCKET_NUMBER = 1024; // Число корзин по умолчанию
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f; // Коэффициент заполнения по умолчанию
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 64; // Число блокировок по умолчанию
+    private static final int MAX_BUCKET_NUMBER = 1 << 30; // Верхняя граница числа корзин при росте таблицы
+    private static final int MAX_CONCURRENCY_LEVEL = 1 << 16; // Верхняя граница числа блокировок
+    private static final int TRANSFER_STRIDE = 16; // Число единиц переноса, захватываемых потоком за раз
+    private static final HashStrategy DEFAULT_HASH_STRATEGY = // Стратегия хэширования по умолчанию
+            new BasicHashStrategy(BasicHashStrategy.StrategyType.SPREAD);
+
+    private final BucketFactory<K, V> factory; // Фабрика, создающая корзины (в том числе при изменении размера)
+    private final HashStrategy hashStrategy; // Стратегия, вычисляющая хэш ключа для выбора корзины
+    private final float loadFactor; // Коэффициент заполнения
+    private final int minBucketNumber; // Число корзин, меньше которого таблица не сжимается
+    private final ReentrantLock[] locks; // Блокировки корзин. Число - степень двойки, не большая числа корзин
+    private final boolean lockFreeReads; // Выполняется ли поиск в корзинах без блокировок
+    private final LongAdder size = new LongAdder(); // Число пар ключ-значение в таблице
+    private final EntrySet entrySet; // Представления таблицы, не хранящие собственных копий пар
+    private final KeySet keySet;
+    private final ValueCollection valueCollection;
+    private final AtomicReference<Table<K, V>> table; // Текущий массив корзин и идущий перенос
+
+    /**
+     * Создает изменяющую размер хэш таблицу с 1024 корзинами, коэффициентом заполнения 0.75 и 64 блокировками
+     *
+     * @param factory - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
+     * @throws IllegalArgumentException - выбрасывается, если фабрика не задана.
+     */
+    public ConcurrentBucketAgnosticHashMap(BucketFactory<K, V> factory) throws IllegalArgumentException {
+        this(factory, DEFAULT_BUCKET_NUMBER, DEFAULT_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Создает изменяющую размер хэш таблицу с заданными начальным числом корзин, коэффициентом заполнения
+     * и числом блокировок. Числа корзин и блокировок округляются вверх до степени двойки,
+     * а число корзин, кроме того, - до числа блокировок.
+     *
+     * @param factory          - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
+     * @param bucketNumber     - начальное число корзин. Должно быть строго больше 0
+     * @param loadFactor       - коэффициент заполнения. Должен быть строго больше 0
+     * @param concurrencyLevel - число блокировок, то есть ожидаемое число одновременно изменяющих таблицу потоков.
+     *                         Должно быть строго больше 0
+     * @throws IllegalArgumentException - выбрасывается, если фабрика не задана,
+     *                                  либо число корзин, коэффициент заполнения или число блокировок некорректны.
+     */
+    public ConcurrentBucketAgnosticHashMap(BucketFactory<K, V> factory, int bucketNumber, float loadFactor,
+                                           int concurrencyLevel) throws IllegalArgumentException {
+        this(factory, DEFAULT_HASH_STRATEGY, bucketNumber, loadFactor, concurrencyLevel);
+    }
+
+    /**
+     * Создает изменяющую размер хэш таблицу с заданными стратегией хэширования, начальным числом корзин,
+     * коэффициентом заполнения и числом блокировок.
+     *
+     * @param factory          - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
+     * @param hashStrategy     - стратегия вычисления хэша ключей. Не может быть null
+     * @param bucketNumber     - начальное число корзин. Должно быть строго больше 0
+     * @param loadFactor       - коэффициент заполнения. Должен быть строго больше 0
+     * @param concurrencyLevel - число блокировок, то есть ожидаемое число одновременно изменяющих таблицу потоков.
+     *                         Должно быть строго больше 0
+     * @throws IllegalArgumentException - выбрасывается, если фабрика или стратегия не заданы,
+     *                                  либо число корзин, коэффициент заполнения или число блокировок некорректны.
+     */
+    public ConcurrentBucketAgnosticHashMap(BucketFactory<K, V> factory, HashStrategy hashStrategy, int bucketNumber,
+                                           float loadFactor, int concurrencyLevel) throws IllegalArgumentException {
+        if (factory == null) {
+            throw new IllegalArgumentException("Bucket factory can't be null");
+        }
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Hash strategy can't be null");
+        }
+        if (bucketNumber <= 0) {
+            throw new IllegalArgumentException("Hash map can't have 0 or less buckets");
+        }
+        if (!(loadFactor > 0.0f && !Float.isInfinite(loadFactor))) {
+            throw new IllegalArgumentException("Load factor must be a positive finite number");
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level must be positive");
+        }
+        this.factory = factory;
+        this.hashStrategy = hashStrategy;
+        this.loadFactor = loadFactor;
+        locks = new ReentrantLock[roundToPowerOfTwo(Math.min(concurrencyLevel, MAX_CONCURRENCY_LEVEL))];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        minBucketNumber = Math.max(roundToPowerOfTwo(bucketNumber), locks.length);
+        final List<Bucket<K, V>> initialBuckets = factory.createBuckets(minBucketNumber);
+        final AtomicReferenceArray<Bucket<K, V>> buckets = new AtomicReferenceArray<>(minBucketNumber);
+        for (int i = 0; i < minBucketNumber; i++) {
+            buckets.set(i, initialBuckets.get(i));
+        }
+        lockFreeReads = initialBuckets.get(0).supportsConcurrentReads();
+        table = new AtomicReference<>(new Table<>(buckets, null));
+        entrySet = new EntrySet();
+        keySet = new KeySet();
+        valueCollection = new ValueCollection();
+    }
+
+    /**
+     * Возвращает текущее число корзин в таблице. Во время переноса - число корзин старого массива.
+     *
+     * @return - число корзин
+     */
+    public int getBucketNumber() {
+        return table.get().buckets.length();
+    }
+
+    /**
+     * Проверяет, идет ли перенос пар в массив корзин нового размера
+     *
+     * @return - true, если перенос идет, false в противном случае
+     */
+    public boolean isResizing() {
+        return table.get().target != null;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, size.sum()));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size.sum() <= 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        final int hash = hash(key);
+        if (lockFreeReads) {
+            return getBucket(hash).containsKey(key);
+        }
+        final ReentrantLock lock = lock(hash);
+        try {
+            return getBucket(hash).getEntry(key) != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        if (value == null) {
+            throw new NullPointerException("Hash map doesn't support null values");
+        }
+        for (V ourValue : valueCollection) {
+            if (value.equals(ourValue)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        return getOrDefault(key, null);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        final int hash = hash(key);
+        if (lockFreeReads) {
+            return getBucket(hash).getOrDefault(key, defaultValue);
+        }
+        final ReentrantLock lock = lock(hash);
+        try {
+            return getBucket(hash).getOrDefault(key, defaultValue);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        checkValue(value);
+        final int hash = hash(key);
+        final Map.Entry<K, V> previous;
+        final ReentrantLock lock = lock(hash);
+        try {
+            previous = getBucket(hash).putAndGetPrevious(key, value);
+        } finally {
+            lock.unlock();
+        }
+        if (previous != null) {
+            return previous.getValue();
+        }
+        added();
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        final int hash = hash(key);
+        final Map.Entry<K, V> previous;
+        final ReentrantLock lock = lock(hash);
+        try {
+            previous = getBucket(hash).removeAndGetPrevious(key);
+        } finally {
+            lock.unlock();
+        }
+        if (previous == null) {
+            return null;
+        }
+        removed();
+        return previous.getValue();
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        for (Entry<? extends K, ? extends V> entry : m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Удаляет все пары таблицы, по очереди захватывая блокировки корзин.
+     * Пары, добавленные во время очистки, могут остаться в таблице.
+     */
+    @Override
+    public void clear() {
+        for (int stripe = 0; stripe < locks.length; stripe++) {
+            locks[stripe].lock();
+            try {
+                final AtomicReferenceArray<Bucket<K, V>> buckets = table.get().buckets;
+                for (int i = stripe; i < buckets.length(); i += locks.length) {
+                    forEachMovedBucket(buckets, i, bucket -> {
+                        size.add(-bucket.getKeyValuePairs().size());
+                        bucket.clear();
+                    });
+                }
+            } finally {
+                locks[stripe].unlock();
+            }
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return keySet;
+    }
+
+    @Override
+    public Collection<V> values() {
+        return valueCollection;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return entrySet;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        checkValue(value);
+        final int hash = hash(key);
+        final ReentrantLock lock = lock(hash);
+        try {
+            final Bucket<K, V> bucket = getBucket(hash);
+            final Map.Entry<K, V> entry = bucket.getEntry(key);
+            if (entry != null) {
+                return entry.getValue();
+            }
+            bucket.put(key, value);
+        } finally {
+            lock.unlock();
+        }
+        added();
+        return null;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (value == null) {
+            return false;
+        }
+        final int hash = hash(key);
+        final ReentrantLock lock = lock(hash);
+        try {
+            final Bucket<K, V> bucket = getBucket(hash);
+            final Map.Entry<K, V> entry = bucket.getEntry(key);
+            if (entry == null || !value.equals(entry.getValue())) {
+                return false;
+            }
+            bucket.removeAndGetPrevious(key);
+        } finally {
+            lock.unlock();
+        }
+        removed();
+        return true;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        checkValue(oldValue);
+        checkValue(newValue);
+        final int hash = hash(key);
+        final ReentrantLock lock = lock(hash);
+        try {
+            final Map.Entry<K, V> entry = getBucket(hash).getEntry(key);
+            if (entry == null || !oldValue.equals(entry.getValue())) {
+                return false;
+            }
+            entry.setValue(newValue);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        checkValue(value);
+        final int hash = hash(key);
+        final ReentrantLock lock = lock(hash);
+        try {
+            final Map.Entry<K, V> previous = getBucket(hash).replaceAndGetPrevious(key, value);
+            return (previous == null) ? null : previous.getValue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        if (mappingFunction == null) {
+            throw new NullPointerException("Mapping function can't be null");
+        }
+        return compute(key, (k, oldValue) -> (oldValue != null) ? oldValue : mappingFunction.apply(k));
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (remappingFunction == null) {
+            throw new NullPointerException("Remapping function can't be null");
+        }
+        return compute(key, (k, oldValue) -> (oldValue == null) ? null : remappingFunction.apply(k, oldValue));
+    }
+
+    /**
+     * Атомарно вычисляет новое значение ключа по его текущему значению (null, если ключа нет).
+     * Функция выполняется под блокировкой корзины ключа и не должна изменять таблицу.
+     *
+     * @param key               - ключ
+     * @param remappingFunction - функция, вычисляющая новое значение. Результат null удаляет ключ из таблицы
+     * @return - новое значение ключа, либо null, если ключа в таблице нет
+     */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (remappingFunction == null) {
+            throw new NullPointerException("Remapping function can't be null");
+        }
+        final int hash = hash(key);
+        final int sizeChange;
+        final V newValue;
+        final ReentrantLock lock = lock(hash);
+        try {
+            final Bucket<K, V> bucket = getBucket(hash);
+            final Map.Entry<K, V> entry = bucket.getEntry(key);
+            final V oldValue = (entry == null) ? null : entry.getValue();
+            newValue = remappingFunction.apply(key, oldValue);
+            if (newValue == null) {
+                sizeChange = (entry == null) ? 0 : -1;
+                if (entry != null) {
+                    bucket.removeAndGetPrevious(key);
+                }
+            } else if (entry == null) {
+                sizeChange = 1;
+                bucket.put(key, newValue);
+            } else {
+                sizeChange = 0;
+                entry.setValue(newValue);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (sizeChange > 0) {
+            added();
+        } else if (sizeChange < 0) {
+            removed();
+        }
+        return newValue;
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        checkValue(value);
+        if (remappingFunction == null) {
+            throw new NullPointerException("Remapping function can't be null");
+        }
+        return compute(key, (k, oldValue) -> (oldValue == null) ? value : remappingFunction.apply(oldValue, value));
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null) {
+            throw new NullPointerException("Action can't be null");
+        }
+        for (Entry<K, V> entry : entrySet) {
+            action.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Вычисляет хэш ключа
+     *
+     * @param key - ключ
+     * @return - хэш ключа
+     * @throws NullPointerException - выбрасывается, если ключ null.
+     */
+    private int hash(Object key) {
+        if (key == null) {
+            throw new NullPointerException("Hash map doesn't support null keys");
+        }
+        return hashStrategy.hash(key);
+    }
+
+    private static void checkValue(Object value) {
+        if (value == null) {
+            throw new NullPointerException("Hash map doesn't support null values");
+        }
+    }
+
+    /**
+     * Захватывает блокировку корзины, соответствующей хэшу
+     *
+     * @param hash - хэш ключа
+     * @return - захваченная блокировка
+     */
+    private ReentrantLock lock(int hash) {
+        final ReentrantLock lock = locks[hash & (locks.length - 1)];
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Возвращает корзину, соответствующую хэшу, переходя по меткам перенесенных корзин в новые массивы.
+     * Изменяющие операции вызывают метод под блокировкой этой корзины, поэтому она не может быть перенесена
+     * во время работы с ней. Поиск без блокировок может попасть в только что перенесенную корзину:
+     * она больше не изменяется и содержит пары на момент переноса.
+     *
+     * @param hash - хэш ключа
+     * @return - корзина ключа
+     */
+    @SuppressWarnings("unchecked")
+    private Bucket<K, V> getBucket(int hash) {
+        AtomicReferenceArray<Bucket<K, V>> buckets = table.get().buckets;
+        Bucket<K, V> bucket = buckets.get(hash & (buckets.length() - 1));
+        while (bucket instanceof ForwardingBucket) {
+            buckets = ((ForwardingBucket<K, V>) bucket).target;
+            bucket = buckets.get(hash & (buckets.length() - 1));
+        }
+        return bucket;
+    }
+
+    /**
+     * Передает обработчику корзину массива, а если она перенесена - корзины нового массива, в которые
+     * попали ее пары. Вызывается под блокировкой корзины.
+     *
+     * @param buckets - массив корзин
+     * @param index   - номер корзины в массиве
+     * @param action  - обработчик корзин
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> void forEachMovedBucket(AtomicReferenceArray<Bucket<K, V>> buckets, int index,
+                                                  Consumer<Bucket<K, V>> action) {
+        final Bucket<K, V> bucket = buckets.get(index);
+        if (!(bucket instanceof ForwardingBucket)) {
+            action.accept(bucket);
+            return;
+        }
+        final AtomicReferenceArray<Bucket<K, V>> target = ((ForwardingBucket<K, V>) bucket).target;
+        final int step = Math.min(buckets.length(), target.length());
+        for (int i = index & (step - 1); i < target.length(); i += step) {
+            forEachMovedBucket(target, i, action);
+        }
+    }
+
+    /**
+     * Учитывает добавление пары и при необходимости начинает перенос или помогает идущему переносу.
+     * Вызывается вне блокировок.
+     */
+    private void added() {
+        size.increment();
+        resizeIfNeeded();
+    }
+
+    /**
+     * Учитывает удаление пары и при необходимости начинает перенос или помогает идущему переносу.
+     * Вызывается вне блокировок.
+     */
+    private void removed() {
+        size.decrement();
+        resizeIfNeeded();
+    }
+
+    /**
+     * Помогает идущему переносу, либо начинает перенос в массив вдвое большего или меньшего размера,
+     * если число пар пересекло порог. Перенос начинает поток, успешно опубликовавший новый массив.
+     */
+    private void resizeIfNeeded() {
+        final Table<K, V> current = table.get();
+        if (current.target != null) {
+            helpTransfer(current);
+            return;
+        }
+        final int bucketNumber = current.buckets.length();
+        final long currentSize = size.sum();
+        final int newBucketNumber;
+        if (currentSize > growThreshold(bucketNumber)) {
+            newBucketNumber = bucketNumber * 2;
+        } else if (currentSize < shrinkThreshold(bucketNumber)) {
+            newBucketNumber = bucketNumber / 2;
+        } else {
+            return;
+        }
+        final Table<K, V> resizing = new Table<>(current.buckets, new AtomicReferenceArray<>(newBucketNumber));
+        if (table.compareAndSet(current, resizing)) {
+            helpTransfer(resizing);
+        }
+    }
+
+    /**
+     * Захватывает и переносит группы единиц переноса, пока незахваченные единицы не закончатся.
+     * Поток, завершивший последнюю единицу, делает новый массив текущим.
+     *
+     * @param resizing - массив корзин, из которого идет перенос
+     */
+    private void helpTransfer(Table<K, V> resizing) {
+        final int unitCount = resizing.getUnitCount();
+        while (true) {
+            final int start = resizing.nextUnit.getAndAdd(TRANSFER_STRIDE);
+            if (start >= unitCount) {
+                return;
+            }
+            final int end = Math.min(unitCount, start + TRANSFER_STRIDE);
+            for (int unit = start; unit < end; unit++) {
+                transferUnit(resizing, unit);
+            }
+            if (resizing.doneUnits.addAndGet(end - start) == unitCount) {
+                table.compareAndSet(resizing, new Table<>(resizing.target, null));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Переносит единицу переноса: корзины старого и нового массивов, номера которых совпадают с номером единицы
+     * по модулю меньшего из размеров массивов. Все они защищены одной блокировкой.
+     * Сначала создаются и заполняются корзины нового массива, и только затем старые корзины заменяются меткой,
+     * поэтому по метке всегда доступны все перенесенные пары. Старые корзины не очищаются.
+     *
+     * @param resizing - массив корзин, из которого идет перенос
+     * @param unit     - номер единицы переноса
+     */
+    private void transferUnit(Table<K, V> resizing, int unit) {
+        final AtomicReferenceArray<Bucket<K, V>> source = resizing.buckets;
+        final AtomicReferenceArray<Bucket<K, V>> target = resizing.target;
+        final int step = resizing.getUnitCount();
+        final ReentrantLock lock = locks[unit & (locks.length - 1)];
+        lock.lock();
+        try {
+            for (int i = unit; i < target.length(); i += step) {
+                target.set(i, factory.createBucket());
+            }
+            for (int i = unit; i < source.length(); i += step) {
+                for (KeyValuePair<K, V> pair : source.get(i).getKeyValuePairs()) {
+                    target.get(hashStrategy.hash(pair.getKey()) & (target.length() - 1))
+                          .put(pair.getKey(), pair.getValue());
+                }
+                source.set(i, resizing.forwarding);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Вычисляет число пар, при превышении которого таблица растет
+     *
+     * @param bucketNumber - число корзин таблицы
+     * @return - порог роста
+     */
+    private int growThreshold(int bucketNumber) {
+        return (bucketNumber >= MAX_BUCKET_NUMBER) ? Integer.MAX_VALUE :
+                (int) Math.min(Integer.MAX_VALUE, (long) Math.ceil(bucketNumber * (double) loadFactor));
+    }
+
+    /**
+     * Вычисляет число пар, при падении ниже которого таблица сжимается
+     *
+     * @param bucketNumber - число корзин таблицы
+     * @return - порог сжатия
+     */
+    private int shrinkThreshold(int bucketNumber) {
+        return (bucketNumber <= minBucketNumber) ? Integer.MIN_VALUE : (int) (bucketNumber * (double) loadFactor / 4);
+    }
+
+    /**
+     * Округляет положительное число вверх до ближайшей степени двойки, не превышающей 2^30
+     *
+     * @param number - число
+     * @return - округленное число
+     */
+    private static int roundToPowerOfTwo(int number) {
+        if (number >= MAX_BUCKET_NUMBER) {
+            return MAX_BUCKET_NUMBER;
+        }
+        return (number == 1) ? 1 : Integer.highestOneBit(number - 1) << 1;
+    }
+
+    /**
+     * Массив корзин таблицы и, если идет перенос, массив, в который переносятся пары, с состоянием переноса
+     *
+     * @param <K> - тип ключа таблицы
+     * @param <V> - тип значения таблицы
+     */
+    private static final class Table<K, V> {
+
+        private final AtomicReferenceArray<Bucket<K, V>> buckets; // Массив корзин
+        private final AtomicReferenceArray<Bucket<K, V>> target; // Новый массив. null, если перенос не идет
+        private final ForwardingBucket<K, V> forwarding; // Метка перенесенной корзины
+        private final AtomicInteger nextUnit = new AtomicInteger(); // Первая единица, еще не захваченная потоками
+        private final AtomicInteger doneUnits = new AtomicInteger(); // Число перенесенных единиц
+
+        Table(AtomicReferenceArray<Bucket<K, V>> buckets, AtomicReferenceArray<Bucket<K, V>> target) {
+            this.buckets = buckets;
+            this.target = target;
+            this.forwarding = (target == null) ? null : new ForwardingBucket<>(target);
+        }
+
+        /**
+         * Возвращает число единиц переноса - меньший из размеров старого и нового массивов
+         *
+         * @return - число единиц переноса
+         */
+        int getUnitCount() {
+            return Math.min(buckets.length(), target.length());
+        }
+    }
+
+    /**
+     * Метка перенесенной корзины, ведущая в новый массив корзин. Пары в ней не хранятся,
+     * поэтому операции над ней не поддерживаются: таблица переходит по метке в новый массив.
+     *
+     * @param <K> - тип ключа таблицы
+     * @param <V> - тип значения таблицы
+     */
+    private static final class ForwardingBucket<K, V> implements Bucket<K, V> {
+
+        private final AtomicReferenceArray<Bucket<K, V>> target; // Массив, в который перенесены пары
+
+        ForwardingBucket(AtomicReferenceArray<Bucket<K, V>> target) {
+            this.target = target;
+        }
+
+        @Override
+        public boolean put(K key, V value) {
+            throw moved();
+        }
+
+        @Override
+        public Map.Entry<K, V> putAndGetPrevious(K key, V value) {
+            throw moved();
+        }
+
+        @Override
+        public void replace(K key, V value) {
+            throw moved();
+        }
+
+        @Override
+        public Map.Entry<K, V> replaceAndGetPrevious(K key, V value) {
+            throw moved();
+        }
+
+        @Override
+        public V get(Object key) {
+            throw moved();
+        }
+
+        @Override
+        public void remove(Object key) {
+            throw moved();
+        }
+
+        @Override
+        public Map.Entry<K, V> removeAndGetPrevious(Object key) {
+            throw moved();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            throw moved();
+        }
+
+        @Override
+        public void describeBucket(StringBuilder strB) {
+            throw moved();
+        }
+
+        @Override
+        public List<KeyValuePair<K, V>> getKeyValuePairs() {
+            throw moved();
+        }
+
+        @Override
+        public int[] getKeyValuePairsHashes() {
+            throw moved();
+        }
+
+        @Override
+        public Map.Entry<K, V> getEntry(Object key) {
+            throw moved();
+        }
+
+        @Override
+        public void clear() {
+            throw moved();
+        }
+
+        private static IllegalStateException moved() {
+            return new IllegalStateException("Bucket was moved to resized table");
+        }
+    }
+
+    /**
+     * Пара, возвращаемая итераторами. Изменение ее значения записывается в таблицу вызовом put().
+     */
+    final class WriteThroughEntry extends AbstractMap.SimpleEntry<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        WriteThroughEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            checkValue(value);
+            final V previous = super.setValue(value);
+            put(getKey(), value);
+            return previous;
+        }
+    }
+
+    /**
+     * Слабо согласованный итератор по парам таблицы. Обходит массив корзин, актуальный на момент создания,
+     * копируя пары очередной корзины под ее блокировкой. Для перенесенной корзины копируются
+     * ее пары из корзин нового массива.
+     * Удаление через итератор удаляет пару из таблицы.
+     *
+     * @param <T> - тип возвращаемых итератором элементов
+     */
+    abstract class BucketIterator<T> implements Iterator<T> {
+
+        private final AtomicReferenceArray<Bucket<K, V>> iteratedBuckets = table.get().buckets;
+        private int bucketIndex; // Номер следующей корзины для обхода
+        private final List<WriteThroughEntry> bucketEntries = new ArrayList<>(); // Копии пар текущей корзины
+        private int entryIndex; // Номер следующей пары в текущей корзине
+        private WriteThroughEntry lastReturned; // Последняя возвращенная пара, null - если ее нельзя удалить
+
+        @Override
+        public boolean hasNext() {
+            while (entryIndex >= bucketEntries.size()) {
+                if (bucketIndex >= iteratedBuckets.length()) {
+                    return false;
+                }
+                bucketEntries.clear();
+                entryIndex = 0;
+                final int sourceIndex = bucketIndex;
+                final int sourceMask = iteratedBuckets.length() - 1;
+                final ReentrantLock lock = locks[bucketIndex & (locks.length - 1)];
+                lock.lock();
+                try {
+                    // Корзина нового массива может содержать пары нескольких корзин обходимого массива
+                    forEachMovedBucket(iteratedBuckets, bucketIndex, bucket -> {
+                        for (KeyValuePair<K, V> pair : bucket.getKeyValuePairs()) {
+                            if ((hashStrategy.hash(pair.getKey()) & sourceMask) == sourceIndex) {
+                                bucketEntries.add(new WriteThroughEntry(pair.getKey(), pair.getValue()));
+                            }
+                        }
+                    });
+                } finally {
+                    lock.unlock();
+                }
+                bucketIndex++;
+            }
+            return true;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException("Nothing to remove");
+            }
+            ConcurrentBucketAgnosticHashMap.this.remove(lastReturned.getKey());
+            lastReturned = null;
+        }
+
+        /**
+         * Возвращает следующую пару таблицы
+         *
+         * @return - следующая пара таблицы
+         * @throws NoSuchElementException - выбрасывается, если пары закончились
+         */
+        WriteThroughEntry nextEntry() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more pairs in hash map");
+            }
+            lastReturned = bucketEntries.get(entryIndex++);
+            return lastReturned;
+        }
+    }
+
+    /**
+     * Класс множества пар ключ-значения, содержащихся в таблице
+     * Множество является представлением таблицы и удаление пары из него приводит к удалению пары из таблицы
+     * Пары не могут быть добавлены в множество.
+     */
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new BucketIterator<Entry<K, V>>() {
+                @Override
+                public Entry<K, V> next() {
+                    return nextEntry();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentBucketAgnosticHashMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            final V value = (entry.getKey() == null) ? null : get(entry.getKey());
+            return value != null && value.equals(entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return entry.getKey() != null && ConcurrentBucketAgnosticHashMap.this.remove(entry.getKey(),
+                                                                                          entry.getValue());
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentBucketAgnosticHashMap.this.clear();
+        }
+    }
+
+    /**
+     * Класс множества ключей, содержащихся в таблице
+     * Множество является представлением таблицы и удаление ключа из него приводит к удалению пары с этим ключом из таблицы
+     * Ключи не могут быть добавлены в множество.
+     */
+    final class KeySet extends AbstractSet<K> {
+
+        @Override
+        public Iterator<K> iterator() {
+            return new BucketIterator<K>() {
+                @Override
+                public K next() {
+                    return nextEntry().getKey();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentBucketAgnosticHashMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return ConcurrentBucketAgnosticHashMap.this.remove(o) != null;
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentBucketAgnosticHashMap.this.clear();
+        }
+    }
+
+    /**
+     * Класс коллекции значений, содержащихся в таблице
+     * Коллекция является представлением таблицы и ее очистка приведет к удалению всех пар ключ-значение из таблицы
+     * Значения не могут быть добавлены в коллекцию. Удаление через итератор удаляет пару из таблицы.
+     */
+    final class ValueCollection extends AbstractCollection<V> {
+
+        @Override
+        public Iterator<V> iterator() {
+            return new BucketIterator<V>() {
+                @Override
+                public V next() {
+                    return nextEntry().getValue();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentBucketAgnosticHashMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentBucketAgnosticHashMap.this.clear();
+        }
+    }
+}
@@ -0,0 +1,585 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.innopolis.kuzymvas.generic.datastructures.KeyValuePair;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Класс потокобезопасной хэш таблицы с копированием при записи, независимой от реализации своих корзин.
+ * Предназначена для редко изменяемых и часто читаемых данных (таблиц маршрутизации, настроек).
+ * Опубликованный массив корзин и сами корзины никогда не изменяются: изменение копирует массив ссылок
+ * на корзины и только затронутые корзины, после чего публикует новый массив одной записью volatile ссылки.
+ * Поиск выполняет одно volatile чтение ссылки на массив и обычные чтения корзины без блокировок,
+ * поэтому читающие потоки не ждут друг друга и пишущие потоки.
+ * Изменения выполняются по одному под блокировкой. Метод update применяет произвольное число изменений
+ * одной публикацией: каждая корзина копируется не больше одного раза, а читающие потоки видят
+ * либо все изменения пакета, либо ни одного. Составные операции (putIfAbsent, compute, merge и другие)
+ * выполняются как пакет из одного изменения и потому атомарны.
+ * Итераторы представлений обходят массив корзин, опубликованный на момент их создания (снимок таблицы),
+ * и не выбрасывают ConcurrentModificationException.
+ * Таблица допускает null ключи и значения.
+ *
+ * @param <K> - тип ключа таблицы
+ * @param <V> - тип значения таблицы
+ */
+public class CopyOnWriteBucketAgnosticHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int DEFAULT_BUCKET_NUMBER = 16; // Число корзин по умолчанию
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f; // Коэффициент заполнения по умолчанию
+    private static final int MAX_BUCKET_NUMBER = 1 << 30; // Верхняя граница числа корзин при росте таблицы
+    private static final HashStrategy DEFAULT_HASH_STRATEGY = // Стратегия хэширования по умолчанию
+            new BasicHashStrategy(BasicHashStrategy.StrategyType.SPREAD);
+
+    private final BucketFactory<K, V> factory; // Фабрика, создающая корзины (в том числе копии корзин)
+    private final HashStrategy hashStrategy; // Стратегия, вычисляющая хэш ключа для выбора корзины
+    private final float loadFactor; // Коэффициент заполнения
+    private final int minBucketNumber; // Число корзин, меньше которого таблица не сжимается
+    private final ReentrantLock writeLock = new ReentrantLock(); // Блокировка, упорядочивающая изменения
+    private final EntrySet entrySet = new EntrySet(); // Представление таблицы, не хранящее собственных копий пар
+    private volatile Table<K, V> table; // Опубликованный массив корзин
+
+    /**
+     * Создает изменяющую размер хэш таблицу с 16 корзинами и коэффициентом заполнения 0.75
+     *
+     * @param factory - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
+     * @throws IllegalArgumentException - выбрасывается, если фабрика не задана.
+     */
+    public CopyOnWriteBucketAgnosticHashMap(BucketFactory<K, V> factory) throws IllegalArgumentException {
+        this(factory, DEFAULT_BUCKET_NUMBER, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Создает изменяющую размер хэш таблицу с заданными начальным числом корзин и коэффициентом заполнения.
+     * Число корзин округляется вверх до степени двойки.
+     *
+     * @param factory      - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
+     * @param bucketNumber - начальное число корзин. Должно быть строго больше 0
+     * @param loadFactor   - коэффициент заполнения. Должен быть строго больше 0
+     * @throws IllegalArgumentException - выбрасывается, если фабрика не задана,
+     *                                  либо число корзин или коэффициент заполнения некорректны.
+     */
+    public CopyOnWriteBucketAgnosticHashMap(BucketFactory<K, V> factory, int bucketNumber, float loadFactor)
+            throws IllegalArgumentException {
+        this(factory, DEFAULT_HASH_STRATEGY, bucketNumber, loadFactor);
+    }
+
+    /**
+     * Создает изменяющую размер хэш таблицу с заданными стратегией хэширования, начальным числом корзин
+     * и коэффициентом заполнения.
+     *
+     * @param factory      - фабрика, которая снабдит таблицу нужным типом корзин. Не может быть null
+     * @param hashStrategy - стратегия вычисления хэша ключей. Не может быть null
+     * @param bucketNumber - начальное число корзин. Должно быть строго больше 0
+     * @param loadFactor   - коэффициент заполнения. Должен быть строго больше 0
+     * @throws IllegalArgumentException - выбрасывается, если фабрика или стратегия не заданы,
+     *                                  либо число корзин или коэффициент заполнения некорректны.
+     */
+    public CopyOnWriteBucketAgnosticHashMap(BucketFactory<K, V> factory, HashStrategy hashStrategy, int bucketNumber,
+                                            float loadFactor) throws IllegalArgumentException {
+        if (factory == null) {
+            throw new IllegalArgumentException("Bucket factory can't be null");
+        }
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Hash strategy can't be null");
+        }
+        if (bucketNumber <= 0) {
+            throw new IllegalArgumentException("Hash map can't have 0 or less buckets");
+        }
+        if (!(loadFactor > 0.0f && !Float.isInfinite(loadFactor))) {
+            throw new IllegalArgumentException("Load factor must be a positive finite number");
+        }
+        this.factory = factory;
+        this.hashStrategy = hashStrategy;
+        this.loadFactor = loadFactor;
+        minBucketNumber = roundToPowerOfTwo(bucketNumber);
+        table = new Table<>(createBuckets(minBucketNumber), 0);
+    }
+
+    /**
+     * Возвращает число корзин в опубликованном массиве
+     *
+     * @return - число корзин
+     */
+    public int getBucketNumber() {
+        return table.buckets.length;
+    }
+
+    /**
+     * Применяет пакет изменений одной публикацией. Переданная функция получает изменяемое представление
+     * таблицы, в котором видны сделанные ей изменения, и выполняется под блокировкой изменений.
+     * Читающие потоки видят либо все изменения пакета, либо ни одного. Если функция выбрасывает исключение,
+     * изменения пакета отбрасываются. Представление нельзя использовать после завершения функции.
+     *
+     * @param changes - функция, изменяющая представление таблицы. Не должна изменять саму таблицу
+     */
+    public void update(Consumer<? super Map<K, V>> changes) {
+        write(batch -> {
+            changes.accept(batch);
+            return null;
+        });
+    }
+
+    @Override
+    public int size() {
+        return table.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return table.size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getBucket(table.buckets, key).containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        return getBucket(table.buckets, key).getOrDefault(key, null);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        return getBucket(table.buckets, key).getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return write(batch -> batch.put(key, value));
+    }
+
+    @Override
+    public V remove(Object key) {
+        return write(batch -> batch.remove(key));
+    }
+
+    /**
+     * Добавляет все пары заданной таблицы одной публикацией
+     *
+     * @param m - добавляемые пары
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        update(batch -> batch.putAll(m));
+    }
+
+    @Override
+    public void clear() {
+        update(Map::clear);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return write(batch -> batch.putIfAbsent(key, value));
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return write(batch -> batch.remove(key, value));
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        return write(batch -> batch.replace(key, oldValue, newValue));
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        return write(batch -> batch.replace(key, value));
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        return write(batch -> batch.computeIfAbsent(key, mappingFunction));
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return write(batch -> batch.computeIfPresent(key, remappingFunction));
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return write(batch -> batch.compute(key, remappingFunction));
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return write(batch -> batch.merge(key, value, remappingFunction));
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        update(batch -> batch.replaceAll(function));
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return entrySet;
+    }
+
+    /**
+     * Выполняет пакет изменений под блокировкой изменений и публикует результат, если пакет что-то изменил
+     *
+     * @param change - функция, изменяющая пакет
+     * @param <R>    - тип результата функции
+     * @return - результат функции
+     */
+    private <R> R write(Function<Batch, R> change) {
+        writeLock.lock();
+        try {
+            final Batch batch = new Batch(table);
+            final R result;
+            try {
+                result = change.apply(batch);
+            } finally {
+                batch.active = false;
+            }
+            if (batch.copied != null) {
+                table = batch.toTable();
+            }
+            return result;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает корзину ключа в заданном массиве корзин
+     *
+     * @param buckets - массив корзин
+     * @param key     - ключ
+     * @return - корзина ключа
+     */
+    private Bucket<K, V> getBucket(Bucket<K, V>[] buckets, Object key) {
+        return buckets[hashStrategy.hash(key) & (buckets.length - 1)];
+    }
+
+    /**
+     * Копирует пары корзины в новую корзину
+     *
+     * @param bucket - копируемая корзина
+     * @return - копия корзины
+     */
+    private Bucket<K, V> copyBucket(Bucket<K, V> bucket) {
+        final Bucket<K, V> copy = factory.createBucket();
+        for (KeyValuePair<K, V> pair : bucket.getKeyValuePairs()) {
+            copy.put(pair.getKey(), pair.getValue());
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Bucket<K, V>[] createBuckets(int bucketNumber) {
+        final Bucket<K, V>[] buckets = (Bucket<K, V>[]) new Bucket<?, ?>[bucketNumber];
+        for (int i = 0; i < bucketNumber; i++) {
+            buckets[i] = factory.createBucket();
+        }
+        return buckets;
+    }
+
+    /**
+     * Вычисляет число корзин, подходящее для заданного числа пар: таблица удваивается, пока число пар
+     * превышает порог заполнения, и сжимается вдвое, пока оно меньше четверти порога
+     *
+     * @param bucketNumber - текущее число корзин
+     * @param size         - число пар
+     * @return - новое число корзин
+     */
+    private int getResizedBucketNumber(int bucketNumber, int size) {
+        while (size > bucketNumber * (double) loadFactor && bucketNumber < MAX_BUCKET_NUMBER) {
+            bucketNumber *= 2;
+        }
+        while (bucketNumber > minBucketNumber && size < bucketNumber * (double) loadFactor / 4) {
+            bucketNumber /= 2;
+        }
+        return bucketNumber;
+    }
+
+    /**
+     * Округляет положительное число вверх до ближайшей степени двойки, не превышающей 2^30
+     *
+     * @param number - число
+     * @return - округленное число
+     */
+    private static int roundToPowerOfTwo(int number) {
+        if (number >= MAX_BUCKET_NUMBER) {
+            return MAX_BUCKET_NUMBER;
+        }
+        return (number == 1) ? 1 : Integer.highestOneBit(number - 1) << 1;
+    }
+
+    /**
+     * Опубликованное состояние таблицы. Ни массив, ни корзины после публикации не изменяются.
+     *
+     * @param <K> - тип ключа таблицы
+     * @param <V> - тип значения таблицы
+     */
+    private static final class Table<K, V> {
+
+        private final Bucket<K, V>[] buckets; // Массив корзин
+        private final int size; // Число пар
+
+        Table(Bucket<K, V>[] buckets, int size) {
+            this.buckets = buckets;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Изменяемое представление таблицы для пакета изменений. При первом изменении копирует массив ссылок
+     * на корзины, а при первом изменении каждой корзины - саму корзину. Остальные корзины разделяются
+     * с опубликованным массивом.
+     */
+    private final class Batch extends AbstractMap<K, V> {
+
+        private Bucket<K, V>[] buckets; // Опубликованный массив корзин, а после первого изменения - его копия
+        private boolean[] copied; // Скопирована ли корзина. null, пока массив не скопирован
+        private int size; // Число пар с учетом изменений пакета
+        private boolean active = true; // Можно ли использовать пакет
+
+        Batch(Table<K, V> published) {
+            buckets = published.buckets;
+            size = published.size;
+        }
+
+        @Override
+        public int size() {
+            checkActive();
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            checkActive();
+            return getBucket(buckets, key).containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            checkActive();
+            return getBucket(buckets, key).getOrDefault(key, null);
+        }
+
+        @Override
+        public V put(K key, V value) {
+            checkActive();
+            final Map.Entry<K, V> previous = getWritableBucket(key).putAndGetPrevious(key, value);
+            if (previous == null) {
+                size++;
+                return null;
+            }
+            return previous.getValue();
+        }
+
+        @Override
+        public V remove(Object key) {
+            checkActive();
+            if (!getBucket(buckets, key).containsKey(key)) {
+                return null; // Отсутствующий ключ не требует копирования корзины
+            }
+            size--;
+            return getWritableBucket(key).removeAndGetPrevious(key).getValue();
+        }
+
+        @Override
+        public void clear() {
+            checkActive();
+            buckets = createBuckets(minBucketNumber);
+            copied = new boolean[buckets.length];
+            Arrays.fill(copied, true);
+            size = 0;
+        }
+
+        /**
+         * Возвращает представление пар пакета. Его итератор обходит массив корзин пакета на момент создания
+         * и может не отражать изменений, сделанных во время обхода.
+         *
+         * @return - множество пар пакета
+         */
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            checkActive();
+            return new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    checkActive();
+                    return new BucketIterator(buckets, Batch.this);
+                }
+
+                @Override
+                public int size() {
+                    return Batch.this.size();
+                }
+            };
+        }
+
+        /**
+         * Возвращает корзину ключа, пригодную для изменения, копируя массив корзин и саму корзину,
+         * если они еще разделяются с опубликованным массивом
+         *
+         * @param key - ключ
+         * @return - корзина ключа
+         */
+        private Bucket<K, V> getWritableBucket(Object key) {
+            if (copied == null) {
+                buckets = buckets.clone();
+                copied = new boolean[buckets.length];
+            }
+            final int index = hashStrategy.hash(key) & (buckets.length - 1);
+            if (!copied[index]) {
+                buckets[index] = copyBucket(buckets[index]);
+                copied[index] = true;
+            }
+            return buckets[index];
+        }
+
+        /**
+         * Создает публикуемое состояние таблицы, при необходимости перераспределяя пары по массиву
+         * нового размера
+         *
+         * @return - новое состояние таблицы
+         */
+        private Table<K, V> toTable() {
+            final int bucketNumber = getResizedBucketNumber(buckets.length, size);
+            if (bucketNumber == buckets.length) {
+                return new Table<>(buckets, size);
+            }
+            final Bucket<K, V>[] resized = createBuckets(bucketNumber);
+            for (Bucket<K, V> bucket : buckets) {
+                for (KeyValuePair<K, V> pair : bucket.getKeyValuePairs()) {
+                    getBucket(resized, pair.getKey()).put(pair.getKey(), pair.getValue());
+                }
+            }
+            return new Table<>(resized, size);
+        }
+
+        private void checkActive() {
+            if (!active) {
+                throw new IllegalStateException("Batch can't be used after update");
+            }
+        }
+    }
+
+    /**
+     * Пара, возвращаемая итераторами. Замена значения записывается в таблицу или пакет, которому принадлежит пара.
+     */
+    private final class WriteThroughEntry extends AbstractMap.SimpleEntry<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Map<K, V> owner; // Таблица или пакет, в которые записывается новое значение
+
+        WriteThroughEntry(Map<K, V> owner, K key, V value) {
+            super(key, value);
+            this.owner = owner;
+        }
+
+        @Override
+        public V setValue(V value) {
+            final V previous = super.setValue(value);
+            owner.put(getKey(), value);
+            return previous;
+        }
+    }
+
+    /**
+     * Итератор по парам заданного массива корзин. Копирует пары очередной корзины при переходе к ней.
+     * Удаление пары и замена ее значения выполняются в таблице или пакете, которому принадлежит массив.
+     */
+    private final class BucketIterator implements Iterator<Entry<K, V>> {
+
+        private final Bucket<K, V>[] iteratedBuckets; // Обходимый массив корзин
+        private final Map<K, V> owner; // Таблица или пакет, которому принадлежит массив
+        private List<KeyValuePair<K, V>> bucketPairs = Collections.emptyList(); // Пары текущей корзины
+        private int bucketIndex; // Номер следующей корзины
+        private int pairIndex; // Номер следующей пары в текущей корзине
+        private Entry<K, V> lastReturned; // Последняя возвращенная пара, либо null
+
+        BucketIterator(Bucket<K, V>[] iteratedBuckets, Map<K, V> owner) {
+            this.iteratedBuckets = iteratedBuckets;
+            this.owner = owner;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (pairIndex >= bucketPairs.size()) {
+                if (bucketIndex >= iteratedBuckets.length) {
+                    return false;
+                }
+                // Пары копируются: корзины пакета могут измениться во время обхода
+                bucketPairs = new ArrayList<>();
+                for (KeyValuePair<K, V> pair : iteratedBuckets[bucketIndex++].getKeyValuePairs()) {
+                    bucketPairs.add(new KeyValuePair<>(pair.getKey(), pair.getValue()));
+                }
+                pairIndex = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more pairs in hash map");
+            }
+            final KeyValuePair<K, V> pair = bucketPairs.get(pairIndex++);
+            lastReturned = new WriteThroughEntry(owner, pair.getKey(), pair.getValue());
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException("No pair to remove");
+            }
+            owner.remove(lastReturned.getKey());
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * Представление пар таблицы. Итератор обходит снимок таблицы на момент своего создания.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new BucketIterator(table.buckets, CopyOnWriteBucketAgnosticHashMap.this);
+        }
+
+        @Override
+        public int size() {
+            return CopyOnWriteBucketAgnosticHashMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            final Bucket<K, V> bucket = getBucket(table.buckets, entry.getKey());
+            final Map.Entry<K, V> ourEntry = bucket.getEntry(entry.getKey());
+            return ourEntry != null && Objects.equals(ourEntry.getValue(), entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return CopyOnWriteBucketAgnosticHashMap.this.remove(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void clear() {
+            CopyOnWriteBucketAgnosticHashMap.this.clear();
+        }
+    }
+}
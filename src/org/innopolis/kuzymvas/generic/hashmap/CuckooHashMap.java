@@ -0,0 +1,454 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.util.*;
+
+/**
+ * Класс хэш таблицы по схеме кукушкиного хэширования с корзинами из четырех ячеек.
+ * Каждый ключ может находиться лишь в одной из двух корзин, выбираемых по хэшу стратегии,
+ * перемешанному финализатором Murmur3 без затравки и с затравкой таблицы соответственно.
+ * Перемешивание обеих функций сохраняет выбор из двух корзин
+ * даже для ключей, хэши которых отличаются лишь старшими битами.
+ * Если обе корзины заполнены, новый ключ вытесняет один из хранимых, который переезжает в свою другую корзину.
+ * Ключи, которые не удалось разместить за ограниченное число вытеснений, попадают в небольшой запасник,
+ * а при его переполнении таблица перестраивается с новой затравкой (и, при высокой заполненности, с ростом).
+ * Поиск просматривает не более двух корзин и запасник.
+ * Запасник может превысить свой размер, только если много ключей имеют одинаковый хэш код:
+ * такие ключи неразличимы для обеих хэш функций.
+ *
+ * @param <K> - тип ключа таблицы
+ * @param <V> - тип значения таблицы
+ */
+public class CuckooHashMap<K, V> extends AbstractSlotHashMap<K, V> {
+
+    private static final int SLOTS_PER_BUCKET = 4; // Число ячеек в корзине
+    private static final int DEFAULT_BUCKET_NUMBER = 4; // Число корзин по умолчанию
+    private static final float DEFAULT_LOAD_FACTOR = 0.9f; // Коэффициент заполнения по умолчанию
+    private static final int MAX_BUCKET_NUMBER = 1 << 28; // Верхняя граница числа корзин при росте таблицы
+    private static final int STASH_CAPACITY = 4; // Число пар в запаснике, при превышении которого таблица перестраивается
+    private static final int MAX_KICKS = 256; // Число вытеснений, после которого вставка считается зациклившейся
+    private static final int REHASH_ATTEMPTS = 3; // Число затравок, пробуемых при перестроении
+
+    private final HashStrategy hashStrategy; // Стратегия, вычисляющая хэш ключа
+    private final float loadFactor; // Максимальная доля занятых ячеек
+    private final int minBucketNumber; // Число корзин, меньше которого таблица не сжимается
+    private final Random random; // Источник затравок и номеров вытесняемых ячеек
+    private Object[] keys; // Ключи ячеек, корзина i занимает ячейки с 4i по 4i+3
+    private Object[] values; // Значения, хранимые в тех же ячейках, что и их ключи
+    private final List<Object> stashKeys; // Ключи пар, не поместившихся в корзины
+    private final List<Object> stashValues; // Значения пар, не поместившихся в корзины
+    private int bucketMask; // Число корзин минус 1. Число корзин - степень двойки
+    private int seed; // Затравка второй хэш функции
+    private int stashLimit; // Размер запасника, при превышении которого таблица перестраивается
+    private int size; // Число пар ключ-значение в таблице
+    private int growThreshold; // Число пар, при превышении которого таблица растет
+    private int shrinkThreshold; // Число пар, при падении ниже которого таблица сжимается
+
+    /**
+     * Создает хэш таблицу с 4 корзинами и коэффициентом заполнения 0.9
+     */
+    public CuckooHashMap() {
+        this(DEFAULT_BUCKET_NUMBER);
+    }
+
+    /**
+     * Создает хэш таблицу с заданным начальным числом корзин и коэффициентом заполнения 0.9
+     *
+     * @param bucketNumber - начальное (и минимальное) число корзин. Должно быть строго больше 0
+     * @throws IllegalArgumentException - выбрасывается, если число корзин меньше, либо равно нулю.
+     */
+    public CuckooHashMap(int bucketNumber) throws IllegalArgumentException {
+        this(bucketNumber, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Создает хэш таблицу с заданными начальным числом корзин и коэффициентом заполнения.
+     *
+     * @param bucketNumber - начальное (и минимальное) число корзин. Должно быть строго больше 0
+     * @param loadFactor   - коэффициент заполнения. Должен быть строго больше 0 и строго меньше 1
+     * @throws IllegalArgumentException - выбрасывается, если число корзин или коэффициент заполнения
+     *                                  вне допустимых границ.
+     */
+    public CuckooHashMap(int bucketNumber, float loadFactor) throws IllegalArgumentException {
+        this(new BasicHashStrategy(BasicHashStrategy.StrategyType.MURMUR3), bucketNumber, loadFactor);
+    }
+
+    /**
+     * Создает хэш таблицу с заданными стратегией хэширования, начальным числом корзин и коэффициентом заполнения.
+     * Число корзин округляется вверх до степени двойки.
+     * Таблица удваивает число корзин, когда доля занятых ячеек превышает коэффициент заполнения,
+     * и вдвое сокращает его, когда она падает ниже четверти от коэффициента, но не ниже начального числа корзин.
+     *
+     * @param hashStrategy - стратегия вычисления хэша ключей. Не может быть null
+     * @param bucketNumber - начальное (и минимальное) число корзин. Должно быть строго больше 0
+     * @param loadFactor   - коэффициент заполнения. Должен быть строго больше 0 и строго меньше 1
+     * @throws IllegalArgumentException - выбрасывается, если стратегия не задана,
+     *                                  или число корзин или коэффициент заполнения вне допустимых границ.
+     */
+    public CuckooHashMap(HashStrategy hashStrategy, int bucketNumber, float loadFactor)
+            throws IllegalArgumentException {
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Hash strategy can't be null");
+        }
+        if (bucketNumber <= 0) {
+            throw new IllegalArgumentException("Hash map can't have 0 or less buckets");
+        }
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1 exclusive");
+        }
+        this.hashStrategy = hashStrategy;
+        this.loadFactor = loadFactor;
+        this.minBucketNumber = roundToPowerOfTwo(bucketNumber, 1, MAX_BUCKET_NUMBER);
+        random = new Random();
+        seed = random.nextInt();
+        keys = new Object[minBucketNumber * SLOTS_PER_BUCKET];
+        values = new Object[minBucketNumber * SLOTS_PER_BUCKET];
+        stashKeys = new ArrayList<>();
+        stashValues = new ArrayList<>();
+        stashLimit = STASH_CAPACITY;
+        bucketMask = minBucketNumber - 1;
+        size = 0;
+        updateThresholds();
+    }
+
+    /**
+     * Возвращает текущее число корзин в таблице
+     *
+     * @return - число корзин
+     */
+    public int getBucketNumber() {
+        return bucketMask + 1;
+    }
+
+    /**
+     * Возвращает число пар, находящихся в запаснике
+     *
+     * @return - число пар в запаснике
+     */
+    public int getStashSize() {
+        return stashKeys.size();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return slotOf(key) != NO_SLOT;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && Objects.equals(values[i], value)) {
+                return true;
+            }
+        }
+        return stashValues.contains(value);
+    }
+
+    @Override
+    public V get(Object key) {
+        final int index = slotOf(key);
+        return (index == NO_SLOT) ? null : valueAt(index);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        final int index = slotOf(key);
+        return (index == NO_SLOT) ? defaultValue : valueAt(index);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        final int index = slotOf(key);
+        if (index != NO_SLOT) {
+            final V previous = valueAt(index);
+            setValueAt(index, value);
+            return previous;
+        }
+        size++;
+        modCount++;
+        if (size > growThreshold && bucketMask + 1 < MAX_BUCKET_NUMBER) {
+            rehash(2 * (bucketMask + 1), maskNull(key), value);
+        } else {
+            insert(maskNull(key), value);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        final int index = slotOf(key);
+        if (index == NO_SLOT) {
+            return null;
+        }
+        final V previous = valueAt(index);
+        deleteAt(index);
+        if (size < shrinkThreshold) {
+            rehash(Math.max(minBucketNumber, (bucketMask + 1) / 2), null, null);
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        stashKeys.clear();
+        stashValues.clear();
+        stashLimit = STASH_CAPACITY;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    SlotIterator entryIterator() {
+        return new EntryIterator();
+    }
+
+    /**
+     * Находит позицию заданного ключа: сначала в двух его корзинах, затем в запаснике.
+     *
+     * @param key - искомый ключ
+     * @return - номер ячейки, либо -(номер в запаснике + 1) для ключа из запасника,
+     * либо NO_SLOT, если ключа в таблице нет
+     */
+    @Override
+    int slotOf(Object key) {
+        final Object storedKey = maskNull(key);
+        final int hash = hashStrategy.hash(key);
+        int slot = firstBucket(hash) * SLOTS_PER_BUCKET;
+        for (int i = 0; i < SLOTS_PER_BUCKET; i++, slot++) {
+            final Object candidate = keys[slot];
+            if (candidate == storedKey || (candidate != null && storedKey.equals(candidate))) {
+                return slot;
+            }
+        }
+        slot = secondBucket(hash) * SLOTS_PER_BUCKET;
+        for (int i = 0; i < SLOTS_PER_BUCKET; i++, slot++) {
+            final Object candidate = keys[slot];
+            if (candidate == storedKey || (candidate != null && storedKey.equals(candidate))) {
+                return slot;
+            }
+        }
+        for (int i = 0; i < stashKeys.size(); i++) {
+            final Object candidate = stashKeys.get(i);
+            if (candidate == storedKey || storedKey.equals(candidate)) {
+                return -(i + 1);
+            }
+        }
+        return NO_SLOT;
+    }
+
+    /**
+     * Вставляет отсутствующую в таблице пару.
+     * Если запасник переполнен, перестраивает таблицу с новой затравкой,
+     * а при заполненности таблицы больше чем наполовину - еще и с удвоенным числом корзин.
+     * Если перестроение не смогло уменьшить запасник (например, у многих ключей совпадают хэш коды),
+     * следующее перестроение откладывается до удвоения запасника, иначе каждая вставка в него
+     * перестраивала бы всю таблицу.
+     *
+     * @param key   - ключ (с заменой null на NULL_KEY)
+     * @param value - значение
+     */
+    private void insert(Object key, Object value) {
+        if (tryInsert(key, value) || stashKeys.size() <= stashLimit) {
+            return;
+        }
+        final int bucketNumber = bucketMask + 1;
+        final boolean crowded = size > bucketNumber * SLOTS_PER_BUCKET / 2 && bucketNumber < MAX_BUCKET_NUMBER;
+        rehash(crowded ? 2 * bucketNumber : bucketNumber, null, null);
+    }
+
+    /**
+     * Пытается разместить пару в корзинах, вытесняя хранимые пары в их другие корзины.
+     * Если за MAX_KICKS вытеснений свободная ячейка не найдена, последняя вытесненная пара помещается в запасник.
+     *
+     * @param key   - ключ (с заменой null на NULL_KEY)
+     * @param value - значение
+     * @return - true, если пара размещена без запасника, false - если пришлось использовать запасник
+     */
+    private boolean tryInsert(Object key, Object value) {
+        final int hash = hashStrategy.hash(unmaskNull(key));
+        if (placeInBucket(firstBucket(hash), key, value) || placeInBucket(secondBucket(hash), key, value)) {
+            return true;
+        }
+        int bucket = firstBucket(hash);
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            final int slot = bucket * SLOTS_PER_BUCKET + random.nextInt(SLOTS_PER_BUCKET);
+            final Object displacedKey = keys[slot];
+            final Object displacedValue = values[slot];
+            keys[slot] = key;
+            values[slot] = value;
+            key = displacedKey;
+            value = displacedValue;
+            final int displacedHash = hashStrategy.hash(unmaskNull(key));
+            final int first = firstBucket(displacedHash);
+            bucket = (bucket == first) ? secondBucket(displacedHash) : first;
+            if (placeInBucket(bucket, key, value)) {
+                return true;
+            }
+        }
+        stashKeys.add(key);
+        stashValues.add(value);
+        return false;
+    }
+
+    /**
+     * Помещает пару в свободную ячейку заданной корзины
+     *
+     * @param bucket - номер корзины
+     * @param key    - ключ (с заменой null на NULL_KEY)
+     * @param value  - значение
+     * @return - true, если в корзине нашлась свободная ячейка, false в противном случае
+     */
+    private boolean placeInBucket(int bucket, Object key, Object value) {
+        int slot = bucket * SLOTS_PER_BUCKET;
+        for (int i = 0; i < SLOTS_PER_BUCKET; i++, slot++) {
+            if (keys[slot] == null) {
+                keys[slot] = key;
+                values[slot] = value;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Перестраивает таблицу с заданным числом корзин и новой затравкой, размещая все пары заново.
+     * Пробует несколько затравок, пока запасник не перестанет переполняться;
+     * если ни одна не подошла, оставляет результат последней попытки с переполненным запасником
+     * и поднимает границу его перестроения до удвоенного размера запасника.
+     *
+     * @param newBucketNumber - новое число корзин. Степень двойки
+     * @param pendingKey      - ключ, который нужно добавить при перестроении, либо null (с заменой null ключа на NULL_KEY)
+     * @param pendingValue    - значение добавляемого ключа
+     */
+    private void rehash(int newBucketNumber, Object pendingKey, Object pendingValue) {
+        final List<Object> allKeys = new ArrayList<>(size);
+        final List<Object> allValues = new ArrayList<>(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                allKeys.add(keys[i]);
+                allValues.add(values[i]);
+            }
+        }
+        allKeys.addAll(stashKeys);
+        allValues.addAll(stashValues);
+        if (pendingKey != null) {
+            allKeys.add(pendingKey);
+            allValues.add(pendingValue);
+        }
+        for (int attempt = 0; attempt < REHASH_ATTEMPTS; attempt++) {
+            keys = new Object[newBucketNumber * SLOTS_PER_BUCKET];
+            values = new Object[newBucketNumber * SLOTS_PER_BUCKET];
+            stashKeys.clear();
+            stashValues.clear();
+            bucketMask = newBucketNumber - 1;
+            seed = random.nextInt();
+            for (int i = 0; i < allKeys.size(); i++) {
+                tryInsert(allKeys.get(i), allValues.get(i));
+            }
+            if (stashKeys.size() <= STASH_CAPACITY) {
+                break;
+            }
+        }
+        stashLimit = (stashKeys.size() <= STASH_CAPACITY) ? STASH_CAPACITY : 2 * stashKeys.size();
+        updateThresholds();
+        modCount++;
+    }
+
+    /**
+     * Удаляет пару из заданной позиции. Остальные пары не перемещаются.
+     *
+     * @param index - номер ячейки, либо -(номер в запаснике + 1)
+     */
+    @Override
+    void deleteAt(int index) {
+        if (index >= 0) {
+            keys[index] = null;
+            values[index] = null;
+        } else {
+            stashKeys.remove(-index - 1);
+            stashValues.remove(-index - 1);
+        }
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Пересчитывает границы числа пар, при пересечении которых таблица меняет размер.
+     */
+    private void updateThresholds() {
+        final int bucketNumber = bucketMask + 1;
+        final long slotNumber = (long) bucketNumber * SLOTS_PER_BUCKET;
+        growThreshold = (bucketNumber >= MAX_BUCKET_NUMBER) ? Integer.MAX_VALUE : (int) (slotNumber * loadFactor);
+        shrinkThreshold = (bucketNumber <= minBucketNumber) ? Integer.MIN_VALUE : (int) (slotNumber * loadFactor / 4);
+    }
+
+    private int firstBucket(int hash) {
+        return BasicHashStrategy.murmurMix(hash) & bucketMask;
+    }
+
+    private int secondBucket(int hash) {
+        return BasicHashStrategy.murmurMix(hash ^ seed) & bucketMask;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    K keyAt(int index) {
+        return (K) unmaskNull((index >= 0) ? keys[index] : stashKeys.get(-index - 1));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    V valueAt(int index) {
+        return (V) ((index >= 0) ? values[index] : stashValues.get(-index - 1));
+    }
+
+    private void setValueAt(int index, Object value) {
+        if (index >= 0) {
+            values[index] = value;
+        } else {
+            stashValues.set(-index - 1, value);
+        }
+    }
+
+    /**
+     * Итератор по парам таблицы: сначала обходит ячейки корзин, затем запасник.
+     * Удаление через итератор не перемещает остальные пары, кроме следующих пар запасника.
+     */
+    final class EntryIterator extends SlotIterator {
+
+        private int position; // Позиция следующей проверяемой пары: ячейка, а за ячейками - номер в запаснике
+
+        @Override
+        public boolean hasNext() {
+            while (position < keys.length && keys[position] == null) {
+                position++;
+            }
+            return position < keys.length + stashKeys.size();
+        }
+
+        @Override
+        int nextSlot() {
+            final int slot = (position < keys.length) ? position : -(position - keys.length + 1);
+            position++;
+            return slot;
+        }
+
+        @Override
+        void removed(int slot) {
+            if (slot < 0) {
+                position--; // Следующие пары запасника сдвинулись на место удаленной
+            }
+        }
+    }
+}
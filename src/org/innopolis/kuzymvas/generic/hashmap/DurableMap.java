@@ -0,0 +1,443 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Класс хэш таблицы, изменения которой переживают сбой процесса.
+ * Таблица хранит пары в BucketAgnosticHashMap, а каждое изменение (put, remove, replace, clear и т.п.)
+ * под той же блокировкой, под которой оно применяется, добавляет запись в журнал упреждающей записи
+ * в каталоге таблицы. Изменения видны другим потокам только вместе с их записями.
+ * Журнал сбрасывается на диск группами записей (групповая фиксация), поэтому один вызов force()
+ * подтверждает изменения всех потоков, накопленные за время ожидания, не превышающее заданной задержки.
+ * В режиме синхронной фиксации изменяющие методы возвращают управление только после сброса их записи на диск,
+ * в асинхронном режиме - сразу, а запись сбрасывается на диск не позже чем через заданную задержку
+ * (плюс время самой записи), но если несброшенных записей накопилось слишком много, изменения ждут их сброса.
+ * Метод sync() дожидается сброса всех сделанных изменений.
+ * Метод checkpoint() записывает снимок таблицы и удаляет сегменты журнала, предшествующие снимку.
+ * При открытии таблица загружает последний снимок и воспроизводит записи журнала, сделанные после него.
+ * Методы таблицы синхронизированы, однако обход ее представлений не синхронизирован и требует
+ * внешней синхронизации по таблице. Представления не поддерживают изменение таблицы.
+ *
+ * @param <K> - тип ключа таблицы
+ * @param <V> - тип значения таблицы
+ */
+public class DurableMap<K, V> extends AbstractMap<K, V> implements Closeable {
+
+    private static final long DEFAULT_SEGMENT_SIZE = 1 << 26; // Размер сегмента журнала по умолчанию
+    private static final long DEFAULT_COMMIT_DELAY_MICROS = 1000; // Задержка фиксации по умолчанию
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String SNAPSHOT_TEMP_SUFFIX = ".tmp";
+
+    private final Path directory; // Каталог журнала и снимков таблицы
+    private final BucketAgnosticHashMap<K, V> map; // Таблица, хранящая пары
+    private final Codec<K> keyCodec; // Кодек ключей
+    private final Codec<V> valueCodec; // Кодек значений
+    private final WriteAheadLog log; // Журнал упреждающей записи
+    private final boolean synchronousCommit; // Ожидают ли изменяющие методы сброса записи на диск
+    private final Object checkpointLock = new Object(); // Блокировка, под которой записывается снимок
+
+    private DurableMap(Path directory, BucketAgnosticHashMap<K, V> map, Codec<K> keyCodec, Codec<V> valueCodec,
+                       WriteAheadLog log, boolean synchronousCommit) {
+        this.directory = directory;
+        this.map = map;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.log = log;
+        this.synchronousCommit = synchronousCommit;
+    }
+
+    /**
+     * Открывает таблицу в заданном каталоге с синхронной фиксацией, задержкой фиксации 1 мс
+     * и сегментами журнала по 64 МБ. Состояние таблицы восстанавливается в переданную пустую таблицу.
+     *
+     * @param directory  - каталог журнала и снимков таблицы. Создается, если не существует
+     * @param map        - пустая таблица, в которой будут храниться пары. Не может быть null
+     * @param keyCodec   - кодек ключей. Не может быть null
+     * @param valueCodec - кодек значений. Не может быть null
+     * @param <K>        - тип ключа таблицы
+     * @param <V>        - тип значения таблицы
+     * @return - открытая таблица
+     * @throws IOException              - выбрасывается при ошибке чтения или записи файлов таблицы,
+     *                                  а также если снимок или журнал повреждены.
+     * @throws IllegalArgumentException - выбрасывается, если таблица или кодек не заданы, либо таблица не пуста.
+     */
+    public static <K, V> DurableMap<K, V> open(Path directory, BucketAgnosticHashMap<K, V> map, Codec<K> keyCodec,
+                                               Codec<V> valueCodec) throws IOException, IllegalArgumentException {
+        return open(directory, map, keyCodec, valueCodec, DEFAULT_SEGMENT_SIZE, DEFAULT_COMMIT_DELAY_MICROS, true);
+    }
+
+    /**
+     * Открывает таблицу в заданном каталоге с заданными параметрами журнала.
+     * Состояние таблицы восстанавливается в переданную пустую таблицу: загружается последний снимок
+     * и воспроизводятся записи журнала, сделанные после него. Недописанная при сбое запись
+     * в конце журнала отбрасывается.
+     *
+     * @param directory            - каталог журнала и снимков таблицы. Создается, если не существует
+     * @param map                  - пустая таблица, в которой будут храниться пары. Не может быть null
+     * @param keyCodec             - кодек ключей. Не может быть null
+     * @param valueCodec           - кодек значений. Не может быть null
+     * @param segmentSize          - размер сегмента журнала в байтах, после которого журнал переходит к следующему.
+     *                             Должен быть положительным
+     * @param maxCommitDelayMicros - наибольшее время накопления записей перед фиксацией в микросекундах.
+     *                             Не может быть отрицательным. При 0 фиксация начинается сразу,
+     *                             а группы образуют записи, сделанные во время предыдущей фиксации
+     * @param synchronousCommit    - true, если изменяющие методы должны дожидаться сброса своей записи на диск
+     * @param <K>                  - тип ключа таблицы
+     * @param <V>                  - тип значения таблицы
+     * @return - открытая таблица
+     * @throws IOException              - выбрасывается при ошибке чтения или записи файлов таблицы,
+     *                                  а также если снимок или журнал повреждены.
+     * @throws IllegalArgumentException - выбрасывается, если таблица или кодек не заданы, таблица не пуста,
+     *                                  либо параметры журнала некорректны.
+     */
+    public static <K, V> DurableMap<K, V> open(Path directory, BucketAgnosticHashMap<K, V> map, Codec<K> keyCodec,
+                                               Codec<V> valueCodec, long segmentSize, long maxCommitDelayMicros,
+                                               boolean synchronousCommit)
+            throws IOException, IllegalArgumentException {
+        if (map == null || keyCodec == null || valueCodec == null) {
+            throw new IllegalArgumentException("Map and codecs can't be null");
+        }
+        if (!map.isEmpty()) {
+            throw new IllegalArgumentException("Map to restore into must be empty");
+        }
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
+        if (maxCommitDelayMicros < 0) {
+            throw new IllegalArgumentException("Commit delay can't be negative");
+        }
+        Files.createDirectories(directory);
+        final long snapshot = latestSnapshot(directory);
+        if (snapshot >= 0) {
+            try (FileChannel channel = FileChannel.open(snapshotPath(directory, snapshot, SNAPSHOT_SUFFIX))) {
+                map.loadFrom(channel, keyCodec, valueCodec);
+            }
+        }
+        WriteAheadLog.replay(directory, Math.max(snapshot, 0),
+                             (type, record, keyOffset, keyLength, valueOffset, valueLength) -> {
+                                 switch (type) {
+                                     case WriteAheadLog.PUT:
+                                         map.put(decode(keyCodec, record, keyOffset, keyLength),
+                                                 decode(valueCodec, record, valueOffset, valueLength));
+                                         break;
+                                     case WriteAheadLog.REMOVE:
+                                         map.remove(decode(keyCodec, record, keyOffset, keyLength));
+                                         break;
+                                     case WriteAheadLog.CLEAR:
+                                         map.clear();
+                                         break;
+                                     default:
+                                         throw new IOException("Unknown write-ahead log record type " + type);
+                                 }
+                             });
+        final WriteAheadLog log = new WriteAheadLog(directory, segmentSize, maxCommitDelayMicros * 1000);
+        final DurableMap<K, V> durableMap = new DurableMap<>(directory, map, keyCodec, valueCodec, log,
+                                                             synchronousCommit);
+        durableMap.deleteFilesBefore(Math.max(snapshot, 0));
+        return durableMap;
+    }
+
+    /**
+     * Дожидается сброса на диск всех сделанных изменений таблицы
+     *
+     * @throws IOException - выбрасывается, если журнал не удалось сбросить на диск.
+     */
+    public void sync() throws IOException {
+        log.awaitDurable(log.getAppendedPosition());
+    }
+
+    /**
+     * Записывает снимок таблицы и удаляет предшествующие ему сегменты журнала и снимки.
+     * Под блокировкой таблицы журнал переходит к новому сегменту и копируются ссылки на ключи и значения,
+     * а снимок записывается из этой копии уже без блокировки, поэтому изменения таблицы продолжаются
+     * во время записи. Ключи и значения не должны изменяться на месте, как и в любой хэш таблице.
+     * Снимок записывается во временный файл и переименовывается после сброса на диск,
+     * поэтому сбой во время записи снимка не нарушает восстановление.
+     *
+     * @throws IOException - выбрасывается при ошибке записи журнала или снимка.
+     */
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            final long segment;
+            final Object[] keys;
+            final Object[] values;
+            synchronized (this) {
+                segment = log.rotate();
+                keys = new Object[map.size()];
+                values = new Object[keys.length];
+                int i = 0;
+                for (Entry<K, V> entry : map.entrySet()) {
+                    keys[i] = entry.getKey();
+                    values[i] = entry.getValue();
+                    i++;
+                }
+            }
+            final Path temp = snapshotPath(directory, segment, SNAPSHOT_TEMP_SUFFIX);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING,
+                                                        StandardOpenOption.WRITE)) {
+                writeSnapshot(channel, keys, values);
+                channel.force(true);
+            }
+            Files.move(temp, snapshotPath(directory, segment, SNAPSHOT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+            // Предшествующие файлы удаляются, только когда переименование снимка сохранено на диске
+            WriteAheadLog.forceDirectory(directory);
+            deleteFilesBefore(segment);
+        }
+    }
+
+    /**
+     * Сбрасывает на диск все сделанные изменения и закрывает журнал. После закрытия таблицу нельзя изменять.
+     *
+     * @throws IOException - выбрасывается при ошибке записи журнала.
+     */
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    @Override
+    public synchronized int size() {
+        return map.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public synchronized boolean containsValue(Object value) {
+        return map.containsValue(value);
+    }
+
+    @Override
+    public synchronized V get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public synchronized V getOrDefault(Object key, V defaultValue) {
+        return map.getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        final V previous;
+        final long position;
+        synchronized (this) {
+            previous = map.put(key, value);
+            position = append(WriteAheadLog.PUT, key, value);
+        }
+        commit(position);
+        return previous;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        final V previous;
+        final long position;
+        synchronized (this) {
+            if (!map.containsKey(key)) {
+                return null;
+            }
+            previous = map.remove(key);
+            position = append(WriteAheadLog.REMOVE, (K) key, null);
+        }
+        commit(position);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        final long position;
+        synchronized (this) {
+            map.clear();
+            position = append(WriteAheadLog.CLEAR, null, null);
+        }
+        commit(position);
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        final V previous;
+        final long position;
+        synchronized (this) {
+            if (!map.containsKey(key)) {
+                return null;
+            }
+            previous = map.put(key, value);
+            position = append(WriteAheadLog.PUT, key, value);
+        }
+        commit(position);
+        return previous;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        final long position;
+        synchronized (this) {
+            if (!map.containsKey(key) || !Objects.equals(map.get(key), oldValue)) {
+                return false;
+            }
+            map.put(key, newValue);
+            position = append(WriteAheadLog.PUT, key, newValue);
+        }
+        commit(position);
+        return true;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        final long position;
+        synchronized (this) {
+            final V current = map.get(key);
+            if (current != null) {
+                return current;
+            }
+            map.put(key, value);
+            position = append(WriteAheadLog.PUT, key, value);
+        }
+        commit(position);
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object key, Object value) {
+        final long position;
+        synchronized (this) {
+            if (!map.containsKey(key) || !Objects.equals(map.get(key), value)) {
+                return false;
+            }
+            map.remove(key);
+            position = append(WriteAheadLog.REMOVE, (K) key, null);
+        }
+        commit(position);
+        return true;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return Collections.unmodifiableSet(map.entrySet());
+    }
+
+    /**
+     * Добавляет запись изменения в журнал. Вызывается под блокировкой таблицы после применения изменения,
+     * поэтому порядок записей журнала совпадает с порядком изменений, а изменение, отвергнутое таблицей
+     * (например, ключ, несравнимый с ключами корзины-дерева), не попадает в журнал и не ломает его воспроизведение.
+     *
+     * @param type  - тип изменения
+     * @param key   - ключ изменения
+     * @param value - значение изменения
+     * @return - позиция конца записи в журнале
+     * @throws UncheckedIOException - выбрасывается, если журнал закрыт или непригоден после ошибки записи.
+     *                              Изменение при этом уже применено к таблице в памяти.
+     */
+    private long append(byte type, K key, V value) throws UncheckedIOException {
+        try {
+            return log.append(type, (key == null) ? null : keyCodec.encode(key),
+                              (value == null) ? null : valueCodec.encode(value));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Дожидается сброса записи на диск в режиме синхронной фиксации. Вызывается вне блокировки таблицы,
+     * чтобы записи других потоков попали в ту же группу.
+     *
+     * @param position - позиция конца записи в журнале
+     * @throws UncheckedIOException - выбрасывается, если запись не удалось сбросить на диск.
+     *                              Изменение при этом уже применено к таблице в памяти.
+     */
+    private void commit(long position) throws UncheckedIOException {
+        if (!synchronousCommit) {
+            return;
+        }
+        try {
+            log.awaitDurable(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Записывает снимок из скопированных пар в том же формате, что и BucketAgnosticHashMap.snapshotTo()
+     *
+     * @param channel - канал, в который пишется снимок
+     * @param keys    - ключи пар
+     * @param values  - значения пар в том же порядке
+     * @throws IOException - выбрасывается при ошибке записи.
+     */
+    @SuppressWarnings("unchecked")
+    private void writeSnapshot(FileChannel channel, Object[] keys, Object[] values) throws IOException {
+        SnapshotFormat.writeHeader(channel, keys.length);
+        final SnapshotFormat.PartitionWriter writer = new SnapshotFormat.PartitionWriter(channel);
+        for (int i = 0; i < keys.length; i++) {
+            writer.add((keys[i] == null) ? null : keyCodec.encode((K) keys[i]),
+                       (values[i] == null) ? null : valueCodec.encode((V) values[i]));
+        }
+        writer.flush();
+    }
+
+    /**
+     * Удаляет сегменты журнала и снимки, предшествующие снимку с заданным номером
+     *
+     * @param snapshot - номер сохраняемого снимка
+     * @throws IOException - выбрасывается при ошибке удаления.
+     */
+    private void deleteFilesBefore(long snapshot) throws IOException {
+        log.deleteSegmentsBefore(snapshot);
+        for (long number : listSnapshots(directory, SNAPSHOT_SUFFIX)) {
+            if (number < snapshot) {
+                Files.deleteIfExists(snapshotPath(directory, number, SNAPSHOT_SUFFIX));
+            }
+        }
+        for (long number : listSnapshots(directory, SNAPSHOT_TEMP_SUFFIX)) {
+            Files.deleteIfExists(snapshotPath(directory, number, SNAPSHOT_TEMP_SUFFIX));
+        }
+    }
+
+    private static <T> T decode(Codec<T> codec, ByteBuffer record, int offset, int length) {
+        return (length < 0) ? null : codec.decode(record, offset, length);
+    }
+
+    private static long latestSnapshot(Path directory) throws IOException {
+        final List<Long> snapshots = listSnapshots(directory, SNAPSHOT_SUFFIX);
+        return snapshots.isEmpty() ? -1 : snapshots.get(snapshots.size() - 1);
+    }
+
+    private static List<Long> listSnapshots(Path directory, String suffix) throws IOException {
+        final List<Long> snapshots = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                 .filter(name -> name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(suffix))
+                 .forEach(name -> snapshots.add(Long.parseLong(
+                         name.substring(SNAPSHOT_PREFIX.length(), name.length() - suffix.length()))));
+        }
+        Collections.sort(snapshots);
+        return snapshots;
+    }
+
+    private static Path snapshotPath(Path directory, long number, String suffix) {
+        return directory.resolve(SNAPSHOT_PREFIX + number + suffix);
+    }
+}
@@ -0,0 +1,17 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+/**
+ * Интерфейс стратегии вычисления хэша ключа, по которому хэш таблица выбирает корзину.
+ * Таблицы с числом корзин, равным степени двойки, используют младшие биты хэша,
+ * поэтому стратегия должна переносить в них изменчивость всех битов хэш кода ключа.
+ */
+public interface HashStrategy {
+
+    /**
+     * Вычисляет хэш заданного ключа
+     *
+     * @param key - ключ, может быть null
+     * @return - хэш ключа. Для равных ключей хэши должны совпадать.
+     */
+    int hash(Object key);
+}
@@ -0,0 +1,614 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.util.*;
+
+/**
+ * Класс хэш таблицы с ключами примитивного типа int и открытой адресацией.
+ * Ключи хранятся в массиве int[], значения - в параллельном массиве Object[],
+ * поэтому таблица не создает объектов ни для ключей, ни для пар, а поиск не упаковывает ключ.
+ * Коллизии разрешаются линейным пробированием со сдвигом назад при удалении, как в OpenAddressingHashMap.
+ * Ключ 0 обозначает пустую ячейку, поэтому пара с ключом 0 хранится в отдельных полях.
+ * Для кода, работающего с Map, есть представление asMap(), упаковывающее ключи при обращении.
+ * Файл сгенерирован скриптом templates/generate.sh из шаблона templates/PrimitiveObjectHashMap.java.template,
+ * общего для IntObjectHashMap и LongObjectHashMap. Изменения вносятся в шаблон, а не в этот файл.
+ *
+ * @param <V> - тип значения таблицы
+ */
+public class IntObjectHashMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16; // Число ячеек по умолчанию
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f; // Коэффициент заполнения по умолчанию
+    private static final int MAX_CAPACITY = 1 << 30; // Верхняя граница числа ячеек при росте таблицы
+
+    private final float loadFactor; // Максимальная доля занятых ячеек
+    private final int minCapacity; // Число ячеек, меньше которого таблица не сжимается
+    private int[] keys; // Ключи (0 - пустая ячейка). Размер - степень двойки
+    private Object[] values; // Значения, хранимые в тех же ячейках, что и их ключи
+    private boolean hasZeroKey; // Есть ли в таблице пара с ключом 0
+    private V zeroValue; // Значение пары с ключом 0
+    private int size; // Число пар ключ-значение в таблице, включая пару с ключом 0
+    private int modCount; // Число структурных изменений таблицы для обнаружения изменений во время обхода
+    private int growThreshold; // Число пар в ячейках, при превышении которого таблица растет
+    private int shrinkThreshold; // Число пар в ячейках, при падении ниже которого таблица сжимается
+    private MapView mapView; // Представление таблицы в виде Map. Создается при первом обращении
+
+    /**
+     * Создает хэш таблицу с 16 ячейками и коэффициентом заполнения 0.75
+     */
+    public IntObjectHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Создает хэш таблицу с заданным начальным числом ячеек и коэффициентом заполнения 0.75
+     *
+     * @param capacity - начальное (и минимальное) число ячеек. Должно быть строго больше 0
+     * @throws IllegalArgumentException - выбрасывается, если число ячеек меньше, либо равно нулю.
+     */
+    public IntObjectHashMap(int capacity) throws IllegalArgumentException {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Создает хэш таблицу с заданными начальным числом ячеек и коэффициентом заполнения.
+     * Число ячеек округляется вверх до степени двойки.
+     * Таблица удваивает число ячеек при превышении коэффициента заполнения и вдвое сокращает его,
+     * когда заполненность падает ниже четверти от коэффициента, но не ниже начального числа ячеек.
+     *
+     * @param capacity   - начальное (и минимальное) число ячеек. Должно быть строго больше 0
+     * @param loadFactor - коэффициент заполнения. Должен быть строго больше 0 и строго меньше 1
+     * @throws IllegalArgumentException - выбрасывается, если число ячеек или коэффициент заполнения
+     *                                  вне допустимых границ.
+     */
+    public IntObjectHashMap(int capacity, float loadFactor) throws IllegalArgumentException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Hash map can't have 0 or less cells");
+        }
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1 exclusive");
+        }
+        this.loadFactor = loadFactor;
+        this.minCapacity = roundToPowerOfTwo(capacity);
+        keys = new int[minCapacity];
+        values = new Object[minCapacity];
+        size = 0;
+        updateThresholds();
+    }
+
+    /**
+     * Возвращает текущее число ячеек в таблице
+     *
+     * @return - число ячеек
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Проверяет наличие ключа в таблице
+     *
+     * @param key - искомый ключ
+     * @return - true, если ключ есть в таблице, false в противном случае
+     */
+    public boolean containsKey(int key) {
+        return (key == 0) ? hasZeroKey : indexOf(key) >= 0;
+    }
+
+    /**
+     * Возвращает значение, связанное с ключом
+     *
+     * @param key - искомый ключ
+     * @return - значение ключа, либо null, если ключа нет в таблице
+     */
+    public V get(int key) {
+        return getOrDefault(key, null);
+    }
+
+    /**
+     * Возвращает значение, связанное с ключом, либо значение по умолчанию, если ключа нет в таблице
+     *
+     * @param key          - искомый ключ
+     * @param defaultValue - значение, возвращаемое при отсутствии ключа
+     * @return - значение ключа, либо defaultValue
+     */
+    public V getOrDefault(int key, V defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        final int index = indexOf(key);
+        return (index < 0) ? defaultValue : valueAt(index);
+    }
+
+    /**
+     * Связывает значение с ключом, заменяя прежнее значение ключа
+     *
+     * @param key   - ключ
+     * @param value - значение
+     * @return - прежнее значение ключа, либо null, если ключа не было в таблице
+     * @throws IllegalStateException - выбрасывается, если ключа нет в таблице, а она уже заполнена
+     *                               при максимальном числе ячеек.
+     */
+    public V put(int key, V value) throws IllegalStateException {
+        if (key == 0) {
+            final V previous = zeroValue;
+            zeroValue = value;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+                modCount++;
+            }
+            return previous;
+        }
+        final int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                final V previous = valueAt(index);
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        if (cellSize() >= growThreshold && keys.length >= MAX_CAPACITY) {
+            throw new IllegalStateException("Hash map can't grow past " + MAX_CAPACITY + " cells");
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+        modCount++;
+        if (cellSize() > growThreshold) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Удаляет ключ из таблицы
+     *
+     * @param key - удаляемый ключ
+     * @return - значение удаленного ключа, либо null, если ключа не было в таблице
+     */
+    public V remove(int key) {
+        if (key == 0) {
+            return removeZeroKey();
+        }
+        final int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        final V previous = valueAt(index);
+        deleteAt(index);
+        if (cellSize() < shrinkThreshold) {
+            resize(Math.max(minCapacity, keys.length / 2));
+        }
+        return previous;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        hasZeroKey = false;
+        zeroValue = null;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Передает все пары таблицы заданному обработчику без упаковки ключей
+     *
+     * @param action - обработчик пар
+     */
+    public void forEach(EntryConsumer<? super V> action) {
+        final int expectedModCount = modCount;
+        if (hasZeroKey) {
+            action.accept(0, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], valueAt(i));
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException("Hash map was modified during iteration");
+        }
+    }
+
+    /**
+     * Возвращает представление таблицы в виде Map с упакованными ключами.
+     * Изменения представления изменяют таблицу и наоборот.
+     *
+     * @return - представление таблицы
+     */
+    public Map<Integer, V> asMap() {
+        if (mapView == null) {
+            mapView = new MapView();
+        }
+        return mapView;
+    }
+
+    @Override
+    public int hashCode() {
+        return asMap().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IntObjectHashMap<?>)) {
+            return false;
+        }
+        return asMap().equals(((IntObjectHashMap<?>) o).asMap());
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+
+    /**
+     * Находит ячейку, в которой хранится заданный ненулевой ключ.
+     * Поиск идет от начальной ячейки ключа до первой пустой ячейки.
+     *
+     * @param key - искомый ключ, не равный 0
+     * @return - номер ячейки, либо -1, если ключа в таблице нет
+     */
+    private int indexOf(int key) {
+        final int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        int candidate;
+        while ((candidate = keys[index]) != 0) {
+            if (candidate == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Удаляет пару с ключом 0
+     *
+     * @return - значение удаленной пары, либо null, если ее не было в таблице
+     */
+    private V removeZeroKey() {
+        if (!hasZeroKey) {
+            return null;
+        }
+        final V previous = zeroValue;
+        hasZeroKey = false;
+        zeroValue = null;
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    /**
+     * Удаляет пару из заданной ячейки, сдвигая назад те элементы следующей за ней цепочки,
+     * которые могут занять освободившееся место, не оказавшись перед своей начальной ячейкой.
+     * Размер таблицы при этом не пересматривается.
+     *
+     * @param index - номер занятой ячейки
+     */
+    private void deleteAt(int index) {
+        final int mask = keys.length - 1;
+        int hole = index;
+        int current = index;
+        while (true) {
+            current = (current + 1) & mask;
+            final int key = keys[current];
+            if (key == 0) {
+                break;
+            }
+            final int home = hash(key) & mask;
+            // Элемент можно перенести в дыру, если его начальная ячейка не лежит между дырой и им самим
+            if (((current - home) & mask) >= ((current - hole) & mask)) {
+                keys[hole] = key;
+                values[hole] = values[current];
+                hole = current;
+            }
+        }
+        keys[hole] = 0;
+        values[hole] = null;
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Перестраивает таблицу с заданным числом ячеек, заново размещая все хранимые пары.
+     *
+     * @param newCapacity - новое число ячеек. Степень двойки
+     */
+    private void resize(int newCapacity) {
+        if (newCapacity == keys.length) {
+            return;
+        }
+        final int[] oldKeys = keys;
+        final Object[] oldValues = values;
+        keys = new int[newCapacity];
+        values = new Object[newCapacity];
+        final int mask = newCapacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int index = hash(oldKeys[i]) & mask;
+                while (keys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+        updateThresholds();
+        modCount++;
+    }
+
+    /**
+     * Пересчитывает границы числа пар, при пересечении которых таблица меняет размер.
+     * Таблица всегда сохраняет хотя бы одну пустую ячейку, на которой останавливается поиск.
+     */
+    private void updateThresholds() {
+        final int capacity = keys.length;
+        growThreshold = (capacity >= MAX_CAPACITY) ? capacity - 1 :
+                Math.min(capacity - 1, (int) (capacity * (double) loadFactor));
+        shrinkThreshold = (capacity <= minCapacity) ? Integer.MIN_VALUE :
+                (int) (capacity * (double) loadFactor / 4);
+    }
+
+    /**
+     * Возвращает число пар, хранимых в ячейках (без пары с ключом 0)
+     *
+     * @return - число занятых ячеек
+     */
+    private int cellSize() {
+        return hasZeroKey ? size - 1 : size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index) {
+        return (V) values[index];
+    }
+
+    /**
+     * Перемешивает биты ключа финализатором Murmur3 разрядности ключа, чтобы близкие ключи попадали в далекие
+     * ячейки, а все биты ключа влияли на выбор ячейки
+     *
+     * @param key - ключ
+     * @return - хэш ключа
+     */
+    private static int hash(int key) {
+        return BasicHashStrategy.murmurMix(key);
+    }
+
+    /**
+     * Округляет положительное число ячеек вверх до ближайшей степени двойки от 2 до 2^30
+     *
+     * @param capacity - число ячеек
+     * @return - округленное число ячеек
+     */
+    private static int roundToPowerOfTwo(int capacity) {
+        if (capacity >= MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        return (capacity <= 2) ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    /**
+     * Обработчик пар таблицы, получающий ключ без упаковки
+     *
+     * @param <V> - тип значения
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+
+        /**
+         * Обрабатывает пару таблицы
+         *
+         * @param key   - ключ пары
+         * @param value - значение пары
+         */
+        void accept(int key, V value);
+    }
+
+    /**
+     * Представление таблицы в виде Map с упакованными ключами.
+     * Ключи, не являющиеся Integer, в таблице отсутствуют.
+     */
+    final class MapView extends AbstractMap<Integer, V> {
+
+        private final EntrySet entrySet = new EntrySet();
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Integer && IntObjectHashMap.this.containsKey((Integer) key);
+        }
+
+        @Override
+        public V get(Object key) {
+            return (key instanceof Integer) ? IntObjectHashMap.this.get((Integer) key) : null;
+        }
+
+        @Override
+        public V getOrDefault(Object key, V defaultValue) {
+            return (key instanceof Integer) ? IntObjectHashMap.this.getOrDefault((Integer) key, defaultValue) :
+                    defaultValue;
+        }
+
+        @Override
+        public V put(Integer key, V value) {
+            return IntObjectHashMap.this.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return (key instanceof Integer) ? IntObjectHashMap.this.remove((Integer) key) : null;
+        }
+
+        @Override
+        public void clear() {
+            IntObjectHashMap.this.clear();
+        }
+
+        @Override
+        public Set<Entry<Integer, V>> entrySet() {
+            return entrySet;
+        }
+    }
+
+    /**
+     * Пара ключ-значение, возвращаемая при обходе представления таблицы.
+     * Изменение значения пары изменяет значение ключа в таблице.
+     */
+    final class MapEntry extends AbstractMap.SimpleEntry<Integer, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        MapEntry(int key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            super.setValue(value);
+            return put(getKey(), value);
+        }
+    }
+
+    /**
+     * Класс множества пар ключ-значения, содержащихся в таблице
+     * Множество является представлением таблицы и удаление пары из него приводит к удалению пары из таблицы
+     * Пары не могут быть добавлены в множество.
+     */
+    final class EntrySet extends AbstractSet<Map.Entry<Integer, V>> {
+
+        @Override
+        public Iterator<Map.Entry<Integer, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            if (!(entry.getKey() instanceof Integer)) {
+                return false;
+            }
+            final int key = (Integer) entry.getKey();
+            return containsKey(key) && Objects.equals(get(key), entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            IntObjectHashMap.this.remove((Integer) ((Map.Entry<?, ?>) o).getKey());
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            IntObjectHashMap.this.clear();
+        }
+    }
+
+    /**
+     * Итератор по парам таблицы.
+     * Сначала возвращает пару с ключом 0, затем обходит ячейки в сторону уменьшения номера,
+     * начиная с ячейки перед пустой: сдвиг назад при удалении через итератор переносит в удаленную ячейку
+     * только уже обойденные пары и не переходит через пустую ячейку, с которой начат обход.
+     */
+    final class EntryIterator implements Iterator<Map.Entry<Integer, V>> {
+
+        private static final int ZERO_KEY_INDEX = -2; // Номер "ячейки" пары с ключом 0
+
+        private final int start; // Номер пустой ячейки, с которой начинается обход
+        private boolean zeroKeyVisited; // Просмотрена ли пара с ключом 0
+        private int visited; // Число просмотренных ячеек
+        private int nextIndex = -1; // Номер ячейки следующей пары, -1 - если она еще не найдена
+        private int lastIndex = -1; // Номер ячейки последней возвращенной пары, -1 - если ее нельзя удалить
+        private int expectedModCount = modCount;
+
+        EntryIterator() {
+            int index = 0;
+            while (keys[index] != 0) {
+                index++;
+            }
+            start = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!zeroKeyVisited) {
+                zeroKeyVisited = true;
+                if (hasZeroKey) {
+                    nextIndex = ZERO_KEY_INDEX;
+                }
+            }
+            final int mask = keys.length - 1;
+            while (nextIndex == -1 && visited < mask) {
+                visited++;
+                final int index = (start - visited) & mask;
+                if (keys[index] != 0) {
+                    nextIndex = index;
+                }
+            }
+            return nextIndex != -1;
+        }
+
+        @Override
+        public Map.Entry<Integer, V> next() {
+            checkForModification();
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more pairs in hash map");
+            }
+            lastIndex = nextIndex;
+            nextIndex = -1;
+            if (lastIndex == ZERO_KEY_INDEX) {
+                return new MapEntry(0, zeroValue);
+            }
+            return new MapEntry(keys[lastIndex], valueAt(lastIndex));
+        }
+
+        @Override
+        public void remove() {
+            if (lastIndex == -1) {
+                throw new IllegalStateException("Nothing to remove");
+            }
+            checkForModification();
+            if (lastIndex == ZERO_KEY_INDEX) {
+                removeZeroKey();
+            } else {
+                deleteAt(lastIndex);
+            }
+            lastIndex = -1;
+            expectedModCount = modCount;
+        }
+
+        private void checkForModification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException("Hash map was modified during iteration");
+            }
+        }
+    }
+}
@@ -16,19 +16,30 @@ import java.util.Map;
 public class ListBucket<K, V> implements Bucket<K, V> {
 
     private ListNode<K, V> head;
+    private int size; // Число пар в списке
 
     public ListBucket() {
         head = null;
+        size = 0;
     }
 
     @Override
     public boolean put(K key, V value) {
+        return putAndGetPrevious(key, value) == null;
+    }
+
+    @Override
+    public Map.Entry<K, V> putAndGetPrevious(K key, V value) {
         if (head == null) {
             head = new ListNode<>(key, value);
-            return true;
-        } else {
-            return head.putIntoList(key, value);
+            size = 1;
+            return null;
+        }
+        final Map.Entry<K, V> previous = head.putIntoListAndGetPrevious(key, value);
+        if (previous == null) {
+            size++;
         }
+        return previous;
     }
 
     @Override
@@ -39,6 +50,15 @@ public class ListBucket<K, V> implements Bucket<K, V> {
         head.replaceValue(key, value);
     }
 
+    @Override
+    public Map.Entry<K, V> replaceAndGetPrevious(K key, V value) {
+        final Map.Entry<K, V> entry = getEntry(key);
+        if (entry == null) {
+            return null;
+        }
+        return new KeyValuePair<>(entry.getKey(), entry.setValue(value));
+    }
+
     @Override
     public V get(Object key) throws KeyNotPresentException {
         if (head == null) {
@@ -53,6 +73,20 @@ public class ListBucket<K, V> implements Bucket<K, V> {
             throw new KeyNotPresentException("Bucket is empty");
         }
         head = head.removeFromList(key);
+        size--;
+    }
+
+    @Override
+    public Map.Entry<K, V> removeAndGetPrevious(Object key) {
+        if (head == null) {
+            return null;
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"}) final KeyValuePair<K, V>[] removed = new KeyValuePair[1];
+        head = head.removeFromList(key, removed);
+        if (removed[0] != null) {
+            size--;
+        }
+        return removed[0];
     }
 
     @Override
@@ -74,10 +108,11 @@ public class ListBucket<K, V> implements Bucket<K, V> {
 
     @Override
     public List<KeyValuePair<K, V>> getKeyValuePairs() {
-        if (head == null) {
-            return new ArrayList<>();
+        final List<KeyValuePair<K, V>> pairs = new ArrayList<>(size);
+        if (head != null) {
+            head.collectKeyValuePairs(pairs);
         }
-        return head.getKeyValuePairs();
+        return pairs;
     }
 
     @Override
@@ -100,5 +135,6 @@ public class ListBucket<K, V> implements Bucket<K, V> {
     @Override
     public void clear() {
         head = null;
+        size = 0;
     }
 }
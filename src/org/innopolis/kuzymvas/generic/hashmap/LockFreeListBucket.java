@@ -0,0 +1,377 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.innopolis.kuzymvas.exceptions.KeyNotPresentException;
+import org.innopolis.kuzymvas.generic.datastructures.KeyValuePair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Корзина хэш таблицы на основе неблокирующего односвязного списка (список Харриса-Майкла).
+ * Узлы упорядочены по хэш кодам ключей, поэтому все узлы с одинаковым хэш кодом идут подряд,
+ * и добавление ключа конкурирует только за ссылку на узел, следующий за ними.
+ * Ссылки на следующие узлы изменяются сравнением с обменом (CAS) и несут метку удаления.
+ * Удаление выполняется в два шага: логическое (значение узла заменяется меткой REMOVED, затем
+ * помечается ссылка на следующий узел, чтобы за удаленным узлом нельзя было ничего добавить)
+ * и физическое (узел исключается из списка). Физическое удаление завершает любой поток, проходящий по списку.
+ * Поиск (get, getOrDefault, containsKey, getEntry) не изменяет список и не ждет других потоков:
+ * он завершается, даже если изменяющий поток приостановлен посреди изменения корзины.
+ * Изменения корзины из нескольких потоков также допустимы и не используют блокировок.
+ *
+ * @param <K> - тип ключа
+ * @param <V> - тип значения
+ */
+public class LockFreeListBucket<K, V> implements Bucket<K, V> {
+
+    private static final Object REMOVED = new Object(); // Значение логически удаленного узла
+
+    private final Node<K, V> head = new Node<>(null, null, 0, null); // Ограничитель, предшествующий всем узлам
+    private final AtomicInteger size = new AtomicInteger(); // Число пар в списке
+
+    @Override
+    public boolean put(K key, V value) {
+        return putAndGetPrevious(key, value) == null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map.Entry<K, V> putAndGetPrevious(K key, V value) {
+        final int hash = Objects.hashCode(key);
+        while (true) {
+            final Window<K, V> window = find(key, hash);
+            if (window.found) {
+                final Object previous = window.curr.swapValue(value);
+                if (previous != REMOVED) {
+                    return new KeyValuePair<>(window.curr.getKey(), (V) previous);
+                }
+                continue; // Узел удален другим потоком: ключ нужно добавить заново
+            }
+            final Node<K, V> node = new Node<>(key, value, hash, window.curr);
+            if (window.pred.next.compareAndSet(window.curr, node, false, false)) {
+                size.incrementAndGet();
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void replace(K key, V value) throws KeyNotPresentException {
+        if (replaceAndGetPrevious(key, value) == null) {
+            throw new KeyNotPresentException("Key isn't present in bucket");
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map.Entry<K, V> replaceAndGetPrevious(K key, V value) {
+        while (true) {
+            final Node<K, V> node = findLiveNode(key);
+            if (node == null) {
+                return null;
+            }
+            final Object previous = node.swapValue(value);
+            if (previous != REMOVED) {
+                return new KeyValuePair<>(node.getKey(), (V) previous);
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) throws KeyNotPresentException {
+        final Object value = findValue(key);
+        if (value == REMOVED) {
+            throw new KeyNotPresentException("Key isn't present in bucket");
+        }
+        return (V) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        final Object value = findValue(key);
+        return (value == REMOVED) ? defaultValue : (V) value;
+    }
+
+    @Override
+    public void remove(Object key) throws KeyNotPresentException {
+        if (removeAndGetPrevious(key) == null) {
+            throw new KeyNotPresentException("Key isn't present in bucket");
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map.Entry<K, V> removeAndGetPrevious(Object key) {
+        final int hash = Objects.hashCode(key);
+        while (true) {
+            final Window<K, V> window = find(key, hash);
+            if (!window.found) {
+                return null;
+            }
+            final Object previous = window.curr.markRemoved();
+            if (previous == REMOVED) {
+                continue; // Узел удален другим потоком раньше
+            }
+            size.decrementAndGet();
+            window.pred.next.compareAndSet(window.curr, window.curr.next.getReference(), false, false);
+            return new KeyValuePair<>(window.curr.getKey(), (V) previous);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findValue(key) != REMOVED;
+    }
+
+    @Override
+    public void describeBucket(StringBuilder strB) {
+        boolean first = true;
+        for (Node<K, V> node = head.next.getReference(); node != null; node = node.next.getReference()) {
+            final Object value = node.value;
+            if (value != REMOVED) {
+                strB.append(first ? "" : ",").append("{key=").append(node.getKey()).append(", value=")
+                    .append(value).append("}");
+                first = false;
+            }
+        }
+    }
+
+    @Override
+    public List<KeyValuePair<K, V>> getKeyValuePairs() {
+        final List<KeyValuePair<K, V>> pairs = new ArrayList<>(Math.max(0, size.get()));
+        for (Node<K, V> node = head.next.getReference(); node != null; node = node.next.getReference()) {
+            if (node.value != REMOVED) {
+                pairs.add(node);
+            }
+        }
+        return pairs;
+    }
+
+    @Override
+    public int[] getKeyValuePairsHashes() {
+        final List<Integer> hashes = new ArrayList<>(Math.max(0, size.get()));
+        for (Node<K, V> node = head.next.getReference(); node != null; node = node.next.getReference()) {
+            final Object value = node.value;
+            if (value != REMOVED) {
+                hashes.add(node.hash ^ Objects.hashCode(value));
+            }
+        }
+        final int[] pairHashes = new int[hashes.size()];
+        for (int i = 0; i < pairHashes.length; i++) {
+            pairHashes[i] = hashes.get(i);
+        }
+        return pairHashes;
+    }
+
+    @Override
+    public Map.Entry<K, V> getEntry(Object key) {
+        return findLiveNode(key);
+    }
+
+    /**
+     * Удаляет все пары, логически удаляя узлы по одному, после чего исключает их из списка.
+     * Пары, добавленные во время очистки, могут остаться в корзине.
+     */
+    @Override
+    public void clear() {
+        for (Node<K, V> node = head.next.getReference(); node != null; node = node.next.getReference()) {
+            if (node.markRemoved() != REMOVED) {
+                size.decrementAndGet();
+            }
+        }
+        find(REMOVED, Integer.MAX_VALUE); // Проход до конца списка исключает из него все удаленные узлы
+    }
+
+    @Override
+    public boolean supportsConcurrentReads() {
+        return true;
+    }
+
+    /**
+     * Ищет значение ключа, не изменяя список. Удаленные узлы пропускаются, но не исключаются.
+     *
+     * @param key - искомый ключ
+     * @return - значение ключа, либо REMOVED, если ключа нет в корзине
+     */
+    private Object findValue(Object key) {
+        final int hash = Objects.hashCode(key);
+        for (Node<K, V> node = head.next.getReference(); node != null && node.hash <= hash;
+             node = node.next.getReference()) {
+            if (node.hash == hash && Objects.equals(node.getKey(), key)) {
+                final Object value = node.value;
+                if (value != REMOVED) {
+                    return value;
+                }
+            }
+        }
+        return REMOVED;
+    }
+
+    /**
+     * Ищет узел ключа, не изменяя список
+     *
+     * @param key - искомый ключ
+     * @return - неудаленный узел ключа, либо null, если ключа нет в корзине
+     */
+    private Node<K, V> findLiveNode(Object key) {
+        final int hash = Objects.hashCode(key);
+        for (Node<K, V> node = head.next.getReference(); node != null && node.hash <= hash;
+             node = node.next.getReference()) {
+            if (node.hash == hash && Objects.equals(node.getKey(), key) && node.value != REMOVED) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Ищет место ключа в списке, по пути исключая из списка удаленные узлы.
+     * Если исключить узел не удалось, потому что список изменился, поиск начинается заново.
+     *
+     * @param key  - искомый ключ
+     * @param hash - хэш код ключа
+     * @return - узел ключа и предшествующий ему узел, если ключ найден,
+     * иначе - первый узел с большим хэш кодом (или null) и предшествующий ему узел
+     */
+    private Window<K, V> find(Object key, int hash) {
+        final boolean[] marked = new boolean[1];
+        retry:
+        while (true) {
+            Node<K, V> pred = head;
+            Node<K, V> curr = pred.next.getReference();
+            while (curr != null) {
+                final Node<K, V> succ = curr.next.get(marked);
+                if (!marked[0] && curr.value == REMOVED) {
+                    curr.markNext(); // Помогаем завершить логическое удаление
+                    continue;
+                }
+                if (marked[0]) {
+                    if (!pred.next.compareAndSet(curr, succ, false, false)) {
+                        continue retry;
+                    }
+                    curr = succ;
+                    continue;
+                }
+                if (curr.hash > hash) {
+                    break;
+                }
+                if (curr.hash == hash && Objects.equals(curr.getKey(), key)) {
+                    return new Window<>(pred, curr, true);
+                }
+                pred = curr;
+                curr = succ;
+            }
+            return new Window<>(pred, curr, false);
+        }
+    }
+
+    /**
+     * Узел списка. Значение хранится вне родительской пары, чтобы его можно было изменять сравнением с обменом.
+     *
+     * @param <K> - тип ключа
+     * @param <V> - тип значения
+     */
+    private static final class Node<K, V> extends KeyValuePair<K, V> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Object> VALUE =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "value");
+
+        private final int hash; // Хэш код ключа
+        private final AtomicMarkableReference<Node<K, V>> next; // Следующий узел и метка удаления этого узла
+        private volatile Object value; // Значение, либо REMOVED для логически удаленного узла
+
+        Node(K key, V value, int hash, Node<K, V> next) {
+            super(key, null);
+            this.hash = hash;
+            this.value = value;
+            this.next = new AtomicMarkableReference<>(next, false);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            final Object current = value;
+            return (current == REMOVED) ? null : (V) current;
+        }
+
+        /**
+         * Заменяет значение узла
+         *
+         * @param value - новое значение
+         * @return - прежнее значение
+         * @throws IllegalStateException - выбрасывается, если узел удален из корзины.
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public V setValue(V value) throws IllegalStateException {
+            final Object previous = swapValue(value);
+            if (previous == REMOVED) {
+                throw new IllegalStateException("Pair was removed from bucket");
+            }
+            return (V) previous;
+        }
+
+        /**
+         * Заменяет значение неудаленного узла
+         *
+         * @param newValue - новое значение
+         * @return - прежнее значение, либо REMOVED, если узел удален
+         */
+        Object swapValue(Object newValue) {
+            while (true) {
+                final Object current = value;
+                if (current == REMOVED || VALUE.compareAndSet(this, current, newValue)) {
+                    return current;
+                }
+            }
+        }
+
+        /**
+         * Логически удаляет узел: заменяет значение меткой REMOVED и помечает ссылку на следующий узел
+         *
+         * @return - значение удаленного узла, либо REMOVED, если узел уже был удален
+         */
+        Object markRemoved() {
+            final Object previous = swapValue(REMOVED);
+            if (previous != REMOVED) {
+                markNext();
+            }
+            return previous;
+        }
+
+        /**
+         * Помечает ссылку на следующий узел. Попытка повторяется, пока за узел добавляют новые узлы.
+         */
+        void markNext() {
+            while (!next.attemptMark(next.getReference(), true)) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Результат поиска места ключа: узел и предшествующий ему узел
+     *
+     * @param <K> - тип ключа
+     * @param <V> - тип значения
+     */
+    private static final class Window<K, V> {
+
+        private final Node<K, V> pred;
+        private final Node<K, V> curr;
+        private final boolean found; // Является ли curr узлом искомого ключа
+
+        Window(Node<K, V> pred, Node<K, V> curr, boolean found) {
+            this.pred = pred;
+            this.curr = curr;
+            this.found = found;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Класс хэш таблицы вне кучи, хранящей индекс и буферы данных в отображенных в память файлах (FileChannel.map).
+ * Таблица переживает перезапуск процесса: при открытии файлы отображаются в память заново,
+ * а не перечитываются, поэтому время открытия не зависит от числа пар.
+ * Каждый буфер (страница индекса или буфер данных) хранится в отдельном файле каталога таблицы,
+ * а заголовок с параметрами и счетчиками таблицы - в файле header.dat.
+ * Точки сохранности задаются вызовом force(): он сбрасывает отображенные файлы на диск
+ * и записывает заголовок, ссылающийся на них.
+ * Файлы, на которые ссылается записанный заголовок, до следующего force() не изменяются:
+ * перед первым изменением страница индекса копируется в новый файл, пары дописываются за концом сохраненных записей,
+ * а ставшие ненужными файлы удаляются только после записи следующего заголовка.
+ * Поэтому после аварийного завершения процесса таблица открывается в состоянии последнего force() или close(),
+ * а файлы, созданные после него, удаляются при открытии.
+ * Индекс хранит хэши ключей, поэтому хэш коды ключей должны совпадать в разных процессах
+ * (как у строк и чисел), а хэш вычисляется стратегией MURMUR3 без случайной затравки.
+ *
+ * @param <K> - тип ключа таблицы
+ * @param <V> - тип значения таблицы
+ */
+public class MappedHashMap<K, V> extends OffHeapHashMap<K, V> implements Closeable {
+
+    private static final int MAGIC = 0x4D484D33; // Метка файла заголовка таблицы
+    private static final String HEADER_FILE = "header.dat"; // Имя файла заголовка
+    private static final String HEADER_TEMP_FILE = "header.tmp"; // Имя файла, в который пишется новый заголовок
+    private static final int DEFAULT_CAPACITY = 16; // Число ячеек по умолчанию
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f; // Коэффициент заполнения по умолчанию
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 26; // Размер буфера данных по умолчанию
+
+    private final Path directory; // Каталог файлов таблицы
+    private final MappedMemory memory; // Источник отображенной в память памяти
+    private final float loadFactor; // Коэффициент заполнения, записываемый в заголовок
+    private final int minCapacity; // Минимальное число ячеек, записываемое в заголовок
+    private final int chunkSize; // Размер буфера данных, записываемый в заголовок
+
+    private MappedHashMap(Path directory, Codec<K> keyCodec, Codec<V> valueCodec, int capacity, float loadFactor,
+                          int chunkSize, MappedMemory memory, State state) throws IllegalArgumentException {
+        super(keyCodec, valueCodec, new BasicHashStrategy(BasicHashStrategy.StrategyType.MURMUR3), capacity,
+              loadFactor, chunkSize, memory, state);
+        this.directory = directory;
+        this.memory = memory;
+        this.loadFactor = loadFactor;
+        this.minCapacity = capacity;
+        this.chunkSize = chunkSize;
+        freeze();
+    }
+
+    /**
+     * Открывает таблицу в заданном каталоге, либо создает в нем пустую таблицу
+     * с 16 ячейками, коэффициентом заполнения 0.75 и буферами данных по 64 МБ
+     *
+     * @param directory  - каталог файлов таблицы. Создается, если не существует
+     * @param keyCodec   - кодек ключей. Не может быть null
+     * @param valueCodec - кодек значений. Не может быть null
+     * @param <K>        - тип ключа таблицы
+     * @param <V>        - тип значения таблицы
+     * @return - открытая таблица
+     * @throws IOException              - выбрасывается при ошибке чтения или записи файлов таблицы.
+     * @throws IllegalArgumentException - выбрасывается, если кодек не задан.
+     */
+    public static <K, V> MappedHashMap<K, V> open(Path directory, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException, IllegalArgumentException {
+        return open(directory, keyCodec, valueCodec, DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Открывает таблицу в заданном каталоге, либо создает в нем пустую таблицу с заданными параметрами.
+     * Параметры существующей таблицы читаются из ее заголовка, а заданные параметры игнорируются.
+     * Существующая таблица открывается в состоянии последнего вызова force() или close(),
+     * а файлы, на которые заголовок не ссылается, удаляются.
+     *
+     * @param directory  - каталог файлов таблицы. Создается, если не существует
+     * @param keyCodec   - кодек ключей. Не может быть null
+     * @param valueCodec - кодек значений. Не может быть null
+     * @param capacity   - начальное (и минимальное) число ячеек новой таблицы. Должно быть строго больше 0
+     * @param loadFactor - коэффициент заполнения новой таблицы. Должен быть строго больше 0 и строго меньше 1
+     * @param chunkSize  - размер буфера данных новой таблицы в байтах. Должен быть строго больше 0
+     * @param <K>        - тип ключа таблицы
+     * @param <V>        - тип значения таблицы
+     * @return - открытая таблица
+     * @throws IOException              - выбрасывается при ошибке чтения или записи файлов таблицы.
+     * @throws IllegalArgumentException - выбрасывается, если кодек не задан,
+     *                                  или параметры новой таблицы вне допустимых границ.
+     */
+    public static <K, V> MappedHashMap<K, V> open(Path directory, Codec<K> keyCodec, Codec<V> valueCodec,
+                                                  int capacity, float loadFactor, int chunkSize)
+            throws IOException, IllegalArgumentException {
+        final Path header = directory.resolve(HEADER_FILE);
+        if (!Files.exists(header)) {
+            Files.createDirectories(directory);
+            final MappedHashMap<K, V> map = new MappedHashMap<>(directory, keyCodec, valueCodec, capacity,
+                                                                loadFactor, chunkSize, new MappedMemory(directory, 0),
+                                                                null);
+            map.force();
+            return map;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(header)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("File " + header + " isn't a hash map header");
+            }
+            final float storedLoadFactor = in.readFloat();
+            final int storedMinCapacity = in.readInt();
+            final int storedChunkSize = in.readInt();
+            final MappedMemory memory = new MappedMemory(directory, in.readLong());
+            final int storedCapacity = in.readInt();
+            final ByteBuffer[] indexPages = new ByteBuffer[in.readInt()];
+            for (int i = 0; i < indexPages.length; i++) {
+                indexPages[i] = memory.map(in.readLong());
+            }
+            final int size = in.readInt();
+            final int writeOffset = in.readInt();
+            final long liveBytes = in.readLong();
+            final ByteBuffer[] chunks = new ByteBuffer[in.readInt()];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = memory.map(in.readLong());
+            }
+            memory.deleteUnmapped();
+            return new MappedHashMap<>(directory, keyCodec, valueCodec, storedMinCapacity, storedLoadFactor,
+                                       storedChunkSize, memory,
+                                       new State(indexPages, storedCapacity, chunks, writeOffset, liveBytes, size));
+        }
+    }
+
+    /**
+     * Возвращает каталог файлов таблицы
+     *
+     * @return - каталог таблицы
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Сбрасывает содержимое таблицы на диск и записывает ссылающийся на него заголовок.
+     * После возврата из метода таблица будет открыта в текущем состоянии, если до следующего вызова
+     * процесс завершится, в том числе аварийно.
+     *
+     * @throws IOException - выбрасывается при ошибке записи файлов таблицы.
+     */
+    public void force() throws IOException {
+        memory.force();
+        writeHeader();
+        memory.deleteReleased();
+        freeze();
+    }
+
+    /**
+     * Сбрасывает содержимое таблицы на диск (см. force()). После закрытия таблицу не следует использовать.
+     *
+     * @throws IOException - выбрасывается при ошибке записи файлов таблицы.
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+    }
+
+    /**
+     * Записывает заголовок таблицы: параметры, счетчики и номера файлов страниц индекса и буферов данных.
+     * Заголовок пишется во временный файл, который затем заменяет прежний заголовок,
+     * поэтому на диске всегда находится целый заголовок.
+     *
+     * @throws IOException - выбрасывается при ошибке записи заголовка.
+     */
+    private void writeHeader() throws IOException {
+        final State state = getState();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeFloat(loadFactor);
+            out.writeInt(minCapacity);
+            out.writeInt(chunkSize);
+            out.writeLong(memory.nextId);
+            out.writeInt(state.capacity);
+            out.writeInt(state.indexPages.length);
+            for (ByteBuffer page : state.indexPages) {
+                out.writeLong(memory.idOf(page));
+            }
+            out.writeInt(state.size);
+            out.writeInt(state.writeOffset);
+            out.writeLong(state.liveBytes);
+            out.writeInt(state.chunks.length);
+            for (ByteBuffer chunk : state.chunks) {
+                out.writeLong(memory.idOf(chunk));
+            }
+        }
+        final Path temp = directory.resolve(HEADER_TEMP_FILE);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(HEADER_FILE), StandardCopyOption.ATOMIC_MOVE,
+                   StandardCopyOption.REPLACE_EXISTING);
+        // Новые файлы и замена заголовка сохраняются, только когда сброшен на диск сам каталог
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Память из файлов, отображенных в память: каждый выделенный буфер хранится в отдельном файле
+     * с уникальным номером. Освобожденный буфер, созданный после последней записи заголовка, сразу удаляет
+     * свой файл, а файлы остальных буферов удаляются после записи следующего заголовка (deleteReleased()).
+     */
+    private static final class MappedMemory implements OffHeapMemory {
+
+        private final Path directory; // Каталог файлов буферов
+        private final Map<ByteBuffer, Long> regionIds = new IdentityHashMap<>(); // Номера файлов буферов
+        private final List<Long> releasedIds = new ArrayList<>(); // Номера файлов, на которые ссылается заголовок
+        private long firstUnsavedId; // Номер первого файла, созданного после последней записи заголовка
+        private long nextId; // Номер файла следующего выделенного буфера
+
+        MappedMemory(Path directory, long nextId) {
+            this.directory = directory;
+            this.firstUnsavedId = nextId;
+            this.nextId = nextId;
+        }
+
+        @Override
+        public ByteBuffer allocate(int size) {
+            final long id = nextId++;
+            try (FileChannel channel = FileChannel.open(regionPath(id), StandardOpenOption.CREATE_NEW,
+                                                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                regionIds.put(buffer, id);
+                return buffer;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to allocate hash map file in " + directory, e);
+            }
+        }
+
+        @Override
+        public void release(ByteBuffer buffer) {
+            final Long id = regionIds.remove(buffer);
+            if (id == null) {
+                return;
+            }
+            if (id < firstUnsavedId) {
+                releasedIds.add(id);
+                return;
+            }
+            try {
+                Files.deleteIfExists(regionPath(id));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to delete hash map file in " + directory, e);
+            }
+        }
+
+        /**
+         * Удаляет файлы освобожденных буферов, на которые ссылался прежний заголовок.
+         * Вызывается после записи нового заголовка.
+         *
+         * @throws IOException - выбрасывается, если файл нельзя удалить.
+         */
+        void deleteReleased() throws IOException {
+            for (long id : releasedIds) {
+                Files.deleteIfExists(regionPath(id));
+            }
+            releasedIds.clear();
+            firstUnsavedId = nextId;
+        }
+
+        /**
+         * Удаляет файлы буферов, которые не были отображены в память при открытии таблицы:
+         * созданные после последней записи заголовка или освобожденные до нее.
+         *
+         * @throws IOException - выбрасывается, если каталог нельзя прочитать или файл нельзя удалить.
+         */
+        void deleteUnmapped() throws IOException {
+            final Set<Long> mappedIds = new HashSet<>(regionIds.values());
+            final List<Path> unmapped = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "region-*.dat")) {
+                for (Path file : files) {
+                    final String name = file.getFileName().toString();
+                    final long id = Long.parseLong(name.substring("region-".length(), name.length() - ".dat".length()));
+                    if (!mappedIds.contains(id)) {
+                        unmapped.add(file);
+                    }
+                }
+            }
+            for (Path file : unmapped) {
+                Files.delete(file);
+            }
+        }
+
+        /**
+         * Отображает в память существующий файл буфера
+         *
+         * @param id - номер файла
+         * @return - буфер с содержимым файла
+         * @throws IOException - выбрасывается, если файл нельзя открыть.
+         */
+        ByteBuffer map(long id) throws IOException {
+            try (FileChannel channel = FileChannel.open(regionPath(id), StandardOpenOption.READ,
+                                                        StandardOpenOption.WRITE)) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                regionIds.put(buffer, id);
+                return buffer;
+            }
+        }
+
+        /**
+         * Сбрасывает на диск содержимое всех буферов
+         */
+        void force() {
+            for (ByteBuffer buffer : regionIds.keySet()) {
+                ((MappedByteBuffer) buffer).force();
+            }
+        }
+
+        long idOf(ByteBuffer buffer) {
+            return regionIds.get(buffer);
+        }
+
+        private Path regionPath(long id) {
+            return directory.resolve("region-" + id + ".dat");
+        }
+    }
+}
@@ -0,0 +1,773 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * Класс хэш таблицы, хранящей пары вне кучи: ключи и значения преобразуются кодеками в байты
+ * и записываются в прямые (direct) буферы, индекс таблицы с открытой адресацией также хранится в прямых буферах,
+ * разбитый на страницы не более чем по 2^14 ячеек.
+ * В куче остаются только сама таблица и массив ссылок на буферы, поэтому число объектов в куче
+ * не зависит от числа пар, и сборщик мусора не обходит хранимые пары.
+ * Объекты ключей и значений создаются только при чтении (get, обход таблицы).
+ * Ключи сравниваются по байтовому представлению, поэтому кодек ключей должен превращать равные ключи
+ * в одинаковые последовательности байт (см. Codec).
+ * Записи пар добавляются в конец буферов данных, место удаленных и замененных записей освобождается уплотнением,
+ * которое выполняется, когда мусор занимает больше места, чем живые записи.
+ * Память прямых буферов освобождается, когда сборщик мусора удаляет сами буферы,
+ * и ограничена параметром виртуальной машины -XX:MaxDirectMemorySize.
+ *
+ * @param <K> - тип ключа таблицы
+ * @param <V> - тип значения таблицы
+ */
+public class OffHeapHashMap<K, V> extends AbstractSlotHashMap<K, V> {
+
+    private static final int DEFAULT_CAPACITY = 16; // Число ячеек по умолчанию
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f; // Коэффициент заполнения по умолчанию
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 20; // Размер буфера данных по умолчанию
+    private static final int CELL_SIZE = 12; // Размер ячейки индекса: адрес записи (long) и хэш ключа (int)
+    private static final int MAX_CAPACITY = 1 << 27; // Наибольшее число ячеек индекса
+    private static final int PAGE_SHIFT = 14; // Двоичный логарифм наибольшего числа ячеек в странице индекса
+    private static final int HEADER_SIZE = 8; // Размер заголовка записи: длины ключа и значения (int)
+    private static final int NULL_LENGTH = -1; // Длина, обозначающая null ключ или значение
+    private static final int EMPTY = 0; // Адрес пустой ячейки индекса
+
+    private final Codec<K> keyCodec; // Кодек ключей
+    private final Codec<V> valueCodec; // Кодек значений
+    private final HashStrategy hashStrategy; // Стратегия, вычисляющая хэш ключа для выбора начальной ячейки
+    private final float loadFactor; // Максимальная доля занятых ячеек
+    private final int minCapacity; // Число ячеек, меньше которого таблица не сжимается
+    private final int chunkSize; // Размер буфера данных. Записи большего размера получают отдельный буфер
+    private final OffHeapMemory memory; // Источник памяти для индекса и буферов данных
+    private ByteBuffer[] indexPages; // Страницы ячеек индекса: адрес записи пары (EMPTY - пустая ячейка) и хэш ключа
+    private int pageShift; // Двоичный логарифм числа ячеек в странице индекса
+    private int capacity; // Число ячеек индекса. Степень двойки
+    private ByteBuffer[] chunks; // Буферы данных с записями пар
+    private int chunkCount; // Число используемых буферов данных
+    private int writeOffset; // Смещение, с которого пишется следующая запись в последнем буфере
+    private long allocatedBytes; // Суммарный размер буферов данных
+    private long liveBytes; // Суммарный размер записей, на которые ссылается индекс
+    private int size; // Число пар ключ-значение в таблице
+    private int growThreshold; // Число пар, при превышении которого таблица растет
+    private int shrinkThreshold; // Число пар, при падении ниже которого таблица сжимается
+    private final BitSet frozenPages = new BitSet(); // Страницы индекса, входящие в зафиксированное состояние
+    private int frozenChunkCount; // Число буферов данных с записями зафиксированного состояния
+    private int frozenWriteOffset; // Конец записей зафиксированного состояния в последнем из этих буферов
+
+    /**
+     * Создает хэш таблицу с 16 ячейками, коэффициентом заполнения 0.75 и буферами данных по 1 МБ
+     *
+     * @param keyCodec   - кодек ключей. Не может быть null
+     * @param valueCodec - кодек значений. Не может быть null
+     * @throws IllegalArgumentException - выбрасывается, если кодек не задан.
+     */
+    public OffHeapHashMap(Codec<K> keyCodec, Codec<V> valueCodec) throws IllegalArgumentException {
+        this(keyCodec, valueCodec, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Создает хэш таблицу с заданным начальным числом ячеек, коэффициентом заполнения 0.75
+     * и буферами данных по 1 МБ
+     *
+     * @param keyCodec   - кодек ключей. Не может быть null
+     * @param valueCodec - кодек значений. Не может быть null
+     * @param capacity   - начальное (и минимальное) число ячеек. Должно быть строго больше 0
+     * @throws IllegalArgumentException - выбрасывается, если кодек не задан или число ячеек меньше, либо равно нулю.
+     */
+    public OffHeapHashMap(Codec<K> keyCodec, Codec<V> valueCodec, int capacity) throws IllegalArgumentException {
+        this(keyCodec, valueCodec, new BasicHashStrategy(BasicHashStrategy.StrategyType.MURMUR3), capacity,
+             DEFAULT_LOAD_FACTOR, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Создает хэш таблицу с заданными кодеками, стратегией хэширования, начальным числом ячеек,
+     * коэффициентом заполнения и размером буферов данных.
+     * Число ячеек округляется вверх до степени двойки, но не более 2^27.
+     * Таблица удваивает число ячеек при превышении коэффициента заполнения и вдвое сокращает его,
+     * когда заполненность падает ниже четверти от коэффициента, но не ниже начального числа ячеек.
+     *
+     * @param keyCodec     - кодек ключей. Не может быть null
+     * @param valueCodec   - кодек значений. Не может быть null
+     * @param hashStrategy - стратегия вычисления хэша ключей. Не может быть null
+     * @param capacity     - начальное (и минимальное) число ячеек. Должно быть строго больше 0
+     * @param loadFactor   - коэффициент заполнения. Должен быть строго больше 0 и строго меньше 1
+     * @param chunkSize    - размер буфера данных в байтах. Должен быть строго больше 0
+     * @throws IllegalArgumentException - выбрасывается, если кодек или стратегия не заданы,
+     *                                  или число ячеек, коэффициент заполнения или размер буфера
+     *                                  вне допустимых границ.
+     */
+    public OffHeapHashMap(Codec<K> keyCodec, Codec<V> valueCodec, HashStrategy hashStrategy, int capacity,
+                          float loadFactor, int chunkSize) throws IllegalArgumentException {
+        this(keyCodec, valueCodec, hashStrategy, capacity, loadFactor, chunkSize, OffHeapMemory.DIRECT, null);
+    }
+
+    /**
+     * Создает хэш таблицу, выделяющую память из заданного источника.
+     * Если задано сохраненное состояние, таблица продолжает работу с его индексом и буферами данных.
+     *
+     * @param keyCodec     - кодек ключей. Не может быть null
+     * @param valueCodec   - кодек значений. Не может быть null
+     * @param hashStrategy - стратегия вычисления хэша ключей. Не может быть null.
+     *                     Для сохраненного состояния должна совпадать со стратегией, с которой оно создано
+     * @param capacity     - начальное (и минимальное) число ячеек. Должно быть строго больше 0
+     * @param loadFactor   - коэффициент заполнения. Должен быть строго больше 0 и строго меньше 1
+     * @param chunkSize    - размер буфера данных в байтах. Должен быть строго больше 0
+     * @param memory       - источник памяти для индекса и буферов данных
+     * @param state        - сохраненное состояние таблицы, либо null для пустой таблицы
+     * @throws IllegalArgumentException - выбрасывается, если кодек или стратегия не заданы,
+     *                                  или число ячеек, коэффициент заполнения или размер буфера
+     *                                  вне допустимых границ.
+     */
+    OffHeapHashMap(Codec<K> keyCodec, Codec<V> valueCodec, HashStrategy hashStrategy, int capacity,
+                   float loadFactor, int chunkSize, OffHeapMemory memory, State state)
+            throws IllegalArgumentException {
+        if (keyCodec == null || valueCodec == null) {
+            throw new IllegalArgumentException("Codecs can't be null");
+        }
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Hash strategy can't be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Hash map can't have 0 or less cells");
+        }
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1 exclusive");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.hashStrategy = hashStrategy;
+        this.loadFactor = loadFactor;
+        this.chunkSize = chunkSize;
+        this.memory = memory;
+        this.minCapacity = roundToPowerOfTwo(capacity, 2, MAX_CAPACITY);
+        if (state == null) {
+            allocateIndex(minCapacity);
+            releaseChunks();
+            size = 0;
+        } else {
+            this.capacity = state.capacity;
+            pageShift = pageShift(state.capacity);
+            indexPages = new ByteBuffer[state.indexPages.length];
+            for (int page = 0; page < indexPages.length; page++) {
+                indexPages[page] = state.indexPages[page].order(ByteOrder.nativeOrder());
+            }
+            chunks = Arrays.copyOf(state.chunks, Math.max(state.chunks.length, 4));
+            chunkCount = state.chunks.length;
+            writeOffset = state.writeOffset;
+            for (ByteBuffer chunk : state.chunks) {
+                allocatedBytes += chunk.capacity();
+            }
+            liveBytes = state.liveBytes;
+            size = state.size;
+        }
+        updateThresholds();
+    }
+
+    /**
+     * Возвращает текущее число ячеек в индексе таблицы
+     *
+     * @return - число ячеек
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Возвращает объем памяти вне кучи, занятой индексом и буферами данных таблицы
+     *
+     * @return - объем памяти в байтах
+     */
+    public long getAllocatedBytes() {
+        return (long) capacity * CELL_SIZE + allocatedBytes;
+    }
+
+    /**
+     * Возвращает текущее состояние таблицы: страницы индекса, буферы данных и счетчики,
+     * по которым его можно восстановить
+     *
+     * @return - состояние таблицы
+     */
+    State getState() {
+        return new State(indexPages.clone(), capacity, Arrays.copyOf(chunks, chunkCount), writeOffset, liveBytes,
+                         size);
+    }
+
+    /**
+     * Фиксирует текущее состояние таблицы: до следующего вызова индекс и уже записанные пары
+     * не изменяются на месте. Перед первым изменением ячейки страница индекса, в которой она лежит,
+     * копируется в новый буфер, поэтому после фиксации копируются только изменяемые страницы, а не весь индекс.
+     * Новое значение зафиксированной пары записывается заново, даже если его длина не изменилась.
+     * Буферы зафиксированного состояния, ставшие ненужными, освобождаются через источник памяти как обычно.
+     */
+    void freeze() {
+        frozenPages.set(0, indexPages.length);
+        frozenChunkCount = chunkCount;
+        frozenWriteOffset = writeOffset;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return slotOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (int cell = 0; cell < capacity; cell++) {
+            final long address = addressAt(cell);
+            if (address != EMPTY && Objects.equals(decodeValue(address), value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        final int cell = slotOf(key);
+        return (cell < 0) ? null : decodeValue(addressAt(cell));
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        final int cell = slotOf(key);
+        return (cell < 0) ? defaultValue : decodeValue(addressAt(cell));
+    }
+
+    /**
+     * Связывает значение с ключом, заменяя прежнее значение ключа
+     *
+     * @param key   - ключ
+     * @param value - значение
+     * @return - прежнее значение ключа, либо null, если ключа не было в таблице
+     * @throws IllegalStateException - выбрасывается, если ключа нет в таблице, а она уже заполнена
+     *                               при максимальном числе ячеек.
+     */
+    @Override
+    public V put(K key, V value) throws IllegalStateException {
+        final byte[] keyBytes = (key == null) ? null : keyCodec.encode(key);
+        final byte[] valueBytes = (value == null) ? null : valueCodec.encode(value);
+        final int hash = hashStrategy.hash(key);
+        final int mask = capacity - 1;
+        int cell = hash & mask;
+        long address;
+        while ((address = addressAt(cell)) != EMPTY) {
+            if (hashAt(cell) == hash && keyMatches(address, keyBytes)) {
+                final V previous = decodeValue(address);
+                replaceValue(cell, address, keyBytes, valueBytes);
+                return previous;
+            }
+            cell = (cell + 1) & mask;
+        }
+        if (size >= growThreshold && capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Hash map can't grow past " + MAX_CAPACITY + " cells");
+        }
+        setCell(cell, writeRecord(keyBytes, valueBytes), hash);
+        size++;
+        modCount++;
+        if (size > growThreshold) {
+            resize(capacity * 2);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        final int cell = slotOf(key);
+        if (cell < 0) {
+            return null;
+        }
+        final V previous = decodeValue(addressAt(cell));
+        deleteAt(cell);
+        if (size < shrinkThreshold) {
+            resize(Math.max(minCapacity, capacity / 2));
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        releaseIndex();
+        allocateIndex(capacity);
+        releaseChunks();
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    SlotIterator entryIterator() {
+        return new EntryIterator();
+    }
+
+    /**
+     * Находит ячейку индекса, ссылающуюся на запись с заданным ключом.
+     * Ключ, который кодек не может преобразовать из-за его типа, считается отсутствующим.
+     *
+     * @param key - искомый ключ
+     * @return - номер ячейки, либо NO_SLOT, если ключа в таблице нет
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    int slotOf(Object key) {
+        final byte[] keyBytes;
+        try {
+            keyBytes = (key == null) ? null : keyCodec.encode((K) key);
+        } catch (ClassCastException e) {
+            return NO_SLOT;
+        }
+        final int hash = hashStrategy.hash(key);
+        final int mask = capacity - 1;
+        int cell = hash & mask;
+        long address;
+        while ((address = addressAt(cell)) != EMPTY) {
+            if (hashAt(cell) == hash && keyMatches(address, keyBytes)) {
+                return cell;
+            }
+            cell = (cell + 1) & mask;
+        }
+        return NO_SLOT;
+    }
+
+    /**
+     * Сравнивает ключ записи с байтовым представлением ключа
+     *
+     * @param address  - адрес записи
+     * @param keyBytes - байтовое представление ключа, null - для null ключа
+     * @return - true, если ключ записи совпадает с заданным, false в противном случае
+     */
+    private boolean keyMatches(long address, byte[] keyBytes) {
+        final ByteBuffer chunk = chunks[chunkOf(address)];
+        final int offset = offsetOf(address);
+        final int keyLength = chunk.getInt(offset);
+        if (keyBytes == null || keyLength == NULL_LENGTH) {
+            return keyBytes == null && keyLength == NULL_LENGTH;
+        }
+        if (keyLength != keyBytes.length) {
+            return false;
+        }
+        final int keyOffset = offset + HEADER_SIZE;
+        for (int i = 0; i < keyLength; i++) {
+            if (chunk.get(keyOffset + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Заменяет значение пары. Значение той же длины перезаписывается на месте, если запись не зафиксирована,
+     * иначе пара записывается заново, а старая запись становится мусором.
+     *
+     * @param cell       - ячейка индекса пары
+     * @param address    - адрес записи пары
+     * @param keyBytes   - байтовое представление ключа
+     * @param valueBytes - байтовое представление нового значения, null - для null значения
+     */
+    private void replaceValue(int cell, long address, byte[] keyBytes, byte[] valueBytes) {
+        final ByteBuffer chunk = chunks[chunkOf(address)];
+        final int offset = offsetOf(address);
+        final int valueLength = (valueBytes == null) ? NULL_LENGTH : valueBytes.length;
+        if (chunk.getInt(offset + Integer.BYTES) == valueLength && !isFrozen(address)) {
+            if (valueBytes != null) {
+                chunk.put(offset + HEADER_SIZE + Math.max(chunk.getInt(offset), 0), valueBytes);
+            }
+            return;
+        }
+        liveBytes -= recordSize(chunk, offset);
+        setCell(cell, writeRecord(keyBytes, valueBytes), hashAt(cell));
+        compactIfNeeded();
+    }
+
+    /**
+     * Проверяет, входит ли запись в зафиксированное состояние таблицы
+     *
+     * @param address - адрес записи
+     * @return - true, если запись нельзя изменять на месте, false в противном случае
+     */
+    private boolean isFrozen(long address) {
+        final int chunk = chunkOf(address);
+        return chunk < frozenChunkCount - 1 || (chunk == frozenChunkCount - 1 && offsetOf(address) < frozenWriteOffset);
+    }
+
+    @Override
+    K keyAt(int cell) {
+        return decodeKey(addressAt(cell));
+    }
+
+    @Override
+    V valueAt(int cell) {
+        return decodeValue(addressAt(cell));
+    }
+
+    /**
+     * Восстанавливает значение записи
+     *
+     * @param address - адрес записи
+     * @return - значение записи
+     */
+    private V decodeValue(long address) {
+        final ByteBuffer chunk = chunks[chunkOf(address)];
+        final int offset = offsetOf(address);
+        final int valueLength = chunk.getInt(offset + Integer.BYTES);
+        if (valueLength == NULL_LENGTH) {
+            return null;
+        }
+        return valueCodec.decode(chunk, offset + HEADER_SIZE + Math.max(chunk.getInt(offset), 0), valueLength);
+    }
+
+    /**
+     * Восстанавливает ключ записи
+     *
+     * @param address - адрес записи
+     * @return - ключ записи
+     */
+    private K decodeKey(long address) {
+        final ByteBuffer chunk = chunks[chunkOf(address)];
+        final int offset = offsetOf(address);
+        final int keyLength = chunk.getInt(offset);
+        return (keyLength == NULL_LENGTH) ? null : keyCodec.decode(chunk, offset + HEADER_SIZE, keyLength);
+    }
+
+    /**
+     * Добавляет запись пары в конец буферов данных.
+     * Запись состоит из длин ключа и значения и их байтовых представлений.
+     *
+     * @param keyBytes   - байтовое представление ключа, null - для null ключа
+     * @param valueBytes - байтовое представление значения, null - для null значения
+     * @return - адрес записи
+     */
+    private long writeRecord(byte[] keyBytes, byte[] valueBytes) {
+        final int keyLength = (keyBytes == null) ? NULL_LENGTH : keyBytes.length;
+        final int valueLength = (valueBytes == null) ? NULL_LENGTH : valueBytes.length;
+        final long address = reserve(HEADER_SIZE + Math.max(keyLength, 0) + Math.max(valueLength, 0));
+        final ByteBuffer chunk = chunks[chunkOf(address)];
+        final int offset = offsetOf(address);
+        chunk.putInt(offset, keyLength);
+        chunk.putInt(offset + Integer.BYTES, valueLength);
+        if (keyBytes != null) {
+            chunk.put(offset + HEADER_SIZE, keyBytes);
+        }
+        if (valueBytes != null) {
+            chunk.put(offset + HEADER_SIZE + Math.max(keyLength, 0), valueBytes);
+        }
+        return address;
+    }
+
+    /**
+     * Выделяет место под запись в конце последнего буфера данных.
+     * Если места в нем не хватает, создается новый буфер, а остаток старого остается неиспользованным.
+     *
+     * @param recordSize - размер записи в байтах
+     * @return - адрес выделенного места
+     */
+    private long reserve(int recordSize) {
+        if (chunkCount == 0 || writeOffset + recordSize > chunks[chunkCount - 1].capacity()) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            }
+            final int newChunkSize = Math.max(chunkSize, recordSize);
+            chunks[chunkCount++] = memory.allocate(newChunkSize);
+            allocatedBytes += newChunkSize;
+            writeOffset = 0;
+        }
+        final long address = ((long) chunkCount << 32) | writeOffset;
+        writeOffset += recordSize;
+        liveBytes += recordSize;
+        return address;
+    }
+
+    /**
+     * Удаляет пару из заданной ячейки индекса, сдвигая назад те элементы следующей за ней цепочки,
+     * которые могут занять освободившееся место, не оказавшись перед своей начальной ячейкой.
+     * Запись пары становится мусором. Размер индекса при этом не пересматривается.
+     *
+     * @param cell - номер занятой ячейки
+     */
+    @Override
+    void deleteAt(int cell) {
+        final long removedAddress = addressAt(cell);
+        liveBytes -= recordSize(chunks[chunkOf(removedAddress)], offsetOf(removedAddress));
+        final int mask = capacity - 1;
+        int hole = cell;
+        int current = cell;
+        while (true) {
+            current = (current + 1) & mask;
+            final long address = addressAt(current);
+            if (address == EMPTY) {
+                break;
+            }
+            final int hash = hashAt(current);
+            final int home = hash & mask;
+            // Элемент можно перенести в дыру, если его начальная ячейка не лежит между дырой и им самим
+            if (((current - home) & mask) >= ((current - hole) & mask)) {
+                setCell(hole, address, hash);
+                hole = current;
+            }
+        }
+        setCell(hole, EMPTY, 0);
+        size--;
+        modCount++;
+        compactIfNeeded();
+    }
+
+    /**
+     * Уплотняет данные, если мусор и неиспользованные остатки буферов занимают больше места,
+     * чем живые записи, и больше одного буфера.
+     * Записи копируются в новые буферы, ячейки индекса при этом не перемещаются.
+     */
+    private void compactIfNeeded() {
+        final long garbageBytes = allocatedBytes - liveBytes;
+        if (garbageBytes <= liveBytes || garbageBytes <= chunkSize) {
+            return;
+        }
+        final ByteBuffer[] oldChunks = Arrays.copyOf(chunks, chunkCount);
+        chunks = new ByteBuffer[4];
+        resetChunkCounters();
+        for (int cell = 0; cell < capacity; cell++) {
+            final long address = addressAt(cell);
+            if (address != EMPTY) {
+                final ByteBuffer oldChunk = oldChunks[chunkOf(address)];
+                final int oldOffset = offsetOf(address);
+                final int recordSize = recordSize(oldChunk, oldOffset);
+                final long newAddress = reserve(recordSize);
+                chunks[chunkOf(newAddress)].put(offsetOf(newAddress), oldChunk, oldOffset, recordSize);
+                setCell(cell, newAddress, hashAt(cell));
+            }
+        }
+        for (ByteBuffer oldChunk : oldChunks) {
+            memory.release(oldChunk);
+        }
+    }
+
+    /**
+     * Перестраивает индекс с заданным числом ячеек, заново размещая в нем адреса записей.
+     * Хэши ключей хранятся в индексе, поэтому ключи при этом не восстанавливаются.
+     *
+     * @param newCapacity - новое число ячеек. Степень двойки
+     */
+    private void resize(int newCapacity) {
+        if (newCapacity == capacity) {
+            return;
+        }
+        final ByteBuffer[] oldPages = indexPages;
+        final int oldPageShift = pageShift;
+        final int oldCellMask = (1 << oldPageShift) - 1;
+        final int oldCapacity = capacity;
+        allocateIndex(newCapacity);
+        final int mask = newCapacity - 1;
+        for (int oldCell = 0; oldCell < oldCapacity; oldCell++) {
+            final ByteBuffer oldPage = oldPages[oldCell >>> oldPageShift];
+            final int position = (oldCell & oldCellMask) * CELL_SIZE;
+            final long address = oldPage.getLong(position);
+            if (address != EMPTY) {
+                final int hash = oldPage.getInt(position + Long.BYTES);
+                int cell = hash & mask;
+                while (addressAt(cell) != EMPTY) {
+                    cell = (cell + 1) & mask;
+                }
+                setCell(cell, address, hash);
+            }
+        }
+        for (ByteBuffer oldPage : oldPages) {
+            memory.release(oldPage);
+        }
+        updateThresholds();
+        modCount++;
+    }
+
+    /**
+     * Пересчитывает границы числа пар, при пересечении которых таблица меняет размер.
+     * Таблица всегда сохраняет хотя бы одну пустую ячейку, на которой останавливается поиск.
+     */
+    private void updateThresholds() {
+        growThreshold = (capacity >= MAX_CAPACITY) ? capacity - 1 :
+                Math.min(capacity - 1, (int) (capacity * (double) loadFactor));
+        shrinkThreshold = (capacity <= minCapacity) ? Integer.MIN_VALUE :
+                (int) (capacity * (double) loadFactor / 4);
+    }
+
+    /**
+     * Освобождает все буферы данных
+     */
+    private void releaseChunks() {
+        for (int i = 0; i < chunkCount; i++) {
+            memory.release(chunks[i]);
+        }
+        chunks = new ByteBuffer[4];
+        resetChunkCounters();
+    }
+
+    private void resetChunkCounters() {
+        frozenChunkCount = 0;
+        chunkCount = 0;
+        writeOffset = 0;
+        allocatedBytes = 0;
+        liveBytes = 0;
+    }
+
+    private long addressAt(int cell) {
+        return indexPages[cell >>> pageShift].getLong(positionOf(cell));
+    }
+
+    private int hashAt(int cell) {
+        return indexPages[cell >>> pageShift].getInt(positionOf(cell) + Long.BYTES);
+    }
+
+    /**
+     * Записывает адрес и хэш в ячейку индекса.
+     * Зафиксированная страница индекса перед первым изменением копируется в новый буфер.
+     *
+     * @param cell    - номер ячейки
+     * @param address - адрес записи пары, EMPTY - для пустой ячейки
+     * @param hash    - хэш ключа пары
+     */
+    private void setCell(int cell, long address, int hash) {
+        final int page = cell >>> pageShift;
+        if (frozenPages.get(page)) {
+            final ByteBuffer copy = memory.allocate(indexPages[page].capacity()).order(ByteOrder.nativeOrder());
+            copy.put(0, indexPages[page], 0, copy.capacity());
+            memory.release(indexPages[page]);
+            indexPages[page] = copy;
+            frozenPages.clear(page);
+        }
+        final int position = positionOf(cell);
+        indexPages[page].putLong(position, address);
+        indexPages[page].putInt(position + Long.BYTES, hash);
+    }
+
+    private int positionOf(int cell) {
+        return (cell & ((1 << pageShift) - 1)) * CELL_SIZE;
+    }
+
+    /**
+     * Выделяет пустой индекс с заданным числом ячеек. Прежние страницы индекса не освобождаются.
+     *
+     * @param newCapacity - число ячеек. Степень двойки
+     */
+    private void allocateIndex(int newCapacity) {
+        capacity = newCapacity;
+        pageShift = pageShift(newCapacity);
+        indexPages = new ByteBuffer[newCapacity >>> pageShift];
+        for (int page = 0; page < indexPages.length; page++) {
+            indexPages[page] = memory.allocate(CELL_SIZE << pageShift).order(ByteOrder.nativeOrder());
+        }
+        frozenPages.clear();
+    }
+
+    /**
+     * Освобождает все страницы индекса
+     */
+    private void releaseIndex() {
+        for (ByteBuffer page : indexPages) {
+            memory.release(page);
+        }
+    }
+
+    /**
+     * Возвращает двоичный логарифм числа ячеек в странице индекса заданного размера
+     *
+     * @param capacity - число ячеек индекса. Степень двойки
+     * @return - логарифм числа ячеек в странице
+     */
+    private static int pageShift(int capacity) {
+        return Math.min(Integer.numberOfTrailingZeros(capacity), PAGE_SHIFT);
+    }
+
+    /**
+     * Возвращает номер буфера данных по адресу записи.
+     * Адрес хранит номер буфера, увеличенный на единицу, в старших 32 битах, чтобы адрес не совпадал с EMPTY,
+     * и смещение записи в буфере - в младших.
+     *
+     * @param address - адрес записи
+     * @return - номер буфера
+     */
+    private static int chunkOf(long address) {
+        return (int) (address >>> 32) - 1;
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    private static int recordSize(ByteBuffer chunk, int offset) {
+        return HEADER_SIZE + Math.max(chunk.getInt(offset), 0) + Math.max(chunk.getInt(offset + Integer.BYTES), 0);
+    }
+
+    /**
+     * Состояние таблицы, по которому ее можно восстановить: страницы индекса, буферы данных и счетчики.
+     * Буферы не копируются.
+     */
+    static final class State {
+
+        final ByteBuffer[] indexPages; // Страницы ячеек индекса по порядку
+        final int capacity; // Число ячеек индекса
+        final ByteBuffer[] chunks; // Используемые буферы данных по порядку
+        final int writeOffset; // Смещение следующей записи в последнем буфере
+        final long liveBytes; // Суммарный размер записей, на которые ссылается индекс
+        final int size; // Число пар в таблице
+
+        State(ByteBuffer[] indexPages, int capacity, ByteBuffer[] chunks, int writeOffset, long liveBytes,
+              int size) {
+            this.indexPages = indexPages;
+            this.capacity = capacity;
+            this.chunks = chunks;
+            this.writeOffset = writeOffset;
+            this.liveBytes = liveBytes;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Итератор по парам таблицы, восстанавливающий ключ и значение каждой возвращаемой пары.
+     * Обходит ячейки индекса в сторону уменьшения номера, начиная с ячейки перед пустой:
+     * сдвиг назад при удалении через итератор переносит в удаленную ячейку только уже обойденные пары
+     * и не переходит через пустую ячейку, с которой начат обход.
+     */
+    final class EntryIterator extends SlotIterator {
+
+        private final int start; // Номер пустой ячейки, с которой начинается обход
+        private int visited; // Число просмотренных ячеек
+        private int nextCell = -1; // Номер ячейки следующей пары, -1 - если она еще не найдена
+
+        EntryIterator() {
+            int cell = 0;
+            while (addressAt(cell) != EMPTY) {
+                cell++;
+            }
+            start = cell;
+        }
+
+        @Override
+        public boolean hasNext() {
+            final int mask = capacity - 1;
+            while (nextCell < 0 && visited < mask) {
+                visited++;
+                final int cell = (start - visited) & mask;
+                if (addressAt(cell) != EMPTY) {
+                    nextCell = cell;
+                }
+            }
+            return nextCell >= 0;
+        }
+
+        @Override
+        int nextSlot() {
+            final int cell = nextCell;
+            nextCell = -1;
+            return cell;
+        }
+    }
+}
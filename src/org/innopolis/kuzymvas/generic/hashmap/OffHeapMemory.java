@@ -0,0 +1,38 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Источник памяти вне кучи, из которой OffHeapHashMap выделяет индекс и буферы данных
+ */
+interface OffHeapMemory {
+
+    /**
+     * Память из прямых (direct) буферов, освобождаемая сборщиком мусора вместе с буферами
+     */
+    OffHeapMemory DIRECT = new OffHeapMemory() {
+        @Override
+        public ByteBuffer allocate(int size) {
+            return ByteBuffer.allocateDirect(size);
+        }
+
+        @Override
+        public void release(ByteBuffer buffer) {
+        }
+    };
+
+    /**
+     * Выделяет буфер заданного размера, заполненный нулями
+     *
+     * @param size - размер буфера в байтах
+     * @return - буфер
+     */
+    ByteBuffer allocate(int size);
+
+    /**
+     * Сообщает, что таблица больше не использует буфер
+     *
+     * @param buffer - буфер, ранее выделенный этим источником
+     */
+    void release(ByteBuffer buffer);
+}
@@ -0,0 +1,335 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.util.*;
+
+/**
+ * Класс хэш таблицы с открытой адресацией: ключи и значения хранятся в двух плоских массивах,
+ * а коллизии разрешаются линейным пробированием.
+ * При удалении следующие за удаленной парой элементы цепочки сдвигаются назад,
+ * поэтому таблица не нуждается в пометках удаленных ячеек.
+ * В отличие от BucketAgnosticHashMap не создает отдельных объектов узлов и пар для хранимых пар.
+ * Линейное пробирование чувствительно к скоплениям близких хэшей,
+ * поэтому по умолчанию хэш ключа перемешивается финализатором Murmur3.
+ *
+ * @param <K> - тип ключа таблицы
+ * @param <V> - тип значения таблицы
+ */
+public class OpenAddressingHashMap<K, V> extends AbstractSlotHashMap<K, V> {
+
+    private static final int DEFAULT_CAPACITY = 16; // Число ячеек по умолчанию
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f; // Коэффициент заполнения по умолчанию
+    private static final int MAX_CAPACITY = 1 << 30; // Верхняя граница числа ячеек при росте таблицы
+
+    private final HashStrategy hashStrategy; // Стратегия, вычисляющая хэш ключа для выбора начальной ячейки
+    private final float loadFactor; // Максимальная доля занятых ячеек
+    private final int minCapacity; // Число ячеек, меньше которого таблица не сжимается
+    private Object[] keys; // Ключи (null - пустая ячейка, NULL_KEY - null ключ). Размер - степень двойки
+    private Object[] values; // Значения, хранимые в тех же ячейках, что и их ключи
+    private int size; // Число пар ключ-значение в таблице
+    private int growThreshold; // Число пар, при превышении которого таблица растет
+    private int shrinkThreshold; // Число пар, при падении ниже которого таблица сжимается
+
+    /**
+     * Создает хэш таблицу с 16 ячейками и коэффициентом заполнения 0.75
+     */
+    public OpenAddressingHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Создает хэш таблицу с заданным начальным числом ячеек и коэффициентом заполнения 0.75
+     *
+     * @param capacity - начальное (и минимальное) число ячеек. Должно быть строго больше 0
+     * @throws IllegalArgumentException - выбрасывается, если число ячеек меньше, либо равно нулю.
+     */
+    public OpenAddressingHashMap(int capacity) throws IllegalArgumentException {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Создает хэш таблицу с заданными начальным числом ячеек и коэффициентом заполнения.
+     *
+     * @param capacity   - начальное (и минимальное) число ячеек. Должно быть строго больше 0
+     * @param loadFactor - коэффициент заполнения. Должен быть строго больше 0 и строго меньше 1
+     * @throws IllegalArgumentException - выбрасывается, если число ячеек или коэффициент заполнения
+     *                                  вне допустимых границ.
+     */
+    public OpenAddressingHashMap(int capacity, float loadFactor) throws IllegalArgumentException {
+        this(new BasicHashStrategy(BasicHashStrategy.StrategyType.MURMUR3), capacity, loadFactor);
+    }
+
+    /**
+     * Создает хэш таблицу с заданными стратегией хэширования, начальным числом ячеек и коэффициентом заполнения.
+     * Число ячеек округляется вверх до степени двойки.
+     * Таблица удваивает число ячеек при превышении коэффициента заполнения и вдвое сокращает его,
+     * когда заполненность падает ниже четверти от коэффициента, но не ниже начального числа ячеек.
+     *
+     * @param hashStrategy - стратегия вычисления хэша ключей. Не может быть null
+     * @param capacity     - начальное (и минимальное) число ячеек. Должно быть строго больше 0
+     * @param loadFactor   - коэффициент заполнения. Должен быть строго больше 0 и строго меньше 1
+     * @throws IllegalArgumentException - выбрасывается, если стратегия не задана,
+     *                                  или число ячеек или коэффициент заполнения вне допустимых границ.
+     */
+    public OpenAddressingHashMap(HashStrategy hashStrategy, int capacity, float loadFactor)
+            throws IllegalArgumentException {
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Hash strategy can't be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Hash map can't have 0 or less cells");
+        }
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1 exclusive");
+        }
+        this.hashStrategy = hashStrategy;
+        this.loadFactor = loadFactor;
+        this.minCapacity = roundToPowerOfTwo(capacity, 2, MAX_CAPACITY);
+        keys = new Object[minCapacity];
+        values = new Object[minCapacity];
+        size = 0;
+        updateThresholds();
+    }
+
+    /**
+     * Возвращает текущее число ячеек в таблице
+     *
+     * @return - число ячеек
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return slotOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && Objects.equals(values[i], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        final int index = slotOf(key);
+        return (index < 0) ? null : valueAt(index);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        final int index = slotOf(key);
+        return (index < 0) ? defaultValue : valueAt(index);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        final Object storedKey = maskNull(key);
+        final int mask = keys.length - 1;
+        int index = hashStrategy.hash(key) & mask;
+        while (keys[index] != null) {
+            if (keys[index] == storedKey || storedKey.equals(keys[index])) {
+                final V previous = valueAt(index);
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = storedKey;
+        values[index] = value;
+        size++;
+        modCount++;
+        if (size > growThreshold) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        final int index = slotOf(key);
+        if (index < 0) {
+            return null;
+        }
+        final V previous = valueAt(index);
+        deleteAt(index);
+        if (size < shrinkThreshold) {
+            resize(Math.max(minCapacity, keys.length / 2));
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    SlotIterator entryIterator() {
+        return new EntryIterator();
+    }
+
+    /**
+     * Находит ячейку, в которой хранится заданный ключ.
+     * Поиск идет от начальной ячейки ключа до первой пустой ячейки.
+     *
+     * @param key - искомый ключ
+     * @return - номер ячейки, либо NO_SLOT, если ключа в таблице нет
+     */
+    @Override
+    int slotOf(Object key) {
+        final Object storedKey = maskNull(key);
+        final int mask = keys.length - 1;
+        int index = hashStrategy.hash(key) & mask;
+        Object candidate;
+        while ((candidate = keys[index]) != null) {
+            if (candidate == storedKey || storedKey.equals(candidate)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return NO_SLOT;
+    }
+
+    /**
+     * Удаляет пару из заданной ячейки, сдвигая назад те элементы следующей за ней цепочки,
+     * которые могут занять освободившееся место, не оказавшись перед своей начальной ячейкой.
+     * Размер таблицы при этом не пересматривается.
+     *
+     * @param index - номер занятой ячейки
+     */
+    @Override
+    void deleteAt(int index) {
+        final int mask = keys.length - 1;
+        int hole = index;
+        int current = index;
+        while (true) {
+            current = (current + 1) & mask;
+            final Object key = keys[current];
+            if (key == null) {
+                break;
+            }
+            final int home = hashStrategy.hash(unmaskNull(key)) & mask;
+            // Элемент можно перенести в дыру, если его начальная ячейка не лежит между дырой и им самим
+            if (((current - home) & mask) >= ((current - hole) & mask)) {
+                keys[hole] = key;
+                values[hole] = values[current];
+                hole = current;
+            }
+        }
+        keys[hole] = null;
+        values[hole] = null;
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Перестраивает таблицу с заданным числом ячеек, заново размещая все хранимые пары.
+     *
+     * @param newCapacity - новое число ячеек. Степень двойки
+     */
+    private void resize(int newCapacity) {
+        if (newCapacity == keys.length) {
+            return;
+        }
+        final Object[] oldKeys = keys;
+        final Object[] oldValues = values;
+        keys = new Object[newCapacity];
+        values = new Object[newCapacity];
+        final int mask = newCapacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int index = hashStrategy.hash(unmaskNull(oldKeys[i])) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+        updateThresholds();
+        modCount++;
+    }
+
+    /**
+     * Пересчитывает границы числа пар, при пересечении которых таблица меняет размер.
+     * Таблица всегда сохраняет хотя бы одну пустую ячейку, на которой останавливается поиск.
+     */
+    private void updateThresholds() {
+        final int capacity = keys.length;
+        growThreshold = (capacity >= MAX_CAPACITY) ? capacity - 1 :
+                Math.min(capacity - 1, (int) (capacity * (double) loadFactor));
+        shrinkThreshold = (capacity <= minCapacity) ? Integer.MIN_VALUE :
+                (int) (capacity * (double) loadFactor / 4);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    K keyAt(int index) {
+        return (K) unmaskNull(keys[index]);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    V valueAt(int index) {
+        return (V) values[index];
+    }
+
+    /**
+     * Итератор по парам таблицы.
+     * Обходит ячейки в сторону уменьшения номера, начиная с ячейки перед пустой:
+     * сдвиг назад при удалении через итератор переносит в удаленную ячейку только уже обойденные пары
+     * и не переходит через пустую ячейку, с которой начат обход.
+     */
+    final class EntryIterator extends SlotIterator {
+
+        private final int start; // Номер пустой ячейки, с которой начинается обход
+        private int visited; // Число просмотренных ячеек
+        private int nextIndex = -1; // Номер ячейки следующей пары, -1 - если она еще не найдена
+
+        EntryIterator() {
+            int index = 0;
+            while (keys[index] != null) {
+                index++;
+            }
+            start = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            final int mask = keys.length - 1;
+            while (nextIndex < 0 && visited < mask) {
+                visited++;
+                final int index = (start - visited) & mask;
+                if (keys[index] != null) {
+                    nextIndex = index;
+                }
+            }
+            return nextIndex >= 0;
+        }
+
+        @Override
+        int nextSlot() {
+            final int slot = nextIndex;
+            nextIndex = -1;
+            return slot;
+        }
+    }
+}
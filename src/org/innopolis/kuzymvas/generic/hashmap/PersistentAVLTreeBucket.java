@@ -0,0 +1,548 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.innopolis.kuzymvas.exceptions.KeyNotPresentException;
+import org.innopolis.kuzymvas.generic.datastructures.HashOrderComparator;
+import org.innopolis.kuzymvas.generic.datastructures.KeyValuePair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Корзина хэш таблицы на основе неизменяемого АВЛ дерева с копированием пути.
+ * Узлы дерева никогда не изменяются: изменение корзины создает копии узлов на пути от корня
+ * к изменяемому узлу (O(log n) новых узлов, включая повороты балансировки), а остальные поддеревья
+ * разделяются со старым деревом. Новое дерево публикуется одной операцией сравнения с обменом (CAS)
+ * ссылки на корень, поэтому поиск не использует блокировок, не ждет других потоков и всегда видит
+ * целое дерево - атомарный снимок корзины. Изменения из нескольких потоков также допустимы:
+ * проигравший CAS поток повторяет изменение на новом корне.
+ * Узлы упорядочены по хэш кодам ключей, а ключи с одинаковым хэш кодом - по естественному порядку,
+ * если они принадлежат одному классу, реализующему Comparable (HashOrderComparator.compareForSearch).
+ * Поэтому ключи не обязаны реализовывать Comparable, а множество сравнимых ключей с одинаковым хэш кодом
+ * не вырождает дерево. Ключи, неразличимые таким порядком, хранятся цепочкой в одном узле дерева.
+ *
+ * @param <K> - тип ключа
+ * @param <V> - тип значения
+ */
+public class PersistentAVLTreeBucket<K, V> implements Bucket<K, V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<PersistentAVLTreeBucket, Node> ROOT =
+            AtomicReferenceFieldUpdater.newUpdater(PersistentAVLTreeBucket.class, Node.class, "root");
+
+    private static final HashOrderComparator<Object> KEY_ORDER = new HashOrderComparator<>(); // Порядок ключей
+
+    private volatile Node<K, V> root; // Корень текущего дерева, либо null для пустой корзины
+
+    @Override
+    public boolean put(K key, V value) {
+        return putAndGetPrevious(key, value) == null;
+    }
+
+    @Override
+    public Map.Entry<K, V> putAndGetPrevious(K key, V value) {
+        final int hash = Objects.hashCode(key);
+        while (true) {
+            final Node<K, V> current = root;
+            final Node<K, V>[] path = newNodeArray(height(current));
+            final int depth = findPath(current, hash, key, path);
+            final Node<K, V> node = (depth < 0) ? null : path[depth];
+            final Node<K, V> previous = (node == null) ? null : node.findInChain(key);
+            final Node<K, V> updated;
+            if (previous != null) {
+                updated = copyPath(path, depth, node.replaceInChain(previous, value));
+            } else if (node != null) {
+                updated = copyPath(path, depth, node.withChain(new Node<>(hash, key, value, node.chain)));
+            } else {
+                updated = rebuildPath(path, -depth - 2, hash, key, new Node<>(hash, key, value, null));
+            }
+            if (ROOT.compareAndSet(this, current, updated)) {
+                return (previous == null) ? null : new KeyValuePair<>(previous.key, previous.value);
+            }
+        }
+    }
+
+    @Override
+    public void replace(K key, V value) throws KeyNotPresentException {
+        if (replaceAndGetPrevious(key, value) == null) {
+            throw new KeyNotPresentException("Key isn't present in bucket");
+        }
+    }
+
+    @Override
+    public Map.Entry<K, V> replaceAndGetPrevious(K key, V value) {
+        final int hash = Objects.hashCode(key);
+        while (true) {
+            final Node<K, V> current = root;
+            final Node<K, V>[] path = newNodeArray(height(current));
+            final int depth = findPath(current, hash, key, path);
+            final Node<K, V> previous = (depth < 0) ? null : path[depth].findInChain(key);
+            if (previous == null) {
+                return null;
+            }
+            final Node<K, V> updated = copyPath(path, depth, path[depth].replaceInChain(previous, value));
+            if (ROOT.compareAndSet(this, current, updated)) {
+                return new KeyValuePair<>(previous.key, previous.value);
+            }
+        }
+    }
+
+    @Override
+    public V get(Object key) throws KeyNotPresentException {
+        final Node<K, V> node = findNode(root, key);
+        if (node == null) {
+            throw new KeyNotPresentException("Key isn't present in bucket");
+        }
+        return node.value;
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        final Node<K, V> node = findNode(root, key);
+        return (node == null) ? defaultValue : node.value;
+    }
+
+    @Override
+    public void remove(Object key) throws KeyNotPresentException {
+        if (removeAndGetPrevious(key) == null) {
+            throw new KeyNotPresentException("Key isn't present in bucket");
+        }
+    }
+
+    @Override
+    public Map.Entry<K, V> removeAndGetPrevious(Object key) {
+        final int hash = Objects.hashCode(key);
+        while (true) {
+            final Node<K, V> current = root;
+            final Node<K, V>[] path = newNodeArray(height(current));
+            final int depth = findPath(current, hash, key, path);
+            final Node<K, V> previous = (depth < 0) ? null : path[depth].findInChain(key);
+            if (previous == null) {
+                return null;
+            }
+            final Node<K, V> node = path[depth];
+            final Node<K, V> updated;
+            if (previous != node) {
+                updated = copyPath(path, depth, node.withChain(Node.removeFromChain(node.chain, previous)));
+            } else if (node.chain != null) {
+                updated = copyPath(path, depth, node.chain.withChildren(node.left, node.right));
+            } else {
+                updated = removeNode(path, depth);
+            }
+            if (ROOT.compareAndSet(this, current, updated)) {
+                return new KeyValuePair<>(previous.key, previous.value);
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findNode(root, key) != null;
+    }
+
+    @Override
+    public void describeBucket(StringBuilder strB) {
+        boolean first = true;
+        for (Node<K, V> node : getNodesInOrder(root)) {
+            strB.append(first ? "" : ",").append("{key=").append(node.key).append(", value=")
+                .append(node.value).append("}");
+            first = false;
+        }
+    }
+
+    /**
+     * Возвращает пары одного снимка корзины. Значения пар записываются в корзину (setValue),
+     * но сами пары не отражают последующих изменений корзины.
+     *
+     * @return - список пар корзины
+     */
+    @Override
+    public List<KeyValuePair<K, V>> getKeyValuePairs() {
+        final List<Node<K, V>> nodes = getNodesInOrder(root);
+        final List<KeyValuePair<K, V>> pairs = new ArrayList<>(nodes.size());
+        for (Node<K, V> node : nodes) {
+            pairs.add(new WriteThroughPair(node.key, node.value));
+        }
+        return pairs;
+    }
+
+    @Override
+    public int[] getKeyValuePairsHashes() {
+        final List<Node<K, V>> nodes = getNodesInOrder(root);
+        final int[] pairHashes = new int[nodes.size()];
+        for (int i = 0; i < pairHashes.length; i++) {
+            final Node<K, V> node = nodes.get(i);
+            pairHashes[i] = node.hash ^ Objects.hashCode(node.value);
+        }
+        return pairHashes;
+    }
+
+    @Override
+    public Map.Entry<K, V> getEntry(Object key) {
+        final Node<K, V> node = findNode(root, key);
+        return (node == null) ? null : new WriteThroughPair(node.key, node.value);
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+    }
+
+    @Override
+    public boolean supportsConcurrentReads() {
+        return true;
+    }
+
+    /**
+     * Ищет узел ключа в дереве, не изменяя его
+     *
+     * @param tree - корень дерева
+     * @param key  - искомый ключ
+     * @return - узел ключа (в том числе узел цепочки), либо null, если ключа в дереве нет
+     */
+    private static <K, V> Node<K, V> findNode(Node<K, V> tree, Object key) {
+        final int hash = Objects.hashCode(key);
+        Node<K, V> node = tree;
+        while (node != null) {
+            final int comparison = compare(hash, key, node);
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                node = node.right;
+            } else {
+                return node.findInChain(key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Ищет узел, цепочка которого должна содержать ключ, запоминая путь к нему от корня
+     *
+     * @param tree - корень дерева
+     * @param hash - хэш код ключа
+     * @param key  - искомый ключ
+     * @param path - массив длиной не меньше высоты дерева, в который записываются узлы пути
+     * @return - глубина найденного узла (его позиция в path), либо -(длина пути) - 1, если узла нет.
+     * В этом случае путь заканчивается узлом, к которому следует присоединить новый лист
+     */
+    private static <K, V> int findPath(Node<K, V> tree, int hash, Object key, Node<K, V>[] path) {
+        Node<K, V> node = tree;
+        int depth = 0;
+        while (node != null) {
+            path[depth] = node;
+            final int comparison = compare(hash, key, node);
+            if (comparison == 0) {
+                return depth;
+            }
+            node = (comparison < 0) ? node.left : node.right;
+            depth++;
+        }
+        return -depth - 1;
+    }
+
+    /**
+     * Сравнивает ключ с ключом узла: по хэш коду, а при его равенстве - по естественному порядку
+     *
+     * @param hash - хэш код ключа
+     * @param key  - ключ
+     * @param node - узел дерева
+     * @return - отрицательное число, если ключ лежит левее узла, положительное, если правее,
+     * и 0, если ключ относится к цепочке узла
+     */
+    private static int compare(int hash, Object key, Node<?, ?> node) {
+        if (hash != node.hash) {
+            return (hash < node.hash) ? -1 : 1;
+        }
+        return KEY_ORDER.compareForSearch(key, node.key);
+    }
+
+    /**
+     * Удаляет узел дерева в конце пути. Узел с двумя поддеревьями заменяется копией
+     * наименьшего узла правого поддерева, который удаляется из правого поддерева.
+     *
+     * @param path  - путь от корня к удаляемому узлу
+     * @param depth - глубина удаляемого узла
+     * @return - корень нового дерева
+     */
+    private static <K, V> Node<K, V> removeNode(Node<K, V>[] path, int depth) {
+        final Node<K, V> node = path[depth];
+        final Node<K, V> replacement;
+        if (node.left == null || node.right == null) {
+            replacement = (node.left == null) ? node.right : node.left;
+        } else {
+            final Node<K, V>[] minPath = newNodeArray(node.right.height);
+            int minDepth = 0;
+            for (Node<K, V> min = node.right; min != null; min = min.left) {
+                minPath[minDepth++] = min;
+            }
+            final Node<K, V> min = minPath[minDepth - 1];
+            final Node<K, V> right = rebuildPath(minPath, minDepth - 2, min.hash, min.key, min.right);
+            replacement = balance(min.withChildren(node.left, right));
+        }
+        return rebuildPath(path, depth - 1, node.hash, node.key, replacement);
+    }
+
+    /**
+     * Заменяет узел в конце пути, копируя узлы пути без балансировки: высота поддерева не меняется
+     *
+     * @param path        - путь от корня
+     * @param depth       - глубина заменяемого узла
+     * @param replacement - новый узел с теми же поддеревьями и местом в порядке ключей
+     * @return - корень нового дерева
+     */
+    private static <K, V> Node<K, V> copyPath(Node<K, V>[] path, int depth, Node<K, V> replacement) {
+        Node<K, V> child = replacement;
+        for (int i = depth - 1; i >= 0; i--) {
+            final Node<K, V> node = path[i];
+            child = (compare(replacement.hash, replacement.key, node) < 0) ? node.withChildren(child, node.right)
+                                                                           : node.withChildren(node.left, child);
+        }
+        return child;
+    }
+
+    /**
+     * Копирует узлы пути снизу вверх, заменяя поддерево, в котором лежит ключ, и балансируя каждую копию
+     *
+     * @param path    - путь от корня
+     * @param last    - глубина последнего копируемого узла пути, -1 - заменяется все дерево
+     * @param hash    - хэш код ключа
+     * @param key     - ключ, определяющий, какое поддерево узлов пути заменяется
+     * @param subTree - новое поддерево последнего узла пути, либо null
+     * @return - корень нового дерева
+     */
+    private static <K, V> Node<K, V> rebuildPath(Node<K, V>[] path, int last, int hash, Object key,
+                                                 Node<K, V> subTree) {
+        Node<K, V> child = subTree;
+        for (int i = last; i >= 0; i--) {
+            final Node<K, V> node = path[i];
+            child = balance((compare(hash, key, node) < 0) ? node.withChildren(child, node.right)
+                                                           : node.withChildren(node.left, child));
+        }
+        return child;
+    }
+
+    /**
+     * Балансирует новый узел, поддеревья которого сбалансированы и отличаются по высоте не более чем на 2
+     *
+     * @param node - новый узел
+     * @return - корень сбалансированного поддерева
+     */
+    private static <K, V> Node<K, V> balance(Node<K, V> node) {
+        final int balance = height(node.right) - height(node.left);
+        if (balance > 1) {
+            Node<K, V> right = node.right;
+            if (height(right.left) > height(right.right)) {
+                right = rotateRight(right);
+            }
+            return rotateLeft(node.withChildren(node.left, right));
+        } else if (balance < -1) {
+            Node<K, V> left = node.left;
+            if (height(left.right) > height(left.left)) {
+                left = rotateLeft(left);
+            }
+            return rotateRight(node.withChildren(left, node.right));
+        }
+        return node;
+    }
+
+    /**
+     * Выполняет левый поворот, создавая копии двух узлов
+     *
+     * @param node - корень исходного поддерева
+     * @return - корень повернутого поддерева
+     */
+    private static <K, V> Node<K, V> rotateLeft(Node<K, V> node) {
+        final Node<K, V> right = node.right;
+        return right.withChildren(node.withChildren(node.left, right.left), right.right);
+    }
+
+    /**
+     * Выполняет правый поворот, создавая копии двух узлов
+     *
+     * @param node - корень исходного поддерева
+     * @return - корень повернутого поддерева
+     */
+    private static <K, V> Node<K, V> rotateRight(Node<K, V> node) {
+        final Node<K, V> left = node.left;
+        return left.withChildren(left.left, node.withChildren(left.right, node.right));
+    }
+
+    /**
+     * Возвращает узлы дерева и их цепочек в порядке обхода
+     *
+     * @param tree - корень дерева
+     * @return - список узлов
+     */
+    private static <K, V> List<Node<K, V>> getNodesInOrder(Node<K, V> tree) {
+        final List<Node<K, V>> nodes = new ArrayList<>();
+        final Node<K, V>[] stack = newNodeArray(height(tree));
+        int stackSize = 0;
+        Node<K, V> node = tree;
+        while (node != null || stackSize > 0) {
+            while (node != null) {
+                stack[stackSize++] = node;
+                node = node.left;
+            }
+            node = stack[--stackSize];
+            for (Node<K, V> pair = node; pair != null; pair = pair.chain) {
+                nodes.add(pair);
+            }
+            node = node.right;
+        }
+        return nodes;
+    }
+
+    private static int height(Node<?, ?> node) {
+        return (node == null) ? 0 : node.height;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] newNodeArray(int length) {
+        return (Node<K, V>[]) new Node<?, ?>[length];
+    }
+
+    /**
+     * Возвращает высоту текущего дерева корзины
+     *
+     * @return - высота дерева, 0 для пустой корзины
+     */
+    int getHeight() {
+        return height(root);
+    }
+
+    /**
+     * Неизменяемый узел дерева. Ключи, неразличимые по хэш коду и естественному порядку,
+     * хранятся в цепочке узлов без поддеревьев.
+     *
+     * @param <K> - тип ключа
+     * @param <V> - тип значения
+     */
+    private static final class Node<K, V> {
+
+        private final int hash; // Хэш код ключа
+        private final K key;
+        private final V value;
+        private final Node<K, V> chain; // Следующий узел с неразличимым ключом
+        private final Node<K, V> left; // Поддеревья с меньшими и большими ключами
+        private final Node<K, V> right;
+        private final int height; // Высота узла в дереве (у листьев = 1)
+
+        Node(int hash, K key, V value, Node<K, V> chain) {
+            this(hash, key, value, chain, null, null);
+        }
+
+        Node(int hash, K key, V value, Node<K, V> chain, Node<K, V> left, Node<K, V> right) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.chain = chain;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+        }
+
+        Node<K, V> withChildren(Node<K, V> left, Node<K, V> right) {
+            return new Node<>(hash, key, value, chain, left, right);
+        }
+
+        Node<K, V> withChain(Node<K, V> chain) {
+            return new Node<>(hash, key, value, chain, left, right);
+        }
+
+        /**
+         * Ищет ключ в цепочке, начинающейся с данного узла
+         *
+         * @param key - искомый ключ
+         * @return - узел цепочки с ключом, либо null
+         */
+        Node<K, V> findInChain(Object key) {
+            for (Node<K, V> node = this; node != null; node = node.chain) {
+                if (Objects.equals(node.key, key)) {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Копирует узел дерева, заменяя значение одного из узлов его цепочки
+         *
+         * @param target - узел цепочки, значение которого заменяется
+         * @param value  - новое значение
+         * @return - копия узла дерева
+         */
+        Node<K, V> replaceInChain(Node<K, V> target, V value) {
+            if (target == this) {
+                return new Node<>(hash, key, value, chain, left, right);
+            }
+            return withChain(copyChain(chain, target, new Node<>(target.hash, target.key, value, target.chain)));
+        }
+
+        /**
+         * Копирует цепочку без заданного узла
+         *
+         * @param chain  - цепочка
+         * @param target - удаляемый узел цепочки
+         * @return - новая цепочка
+         */
+        static <K, V> Node<K, V> removeFromChain(Node<K, V> chain, Node<K, V> target) {
+            return copyChain(chain, target, target.chain);
+        }
+
+        /**
+         * Копирует узлы цепочки, предшествующие заданному, и присоединяет к копии новое продолжение.
+         * Копирование выполняется циклом, поэтому длина цепочки не ограничена глубиной стека.
+         *
+         * @param chain  - цепочка
+         * @param target - узел цепочки, вместо которого присоединяется продолжение
+         * @param tail   - новое продолжение, либо null
+         * @return - новая цепочка
+         */
+        private static <K, V> Node<K, V> copyChain(Node<K, V> chain, Node<K, V> target, Node<K, V> tail) {
+            int length = 0;
+            for (Node<K, V> node = chain; node != target; node = node.chain) {
+                length++;
+            }
+            final Node<K, V>[] prefix = newNodeArray(length);
+            Node<K, V> node = chain;
+            for (int i = 0; i < length; i++, node = node.chain) {
+                prefix[i] = node;
+            }
+            Node<K, V> copy = tail;
+            for (int i = length - 1; i >= 0; i--) {
+                copy = new Node<>(prefix[i].hash, prefix[i].key, prefix[i].value, copy);
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Пара, возвращаемая корзиной. Замена значения записывается в корзину.
+     */
+    private final class WriteThroughPair extends KeyValuePair<K, V> {
+
+        WriteThroughPair(K key, V value) {
+            super(key, value);
+        }
+
+        /**
+         * Заменяет значение пары и значение ее ключа в корзине
+         *
+         * @param value - новое значение
+         * @return - прежнее значение ключа в корзине
+         * @throws IllegalStateException - выбрасывается, если ключ удален из корзины.
+         */
+        @Override
+        public V setValue(V value) throws IllegalStateException {
+            final Map.Entry<K, V> previous = replaceAndGetPrevious(getKey(), value);
+            if (previous == null) {
+                throw new IllegalStateException("Pair was removed from bucket");
+            }
+            super.setValue(value);
+            return previous.getValue();
+        }
+    }
+}
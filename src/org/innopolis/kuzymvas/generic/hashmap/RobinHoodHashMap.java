@@ -0,0 +1,397 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.util.*;
+
+/**
+ * Класс хэш таблицы с открытой адресацией по схеме Robin Hood.
+ * Как и в OpenAddressingHashMap, ключи и значения хранятся в плоских массивах и ищутся линейным пробированием,
+ * но для каждой ячейки дополнительно хранится расстояние от начальной ячейки ее ключа.
+ * При вставке новый ключ вытесняет ключ, оказавшийся ближе к своей начальной ячейке,
+ * поэтому длины пробирования выравниваются и остаются малыми даже при высоком коэффициенте заполнения.
+ * Поиск отсутствующего ключа прекращается, как только встречен ключ ближе к своей начальной ячейке, чем искомый.
+ *
+ * @param <K> - тип ключа таблицы
+ * @param <V> - тип значения таблицы
+ */
+public class RobinHoodHashMap<K, V> extends AbstractSlotHashMap<K, V> {
+
+    private static final int DEFAULT_CAPACITY = 16; // Число ячеек по умолчанию
+    private static final float DEFAULT_LOAD_FACTOR = 0.9f; // Коэффициент заполнения по умолчанию
+    private static final int MAX_CAPACITY = 1 << 30; // Верхняя граница числа ячеек при росте таблицы
+
+    private final HashStrategy hashStrategy; // Стратегия, вычисляющая хэш ключа для выбора начальной ячейки
+    private final float loadFactor; // Максимальная доля занятых ячеек
+    private final int minCapacity; // Число ячеек, меньше которого таблица не сжимается
+    private Object[] keys; // Ключи (NULL_KEY - null ключ). Размер - степень двойки
+    private Object[] values; // Значения, хранимые в тех же ячейках, что и их ключи
+    private int[] probes; // Расстояние от начальной ячейки ключа плюс 1. 0 - пустая ячейка
+    private int size; // Число пар ключ-значение в таблице
+    private int growThreshold; // Число пар, при превышении которого таблица растет
+    private int shrinkThreshold; // Число пар, при падении ниже которого таблица сжимается
+
+    /**
+     * Создает хэш таблицу с 16 ячейками и коэффициентом заполнения 0.9
+     */
+    public RobinHoodHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Создает хэш таблицу с заданным начальным числом ячеек и коэффициентом заполнения 0.9
+     *
+     * @param capacity - начальное (и минимальное) число ячеек. Должно быть строго больше 0
+     * @throws IllegalArgumentException - выбрасывается, если число ячеек меньше, либо равно нулю.
+     */
+    public RobinHoodHashMap(int capacity) throws IllegalArgumentException {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Создает хэш таблицу с заданными начальным числом ячеек и коэффициентом заполнения.
+     *
+     * @param capacity   - начальное (и минимальное) число ячеек. Должно быть строго больше 0
+     * @param loadFactor - коэффициент заполнения. Должен быть строго больше 0 и строго меньше 1
+     * @throws IllegalArgumentException - выбрасывается, если число ячеек или коэффициент заполнения
+     *                                  вне допустимых границ.
+     */
+    public RobinHoodHashMap(int capacity, float loadFactor) throws IllegalArgumentException {
+        this(new BasicHashStrategy(BasicHashStrategy.StrategyType.MURMUR3), capacity, loadFactor);
+    }
+
+    /**
+     * Создает хэш таблицу с заданными стратегией хэширования, начальным числом ячеек и коэффициентом заполнения.
+     * Число ячеек округляется вверх до степени двойки.
+     * Таблица удваивает число ячеек при превышении коэффициента заполнения и вдвое сокращает его,
+     * когда заполненность падает ниже четверти от коэффициента, но не ниже начального числа ячеек.
+     *
+     * @param hashStrategy - стратегия вычисления хэша ключей. Не может быть null
+     * @param capacity     - начальное (и минимальное) число ячеек. Должно быть строго больше 0
+     * @param loadFactor   - коэффициент заполнения. Должен быть строго больше 0 и строго меньше 1
+     * @throws IllegalArgumentException - выбрасывается, если стратегия не задана,
+     *                                  или число ячеек или коэффициент заполнения вне допустимых границ.
+     */
+    public RobinHoodHashMap(HashStrategy hashStrategy, int capacity, float loadFactor)
+            throws IllegalArgumentException {
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Hash strategy can't be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Hash map can't have 0 or less cells");
+        }
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1 exclusive");
+        }
+        this.hashStrategy = hashStrategy;
+        this.loadFactor = loadFactor;
+        this.minCapacity = roundToPowerOfTwo(capacity, 2, MAX_CAPACITY);
+        keys = new Object[minCapacity];
+        values = new Object[minCapacity];
+        probes = new int[minCapacity];
+        size = 0;
+        updateThresholds();
+    }
+
+    /**
+     * Возвращает текущее число ячеек в таблице
+     *
+     * @return - число ячеек
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Возвращает наибольшую длину пробирования среди хранимых ключей:
+     * число ячеек, просматриваемых при поиске самого удаленного от своей начальной ячейки ключа.
+     * Вычисляется просмотром всех ячеек таблицы.
+     *
+     * @return - наибольшая длина пробирования, 0 - для пустой таблицы
+     */
+    public int getMaxProbeLength() {
+        int max = 0;
+        for (int probe : probes) {
+            max = Math.max(max, probe);
+        }
+        return max;
+    }
+
+    /**
+     * Возвращает среднюю длину пробирования при поиске хранимых ключей.
+     * Вычисляется просмотром всех ячеек таблицы.
+     *
+     * @return - средняя длина пробирования, 0 - для пустой таблицы
+     */
+    public double getMeanProbeLength() {
+        if (size == 0) {
+            return 0.0;
+        }
+        long total = 0;
+        for (int probe : probes) {
+            total += probe;
+        }
+        return (double) total / size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return slotOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (int i = 0; i < keys.length; i++) {
+            if (probes[i] != 0 && Objects.equals(values[i], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        final int index = slotOf(key);
+        return (index < 0) ? null : valueAt(index);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        final int index = slotOf(key);
+        return (index < 0) ? defaultValue : valueAt(index);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        final Object storedKey = maskNull(key);
+        final int mask = keys.length - 1;
+        int index = hashStrategy.hash(key) & mask;
+        int probe = 1;
+        // Ищем ключ, пока не встретим пустую ячейку или ключ ближе к своей начальной ячейке
+        while (probes[index] >= probe) {
+            if (probes[index] == probe && (keys[index] == storedKey || storedKey.equals(keys[index]))) {
+                final V previous = valueAt(index);
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+            probe++;
+        }
+        insertAt(index, probe, storedKey, value);
+        size++;
+        modCount++;
+        if (size > growThreshold) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        final int index = slotOf(key);
+        if (index < 0) {
+            return null;
+        }
+        final V previous = valueAt(index);
+        deleteAt(index);
+        if (size < shrinkThreshold) {
+            resize(Math.max(minCapacity, keys.length / 2));
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        Arrays.fill(probes, 0);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    SlotIterator entryIterator() {
+        return new EntryIterator();
+    }
+
+    /**
+     * Находит ячейку, в которой хранится заданный ключ.
+     * Поиск прекращается на пустой ячейке или на ключе, который ближе к своей начальной ячейке, чем искомый:
+     * при вставке искомый ключ вытеснил бы его, поэтому дальше искомого ключа быть не может.
+     *
+     * @param key - искомый ключ
+     * @return - номер ячейки, либо NO_SLOT, если ключа в таблице нет
+     */
+    @Override
+    int slotOf(Object key) {
+        final Object storedKey = maskNull(key);
+        final int mask = keys.length - 1;
+        int index = hashStrategy.hash(key) & mask;
+        int probe = 1;
+        while (probes[index] >= probe) {
+            if (probes[index] == probe) {
+                final Object candidate = keys[index];
+                if (candidate == storedKey || storedKey.equals(candidate)) {
+                    return index;
+                }
+            }
+            index = (index + 1) & mask;
+            probe++;
+        }
+        return NO_SLOT;
+    }
+
+    /**
+     * Вставляет пару, начиная с заданной ячейки.
+     * Если ячейка занята, ее пара вытесняется и вставляется дальше по тому же правилу.
+     *
+     * @param index - номер ячейки
+     * @param probe - длина пробирования вставляемого ключа в этой ячейке
+     * @param key   - вставляемый ключ (с заменой null на NULL_KEY)
+     * @param value - вставляемое значение
+     */
+    private void insertAt(int index, int probe, Object key, Object value) {
+        final int mask = keys.length - 1;
+        while (probes[index] != 0) {
+            if (probes[index] < probe) {
+                final Object displacedKey = keys[index];
+                final Object displacedValue = values[index];
+                final int displacedProbe = probes[index];
+                keys[index] = key;
+                values[index] = value;
+                probes[index] = probe;
+                key = displacedKey;
+                value = displacedValue;
+                probe = displacedProbe;
+            }
+            index = (index + 1) & mask;
+            probe++;
+        }
+        keys[index] = key;
+        values[index] = value;
+        probes[index] = probe;
+    }
+
+    /**
+     * Удаляет пару из заданной ячейки, сдвигая назад на одну ячейку следующие за ней пары,
+     * пока не встретится пустая ячейка или пара в своей начальной ячейке.
+     * Размер таблицы при этом не пересматривается.
+     *
+     * @param index - номер занятой ячейки
+     */
+    @Override
+    void deleteAt(int index) {
+        final int mask = keys.length - 1;
+        int next = (index + 1) & mask;
+        while (probes[next] > 1) {
+            keys[index] = keys[next];
+            values[index] = values[next];
+            probes[index] = probes[next] - 1;
+            index = next;
+            next = (next + 1) & mask;
+        }
+        keys[index] = null;
+        values[index] = null;
+        probes[index] = 0;
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Перестраивает таблицу с заданным числом ячеек, заново размещая все хранимые пары.
+     *
+     * @param newCapacity - новое число ячеек. Степень двойки
+     */
+    private void resize(int newCapacity) {
+        if (newCapacity == keys.length) {
+            return;
+        }
+        final Object[] oldKeys = keys;
+        final Object[] oldValues = values;
+        final int[] oldProbes = probes;
+        keys = new Object[newCapacity];
+        values = new Object[newCapacity];
+        probes = new int[newCapacity];
+        final int mask = newCapacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldProbes[i] != 0) {
+                insertAt(hashStrategy.hash(unmaskNull(oldKeys[i])) & mask, 1, oldKeys[i], oldValues[i]);
+            }
+        }
+        updateThresholds();
+        modCount++;
+    }
+
+    /**
+     * Пересчитывает границы числа пар, при пересечении которых таблица меняет размер.
+     * Таблица всегда сохраняет хотя бы одну пустую ячейку.
+     */
+    private void updateThresholds() {
+        final int capacity = keys.length;
+        growThreshold = (capacity >= MAX_CAPACITY) ? capacity - 1 :
+                Math.min(capacity - 1, (int) (capacity * (double) loadFactor));
+        shrinkThreshold = (capacity <= minCapacity) ? Integer.MIN_VALUE :
+                (int) (capacity * (double) loadFactor / 4);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    K keyAt(int index) {
+        return (K) unmaskNull(keys[index]);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    V valueAt(int index) {
+        return (V) values[index];
+    }
+
+    /**
+     * Итератор по парам таблицы.
+     * Обходит ячейки в сторону уменьшения номера, начиная с ячейки перед пустой:
+     * сдвиг назад при удалении через итератор переносит в удаленную ячейку только уже обойденные пары
+     * и не переходит через пустую ячейку, с которой начат обход.
+     */
+    final class EntryIterator extends SlotIterator {
+
+        private final int start; // Номер пустой ячейки, с которой начинается обход
+        private int visited; // Число просмотренных ячеек
+        private int nextIndex = -1; // Номер ячейки следующей пары, -1 - если она еще не найдена
+
+        EntryIterator() {
+            int index = 0;
+            while (probes[index] != 0) {
+                index++;
+            }
+            start = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            final int mask = keys.length - 1;
+            while (nextIndex < 0 && visited < mask) {
+                visited++;
+                final int index = (start - visited) & mask;
+                if (probes[index] != 0) {
+                    nextIndex = index;
+                }
+            }
+            return nextIndex >= 0;
+        }
+
+        @Override
+        int nextSlot() {
+            final int slot = nextIndex;
+            nextIndex = -1;
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32C;
+
+/**
+ * Двоичный формат снимка хэш таблицы.
+ * Снимок состоит из заголовка (метка, версия формата, число пар, контрольная сумма заголовка)
+ * и следующих за ним разделов. Раздел содержит заголовок (число пар, длина данных, контрольная сумма данных,
+ * контрольная сумма заголовка) и записи пар: длина ключа, байты ключа, длина значения, байты значения.
+ * Длина -1 обозначает null.
+ * Разделы проверяются и разбираются независимо друг от друга, что позволяет загружать их параллельно.
+ * Все числа записываются старшим байтом вперед.
+ */
+final class SnapshotFormat {
+
+    static final int VERSION = 2; // Версия формата
+    static final int PARTITION_SIZE = 1 << 20; // Размер данных раздела, после которого начинается новый раздел
+    private static final int MAGIC = 0x42414853; // Метка снимка
+    private static final int HEADER_SIZE = 16; // Размер заголовка снимка
+    private static final int PARTITION_HEADER_SIZE = 16; // Размер заголовка раздела
+    private static final int NULL_LENGTH = -1; // Длина, обозначающая null ключ или значение
+
+    private SnapshotFormat() {
+    }
+
+    /**
+     * Записывает заголовок снимка
+     *
+     * @param channel   - канал, в который пишется снимок
+     * @param pairCount - число пар в снимке
+     * @throws IOException - выбрасывается при ошибке записи.
+     */
+    static void writeHeader(WritableByteChannel channel, int pairCount) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(pairCount);
+        header.putInt(checksum(header.array(), 0, HEADER_SIZE - Integer.BYTES));
+        header.flip();
+        writeFully(channel, header);
+    }
+
+    /**
+     * Читает и проверяет заголовок снимка
+     *
+     * @param channel - канал, из которого читается снимок
+     * @return - число пар в снимке
+     * @throws IOException - выбрасывается при ошибке чтения, а также если заголовок поврежден
+     *                     или записан в неизвестной версии формата.
+     */
+    static int readHeader(ReadableByteChannel channel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Data isn't a hash map snapshot");
+        }
+        if (header.getInt(HEADER_SIZE - Integer.BYTES) != checksum(header.array(), 0, HEADER_SIZE - Integer.BYTES)) {
+            throw new IOException("Snapshot header is corrupted");
+        }
+        if (header.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported snapshot version " + header.getInt(Integer.BYTES));
+        }
+        final int pairCount = header.getInt(2 * Integer.BYTES);
+        if (pairCount < 0) {
+            throw new IOException("Snapshot header is corrupted");
+        }
+        return pairCount;
+    }
+
+    /**
+     * Читает очередной раздел снимка. Заголовок раздела сверяется со своей контрольной суммой,
+     * а контрольная сумма данных при этом не проверяется (см. Partition.verify()).
+     * Длина данных из канала с известным размером сверяется с оставшейся частью снимка до выделения буфера,
+     * а из остальных каналов данные читаются в растущий буфер, поэтому поврежденная длина
+     * не приводит к выделению памяти сверх размера снимка.
+     *
+     * @param channel - канал, из которого читается снимок
+     * @return - прочитанный раздел
+     * @throws IOException - выбрасывается при ошибке чтения, неожиданном конце данных,
+     *                     а также если заголовок раздела поврежден.
+     */
+    static Partition readPartition(ReadableByteChannel channel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(PARTITION_HEADER_SIZE);
+        readFully(channel, header);
+        final int pairCount = header.getInt(0);
+        final int length = header.getInt(Integer.BYTES);
+        if (header.getInt(PARTITION_HEADER_SIZE - Integer.BYTES)
+            != checksum(header.array(), 0, PARTITION_HEADER_SIZE - Integer.BYTES)
+            || pairCount <= 0 || length < 0) {
+            throw new IOException("Snapshot partition header is corrupted");
+        }
+        if (channel instanceof SeekableByteChannel) {
+            final SeekableByteChannel file = (SeekableByteChannel) channel;
+            if (length > file.size() - file.position()) {
+                throw new EOFException("Snapshot is truncated");
+            }
+        }
+        return new Partition(pairCount, header.getInt(2 * Integer.BYTES), readData(channel, length));
+    }
+
+    /**
+     * Читает заданное число байт данных раздела. Буфер удваивается по мере чтения, начиная с PARTITION_SIZE.
+     *
+     * @param channel - канал, из которого читается снимок
+     * @param length  - длина данных раздела
+     * @return - буфер с данными раздела, заполненный целиком
+     * @throws IOException - выбрасывается при ошибке чтения или неожиданном конце данных.
+     */
+    private static ByteBuffer readData(ReadableByteChannel channel, int length) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(Math.min(length, PARTITION_SIZE));
+        readFully(channel, data);
+        while (data.capacity() < length) {
+            final ByteBuffer grown = ByteBuffer.allocate((int) Math.min(length, 2L * data.capacity()));
+            data.flip();
+            data = grown.put(data);
+            readFully(channel, data);
+        }
+        return data;
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Snapshot is truncated");
+            }
+        }
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        final CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Раздел снимка, прочитанный из канала
+     */
+    static final class Partition {
+
+        private final int pairCount; // Число пар в разделе
+        private final int checksum; // Записанная контрольная сумма данных
+        private final ByteBuffer data; // Записи пар раздела
+
+        Partition(int pairCount, int checksum, ByteBuffer data) {
+            this.pairCount = pairCount;
+            this.checksum = checksum;
+            this.data = data;
+        }
+
+        int getPairCount() {
+            return pairCount;
+        }
+
+        /**
+         * Сверяет данные раздела с контрольной суммой и подготавливает их к разбору
+         *
+         * @throws IOException - выбрасывается, если данные повреждены.
+         */
+        void verify() throws IOException {
+            if (checksum(data.array(), 0, data.capacity()) != checksum) {
+                throw new IOException("Snapshot partition is corrupted");
+            }
+            data.clear();
+        }
+
+        /**
+         * Разбирает очередной ключ или значение раздела
+         *
+         * @param codec - кодек объекта
+         * @param <T>   - тип объекта
+         * @return - восстановленный объект
+         * @throws IOException - выбрасывается, если запись выходит за пределы раздела.
+         */
+        <T> T next(Codec<T> codec) throws IOException {
+            if (data.remaining() < Integer.BYTES) {
+                throw new IOException("Snapshot partition is corrupted");
+            }
+            final int length = data.getInt();
+            if (length == NULL_LENGTH) {
+                return null;
+            }
+            if (length < 0 || length > data.remaining()) {
+                throw new IOException("Snapshot partition is corrupted");
+            }
+            final T object = codec.decode(data, data.position(), length);
+            data.position(data.position() + length);
+            return object;
+        }
+    }
+
+    /**
+     * Накопитель записей пар, записывающий их в канал разделами
+     */
+    static final class PartitionWriter {
+
+        private final WritableByteChannel channel; // Канал, в который пишется снимок
+        private ByteBuffer data = ByteBuffer.allocate(PARTITION_SIZE); // Записи текущего раздела
+        private int pairCount; // Число пар в текущем разделе
+
+        PartitionWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Добавляет пару в текущий раздел. Раздел записывается в канал, когда его размер достигает PARTITION_SIZE.
+         *
+         * @param keyBytes   - байтовое представление ключа, null - для null ключа
+         * @param valueBytes - байтовое представление значения, null - для null значения
+         * @throws IOException - выбрасывается при ошибке записи.
+         */
+        void add(byte[] keyBytes, byte[] valueBytes) throws IOException {
+            final int recordSize = 2 * Integer.BYTES + ((keyBytes == null) ? 0 : keyBytes.length)
+                                   + ((valueBytes == null) ? 0 : valueBytes.length);
+            if (data.remaining() < recordSize) {
+                final ByteBuffer grown = ByteBuffer.allocate(Math.max(data.capacity() * 2,
+                                                                      data.position() + recordSize));
+                data.flip();
+                data = grown.put(data);
+            }
+            put(keyBytes);
+            put(valueBytes);
+            pairCount++;
+            if (data.position() >= PARTITION_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Записывает в канал текущий раздел, если в нем есть пары
+         *
+         * @throws IOException - выбрасывается при ошибке записи.
+         */
+        void flush() throws IOException {
+            if (pairCount == 0) {
+                return;
+            }
+            final ByteBuffer header = ByteBuffer.allocate(PARTITION_HEADER_SIZE);
+            header.putInt(pairCount).putInt(data.position()).putInt(checksum(data.array(), 0, data.position()));
+            header.putInt(checksum(header.array(), 0, PARTITION_HEADER_SIZE - Integer.BYTES));
+            header.flip();
+            writeFully(channel, header);
+            data.flip();
+            writeFully(channel, data);
+            data.clear();
+            pairCount = 0;
+        }
+
+        private void put(byte[] bytes) {
+            if (bytes == null) {
+                data.putInt(NULL_LENGTH);
+            } else {
+                data.putInt(bytes.length).put(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * Класс хэш таблицы с открытой адресацией по схеме SwissTable.
+ * Помимо массивов ключей и значений таблица хранит массив управляющих байтов:
+ * для занятой ячейки это 7 младших бит хэша ключа (метка), для свободной и удаленной - особые значения
+ * со старшим установленным битом.
+ * Ячейки объединены в группы по 16, поиск перебирает группы квадратичным пробированием
+ * и сравнивает метку сразу со всеми управляющими байтами группы приемами SWAR
+ * (параллельной обработки байтов внутри 64-битного слова).
+ * Ключи сравниваются через equals лишь в ячейках с совпавшей меткой,
+ * поэтому большинство промахов не обращается к объектам ключей вовсе.
+ * Поиск прекращается на первой группе со свободной ячейкой.
+ *
+ * @param <K> - тип ключа таблицы
+ * @param <V> - тип значения таблицы
+ */
+public class SwissHashMap<K, V> extends AbstractSlotHashMap<K, V> {
+
+    private static final int GROUP_SIZE = 16; // Число ячеек в группе
+    private static final int DEFAULT_CAPACITY = 16; // Число ячеек по умолчанию
+    private static final float DEFAULT_LOAD_FACTOR = 0.875f; // Коэффициент заполнения по умолчанию
+    private static final int MAX_CAPACITY = 1 << 30; // Верхняя граница числа ячеек при росте таблицы
+    private static final byte EMPTY = (byte) 0x80; // Управляющий байт свободной ячейки
+    private static final byte DELETED = (byte) 0xFE; // Управляющий байт ячейки, пара из которой удалена
+    private static final long LSBS = 0x0101010101010101L; // Младший бит каждого байта слова
+    private static final long MSBS = 0x8080808080808080L; // Старший бит каждого байта слова
+    private static final VarHandle WORDS = // Чтение 8 управляющих байтов одним словом
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final HashStrategy hashStrategy; // Стратегия, вычисляющая хэш ключа
+    private final float loadFactor; // Максимальная доля занятых и удаленных ячеек
+    private final int minCapacity; // Число ячеек, меньше которого таблица не сжимается
+    private byte[] control; // Управляющие байты ячеек
+    private Object[] keys; // Ключи (NULL_KEY - null ключ). Размер - степень двойки, не меньше размера группы
+    private Object[] values; // Значения, хранимые в тех же ячейках, что и их ключи
+    private int groupMask; // Число групп минус 1
+    private int size; // Число пар ключ-значение в таблице
+    private int growthLeft; // Число свободных ячеек, которые еще можно занять до перестроения
+    private int shrinkThreshold; // Число пар, при падении ниже которого таблица сжимается
+
+    /**
+     * Создает хэш таблицу с 16 ячейками и коэффициентом заполнения 0.875
+     */
+    public SwissHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Создает хэш таблицу с заданным начальным числом ячеек и коэффициентом заполнения 0.875
+     *
+     * @param capacity - начальное (и минимальное) число ячеек. Должно быть строго больше 0
+     * @throws IllegalArgumentException - выбрасывается, если число ячеек меньше, либо равно нулю.
+     */
+    public SwissHashMap(int capacity) throws IllegalArgumentException {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Создает хэш таблицу с заданными начальным числом ячеек и коэффициентом заполнения.
+     *
+     * @param capacity   - начальное (и минимальное) число ячеек. Должно быть строго больше 0
+     * @param loadFactor - коэффициент заполнения. Должен быть строго больше 0 и строго меньше 1
+     * @throws IllegalArgumentException - выбрасывается, если число ячеек или коэффициент заполнения
+     *                                  вне допустимых границ.
+     */
+    public SwissHashMap(int capacity, float loadFactor) throws IllegalArgumentException {
+        this(new BasicHashStrategy(BasicHashStrategy.StrategyType.MURMUR3), capacity, loadFactor);
+    }
+
+    /**
+     * Создает хэш таблицу с заданными стратегией хэширования, начальным числом ячеек и коэффициентом заполнения.
+     * Число ячеек округляется вверх до степени двойки, но не меньше 16.
+     * Стратегия должна давать хорошо перемешанные младшие биты (метка) и старшие (номер группы).
+     * Таблица перестраивается, когда занятые и удаленные ячейки превышают коэффициент заполнения:
+     * с удвоением числа ячеек, если удаленных немного, и с прежним числом в противном случае.
+     * Число ячеек вдвое сокращается, когда число пар падает ниже четверти от коэффициента,
+     * но не ниже начального числа ячеек.
+     *
+     * @param hashStrategy - стратегия вычисления хэша ключей. Не может быть null
+     * @param capacity     - начальное (и минимальное) число ячеек. Должно быть строго больше 0
+     * @param loadFactor   - коэффициент заполнения. Должен быть строго больше 0 и строго меньше 1
+     * @throws IllegalArgumentException - выбрасывается, если стратегия не задана,
+     *                                  или число ячеек или коэффициент заполнения вне допустимых границ.
+     */
+    public SwissHashMap(HashStrategy hashStrategy, int capacity, float loadFactor) throws IllegalArgumentException {
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("Hash strategy can't be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Hash map can't have 0 or less cells");
+        }
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1 exclusive");
+        }
+        this.hashStrategy = hashStrategy;
+        this.loadFactor = loadFactor;
+        this.minCapacity = roundToPowerOfTwo(capacity, GROUP_SIZE, MAX_CAPACITY);
+        allocate(minCapacity);
+        size = 0;
+        growthLeft = maxFill(minCapacity);
+    }
+
+    /**
+     * Возвращает текущее число ячеек в таблице
+     *
+     * @return - число ячеек
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return slotOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (int i = 0; i < keys.length; i++) {
+            if (control[i] >= 0 && Objects.equals(values[i], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        final int index = slotOf(key);
+        return (index < 0) ? null : valueAt(index);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        final int index = slotOf(key);
+        return (index < 0) ? defaultValue : valueAt(index);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        final int hash = hashStrategy.hash(key);
+        final int index = indexOf(key, hash);
+        if (index >= 0) {
+            final V previous = valueAt(index);
+            values[index] = value;
+            return previous;
+        }
+        final int slot = findFreeSlot(hash);
+        if (control[slot] == EMPTY) {
+            growthLeft--;
+        }
+        control[slot] = (byte) (hash & 0x7F);
+        keys[slot] = maskNull(key);
+        values[slot] = value;
+        size++;
+        modCount++;
+        if (growthLeft == 0) {
+            // Если перестроение вызвано в основном удаленными ячейками, число ячеек не меняется
+            final boolean mostlyDeleted = size <= maxFill(keys.length) / 2 || keys.length >= MAX_CAPACITY;
+            rebuild(mostlyDeleted ? keys.length : keys.length * 2);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        final int index = slotOf(key);
+        if (index < 0) {
+            return null;
+        }
+        final V previous = valueAt(index);
+        deleteAt(index);
+        if (size < shrinkThreshold) {
+            rebuild(Math.max(minCapacity, keys.length / 2));
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(control, EMPTY);
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        size = 0;
+        growthLeft = maxFill(keys.length);
+        modCount++;
+    }
+
+    @Override
+    SlotIterator entryIterator() {
+        return new EntryIterator();
+    }
+
+    @Override
+    int slotOf(Object key) {
+        return indexOf(key, hashStrategy.hash(key));
+    }
+
+    /**
+     * Находит ячейку, в которой хранится заданный ключ.
+     * В каждой группе ключ сравнивается только с ключами ячеек, метка которых совпадает с меткой его хэша.
+     *
+     * @param key  - искомый ключ
+     * @param hash - хэш ключа, вычисленный стратегией таблицы
+     * @return - номер ячейки, либо NO_SLOT, если ключа в таблице нет
+     */
+    private int indexOf(Object key, int hash) {
+        final Object storedKey = maskNull(key);
+        final long pattern = LSBS * (hash & 0x7F);
+        int group = (hash >>> 7) & groupMask;
+        for (int step = 1; step <= groupMask + 1; step++) {
+            final int base = group * GROUP_SIZE;
+            final long low = (long) WORDS.get(control, base);
+            final long high = (long) WORDS.get(control, base + 8);
+            for (long match = matchByte(low, pattern); match != 0; match &= match - 1) {
+                final int index = base + (Long.numberOfTrailingZeros(match) >>> 3);
+                final Object candidate = keys[index];
+                if (candidate == storedKey || storedKey.equals(candidate)) {
+                    return index;
+                }
+            }
+            for (long match = matchByte(high, pattern); match != 0; match &= match - 1) {
+                final int index = base + 8 + (Long.numberOfTrailingZeros(match) >>> 3);
+                final Object candidate = keys[index];
+                if (candidate == storedKey || storedKey.equals(candidate)) {
+                    return index;
+                }
+            }
+            if ((matchEmpty(low) | matchEmpty(high)) != 0) {
+                return NO_SLOT;
+            }
+            group = (group + step) & groupMask;
+        }
+        return NO_SLOT;
+    }
+
+    /**
+     * Находит первую свободную или удаленную ячейку на пути пробирования заданного хэша
+     *
+     * @param hash - хэш ключа
+     * @return - номер ячейки
+     */
+    private int findFreeSlot(int hash) {
+        int group = (hash >>> 7) & groupMask;
+        for (int step = 1; ; step++) {
+            final int base = group * GROUP_SIZE;
+            final long low = (long) WORDS.get(control, base) & MSBS;
+            if (low != 0) {
+                return base + (Long.numberOfTrailingZeros(low) >>> 3);
+            }
+            final long high = (long) WORDS.get(control, base + 8) & MSBS;
+            if (high != 0) {
+                return base + 8 + (Long.numberOfTrailingZeros(high) >>> 3);
+            }
+            group = (group + step) & groupMask;
+        }
+    }
+
+    /**
+     * Удаляет пару из заданной ячейки. Остальные пары не перемещаются.
+     * Если в группе есть свободная ячейка, ни один поиск не проходил через эту группу дальше,
+     * и ячейка помечается свободной; иначе - удаленной, чтобы не прерывать поиск ключей из следующих групп.
+     *
+     * @param index - номер занятой ячейки
+     */
+    @Override
+    void deleteAt(int index) {
+        final int base = index & -GROUP_SIZE;
+        final long empty = matchEmpty((long) WORDS.get(control, base)) |
+                matchEmpty((long) WORDS.get(control, base + 8));
+        if (empty != 0) {
+            control[index] = EMPTY;
+            growthLeft++;
+        } else {
+            control[index] = DELETED;
+        }
+        keys[index] = null;
+        values[index] = null;
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Перестраивает таблицу с заданным числом ячеек, заново размещая все хранимые пары
+     * и избавляясь от удаленных ячеек.
+     *
+     * @param newCapacity - новое число ячеек. Степень двойки, не меньше размера группы
+     */
+    private void rebuild(int newCapacity) {
+        final byte[] oldControl = control;
+        final Object[] oldKeys = keys;
+        final Object[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldControl[i] >= 0) {
+                final int slot = findFreeSlot(hashStrategy.hash(unmaskNull(oldKeys[i])));
+                control[slot] = oldControl[i];
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+        growthLeft = maxFill(newCapacity) - size;
+        modCount++;
+    }
+
+    /**
+     * Создает пустые массивы заданного размера и пересчитывает зависящие от него поля
+     *
+     * @param capacity - число ячеек
+     */
+    private void allocate(int capacity) {
+        control = new byte[capacity];
+        Arrays.fill(control, EMPTY);
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        groupMask = capacity / GROUP_SIZE - 1;
+        shrinkThreshold = (capacity <= minCapacity) ? Integer.MIN_VALUE : (int) (capacity * (double) loadFactor / 4);
+    }
+
+    /**
+     * Вычисляет наибольшее число занятых и удаленных ячеек для таблицы заданного размера.
+     * Хотя бы одна ячейка всегда остается свободной, на ней завершается любой поиск.
+     *
+     * @param capacity - число ячеек
+     * @return - наибольшее число занятых и удаленных ячеек
+     */
+    private int maxFill(int capacity) {
+        return Math.max(1, Math.min(capacity - 1, (int) (capacity * (double) loadFactor)));
+    }
+
+    /**
+     * Находит байты слова, равные байтам образца: в результате установлены старшие биты таких байтов.
+     * Может ложно отметить байт, следующий за истинно совпавшим, поэтому кандидаты проверяются через equals.
+     * Свободные и удаленные ячейки не отмечаются никогда, так как метки не имеют старшего бита.
+     *
+     * @param word    - 8 управляющих байтов
+     * @param pattern - метка, повторенная в каждом байте
+     * @return - маска совпадений
+     */
+    private static long matchByte(long word, long pattern) {
+        final long difference = word ^ pattern;
+        return (difference - LSBS) & ~difference & MSBS;
+    }
+
+    /**
+     * Находит свободные ячейки: у EMPTY (10000000) установлен старший бит и сброшен второй,
+     * у DELETED (11111110) установлены оба, у занятых ячеек сброшен старший.
+     *
+     * @param word - 8 управляющих байтов
+     * @return - маска со старшими битами байтов свободных ячеек
+     */
+    private static long matchEmpty(long word) {
+        return word & ~(word << 6) & MSBS;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    K keyAt(int index) {
+        return (K) unmaskNull(keys[index]);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    V valueAt(int index) {
+        return (V) values[index];
+    }
+
+    /**
+     * Итератор по парам таблицы в порядке ячеек.
+     * Удаление через итератор не перемещает остальные пары.
+     */
+    final class EntryIterator extends SlotIterator {
+
+        private int nextIndex; // Номер следующей проверяемой ячейки
+
+        @Override
+        public boolean hasNext() {
+            while (nextIndex < control.length && control[nextIndex] < 0) {
+                nextIndex++;
+            }
+            return nextIndex < control.length;
+        }
+
+        @Override
+        int nextSlot() {
+            return nextIndex++;
+        }
+    }
+}
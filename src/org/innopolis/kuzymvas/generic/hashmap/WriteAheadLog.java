@@ -0,0 +1,464 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал упреждающей записи изменений хэш таблицы.
+ * Журнал состоит из файлов-сегментов wal-N.log с возрастающими номерами N.
+ * Запись журнала: длина данных, контрольная сумма CRC32C данных и сами данные - тип изменения,
+ * длина и байты ключа, длина и байты значения (длина -1 обозначает null).
+ * Записи накапливаются в памяти и сбрасываются на диск отдельным потоком группами:
+ * одна запись на диск и один вызов force() подтверждают все записи, добавленные к этому моменту
+ * всеми потоками (групповая фиксация). Поток фиксации ждет накопления записей не дольше заданной задержки.
+ * Объем записей, ожидающих передачи потоку фиксации, ограничен: когда он превышен, добавление записи
+ * ждет, пока поток фиксации не заберет накопленные записи.
+ * Когда размер сегмента превышает заданный, журнал переходит к следующему сегменту.
+ */
+final class WriteAheadLog implements Closeable {
+
+    static final byte PUT = 1; // Тип записи: ключу присвоено значение
+    static final byte REMOVE = 2; // Тип записи: ключ удален
+    static final byte CLEAR = 3; // Тип записи: таблица очищена
+    private static final int RECORD_HEADER_SIZE = 8; // Размер заголовка записи: длина и контрольная сумма данных
+    private static final int NULL_LENGTH = -1; // Длина, обозначающая null ключ или значение
+    private static final int BATCH_LIMIT = 1 << 20; // Объем записей, после которого фиксация не откладывается
+    private static final int PENDING_LIMIT = 4 * BATCH_LIMIT; // Объем ожидающих записей, после которого append ждет
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory; // Каталог сегментов
+    private final long segmentSize; // Размер сегмента, после которого журнал переходит к следующему
+    private final long maxCommitDelayNanos; // Наибольшее время ожидания накопления записей перед фиксацией
+    private final Thread committer; // Поток фиксации
+    private ByteBuffer pending = ByteBuffer.allocate(BATCH_LIMIT); // Записи, еще не переданные потоку фиксации
+    private ByteBuffer spare = ByteBuffer.allocate(BATCH_LIMIT); // Буфер, записываемый потоком фиксации
+    private long firstPendingTime; // Время добавления первой из ожидающих записей
+    private long appendedPosition; // Суммарный объем добавленных записей
+    private long durablePosition; // Суммарный объем записей, сброшенных на диск
+    private FileChannel segment; // Текущий сегмент. Используется только потоком фиксации после открытия
+    private long segmentNumber; // Номер текущего сегмента
+    private long segmentBytes; // Размер текущего сегмента
+    private long segmentStartPosition; // Суммарный объем записей в предыдущих сегментах
+    private boolean rotationRequested; // Запрошен ли переход к следующему сегменту
+    private boolean closed; // Закрыт ли журнал
+    private IOException failure; // Ошибка записи, после которой журнал непригоден
+
+    /**
+     * Открывает журнал в заданном каталоге. Записи добавляются в новый сегмент,
+     * номер которого больше номеров существующих сегментов.
+     *
+     * @param directory           - каталог сегментов
+     * @param segmentSize         - размер сегмента в байтах, после которого журнал переходит к следующему
+     * @param maxCommitDelayNanos - наибольшее время ожидания накопления записей перед фиксацией в наносекундах
+     * @throws IOException - выбрасывается, если сегмент нельзя создать.
+     */
+    WriteAheadLog(Path directory, long segmentSize, long maxCommitDelayNanos) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxCommitDelayNanos = maxCommitDelayNanos;
+        final List<Long> segments = listSegments(directory);
+        segmentNumber = segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1;
+        segment = openSegment(segmentNumber);
+        committer = new Thread(this::commitLoop, "wal-committer-" + directory.getFileName());
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Добавляет запись изменения в журнал. Запись будет сброшена на диск потоком фиксации.
+     * Если ожидающие записи занимают PENDING_LIMIT байт или больше, метод ждет, пока поток фиксации их не заберет.
+     *
+     * @param type       - тип изменения
+     * @param keyBytes   - байтовое представление ключа, null - для null ключа или изменения без ключа
+     * @param valueBytes - байтовое представление значения, null - для null значения или изменения без значения
+     * @return - позиция конца записи в журнале, которую можно передать awaitDurable()
+     * @throws IOException - выбрасывается, если журнал закрыт или непригоден после ошибки записи,
+     *                     или ожидание прервано.
+     */
+    synchronized long append(byte type, byte[] keyBytes, byte[] valueBytes) throws IOException {
+        checkUsable();
+        while (pending.position() >= PENDING_LIMIT) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Waiting for write-ahead log space was interrupted");
+            }
+            checkUsable();
+        }
+        final int dataLength = 1 + 2 * Integer.BYTES + ((keyBytes == null) ? 0 : keyBytes.length)
+                               + ((valueBytes == null) ? 0 : valueBytes.length);
+        if (pending.remaining() < RECORD_HEADER_SIZE + dataLength) {
+            final ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2,
+                                                                  pending.position() + RECORD_HEADER_SIZE
+                                                                  + dataLength));
+            pending.flip();
+            pending = grown.put(pending);
+        }
+        if (pending.position() == 0) {
+            firstPendingTime = System.nanoTime();
+            notifyAll();
+        }
+        final int start = pending.position();
+        pending.putInt(dataLength).putInt(0).put(type);
+        putBytes(pending, keyBytes);
+        putBytes(pending, valueBytes);
+        final CRC32C crc = new CRC32C();
+        crc.update(pending.array(), start + RECORD_HEADER_SIZE, dataLength);
+        pending.putInt(start + Integer.BYTES, (int) crc.getValue());
+        appendedPosition += RECORD_HEADER_SIZE + dataLength;
+        if (pending.position() >= BATCH_LIMIT) {
+            notifyAll();
+        }
+        return appendedPosition;
+    }
+
+    /**
+     * Ожидает, пока журнал сбросит на диск все записи до заданной позиции
+     *
+     * @param position - позиция конца записи, возвращенная append()
+     * @throws IOException - выбрасывается, если записи не удалось сбросить на диск, или ожидание прервано.
+     */
+    synchronized void awaitDurable(long position) throws IOException {
+        while (durablePosition < position) {
+            if (failure != null) {
+                throw new IOException("Write-ahead log failed", failure);
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Waiting for write-ahead log was interrupted");
+            }
+        }
+    }
+
+    /**
+     * Возвращает позицию конца последней добавленной записи
+     *
+     * @return - позиция конца записи
+     */
+    synchronized long getAppendedPosition() {
+        return appendedPosition;
+    }
+
+    /**
+     * Сбрасывает на диск все добавленные записи и переходит к следующему сегменту.
+     * Записи, добавленные до вызова, остаются в предыдущих сегментах, а добавленные после - попадут в новый.
+     * Если поток фиксации в это время переходит к следующему сегменту из-за его размера, не дописав
+     * добавленные до вызова записи, переход запрашивается повторно.
+     *
+     * @return - номер нового сегмента
+     * @throws IOException - выбрасывается при ошибке записи, или если ожидание прервано.
+     */
+    synchronized long rotate() throws IOException {
+        checkUsable();
+        final long previousSegment = segmentNumber;
+        final long rotationPosition = appendedPosition;
+        while (segmentNumber == previousSegment || segmentStartPosition < rotationPosition) {
+            checkUsable();
+            if (!rotationRequested) {
+                rotationRequested = true;
+                notifyAll();
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Waiting for write-ahead log rotation was interrupted");
+            }
+        }
+        return segmentNumber;
+    }
+
+    /**
+     * Удаляет сегменты с номерами меньше заданного
+     *
+     * @param segmentNumber - номер первого сохраняемого сегмента
+     * @throws IOException - выбрасывается при ошибке удаления.
+     */
+    void deleteSegmentsBefore(long segmentNumber) throws IOException {
+        for (long number : listSegments(directory)) {
+            if (number < segmentNumber) {
+                Files.deleteIfExists(segmentPath(directory, number));
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает на диск все добавленные записи, останавливает поток фиксации и закрывает сегмент
+     *
+     * @throws IOException - выбрасывается при ошибке записи.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Closing of write-ahead log was interrupted");
+        }
+        segment.close();
+        synchronized (this) {
+            if (failure != null) {
+                throw new IOException("Write-ahead log failed", failure);
+            }
+        }
+    }
+
+    /**
+     * Цикл потока фиксации: дожидается записей, откладывает фиксацию не дольше заданной задержки,
+     * чтобы собрать записи других потоков, записывает их в сегмент одним вызовом и сбрасывает сегмент на диск.
+     */
+    private void commitLoop() {
+        while (true) {
+            final ByteBuffer batch;
+            final long batchEnd;
+            final boolean rotate;
+            final boolean last;
+            synchronized (this) {
+                try {
+                    while (!isCommitDue()) {
+                        if (pending.position() > 0 && maxCommitDelayNanos > 0) {
+                            final long remaining = firstPendingTime + maxCommitDelayNanos - System.nanoTime();
+                            wait(Math.max(1, remaining / 1_000_000), (int) (Math.max(0, remaining) % 1_000_000));
+                        } else {
+                            wait();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    failure = new InterruptedIOException("Write-ahead log committer was interrupted");
+                    notifyAll();
+                    return;
+                }
+                batch = pending;
+                pending = spare;
+                spare = batch;
+                batchEnd = appendedPosition;
+                rotate = rotationRequested || segmentBytes + batch.position() >= segmentSize;
+                last = closed;
+                // Будит потоки, ожидающие в append() места для записи
+                notifyAll();
+            }
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    segment.write(batch);
+                }
+                segment.force(false);
+                batch.clear();
+                if (rotate && !last) {
+                    segment.close();
+                    final FileChannel next = openSegment(segmentNumber + 1);
+                    synchronized (this) {
+                        segment = next;
+                        segmentNumber++;
+                        segmentBytes = 0;
+                        segmentStartPosition = batchEnd;
+                        rotationRequested = false;
+                    }
+                } else {
+                    segmentBytes += batchEnd - durablePosition;
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                durablePosition = batchEnd;
+                notifyAll();
+                if (last && pending.position() == 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Проверяет, пора ли фиксировать накопленные записи. Вызывается под блокировкой журнала.
+     *
+     * @return - true, если журнал закрывается, запрошен переход к следующему сегменту,
+     * накоплено много записей или истекла задержка фиксации первой из них
+     */
+    private boolean isCommitDue() {
+        if (closed || rotationRequested) {
+            return true;
+        }
+        if (pending.position() == 0) {
+            return false;
+        }
+        return pending.position() >= BATCH_LIMIT || maxCommitDelayNanos <= 0
+               || System.nanoTime() - firstPendingTime >= maxCommitDelayNanos;
+    }
+
+    private void checkUsable() throws IOException {
+        if (failure != null) {
+            throw new IOException("Write-ahead log failed", failure);
+        }
+        if (closed) {
+            throw new IOException("Write-ahead log is closed");
+        }
+    }
+
+    /**
+     * Создает сегмент с заданным номером и сбрасывает на диск каталог,
+     * чтобы созданный файл не пропал при сбое вместе с уже зафиксированными в нем записями
+     *
+     * @param number - номер сегмента
+     * @return - канал записи в сегмент
+     * @throws IOException - выбрасывается, если сегмент нельзя создать.
+     */
+    private FileChannel openSegment(long number) throws IOException {
+        final FileChannel channel = FileChannel.open(segmentPath(directory, number), StandardOpenOption.CREATE_NEW,
+                                                     StandardOpenOption.WRITE);
+        try {
+            forceDirectory(directory);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Сбрасывает на диск каталог: созданные, переименованные и удаленные в нем файлы
+     *
+     * @param directory - каталог
+     * @throws IOException - выбрасывается, если каталог нельзя открыть или сбросить на диск.
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Воспроизводит записи сегментов с номерами не меньше заданного в порядке их добавления.
+     * Неполная или поврежденная запись в конце последнего сегмента считается недописанной при сбое,
+     * и сегмент обрезается перед ней.
+     *
+     * @param directory          - каталог сегментов
+     * @param firstSegmentNumber - номер первого воспроизводимого сегмента
+     * @param handler            - обработчик записей
+     * @throws IOException - выбрасывается при ошибке чтения или ошибке обработчика,
+     *                     а также если поврежден сегмент, за которым следуют другие сегменты.
+     */
+    static void replay(Path directory, long firstSegmentNumber, RecordHandler handler) throws IOException {
+        final List<Long> segments = listSegments(directory);
+        for (int i = 0; i < segments.size(); i++) {
+            if (segments.get(i) < firstSegmentNumber) {
+                continue;
+            }
+            final Path path = segmentPath(directory, segments.get(i));
+            final ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+            final long validLength = replaySegment(data, handler);
+            if (validLength < data.capacity()) {
+                if (i < segments.size() - 1) {
+                    throw new IOException("Write-ahead log segment " + path + " is corrupted");
+                }
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                    channel.force(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Воспроизводит записи сегмента до первой неполной или поврежденной записи
+     *
+     * @param data    - содержимое сегмента
+     * @param handler - обработчик записей
+     * @return - длина части сегмента, занятой целыми записями
+     * @throws IOException - выбрасывается при ошибке обработчика.
+     */
+    private static long replaySegment(ByteBuffer data, RecordHandler handler) throws IOException {
+        while (data.remaining() >= RECORD_HEADER_SIZE) {
+            final int start = data.position();
+            final int dataLength = data.getInt();
+            final int checksum = data.getInt();
+            if (dataLength < 1 + 2 * Integer.BYTES || dataLength > data.remaining()) {
+                return start;
+            }
+            final CRC32C crc = new CRC32C();
+            crc.update(data.array(), data.position(), dataLength);
+            if ((int) crc.getValue() != checksum) {
+                return start;
+            }
+            final ByteBuffer record = data.slice(data.position(), dataLength);
+            data.position(data.position() + dataLength);
+            final byte type = record.get();
+            final int keyLength = record.getInt();
+            final int keyOffset = record.position();
+            record.position(keyOffset + Math.max(keyLength, 0));
+            final int valueLength = record.getInt();
+            handler.handle(type, record, keyOffset, keyLength, record.position(), valueLength);
+        }
+        return data.position();
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(NULL_LENGTH);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static List<Long> listSegments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                        .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                        .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                                                   name.length() - SEGMENT_SUFFIX.length())))
+                        .sorted()
+                        .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static Path segmentPath(Path directory, long number) {
+        return directory.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Обработчик записей, воспроизводимых из журнала
+     */
+    interface RecordHandler {
+
+        /**
+         * Обрабатывает запись журнала
+         *
+         * @param type        - тип изменения
+         * @param record      - буфер с данными записи
+         * @param keyOffset   - смещение байт ключа в буфере
+         * @param keyLength   - длина ключа, либо -1 для null
+         * @param valueOffset - смещение байт значения в буфере
+         * @param valueLength - длина значения, либо -1 для null
+         * @throws IOException - выбрасывается, если запись нельзя применить.
+         */
+        void handle(byte type, ByteBuffer record, int keyOffset, int keyLength, int valueOffset, int valueLength)
+                throws IOException;
+    }
+}
@@ -0,0 +1,15 @@
+#!/bin/sh
+# Генерирует IntObjectHashMap и LongObjectHashMap из общего шаблона PrimitiveObjectHashMap.java.template.
+# Запуск из любого каталога: sh templates/generate.sh
+set -e
+DIR=$(cd "$(dirname "$0")" && pwd)
+TEMPLATE="$DIR/PrimitiveObjectHashMap.java.template"
+TARGET="$DIR/../src/org/innopolis/kuzymvas/generic/hashmap"
+
+# generate <префикс имени класса> <тип ключа> <упакованный тип ключа>
+generate() {
+    sed -e "s/@NAME@/$1/g" -e "s/@KEY@/$2/g" -e "s/@BOXED@/$3/g" "$TEMPLATE" > "$TARGET/$1ObjectHashMap.java"
+}
+
+generate Int int Integer
+generate Long long Long
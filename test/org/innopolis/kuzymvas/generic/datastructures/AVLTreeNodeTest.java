@@ -6,6 +6,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 
 import static org.junit.Assert.assertNull;
 
@@ -274,5 +278,45 @@ public class AVLTreeNodeTest {
 
     }
 
-
-}
\ No newline at end of file
+    @Test
+    public void testRandomOperations() {
+        final Map<Integer, Integer> reference = new TreeMap<>();
+        final Random random = new Random(42);
+        AVLTreeNode<Integer, Integer> root = null;
+        for (int i = 0; i < 20000; i++) {
+            final Integer key = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                final KeyValuePair<Integer, Integer>[] removed = new KeyValuePair[1];
+                if (root != null) {
+                    root = root.remove(key, removed);
+                }
+                final Integer expected = reference.remove(key);
+                Assert.assertEquals("Tree removed incorrect pair at operation [" + i + "]", expected,
+                                    (removed[0] == null) ? null : removed[0].getValue());
+            } else if (root == null) {
+                root = new AVLTreeNode<>(key, i);
+                reference.put(key, i);
+            } else {
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                final KeyValuePair<Integer, Integer>[] previous = new KeyValuePair[1];
+                root = root.insert(key, i, previous);
+                final Integer expected = reference.put(key, i);
+                Assert.assertEquals("Tree returned incorrect previous value at operation [" + i + "]", expected,
+                                    (previous[0] == null) ? null : previous[0].getValue());
+            }
+            if (root != null) {
+                Assert.assertTrue("Tree is unbalanced after operation [" + i + "]", root.getMaxAbsTreeBalance() < 2);
+            }
+        }
+        Assert.assertNotNull("Tree became empty", root);
+        final List<KeyValuePair<Integer, Integer>> pairs = root.getKeyValuePairs();
+        Assert.assertEquals("Tree has incorrect number of pairs", reference.size(), pairs.size());
+        for (KeyValuePair<Integer, Integer> pair : pairs) {
+            Assert.assertEquals("Tree has incorrect value for key [" + pair.getKey() + "]",
+                                reference.get(pair.getKey()), pair.getValue());
+        }
+        Assert.assertEquals("Tree has incorrect number of hashes", reference.size(),
+                            root.getKeyValuePairsHashes().length);
+    }
+}
@@ -0,0 +1,106 @@
+package org.innopolis.kuzymvas.generic.datastructures;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class HashOrderComparatorTest {
+
+    private final static int TEST_SIZE = 1000;
+
+    private HashOrderComparator<Object> comparator;
+
+    @Before
+    public void setUp() {
+        comparator = new HashOrderComparator<>();
+    }
+
+    @Test
+    public void testOrder() {
+        Assert.assertTrue("Key with smaller hash code isn't ordered first",
+                          comparator.compare(new CollidingKey(0, 1), new CollidingKey(0, 2)) < 0);
+        Assert.assertTrue("Comparable keys with same hash code aren't ordered naturally",
+                          comparator.compare("Aa", "BB") < 0);
+        Assert.assertEquals("Equal keys aren't equal for comparator", 0,
+                            comparator.compare(new CollidingKey(1, 0), new CollidingKey(1, 0)));
+        final CollidingKey first = new CollidingKey(1, 0);
+        final CollidingKey second = new CollidingKey(2, 0);
+        Assert.assertEquals("Different keys with same hash code are equal for comparator",
+                            -Integer.signum(comparator.compare(second, first)),
+                            Integer.signum(comparator.compare(first, second)));
+        Assert.assertTrue("Null key isn't ordered before key with same hash code",
+                          comparator.compare(null, new CollidingKey(1, 0)) < 0);
+    }
+
+    @Test
+    public void testTreeWithCollidingKeys() {
+        AVLTreeNode<CollidingKey, Integer> root = new AVLTreeNode<>(new CollidingKey(0, 0), 0, comparator());
+        for (int i = 1; i < TEST_SIZE; i++) {
+            root = root.insert(new CollidingKey(i, 0), i);
+            Assert.assertTrue("Tree of colliding keys is unbalanced", root.getMaxAbsTreeBalance() < 2);
+        }
+        Assert.assertTrue("Tree of " + TEST_SIZE + " colliding keys is too high: " + root.getHeight(),
+                          root.getHeight() <= 1.45 * Math.log(TEST_SIZE + 2) / Math.log(2));
+        for (int i = 0; i < TEST_SIZE; i++) {
+            final Map.Entry<CollidingKey, Integer> entry = root.getEntry(new CollidingKey(i, 0));
+            Assert.assertNotNull("Tree lost colliding key [" + i + "]", entry);
+            Assert.assertEquals("Tree has incorrect value for colliding key [" + i + "]",
+                                Integer.valueOf(i), entry.getValue());
+        }
+        Assert.assertNull("Tree found absent colliding key", root.getEntry(new CollidingKey(TEST_SIZE, 0)));
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final KeyValuePair<CollidingKey, Integer>[] previous = new KeyValuePair[1];
+        root = root.insert(new CollidingKey(TEST_SIZE / 2, 0), -1, previous);
+        Assert.assertNotNull("Tree added duplicate of colliding key", previous[0]);
+        Assert.assertEquals("Tree has incorrect size after replacing colliding key", TEST_SIZE,
+                            root.getKeyValuePairs().size());
+        for (int i = 0; i < TEST_SIZE; i += 2) {
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            final KeyValuePair<CollidingKey, Integer>[] removed = new KeyValuePair[1];
+            root = root.remove(new CollidingKey(i, 0), removed);
+            Assert.assertNotNull("Tree didn't remove colliding key [" + i + "]", removed[0]);
+        }
+        for (int i = 0; i < TEST_SIZE; i++) {
+            Assert.assertEquals("Tree has incorrect presence of colliding key [" + i + "] after removal",
+                                i % 2 != 0, root.containsKey(new CollidingKey(i, 0)));
+        }
+        Assert.assertTrue("Tree of colliding keys is unbalanced after removal", root.getMaxAbsTreeBalance() < 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K> HashOrderComparator<K> comparator() {
+        return (HashOrderComparator<K>) comparator;
+    }
+
+    /**
+     * Ключ без естественного порядка с заданным хэш кодом
+     */
+    private static class CollidingKey {
+
+        private final int val;
+        private final int hash;
+
+        CollidingKey(int val, int hash) {
+            this.val = val;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            return val == ((CollidingKey) o).val;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -253,4 +253,26 @@ public class ListNodeTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testLongList() {
+        final int length = 200000;
+        ListNode<Object, Object> head = null;
+        for (int i = length - 1; i >= 0; i--) {
+            head = new ListNode<>(new KeyValuePair<>(i, i), head);
+        }
+        Assert.assertEquals("Long list has incorrect length", length, head.getLength());
+        Assert.assertEquals("Long list returned incorrect value for its last key", length - 1,
+                            head.getEntry(length - 1).getValue());
+        Assert.assertTrue("Long list didn't add new key", head.putIntoList(length, length));
+        @SuppressWarnings({"unchecked", "rawtypes"}) final KeyValuePair<Object, Object>[] removed = new KeyValuePair[1];
+        head = head.removeFromList(length / 2, removed);
+        Assert.assertNotNull("Long list didn't remove key from its middle", removed[0]);
+        Assert.assertEquals("Long list has incorrect number of pairs", length,
+                            head.getKeyValuePairs().size());
+        Assert.assertEquals("Long list has incorrect number of hashes", length,
+                            head.getKeyValuePairsHashes().length);
+        final StringBuilder strB = new StringBuilder();
+        head.describeList(strB);
+        Assert.assertTrue("Long list has empty description", strB.length() > 0);
+    }
+}
@@ -0,0 +1,53 @@
+package org.innopolis.kuzymvas.generic.datastructures;
+
+import org.innopolis.kuzymvas.exceptions.KeyNotPresentException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TieBreakingComparatorTest {
+
+    private final static int TEST_SIZE = 200;
+    private final static int GROUPS = 8;
+
+    @Test
+    public void testDefaultCompare() {
+        final TieBreakingComparator<Integer> comparator = new RemainderComparator();
+        Assert.assertTrue("Keys aren't compared in search order first", comparator.compare(9, 2) < 0);
+        Assert.assertTrue("Keys indistinguishable in search order aren't tie broken", comparator.compare(1, 9) < 0);
+        Assert.assertEquals("Equal keys aren't equal for comparator", 0, comparator.compare(9, 9));
+    }
+
+    @Test
+    public void testTreeWithCustomTieBreaker() throws KeyNotPresentException {
+        AVLTreeNode<Integer, Integer> root = new AVLTreeNode<>(0, 0, new RemainderComparator());
+        for (int i = 1; i < TEST_SIZE; i++) {
+            root = root.insert(i, i);
+        }
+        Assert.assertEquals("Tree has incorrect size", TEST_SIZE, root.getKeyValuePairs().size());
+        Assert.assertTrue("Tree is unbalanced", root.getMaxAbsTreeBalance() < 2);
+        for (int i = 0; i < TEST_SIZE; i += 2) {
+            root = root.remove(i);
+        }
+        for (int i = 0; i < TEST_SIZE; i++) {
+            Assert.assertEquals("Tree has incorrect presence of key [" + i + "] after removal",
+                                i % 2 != 0, root.containsKey(i));
+        }
+    }
+
+    /**
+     * Различает в порядке поиска только остатки от деления на число групп, а ключи одной группы -
+     * только при вставке, по их величине
+     */
+    private static class RemainderComparator implements TieBreakingComparator<Integer> {
+
+        @Override
+        public int compareForSearch(Object first, Object second) {
+            return Integer.compare((Integer) first % GROUPS, (Integer) second % GROUPS);
+        }
+
+        @Override
+        public int tieBreakOrder(Object first, Object second) {
+            return Integer.compare((Integer) first, (Integer) second);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.innopolis.kuzymvas.generic.datastructures.HashOrderComparator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class AdaptiveBucketTest {
+
+    private final static int TREEIFY_THRESHOLD = 8;
+    private final static int UNTREEIFY_THRESHOLD = 4;
+
+    private AdaptiveBucket<Object, Object> bucket;
+
+    @Before
+    public void setUp() {
+        bucket = new AdaptiveBucket<>(TREEIFY_THRESHOLD, UNTREEIFY_THRESHOLD);
+    }
+
+    @Test
+    public void testConstructorException() {
+        try {
+            new AdaptiveBucket<Object, Object>(4, -1);
+            Assert.fail("Was able to create bucket with negative untreeify threshold");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new AdaptiveBucket<Object, Object>(4, 4);
+            Assert.fail("Was able to create bucket with treeify threshold equal to untreeify threshold");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new BasicBucketFactory<Object, Object>(BasicBucketFactory.BucketType.ADAPTIVE, 2, 3);
+            Assert.fail("Was able to create factory with treeify threshold less than untreeify threshold");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testTreeifyAndUntreeify() {
+        for (int i = 0; i < TREEIFY_THRESHOLD - 1; i++) {
+            bucket.put(i, i);
+        }
+        Assert.assertFalse("Bucket was treeified before reaching threshold", bucket.isTreeified());
+        bucket.put(TREEIFY_THRESHOLD - 1, TREEIFY_THRESHOLD - 1);
+        Assert.assertTrue("Bucket wasn't treeified after reaching threshold", bucket.isTreeified());
+        for (int i = 0; i < TREEIFY_THRESHOLD; i++) {
+            Assert.assertEquals("Bucket lost value during treeification", i, bucket.getEntry(i).getValue());
+        }
+        for (int i = 0; i < TREEIFY_THRESHOLD - UNTREEIFY_THRESHOLD - 1; i++) {
+            bucket.removeAndGetPrevious(i);
+        }
+        Assert.assertTrue("Bucket was untreeified above untreeify threshold", bucket.isTreeified());
+        bucket.removeAndGetPrevious(TREEIFY_THRESHOLD - UNTREEIFY_THRESHOLD - 1);
+        Assert.assertFalse("Bucket wasn't untreeified after reaching untreeify threshold", bucket.isTreeified());
+        for (int i = TREEIFY_THRESHOLD - UNTREEIFY_THRESHOLD; i < TREEIFY_THRESHOLD; i++) {
+            Assert.assertEquals("Bucket lost value during untreeification", i, bucket.getEntry(i).getValue());
+        }
+        Assert.assertEquals("Bucket has incorrect number of pairs after untreeification", UNTREEIFY_THRESHOLD,
+                            bucket.getKeyValuePairs().size());
+    }
+
+    @Test
+    public void testNonComparableKeysStayInList() {
+        for (int i = 0; i < TREEIFY_THRESHOLD * 2; i++) {
+            bucket.put(new FixedHash(i, 0), i);
+        }
+        Assert.assertFalse("Bucket with non comparable keys was treeified", bucket.isTreeified());
+        for (int i = 0; i < TREEIFY_THRESHOLD * 2; i++) {
+            Assert.assertTrue("Bucket lost non comparable key", bucket.containsKey(new FixedHash(i, 0)));
+        }
+    }
+
+    @Test
+    public void testNonComparableKeysWithHashOrder() {
+        final AdaptiveBucket<Object, Object> hashOrderBucket =
+                new AdaptiveBucket<>(TREEIFY_THRESHOLD, UNTREEIFY_THRESHOLD, new HashOrderComparator<>());
+        for (int i = 0; i < TREEIFY_THRESHOLD * 2; i++) {
+            hashOrderBucket.put(new FixedHash(i, 0), i);
+        }
+        hashOrderBucket.put("key", "value");
+        Assert.assertTrue("Bucket with hash order comparator wasn't treeified", hashOrderBucket.isTreeified());
+        for (int i = 0; i < TREEIFY_THRESHOLD * 2; i++) {
+            Assert.assertEquals("Tree bucket lost non comparable key", i,
+                                hashOrderBucket.getEntry(new FixedHash(i, 0)).getValue());
+        }
+        Assert.assertEquals("Tree bucket lost key of another class", "value",
+                            hashOrderBucket.getEntry("key").getValue());
+    }
+
+    @Test
+    public void testNullKeyWithHashOrder() {
+        final AdaptiveBucket<Object, Object> hashOrderBucket =
+                new AdaptiveBucket<>(TREEIFY_THRESHOLD, UNTREEIFY_THRESHOLD, new HashOrderComparator<>());
+        hashOrderBucket.put(null, "null");
+        for (int i = 0; i < TREEIFY_THRESHOLD; i++) {
+            hashOrderBucket.put(i, i);
+        }
+        Assert.assertTrue("Bucket with hash order comparator wasn't treeified", hashOrderBucket.isTreeified());
+        Assert.assertTrue("Tree bucket lost null key", hashOrderBucket.containsKey(null));
+        Assert.assertEquals("Tree bucket returned wrong value for null key", "null",
+                            hashOrderBucket.getOrDefault(null, "default"));
+        Assert.assertEquals("Tree bucket didn't remove null key", "null",
+                            hashOrderBucket.removeAndGetPrevious(null).getValue());
+        Assert.assertFalse("Tree bucket kept removed null key", hashOrderBucket.containsKey(null));
+    }
+
+    @Test
+    public void testMixedKeyClasses() {
+        for (int i = 0; i < TREEIFY_THRESHOLD; i++) {
+            bucket.put(i, i);
+        }
+        Assert.assertTrue("Bucket wasn't treeified after reaching threshold", bucket.isTreeified());
+        Assert.assertNull("Tree bucket found key of another class", bucket.getEntry(0L));
+        Assert.assertNull("Tree bucket removed key of another class", bucket.removeAndGetPrevious("0"));
+        bucket.put("key", "value");
+        Assert.assertFalse("Bucket with keys of different classes stayed treeified", bucket.isTreeified());
+        Assert.assertEquals("Bucket lost key of another class", "value", bucket.getEntry("key").getValue());
+        for (int i = 0; i < TREEIFY_THRESHOLD; i++) {
+            Assert.assertTrue("Bucket lost key during untreeification", bucket.containsKey(i));
+        }
+        bucket.put(null, 0);
+        Assert.assertFalse("Bucket with null key was treeified", bucket.isTreeified());
+        Assert.assertTrue("Bucket lost null key", bucket.containsKey(null));
+    }
+
+    @Test
+    public void testFailedTreeifyIsRemembered() {
+        for (int i = 0; i < TREEIFY_THRESHOLD - 1; i++) {
+            bucket.put(i, i);
+        }
+        bucket.put("key", "value");
+        Assert.assertTrue("Failed treeification wasn't remembered", bucket.isTreeifyBlocked());
+        bucket.put(TREEIFY_THRESHOLD, TREEIFY_THRESHOLD);
+        bucket.put(TREEIFY_THRESHOLD + 1, TREEIFY_THRESHOLD + 1);
+        Assert.assertTrue("Treeification was retried while blocking key is present", bucket.isTreeifyBlocked());
+        bucket.removeAndGetPrevious(0);
+        Assert.assertTrue("Treeification was unblocked by removal of another key", bucket.isTreeifyBlocked());
+        bucket.removeAndGetPrevious("key");
+        Assert.assertFalse("Treeification stayed blocked after removal of blocking key", bucket.isTreeifyBlocked());
+        bucket.put(0, 0);
+        Assert.assertTrue("Bucket wasn't treeified after removal of blocking key", bucket.isTreeified());
+        // Ключ null мешает перестроению, пока корзина не уменьшится ниже порога
+        bucket.clear();
+        bucket.put(null, 0);
+        for (int i = 1; i < TREEIFY_THRESHOLD; i++) {
+            bucket.put(i, i);
+        }
+        Assert.assertTrue("Failed treeification with null key wasn't remembered", bucket.isTreeifyBlocked());
+        bucket.removeAndGetPrevious(1);
+        Assert.assertFalse("Treeification stayed blocked after bucket shrank below threshold",
+                           bucket.isTreeifyBlocked());
+        Assert.assertFalse("Bucket with null key was treeified", bucket.isTreeified());
+    }
+
+    @Test
+    public void testEntriesSurviveRestructuring() {
+        bucket.put(0, 0);
+        final Map.Entry<Object, Object> entry = bucket.getEntry(0);
+        Assert.assertNotNull("Bucket didn't return entry for existing key", entry);
+        for (int i = 1; i < TREEIFY_THRESHOLD; i++) {
+            bucket.put(i, i);
+        }
+        entry.setValue(42);
+        Assert.assertEquals("Entry obtained before treeification isn't linked to bucket", 42,
+                            bucket.getEntry(0).getValue());
+        for (int i = 1; i < TREEIFY_THRESHOLD; i++) {
+            bucket.removeAndGetPrevious(i);
+        }
+        entry.setValue(24);
+        Assert.assertEquals("Entry obtained before untreeification isn't linked to bucket", 24,
+                            bucket.getEntry(0).getValue());
+    }
+}
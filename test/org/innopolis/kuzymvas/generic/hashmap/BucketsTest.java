@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @RunWith(Parameterized.class)
 public class BucketsTest {
@@ -34,7 +35,11 @@ public class BucketsTest {
     public static Collection bucketsToTest() {
         return Arrays.asList(new Object[][]{
                 {BasicBucketFactory.BucketType.AVL_TREE, "AVLTreeBucket"},
-                {BasicBucketFactory.BucketType.LIST, "ListBucket"}
+                {BasicBucketFactory.BucketType.LIST, "ListBucket"},
+                {BasicBucketFactory.BucketType.ARRAY, "ArrayBucket"},
+                {BasicBucketFactory.BucketType.ADAPTIVE, "AdaptiveBucket"},
+                {BasicBucketFactory.BucketType.LOCK_FREE_LIST, "LockFreeListBucket"},
+                {BasicBucketFactory.BucketType.PERSISTENT_AVL_TREE, "PersistentAVLTreeBucket"}
         });
     }
 
@@ -110,6 +115,64 @@ public class BucketsTest {
 
     }
 
+    @Test
+    public void testPutAndGetPrevious() {
+        for (int i = 0; i < keys.size(); i++) {
+            Assert.assertNull("Bucket " + bucketName + " reported previous value for a key, that wasn't put into it before",
+                              bucket.putAndGetPrevious(keys.get(i), values.get(i)));
+        }
+        for (Integer i : shuffle) {
+            final Map.Entry<Double, Object> previous = bucket.putAndGetPrevious(keys.get(i), replaceValue);
+            Assert.assertNotNull("Bucket " + bucketName + " didn't report previous value for key [" + i + "]", previous);
+            Assert.assertEquals("Bucket " + bucketName + " reported previous entry with incorrect key [" + i + "]", keys.get(i), previous.getKey());
+            try {
+                Assert.assertEquals("Bucket " + bucketName + " returned incorrect value for a given key [" + i + "]", replaceValue, bucket.get(keys.get(i)));
+            } catch (KeyNotPresentException e) {
+                Assert.fail("Bucket " + bucketName + " 'get' method threw an exception at key-value [" + i + "].");
+            }
+        }
+        final Bucket<Double, Object> otherBucket = new BasicBucketFactory<Double, Object>(bucketType).createBucket();
+        for (int i = 0; i < keys.size(); i++) {
+            otherBucket.put(keys.get(i), values.get(i));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            Assert.assertEquals("Bucket " + bucketName + " reported incorrect previous value for key [" + i + "]", values.get(i),
+                                otherBucket.putAndGetPrevious(keys.get(i), replaceValue).getValue());
+        }
+    }
+
+    @Test
+    public void testRemoveAndGetPrevious() {
+        for (int i = 0; i < keys.size(); i++) {
+            bucket.put(keys.get(i), values.get(i));
+        }
+        Assert.assertNull("Bucket " + bucketName + " removed entry for a key, that wasn't put into it", bucket.removeAndGetPrevious(invalidKey));
+        for (int i = 0; i < keys.size(); i++) {
+            final Map.Entry<Double, Object> removed = bucket.removeAndGetPrevious(keys.get(i));
+            Assert.assertNotNull("Bucket " + bucketName + " didn't return removed entry for key [" + i + "]", removed);
+            Assert.assertEquals("Bucket " + bucketName + " returned incorrect removed key [" + i + "]", keys.get(i), removed.getKey());
+            Assert.assertEquals("Bucket " + bucketName + " returned incorrect removed value [" + i + "]", values.get(i), removed.getValue());
+            Assert.assertFalse("Bucket " + bucketName + " does contain key, that was removed from it", bucket.containsKey(keys.get(i)));
+            Assert.assertNull("Bucket " + bucketName + " removed the same key twice", bucket.removeAndGetPrevious(keys.get(i)));
+        }
+    }
+
+    @Test
+    public void testReplaceAndGetPrevious() {
+        for (int i = 0; i < keys.size(); i++) {
+            bucket.put(keys.get(i), values.get(i));
+        }
+        Assert.assertNull("Bucket " + bucketName + " replaced value for a key, that wasn't put into it",
+                          bucket.replaceAndGetPrevious(invalidKey, replaceValue));
+        Assert.assertFalse("Bucket " + bucketName + " added a key during replacement", bucket.containsKey(invalidKey));
+        for (int i = 0; i < keys.size(); i++) {
+            final Map.Entry<Double, Object> previous = bucket.replaceAndGetPrevious(keys.get(i), replaceValue);
+            Assert.assertNotNull("Bucket " + bucketName + " didn't replace value for key [" + i + "]", previous);
+            Assert.assertEquals("Bucket " + bucketName + " reported incorrect previous value for key [" + i + "]", values.get(i), previous.getValue());
+            Assert.assertEquals("Bucket " + bucketName + " returned incorrect entry for a given key [" + i + "]", replaceValue, bucket.getEntry(keys.get(i)).getValue());
+        }
+    }
+
     @Test
     public void testBasicsNegative() {
         Assert.assertFalse("Bucket reported that it contains key, that wasn't put into it", bucket.containsKey(invalidKey));
@@ -0,0 +1,232 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentBucketAgnosticHashMapTest {
+
+    private final static int TEST_SIZE = 2000;
+    private final static int KEY_RANGE = 300;
+    private final static int THREAD_COUNT = 8;
+
+    @Test
+    public void testConstructorException() {
+        final BucketFactory<String, Integer> factory = new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST);
+        try {
+            new ConcurrentBucketAgnosticHashMap<>(null);
+            Assert.fail("Was able to create hash map without bucket factory");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new ConcurrentBucketAgnosticHashMap<>(factory, 0, 0.75f, 4);
+            Assert.fail("Was able to create hash map with 0 buckets");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new ConcurrentBucketAgnosticHashMap<>(factory, 16, 0.0f, 4);
+            Assert.fail("Was able to create hash map with zero load factor");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new ConcurrentBucketAgnosticHashMap<>(factory, 16, 0.75f, 0);
+            Assert.fail("Was able to create hash map with zero concurrency level");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testRandomOperations() {
+        for (BasicBucketFactory.BucketType bucketType : BasicBucketFactory.BucketType.values()) {
+            final Map<String, Integer> map = new ConcurrentBucketAgnosticHashMap<>(
+                    new BasicBucketFactory<>(bucketType), 4, 0.75f, 4);
+            final Map<String, Integer> reference = new HashMap<>();
+            final Random random = new Random(42);
+            for (int i = 0; i < TEST_SIZE * 10; i++) {
+                final String key = "key_" + random.nextInt(KEY_RANGE);
+                final String message = " on " + bucketType + " [" + i + "]";
+                switch (random.nextInt(7)) {
+                    case 0:
+                        Assert.assertEquals("Hash map returned incorrect previous value on put" + message,
+                                            reference.put(key, i), map.put(key, i));
+                        break;
+                    case 1:
+                        Assert.assertEquals("Hash map returned incorrect value on remove" + message,
+                                            reference.remove(key), map.remove(key));
+                        break;
+                    case 2:
+                        Assert.assertEquals("Hash map returned incorrect value on putIfAbsent" + message,
+                                            reference.putIfAbsent(key, i), map.putIfAbsent(key, i));
+                        break;
+                    case 3:
+                        Assert.assertEquals("Hash map returned incorrect value on merge" + message,
+                                            reference.merge(key, 1, Integer::sum), map.merge(key, 1, Integer::sum));
+                        break;
+                    case 4:
+                        Assert.assertEquals("Hash map returned incorrect value on compute" + message,
+                                            reference.compute(key, (k, v) -> (v == null || v % 2 == 0) ? null : v + 1),
+                                            map.compute(key, (k, v) -> (v == null || v % 2 == 0) ? null : v + 1));
+                        break;
+                    case 5:
+                        Assert.assertEquals("Hash map returned incorrect value on replace" + message,
+                                            reference.replace(key, -i), map.replace(key, -i));
+                        break;
+                    default:
+                        Assert.assertEquals("Hash map returned incorrect value on get" + message,
+                                            reference.get(key), map.get(key));
+                }
+                Assert.assertEquals("Hash map has incorrect size" + message, reference.size(), map.size());
+            }
+            Assert.assertEquals("Hash map differs from reference map on " + bucketType, reference, map);
+        }
+    }
+
+    @Test
+    public void testNullsRejected() {
+        final Map<String, Integer> map = new ConcurrentBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST));
+        try {
+            map.put(null, 1);
+            Assert.fail("Hash map accepted null key");
+        } catch (NullPointerException ignored) {
+        }
+        try {
+            map.put("key", null);
+            Assert.fail("Hash map accepted null value");
+        } catch (NullPointerException ignored) {
+        }
+        Assert.assertTrue("Hash map was changed by rejected operations", map.isEmpty());
+    }
+
+    @Test
+    public void testResize() {
+        final ConcurrentBucketAgnosticHashMap<Integer, Integer> map = new ConcurrentBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), 4, 0.75f, 4);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            map.put(i, i);
+        }
+        Assert.assertTrue("Hash map didn't grow", map.getBucketNumber() * 0.75f >= TEST_SIZE);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            Assert.assertEquals("Hash map lost value during resize", Integer.valueOf(i), map.get(i));
+        }
+        for (int i = 0; i < TEST_SIZE; i++) {
+            map.remove(i);
+        }
+        Assert.assertEquals("Hash map didn't shrink back to initial size", 4, map.getBucketNumber());
+    }
+
+    @Test
+    public void testConcurrentResize() throws InterruptedException {
+        for (BasicBucketFactory.BucketType bucketType : new BasicBucketFactory.BucketType[]{
+                BasicBucketFactory.BucketType.LIST, BasicBucketFactory.BucketType.LOCK_FREE_LIST,
+                BasicBucketFactory.BucketType.PERSISTENT_AVL_TREE}) {
+            final ConcurrentBucketAgnosticHashMap<Integer, Integer> map = new ConcurrentBucketAgnosticHashMap<>(
+                    new BasicBucketFactory<>(bucketType), 4, 0.75f, 4);
+            for (int i = 0; i < KEY_RANGE; i++) {
+                map.put(-i - 1, i);
+            }
+            runConcurrently(thread -> {
+                for (int round = 0; round < 3; round++) {
+                    for (int i = thread; i < 4 * TEST_SIZE; i += THREAD_COUNT) {
+                        map.put(i, i);
+                        final int key = -(i % KEY_RANGE) - 1;
+                        Assert.assertEquals("Hash map lost value during concurrent resize on " + bucketType,
+                                            Integer.valueOf(-key - 1), map.get(key));
+                    }
+                    for (int i = thread; i < 4 * TEST_SIZE; i += THREAD_COUNT) {
+                        Assert.assertEquals("Hash map lost value during concurrent resize on " + bucketType,
+                                            Integer.valueOf(i), map.remove(i));
+                    }
+                }
+            });
+            Assert.assertFalse("Hash map didn't finish resize on " + bucketType, map.isResizing());
+            Assert.assertEquals("Hash map has incorrect size after concurrent resize on " + bucketType,
+                                KEY_RANGE, map.size());
+            Assert.assertTrue("Hash map didn't shrink after concurrent resize on " + bucketType,
+                              map.getBucketNumber() < 4 * TEST_SIZE);
+            for (int i = 0; i < KEY_RANGE; i++) {
+                Assert.assertEquals("Hash map lost value after concurrent resize on " + bucketType,
+                                    Integer.valueOf(i), map.get(-i - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        final ConcurrentBucketAgnosticHashMap<Integer, Integer> map = new ConcurrentBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.ADAPTIVE), 4, 0.75f, 4);
+        final AtomicInteger absentInserts = new AtomicInteger();
+        runConcurrently(thread -> {
+            for (int i = 0; i < TEST_SIZE; i++) {
+                map.merge(i, 1, Integer::sum);
+                if (map.putIfAbsent(TEST_SIZE + i, thread) == null) {
+                    absentInserts.incrementAndGet();
+                }
+                map.compute(-1, (k, v) -> (v == null) ? 1 : v + 1);
+            }
+        });
+        Assert.assertEquals("Hash map has incorrect size after concurrent updates", 2 * TEST_SIZE + 1, map.size());
+        for (int i = 0; i < TEST_SIZE; i++) {
+            Assert.assertEquals("Concurrent merges lost update", Integer.valueOf(THREAD_COUNT), map.get(i));
+        }
+        Assert.assertEquals("Concurrent putIfAbsent inserted key twice", TEST_SIZE, absentInserts.get());
+        Assert.assertEquals("Concurrent computes lost update", Integer.valueOf(THREAD_COUNT * TEST_SIZE),
+                            map.get(-1));
+    }
+
+    @Test
+    public void testWeaklyConsistentIteration() throws InterruptedException {
+        final ConcurrentBucketAgnosticHashMap<Integer, Integer> map = new ConcurrentBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), 4, 0.75f, 4);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            map.put(i, i);
+        }
+        runConcurrently(thread -> {
+            if (thread == 0) {
+                for (int i = TEST_SIZE; i < 4 * TEST_SIZE; i++) {
+                    map.put(i, i);
+                }
+            } else {
+                final Set<Integer> seen = new HashSet<>();
+                for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+                    Assert.assertTrue("Iterator returned key twice", seen.add(entry.getKey()));
+                    Assert.assertEquals("Iterator returned incorrect pair", entry.getKey(), entry.getValue());
+                }
+                for (int i = 0; i < TEST_SIZE; i++) {
+                    Assert.assertTrue("Iterator missed key present during whole iteration", seen.contains(i));
+                }
+            }
+        });
+        final Iterator<Map.Entry<Integer, Integer>> iterator = map.entrySet().iterator();
+        final Map.Entry<Integer, Integer> entry = iterator.next();
+        entry.setValue(-1);
+        Assert.assertEquals("Entry didn't write value through to hash map", Integer.valueOf(-1),
+                            map.get(entry.getKey()));
+        iterator.remove();
+        Assert.assertFalse("Iterator didn't remove pair from hash map", map.containsKey(entry.getKey()));
+    }
+
+    private static void runConcurrently(ThreadBody body) throws InterruptedException {
+        final Thread[] threads = new Thread[THREAD_COUNT];
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> body.run(thread));
+            threads[t].setUncaughtExceptionHandler((th, e) -> failures.add(e));
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError("Thread failed", failures.get(0));
+        }
+    }
+
+    private interface ThreadBody {
+
+        void run(int thread);
+    }
+}
@@ -0,0 +1,196 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CopyOnWriteBucketAgnosticHashMapTest {
+
+    private final static int TEST_SIZE = 2000;
+    private final static int KEY_RANGE = 300;
+    private final static int THREAD_COUNT = 4;
+
+    @Test
+    public void testConstructorException() {
+        final BucketFactory<String, Integer> factory = new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST);
+        try {
+            new CopyOnWriteBucketAgnosticHashMap<>(null);
+            Assert.fail("Was able to create hash map without bucket factory");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new CopyOnWriteBucketAgnosticHashMap<>(factory, 0, 0.75f);
+            Assert.fail("Was able to create hash map with 0 buckets");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new CopyOnWriteBucketAgnosticHashMap<>(factory, 16, 0.0f);
+            Assert.fail("Was able to create hash map with zero load factor");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testRandomOperations() {
+        for (BasicBucketFactory.BucketType bucketType : BasicBucketFactory.BucketType.values()) {
+            final Map<String, Integer> map = new CopyOnWriteBucketAgnosticHashMap<>(
+                    new BasicBucketFactory<>(bucketType), 4, 0.75f);
+            final Map<String, Integer> reference = new HashMap<>();
+            final Random random = new Random(42);
+            for (int i = 0; i < TEST_SIZE * 5; i++) {
+                final String key = "key_" + random.nextInt(KEY_RANGE);
+                final String message = " on " + bucketType + " [" + i + "]";
+                switch (random.nextInt(5)) {
+                    case 0:
+                        Assert.assertEquals("Hash map returned incorrect previous value on put" + message,
+                                            reference.put(key, i), map.put(key, i));
+                        break;
+                    case 1:
+                        Assert.assertEquals("Hash map returned incorrect value on remove" + message,
+                                            reference.remove(key), map.remove(key));
+                        break;
+                    case 2:
+                        Assert.assertEquals("Hash map returned incorrect value on merge" + message,
+                                            reference.merge(key, 1, Integer::sum), map.merge(key, 1, Integer::sum));
+                        break;
+                    case 3:
+                        Assert.assertEquals("Hash map returned incorrect value on putIfAbsent" + message,
+                                            reference.putIfAbsent(key, i), map.putIfAbsent(key, i));
+                        break;
+                    default:
+                        Assert.assertEquals("Hash map returned incorrect value on get" + message,
+                                            reference.get(key), map.get(key));
+                }
+                Assert.assertEquals("Hash map has incorrect size" + message, reference.size(), map.size());
+            }
+            Assert.assertEquals("Hash map differs from reference map on " + bucketType, reference, map);
+        }
+    }
+
+    @Test
+    public void testBatchUpdate() {
+        final CopyOnWriteBucketAgnosticHashMap<Integer, Integer> map = new CopyOnWriteBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), 4, 0.75f);
+        final Map<Integer, Integer> fresh = new HashMap<>();
+        for (int i = 0; i < TEST_SIZE; i++) {
+            fresh.put(i, i);
+        }
+        map.putAll(fresh);
+        Assert.assertEquals("Hash map differs from added map", fresh, map);
+        Assert.assertTrue("Hash map didn't grow", map.getBucketNumber() * 0.75f >= TEST_SIZE);
+        map.update(batch -> {
+            for (int i = 0; i < TEST_SIZE; i += 2) {
+                batch.remove(i);
+            }
+            batch.replaceAll((key, value) -> -value);
+            batch.merge(1, 1, Integer::sum);
+            Assert.assertEquals("Batch doesn't see its own changes", Integer.valueOf(0), batch.get(1));
+            Assert.assertEquals("Hash map shows changes of unfinished batch", TEST_SIZE, map.size());
+        });
+        Assert.assertEquals("Hash map has incorrect size after batch", TEST_SIZE / 2, map.size());
+        Assert.assertEquals("Batch lost change", Integer.valueOf(0), map.get(1));
+        Assert.assertEquals("Batch lost change", Integer.valueOf(-3), map.get(3));
+        Assert.assertFalse("Batch lost removal", map.containsKey(2));
+        final Map<Integer, Integer> before = new HashMap<>(map);
+        try {
+            map.update(batch -> {
+                batch.clear();
+                throw new IllegalStateException("Refresh failed");
+            });
+            Assert.fail("Update didn't pass exception of batch");
+        } catch (IllegalStateException ignored) {
+        }
+        Assert.assertEquals("Failed batch changed hash map", before, map);
+        @SuppressWarnings({"unchecked", "rawtypes"}) final Map<Integer, Integer>[] leaked = new Map[1];
+        map.update(batch -> leaked[0] = batch);
+        try {
+            leaked[0].put(-1, -1);
+            Assert.fail("Was able to change batch after update");
+        } catch (IllegalStateException ignored) {
+        }
+        map.update(Map::clear);
+        Assert.assertTrue("Hash map isn't empty after clear", map.isEmpty());
+        Assert.assertEquals("Hash map didn't shrink after clear", 4, map.getBucketNumber());
+    }
+
+    @Test
+    public void testBatchVisibility() throws InterruptedException {
+        final CopyOnWriteBucketAgnosticHashMap<Integer, Integer> map = new CopyOnWriteBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.ARRAY));
+        for (int i = 0; i < KEY_RANGE; i++) {
+            map.put(i, 0);
+        }
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        runConcurrently(thread -> {
+            if (thread == 0) {
+                for (int round = 1; round <= TEST_SIZE / 10; round++) {
+                    final int value = round;
+                    map.update(batch -> {
+                        for (int i = 0; i < KEY_RANGE; i++) {
+                            batch.put(i, value);
+                        }
+                    });
+                }
+                writing.set(false);
+            } else {
+                while (writing.get()) {
+                    final Set<Integer> values = new HashSet<>(map.values());
+                    Assert.assertEquals("Reader saw part of batch", 1, values.size());
+                    Assert.assertEquals("Reader saw incorrect number of pairs", KEY_RANGE, map.size());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testSnapshotIteration() {
+        final CopyOnWriteBucketAgnosticHashMap<Integer, Integer> map = new CopyOnWriteBucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST));
+        for (int i = 0; i < KEY_RANGE; i++) {
+            map.put(i, i);
+        }
+        final Iterator<Map.Entry<Integer, Integer>> iterator = map.entrySet().iterator();
+        map.put(-1, -1);
+        int count = 0;
+        while (iterator.hasNext()) {
+            final Map.Entry<Integer, Integer> entry = iterator.next();
+            Assert.assertNotEquals("Iterator returned pair added after its creation", Integer.valueOf(-1),
+                                   entry.getKey());
+            if (entry.getKey() == 0) {
+                entry.setValue(42);
+            }
+            if (entry.getKey() == 1) {
+                iterator.remove();
+            }
+            count++;
+        }
+        Assert.assertEquals("Iterator didn't return all pairs of snapshot", KEY_RANGE, count);
+        Assert.assertEquals("Entry didn't write value through to hash map", Integer.valueOf(42), map.get(0));
+        Assert.assertFalse("Iterator didn't remove pair from hash map", map.containsKey(1));
+        Assert.assertTrue("Hash map lost pair added during iteration", map.containsKey(-1));
+    }
+
+    private static void runConcurrently(ThreadBody body) throws InterruptedException {
+        final Thread[] threads = new Thread[THREAD_COUNT];
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> body.run(thread));
+            threads[t].setUncaughtExceptionHandler((th, e) -> failures.add(e));
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError("Thread failed", failures.get(0));
+        }
+    }
+
+    private interface ThreadBody {
+
+        void run(int thread);
+    }
+}
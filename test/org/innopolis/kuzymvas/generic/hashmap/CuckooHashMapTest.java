@@ -0,0 +1,103 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+public class CuckooHashMapTest {
+
+    private final static int BUCKET_NUMBER = 16;
+    private final static int TEST_SIZE = 10000;
+
+    private CuckooHashMap<FixedHash, Object> hashMap;
+
+    @Before
+    public void setUp() {
+        hashMap = new CuckooHashMap<>(new BasicHashStrategy(BasicHashStrategy.StrategyType.IDENTITY),
+                                      BUCKET_NUMBER, 0.9f);
+    }
+
+    @Test
+    public void testConstructorException() {
+        try {
+            new CuckooHashMap<FixedHash, Object>(0);
+            Assert.fail("Was able to create hash map with 0 buckets");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new CuckooHashMap<FixedHash, Object>(BUCKET_NUMBER, 1.5f);
+            Assert.fail("Was able to create hash map with a load factor above 1");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new CuckooHashMap<FixedHash, Object>(null, BUCKET_NUMBER, 0.5f);
+            Assert.fail("Was able to create hash map without hash strategy");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testHighLoadFactor() {
+        final CuckooHashMap<Integer, Integer> denseMap = new CuckooHashMap<>(1, 0.95f);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            denseMap.put(i, i);
+        }
+        Assert.assertTrue("Hash map grew below its load factor",
+                          TEST_SIZE > denseMap.getBucketNumber() * 4 * 0.95f / 2);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            Assert.assertEquals("Hash map lost value for key [" + i + "]", Integer.valueOf(i), denseMap.get(i));
+            Assert.assertNull("Hash map found absent key [" + (-i - 1) + "]", denseMap.get(-i - 1));
+        }
+    }
+
+    @Test
+    public void testSkewedHashes() {
+        // Ключи с общей первой корзиной размещаются во вторых корзинах
+        for (int i = 0; i < TEST_SIZE / 10; i++) {
+            hashMap.put(new FixedHash(i, i * BUCKET_NUMBER * 64), i);
+        }
+        for (int i = 0; i < TEST_SIZE / 10; i++) {
+            Assert.assertEquals("Hash map lost value for skewed key [" + i + "]", i,
+                                hashMap.get(new FixedHash(i, i * BUCKET_NUMBER * 64)));
+        }
+        Assert.assertTrue("Stash overflowed on keys with distinct hash codes", hashMap.getStashSize() <= 4);
+    }
+
+    @Test
+    public void testSameHashes() {
+        // Ключи с одинаковым хэш кодом неразличимы для обеих хэш функций и переполняют запасник
+        for (int i = 0; i < 20; i++) {
+            hashMap.put(new FixedHash(i, 7), i);
+        }
+        Assert.assertEquals("Hash map lost keys with equal hash codes", 20, hashMap.size());
+        Assert.assertEquals("Hash map didn't put extra keys with equal hash codes into stash", 12,
+                            hashMap.getStashSize());
+        final Set<Object> seen = new HashSet<>();
+        final Iterator<Map.Entry<FixedHash, Object>> iterator = hashMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            seen.add(iterator.next().getValue());
+            iterator.remove();
+        }
+        Assert.assertEquals("Iterator didn't visit all keys including stash", 20, seen.size());
+        Assert.assertTrue("Hash map isn't empty after removal of all keys through iterator", hashMap.isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void testManySameHashes() {
+        // Перестроение не уменьшает запасник из ключей с одинаковым хэш кодом и не повторяется при каждой вставке
+        final int count = 2000;
+        for (int i = 0; i < count; i++) {
+            hashMap.put(new FixedHash(i, 7), i);
+        }
+        Assert.assertEquals("Hash map lost keys with equal hash codes", count, hashMap.size());
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals("Hash map returned incorrect value for key with equal hash code [" + i + "]",
+                                i, hashMap.get(new FixedHash(i, 7)));
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class DurableMapTest {
+
+    private final static int SEGMENT_SIZE = 256;
+    private final static int TEST_SIZE = 2000;
+    private final static int KEY_RANGE = 300;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("durable-map");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testRecovery() throws IOException {
+        final Map<String, Integer> reference = new HashMap<>();
+        final Random random = new Random(42);
+        for (int round = 0; round < 3; round++) {
+            try (DurableMap<String, Integer> map = open(false)) {
+                Assert.assertEquals("Recovered map differs from reference map [" + round + "]", reference, map);
+                for (int i = 0; i < TEST_SIZE; i++) {
+                    final String key = "key_" + random.nextInt(KEY_RANGE);
+                    switch (random.nextInt(4)) {
+                        case 0:
+                            Assert.assertEquals("Map returned incorrect value on remove [" + i + "]",
+                                                reference.remove(key), map.remove(key));
+                            break;
+                        case 1:
+                            Assert.assertEquals("Map returned incorrect value on replace [" + i + "]",
+                                                reference.replace(key, -i), map.replace(key, -i));
+                            break;
+                        default:
+                            Assert.assertEquals("Map returned incorrect previous value on put [" + i + "]",
+                                                reference.put(key, i), map.put(key, i));
+                    }
+                }
+                Assert.assertEquals("Map differs from reference map [" + round + "]", reference, map);
+            }
+        }
+        try (DurableMap<String, Integer> map = open(true)) {
+            Assert.assertEquals("Recovered map differs from reference map", reference, map);
+            map.clear();
+            map.put("key", 1);
+        }
+        try (DurableMap<String, Integer> map = open(true)) {
+            Assert.assertEquals("Recovered map didn't replay clear", Collections.singletonMap("key", 1), map);
+        }
+    }
+
+    @Test
+    public void testSegmentRotation() throws IOException {
+        try (DurableMap<String, Integer> map = open(true)) {
+            for (int i = 0; i < TEST_SIZE; i++) {
+                map.put("key_" + i, i);
+            }
+        }
+        Assert.assertTrue("Log wasn't split into segments", countFiles("wal-") > 1);
+        try (DurableMap<String, Integer> map = open(true)) {
+            Assert.assertEquals("Map recovered from several segments has incorrect size", TEST_SIZE, map.size());
+        }
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        final Map<String, Integer> reference = new HashMap<>();
+        try (DurableMap<String, Integer> map = open(false)) {
+            for (int i = 0; i < TEST_SIZE; i++) {
+                reference.put("key_" + i, i);
+                map.put("key_" + i, i);
+            }
+            map.checkpoint();
+            Assert.assertEquals("Checkpoint didn't truncate log", 1, countFiles("wal-"));
+            Assert.assertEquals("Checkpoint didn't write single snapshot", 1, countFiles("snapshot-"));
+            for (int i = 0; i < TEST_SIZE; i += 2) {
+                reference.remove("key_" + i);
+                map.remove("key_" + i);
+            }
+            map.checkpoint();
+            Assert.assertEquals("Checkpoint didn't remove previous snapshot", 1, countFiles("snapshot-"));
+            reference.put("key", -1);
+            map.put("key", -1);
+        }
+        try (DurableMap<String, Integer> map = open(false)) {
+            Assert.assertEquals("Map recovered from snapshot and log differs from reference map", reference, map);
+        }
+    }
+
+    @Test
+    public void testWritesDuringCheckpoint() throws IOException, InterruptedException {
+        final CountDownLatch snapshotStarted = new CountDownLatch(1);
+        final CountDownLatch writeFinished = new CountDownLatch(1);
+        final Thread[] checkpointThread = new Thread[1];
+        // Кодек значений задерживает запись снимка, пока другой поток не изменит таблицу
+        final Codec<Integer> slowCodec = new Codec<Integer>() {
+            @Override
+            public byte[] encode(Integer value) {
+                if (Thread.currentThread() == checkpointThread[0]) {
+                    snapshotStarted.countDown();
+                    try {
+                        writeFinished.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return BasicCodecs.INTEGER.encode(value);
+            }
+
+            @Override
+            public Integer decode(ByteBuffer source, int offset, int length) {
+                return BasicCodecs.INTEGER.decode(source, offset, length);
+            }
+        };
+        final Map<String, Integer> reference = new HashMap<>();
+        try (DurableMap<String, Integer> map = DurableMap.open(
+                directory, new BucketAgnosticHashMap<>(new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST)),
+                BasicCodecs.STRING, slowCodec, SEGMENT_SIZE, 100, false)) {
+            for (int i = 0; i < KEY_RANGE; i++) {
+                reference.put("key_" + i, i);
+                map.put("key_" + i, i);
+            }
+            final IOException[] failure = new IOException[1];
+            checkpointThread[0] = new Thread(() -> {
+                try {
+                    map.checkpoint();
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            checkpointThread[0].start();
+            snapshotStarted.await();
+            final Thread writer = new Thread(() -> {
+                map.put("key", -1);
+                writeFinished.countDown();
+            });
+            writer.start();
+            final boolean written = writeFinished.await(5, TimeUnit.SECONDS);
+            writeFinished.countDown();
+            writer.join();
+            checkpointThread[0].join();
+            Assert.assertTrue("Checkpoint blocked writes while writing snapshot", written);
+            Assert.assertNull("Checkpoint failed", failure[0]);
+            reference.put("key", -1);
+        }
+        try (DurableMap<String, Integer> map = open(false)) {
+            Assert.assertEquals("Map recovered after checkpoint differs from reference map", reference, map);
+        }
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        try (DurableMap<String, Integer> map = open(true)) {
+            map.put("first", 1);
+            map.put("second", 2);
+        }
+        final Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.getFileName().toString().startsWith("wal-"))
+                           .filter(path -> path.toFile().length() > 0)
+                           .findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        try (DurableMap<String, Integer> map = open(true)) {
+            Assert.assertEquals("Map didn't recover records before torn one", Collections.singletonMap("first", 1),
+                                map);
+            map.put("third", 3);
+        }
+        try (DurableMap<String, Integer> map = open(true)) {
+            Assert.assertEquals("Map didn't recover records after truncated segment", 2, map.size());
+            Assert.assertEquals("Map lost record after truncated segment", Integer.valueOf(3), map.get("third"));
+        }
+    }
+
+    @Test
+    public void testNullKeyAndValue() throws IOException {
+        try (DurableMap<String, Integer> map = open(true)) {
+            map.put(null, 1);
+            map.put("key", null);
+        }
+        try (DurableMap<String, Integer> map = open(true)) {
+            Assert.assertEquals("Map didn't recover null key", Integer.valueOf(1), map.get(null));
+            Assert.assertTrue("Map didn't recover null value", map.containsKey("key"));
+            Assert.assertNull("Map didn't recover null value", map.get("key"));
+        }
+    }
+
+    @Test
+    public void testRejectedChange() throws IOException {
+        try (DurableMap<String, Integer> map = DurableMap.open(directory, new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.AVL_TREE)), BasicCodecs.STRING,
+                                                               BasicCodecs.INTEGER)) {
+            // Пустая строка попадает в одну корзину с null ключом, который не сравнить с ней
+            map.put("", 1);
+            try {
+                map.put(null, 2);
+                Assert.fail("Tree buckets with natural ordering accepted null key");
+            } catch (NullPointerException ignored) {
+            }
+        }
+        try (DurableMap<String, Integer> map = DurableMap.open(directory, new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.AVL_TREE)), BasicCodecs.STRING,
+                                                               BasicCodecs.INTEGER)) {
+            Assert.assertEquals("Map didn't recover after change rejected by underlying map",
+                                Collections.singletonMap("", 1), map);
+        }
+    }
+
+    @Test
+    public void testConcurrentWriters() throws IOException, InterruptedException {
+        final int threadCount = 4;
+        try (DurableMap<String, Integer> map = open(true)) {
+            final Thread[] threads = new Thread[threadCount];
+            for (int t = 0; t < threadCount; t++) {
+                final int thread = t;
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < TEST_SIZE / threadCount; i++) {
+                        map.put("key_" + thread + "_" + i, i);
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        try (DurableMap<String, Integer> map = open(true)) {
+            Assert.assertEquals("Map lost concurrent writes", TEST_SIZE, map.size());
+        }
+    }
+
+    @Test
+    public void testOpenException() throws IOException {
+        final BucketAgnosticHashMap<String, Integer> nonEmpty = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST));
+        nonEmpty.put("key", 1);
+        try {
+            DurableMap.open(directory, nonEmpty, BasicCodecs.STRING, BasicCodecs.INTEGER);
+            Assert.fail("Was able to restore into non empty map");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            DurableMap.open(directory, new BucketAgnosticHashMap<>(
+                                    new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST)),
+                            BasicCodecs.STRING, BasicCodecs.INTEGER, 0, 0, true);
+            Assert.fail("Was able to open map with zero segment size");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    private DurableMap<String, Integer> open(boolean synchronousCommit) throws IOException {
+        return DurableMap.open(directory, new BucketAgnosticHashMap<>(
+                                       new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), 16, 0.75f),
+                               BasicCodecs.STRING, BasicCodecs.INTEGER, SEGMENT_SIZE, 100, synchronousCommit);
+    }
+
+    private long countFiles(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix)).count();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+@RunWith(Parameterized.class)
+public class HashStrategyTest {
+
+    private final static int TEST_SIZE = 1000;
+    private final static int BUCKET_NUMBER = 64;
+
+    private final BasicHashStrategy.StrategyType strategyType;
+    private BucketAgnosticHashMap<Integer, String> hashMap;
+
+    public HashStrategyTest(BasicHashStrategy.StrategyType strategyType) {
+        this.strategyType = strategyType;
+    }
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> strategiesToTest() {
+        return Arrays.asList(new Object[][]{
+                {BasicHashStrategy.StrategyType.IDENTITY},
+                {BasicHashStrategy.StrategyType.SPREAD},
+                {BasicHashStrategy.StrategyType.MURMUR3},
+                {BasicHashStrategy.StrategyType.SEEDED_MURMUR3}
+        });
+    }
+
+    @Before
+    public void setUp() {
+        hashMap = new BucketAgnosticHashMap<>(new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST),
+                                              new BasicHashStrategy(strategyType), 10);
+    }
+
+    @Test
+    public void testConstructorException() {
+        try {
+            new BasicHashStrategy(null);
+            Assert.fail("Was able to create hash strategy without type");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new BucketAgnosticHashMap<>(new BasicBucketFactory<Integer, String>(BasicBucketFactory.BucketType.LIST),
+                                        null, BUCKET_NUMBER);
+            Assert.fail("Was able to create hash map without hash strategy");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testEqualKeysEqualHashes() {
+        final HashStrategy strategy = new BasicHashStrategy(strategyType);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            // Каждая конкатенация создает отдельный, но равный объект строки
+            Assert.assertEquals("Strategy " + strategyType + " returned different hashes for equal keys [" + i + "]",
+                                strategy.hash("key_" + i), strategy.hash("key_" + i));
+        }
+        Assert.assertEquals("Strategy " + strategyType + " returned different hashes for null key",
+                            strategy.hash(null), strategy.hash(null));
+    }
+
+    @Test
+    public void testSeed() {
+        final HashStrategy first = new BasicHashStrategy(strategyType, 1);
+        final HashStrategy second = new BasicHashStrategy(strategyType, 2);
+        boolean differs = false;
+        for (int i = 0; i < TEST_SIZE; i++) {
+            differs |= first.hash(i) != second.hash(i);
+        }
+        Assert.assertEquals("Seed has incorrect effect on strategy " + strategyType,
+                            strategyType == BasicHashStrategy.StrategyType.SEEDED_MURMUR3, differs);
+    }
+
+    @Test
+    public void testPowerOfTwoBuckets() {
+        Assert.assertEquals("Bucket number wasn't rounded up to a power of two", 16, hashMap.getBucketNumber());
+        final BucketAgnosticHashMap<Integer, String> resizableMap = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), new BasicHashStrategy(strategyType),
+                3, 0.75f, false);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            resizableMap.put(i, "Value_" + i);
+            Assert.assertEquals("Bucket number isn't a power of two after put [" + i + "]",
+                                1, Integer.bitCount(resizableMap.getBucketNumber()));
+        }
+    }
+
+    @Test
+    public void testExtremeHashes() {
+        final Set<Integer> keys = new HashSet<>(Arrays.asList(Integer.MIN_VALUE, Integer.MAX_VALUE, -1, 0, null));
+        for (Integer key : keys) {
+            hashMap.put(key, "Value_" + key);
+        }
+        Assert.assertEquals("Hash map size is incorrect after putting keys with extreme hashes",
+                            keys.size(), hashMap.size());
+        for (Integer key : keys) {
+            Assert.assertEquals("Hash map lost value for key [" + key + "]", "Value_" + key, hashMap.get(key));
+        }
+    }
+
+    @Test
+    public void testSpreadHighBits() {
+        // Ключи, отличающиеся лишь старшими битами хэша, не должны попадать в одну корзину у перемешивающих стратегий
+        final HashStrategy strategy = new BasicHashStrategy(strategyType);
+        final Set<Integer> usedBuckets = new HashSet<>();
+        for (int i = 0; i < BUCKET_NUMBER; i++) {
+            usedBuckets.add(strategy.hash(i << 16) & (BUCKET_NUMBER - 1));
+        }
+        if (strategyType == BasicHashStrategy.StrategyType.IDENTITY) {
+            Assert.assertEquals("Identity strategy changed low bits of hash code", 1, usedBuckets.size());
+        } else {
+            Assert.assertTrue("Strategy " + strategyType + " didn't spread high bits of hash code",
+                              usedBuckets.size() > BUCKET_NUMBER / 4);
+        }
+    }
+}
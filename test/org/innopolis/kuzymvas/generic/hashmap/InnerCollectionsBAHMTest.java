@@ -165,10 +165,57 @@ public class InnerCollectionsBAHMTest {
 
     @Test
     public void testRemoveValuesCollection() {
-        try {
-            valuesCollection.remove(values.get(0));
-            Assert.fail("Value collection permitted removal");
-        } catch (UnsupportedOperationException ignore) {
+        if (TEST_SIZE > 0) {
+            Assert.assertTrue("Values collection didn't report removal of present value",
+                              valuesCollection.remove(values.get(0)));
+            Assert.assertEquals("Removal from values collection didn't remove element from hash map", TEST_SIZE - 1,
+                                hashMap.size());
+            Assert.assertEquals("Removal from values collection didn't remove element from entry set", TEST_SIZE - 1,
+                                entrySet.size());
+            Assert.assertEquals("Removal from values collection didn't remove element from key set", TEST_SIZE - 1,
+                                keySet.size());
+            Assert.assertEquals("Removal from values collection didn't remove element from values collection",
+                                TEST_SIZE - 1, valuesCollection.size());
+
+            Assert.assertFalse("Removal from values collection didn't remove required element from hash map",
+                               hashMap.containsKey(keys.get(0)));
+            Assert.assertFalse("Removal from values collection didn't remove required element from entry set",
+                               entrySet.contains(entries.get(0)));
+            Assert.assertFalse("Removal from values collection didn't remove required element from key set",
+                               keySet.contains(keys.get(0)));
+            Assert.assertFalse("Removal from values collection didn't remove required element from values collection",
+                               valuesCollection.contains(values.get(0)));
+        }
+        Assert.assertFalse("Values collection reported removal of absent value",
+                           valuesCollection.remove(entryNotInMap.getValue()));
+    }
+
+    @Test
+    public void testIteratorRemoveValuesCollection() {
+        if (TEST_SIZE > 0) {
+            final Iterator<Object> iterator = valuesCollection.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().equals(values.get(0))) {
+                    iterator.remove();
+                }
+            }
+            Assert.assertEquals("Removal from values collection didn't remove element from hash map", TEST_SIZE - 1,
+                                hashMap.size());
+            Assert.assertEquals("Removal from values collection didn't remove element from entry set", TEST_SIZE - 1,
+                                entrySet.size());
+            Assert.assertEquals("Removal from values collection didn't remove element from key set", TEST_SIZE - 1,
+                                keySet.size());
+            Assert.assertEquals("Removal from values collection didn't remove element from values collection",
+                                TEST_SIZE - 1, valuesCollection.size());
+
+            Assert.assertFalse("Removal from values collection didn't remove required element from hash map",
+                               hashMap.containsKey(keys.get(0)));
+            Assert.assertFalse("Removal from values collection didn't remove required element from entry set",
+                               entrySet.contains(entries.get(0)));
+            Assert.assertFalse("Removal from values collection didn't remove required element from key set",
+                               keySet.contains(keys.get(0)));
+            Assert.assertFalse("Removal from values collection didn't remove required element from values collection",
+                               valuesCollection.contains(values.get(0)));
         }
     }
 
@@ -252,13 +299,117 @@ public class InnerCollectionsBAHMTest {
 
     @Test
     public void testRemoveAllValuesCollection() {
-        try {
-            List<Object> valuesList = new ArrayList<>();
+        List<Object> valuesList = new ArrayList<>();
+        if (TEST_SIZE > 0) {
             valuesList.add(values.get(0));
             valuesCollection.removeAll(valuesList);
-            Assert.fail("Value collection permitted removal");
-        } catch (UnsupportedOperationException ignore) {
+            Assert.assertEquals("Removal from values collection didn't remove element from hash map", TEST_SIZE - 1,
+                                hashMap.size());
+            Assert.assertEquals("Removal from values collection didn't remove element from entry set", TEST_SIZE - 1,
+                                entrySet.size());
+            Assert.assertEquals("Removal from values collection didn't remove element from key set", TEST_SIZE - 1,
+                                keySet.size());
+            Assert.assertEquals("Removal from values collection didn't remove element from values collection",
+                                TEST_SIZE - 1, valuesCollection.size());
+
+            Assert.assertFalse("Removal from values collection didn't remove required element from hash map",
+                               hashMap.containsKey(keys.get(0)));
+            Assert.assertFalse("Removal from values collection didn't remove required element from entry set",
+                               entrySet.contains(entries.get(0)));
+            Assert.assertFalse("Removal from values collection didn't remove required element from key set",
+                               keySet.contains(keys.get(0)));
+            Assert.assertFalse("Removal from values collection didn't remove required element from values collection",
+                               valuesCollection.contains(values.get(0)));
+        }
+    }
+
+    @Test
+    public void testRetainAllValuesCollection() {
+        List<Object> valuesList = new ArrayList<>(values);
+        if (TEST_SIZE > 0) {
+            valuesList.remove(0);
+            valuesCollection.retainAll(valuesList);
+            Assert.assertEquals("Removal from values collection didn't remove element from hash map", TEST_SIZE - 1,
+                                hashMap.size());
+            Assert.assertEquals("Removal from values collection didn't remove element from entry set", TEST_SIZE - 1,
+                                entrySet.size());
+            Assert.assertEquals("Removal from values collection didn't remove element from key set", TEST_SIZE - 1,
+                                keySet.size());
+            Assert.assertEquals("Removal from values collection didn't remove element from values collection",
+                                TEST_SIZE - 1, valuesCollection.size());
+
+            Assert.assertFalse("Removal from values collection didn't remove required element from hash map",
+                               hashMap.containsKey(keys.get(0)));
+            Assert.assertFalse("Removal from values collection didn't remove required element from entry set",
+                               entrySet.contains(entries.get(0)));
+            Assert.assertFalse("Removal from values collection didn't remove required element from key set",
+                               keySet.contains(keys.get(0)));
+            Assert.assertFalse("Removal from values collection didn't remove required element from values collection",
+                               valuesCollection.contains(values.get(0)));
         }
     }
 
+    @Test
+    public void testIteration() {
+        final Set<FixedHash> iteratedKeys = new HashSet<>();
+        for (FixedHash key : keySet) {
+            Assert.assertTrue("Key set iterator returned the same key twice", iteratedKeys.add(key));
+        }
+        Assert.assertEquals("Key set iterator didn't return all keys", new HashSet<>(keys), iteratedKeys);
+        final List<Object> iteratedValues = new ArrayList<>(valuesCollection);
+        Assert.assertEquals("Values iterator returned different amount of values", TEST_SIZE, iteratedValues.size());
+        Assert.assertTrue("Values iterator didn't return all values", iteratedValues.containsAll(values));
+    }
+
+    @Test
+    public void testOverwriteVisibleInViews() {
+        hashMap.put(keys.get(0), "Overwritten");
+        Assert.assertEquals("Overwrite changed entry set size", TEST_SIZE, entrySet.size());
+        Assert.assertTrue("Values collection doesn't contain overwritten value", valuesCollection.contains("Overwritten"));
+        Assert.assertFalse("Values collection still contains replaced value", valuesCollection.contains(values.get(0)));
+        Assert.assertTrue("Entry set doesn't contain overwritten entry",
+                          entrySet.contains(new KeyValuePair<>(keys.get(0), "Overwritten")));
+        Assert.assertFalse("Entry set still contains replaced entry", entrySet.contains(entries.get(0)));
+    }
+
+    @Test
+    public void testEntrySetValue() {
+        for (Map.Entry<FixedHash, Object> entry : entrySet) {
+            entry.setValue("Set_" + entry.getValue());
+        }
+        for (int i = 0; i < TEST_SIZE; i++) {
+            Assert.assertEquals("Setting value through entry set didn't change value in hash map [" + i + "]",
+                                "Set_" + values.get(i), hashMap.get(keys.get(i)));
+        }
+    }
+
+    @Test
+    public void testRemoveIfKeySet() {
+        keySet.removeIf(key -> key.hashCode() % 2 == 0);
+        Assert.assertEquals("Removal by predicate from key set removed incorrect amount of elements from hash map",
+                            TEST_SIZE / 2, hashMap.size());
+        for (int i = 0; i < TEST_SIZE; i++) {
+            Assert.assertEquals("Removal by predicate from key set affected incorrect key [" + i + "]",
+                                i % 2 != 0, hashMap.containsKey(keys.get(i)));
+        }
+    }
+
+    @Test
+    public void testRetainAllEntrySet() {
+        entrySet.retainAll(entries.subList(0, 1));
+        Assert.assertEquals("Retaining entries didn't remove other elements from hash map", 1, hashMap.size());
+        Assert.assertTrue("Retaining entries removed retained element from hash map", hashMap.containsKey(keys.get(0)));
+    }
+
+    @Test
+    public void testConcurrentModification() {
+        final Iterator<FixedHash> iterator = keySet.iterator();
+        iterator.next();
+        hashMap.remove(keys.get(TEST_SIZE - 1));
+        try {
+            iterator.next();
+            Assert.fail("Key set iterator didn't detect modification of hash map");
+        } catch (ConcurrentModificationException ignore) {
+        }
+    }
 }
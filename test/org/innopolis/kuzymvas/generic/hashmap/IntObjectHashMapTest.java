@@ -0,0 +1,149 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+public class IntObjectHashMapTest {
+
+    private final static int TEST_SIZE = 2000;
+    private final static int KEY_RANGE = 300;
+
+    private IntObjectHashMap<Object> hashMap;
+
+    @Before
+    public void setUp() {
+        hashMap = new IntObjectHashMap<>(4);
+    }
+
+    @Test
+    public void testConstructorException() {
+        try {
+            new IntObjectHashMap<Object>(0);
+            Assert.fail("Was able to create hash map with 0 cells");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new IntObjectHashMap<Object>(4, 1.0f);
+            Assert.fail("Was able to create hash map without free cells");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testZeroKey() {
+        Assert.assertNull("Hash map returned previous value for absent zero key", hashMap.put(0, "zero"));
+        hashMap.put(1, "one");
+        Assert.assertTrue("Hash map lost zero key", hashMap.containsKey(0));
+        Assert.assertEquals("Hash map has incorrect value for zero key", "zero", hashMap.get(0));
+        Assert.assertEquals("Hash map has incorrect size with zero key", 2, hashMap.size());
+        Assert.assertEquals("Hash map returned incorrect value on removal of zero key", "zero", hashMap.remove(0));
+        Assert.assertFalse("Hash map contains removed zero key", hashMap.containsKey(0));
+        Assert.assertEquals("Hash map lost key after removal of zero key", "one", hashMap.get(1));
+        hashMap.put(0, null);
+        Assert.assertTrue("Hash map lost zero key with null value", hashMap.containsKey(0));
+        Assert.assertEquals("Hash map returned default value for zero key with null value", null,
+                            hashMap.getOrDefault(0, "default"));
+    }
+
+    @Test
+    public void testRandomOperations() {
+        final Map<Integer, Object> reference = new HashMap<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < TEST_SIZE * 10; i++) {
+            final int key = random.nextInt(KEY_RANGE) - KEY_RANGE / 2;
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    Assert.assertEquals("Hash map returned incorrect previous value on put [" + i + "]",
+                                        reference.put(key, i), hashMap.put(key, i));
+                    break;
+                case 2:
+                    Assert.assertEquals("Hash map returned incorrect value on remove [" + i + "]",
+                                        reference.remove(key), hashMap.remove(key));
+                    break;
+                default:
+                    Assert.assertEquals("Hash map returned incorrect value on get [" + i + "]",
+                                        reference.get(key), hashMap.get(key));
+                    Assert.assertEquals("Hash map returned incorrect key presence [" + i + "]",
+                                        reference.containsKey(key), hashMap.containsKey(key));
+            }
+            Assert.assertEquals("Hash map has incorrect size after operation [" + i + "]",
+                                reference.size(), hashMap.size());
+        }
+        Assert.assertEquals("Hash map view differs from reference map", reference, hashMap.asMap());
+        Assert.assertEquals("Reference map differs from hash map view", hashMap.asMap(), reference);
+    }
+
+    @Test
+    public void testGrowAndShrink() {
+        for (int i = 0; i < TEST_SIZE; i++) {
+            hashMap.put(i, i);
+        }
+        Assert.assertTrue("Hash map didn't grow", hashMap.getCapacity() > TEST_SIZE);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            Assert.assertEquals("Hash map lost value for key [" + i + "] during growth", i, hashMap.get(i));
+        }
+        for (int i = 0; i < TEST_SIZE; i++) {
+            hashMap.remove(i);
+        }
+        Assert.assertTrue("Hash map isn't empty after removal of all keys", hashMap.isEmpty());
+        Assert.assertEquals("Hash map didn't shrink to initial capacity", 4, hashMap.getCapacity());
+        hashMap.put(1, 1);
+        Assert.assertEquals("Hash map is unusable after shrinking", 1, hashMap.get(1));
+    }
+
+    @Test
+    public void testForEach() {
+        for (int i = -KEY_RANGE; i < KEY_RANGE; i++) {
+            hashMap.put(i, i);
+        }
+        final Set<Integer> seen = new HashSet<>();
+        hashMap.forEach((key, value) -> {
+            Assert.assertEquals("Hash map passed incorrect value for key [" + key + "]", key, value);
+            Assert.assertTrue("Hash map passed key [" + key + "] twice", seen.add(key));
+        });
+        Assert.assertEquals("Hash map didn't pass all keys", 2 * KEY_RANGE, seen.size());
+        try {
+            hashMap.forEach((key, value) -> hashMap.remove(key));
+            Assert.fail("Hash map didn't detect modification during iteration");
+        } catch (ConcurrentModificationException ignored) {
+        }
+    }
+
+    @Test
+    public void testMapView() {
+        final Map<Integer, Object> view = hashMap.asMap();
+        for (int i = -KEY_RANGE; i < KEY_RANGE; i++) {
+            view.put(Integer.valueOf(i), i);
+        }
+        Assert.assertEquals("Hash map doesn't reflect changes of its view", 2 * KEY_RANGE, hashMap.size());
+        Assert.assertNull("View found key of another type", view.get("0"));
+        Assert.assertNull("View removed key of another type", view.remove(Long.valueOf(1)));
+        for (Map.Entry<Integer, Object> entry : view.entrySet()) {
+            entry.setValue(-(Integer) entry.getValue());
+        }
+        Assert.assertEquals("View didn't reflect entry value change", -5, hashMap.get(5));
+        final Iterator<Integer> iterator = view.keySet().iterator();
+        final Set<Integer> seen = new HashSet<>();
+        int index = 0;
+        while (iterator.hasNext()) {
+            final Integer key = iterator.next();
+            Assert.assertTrue("View iterator returned key [" + key + "] twice", seen.add(key));
+            if (index++ % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        Assert.assertEquals("View iterator didn't visit all keys", 2 * KEY_RANGE, seen.size());
+        Assert.assertEquals("Hash map has incorrect size after removal through view iterator", KEY_RANGE,
+                            hashMap.size());
+        for (Integer key : view.keySet()) {
+            Assert.assertEquals("Hash map has incorrect value after removal through view iterator",
+                                -key, hashMap.get(key));
+        }
+        view.clear();
+        Assert.assertTrue("Hash map isn't empty after its view was cleared", hashMap.isEmpty());
+    }
+}
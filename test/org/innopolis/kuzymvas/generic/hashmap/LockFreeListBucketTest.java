@@ -0,0 +1,149 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class LockFreeListBucketTest {
+
+    private final static int THREAD_COUNT = 4;
+    private final static int KEYS_PER_THREAD = 200;
+    private final static int ROUNDS = 20;
+    private final static int HASH_RANGE = 8;
+
+    private LockFreeListBucket<FixedHash, Integer> bucket;
+
+    @Before
+    public void setUp() {
+        bucket = new LockFreeListBucket<>();
+    }
+
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        runConcurrently(thread -> {
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                    final int val = thread * KEYS_PER_THREAD + i;
+                    Assert.assertTrue("Bucket didn't add key of single writer",
+                                      bucket.put(new FixedHash(val, val % HASH_RANGE), round));
+                }
+                for (int i = 0; i < KEYS_PER_THREAD; i += 2) {
+                    final int val = thread * KEYS_PER_THREAD + i;
+                    Assert.assertNotNull("Bucket didn't remove key of single writer",
+                                         bucket.removeAndGetPrevious(new FixedHash(val, val % HASH_RANGE)));
+                }
+                for (int i = 1; i < KEYS_PER_THREAD; i += 2) {
+                    final int val = thread * KEYS_PER_THREAD + i;
+                    Assert.assertNotNull("Bucket didn't remove key of single writer",
+                                         bucket.removeAndGetPrevious(new FixedHash(val, val % HASH_RANGE)));
+                }
+            }
+            for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                final int val = thread * KEYS_PER_THREAD + i;
+                bucket.put(new FixedHash(val, val % HASH_RANGE), val);
+            }
+        });
+        Assert.assertEquals("Bucket has incorrect number of pairs after concurrent writes",
+                            THREAD_COUNT * KEYS_PER_THREAD, bucket.getKeyValuePairs().size());
+        for (int val = 0; val < THREAD_COUNT * KEYS_PER_THREAD; val++) {
+            Assert.assertEquals("Bucket lost value after concurrent writes", Integer.valueOf(val),
+                                bucket.getOrDefault(new FixedHash(val, val % HASH_RANGE), null));
+        }
+    }
+
+    @Test
+    public void testConcurrentUpdatesOfSameKey() throws InterruptedException {
+        runConcurrently(thread -> {
+            for (int i = 0; i < KEYS_PER_THREAD * ROUNDS; i++) {
+                final FixedHash key = new FixedHash(i % HASH_RANGE, 0);
+                if (thread == 0 && i % 3 == 0) {
+                    bucket.removeAndGetPrevious(key);
+                } else {
+                    bucket.put(key, thread);
+                }
+            }
+        });
+        final int pairCount = bucket.getKeyValuePairs().size();
+        Assert.assertTrue("Bucket has duplicate nodes after concurrent puts of same keys", pairCount <= HASH_RANGE);
+        for (int val = 0; val < HASH_RANGE; val++) {
+            bucket.removeAndGetPrevious(new FixedHash(val, 0));
+        }
+        Assert.assertTrue("Bucket kept duplicate node after removal of all keys", bucket.getKeyValuePairs().isEmpty());
+    }
+
+    @Test
+    public void testReadersDuringWrites() throws InterruptedException {
+        for (int val = 0; val < KEYS_PER_THREAD; val++) {
+            bucket.put(new FixedHash(val, val % HASH_RANGE), val);
+        }
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        runConcurrently(thread -> {
+            if (thread == 0) {
+                for (int round = 0; round < ROUNDS * 10; round++) {
+                    for (int val = KEYS_PER_THREAD; val < 2 * KEYS_PER_THREAD; val++) {
+                        bucket.put(new FixedHash(val, val % HASH_RANGE), val);
+                    }
+                    for (int val = KEYS_PER_THREAD; val < 2 * KEYS_PER_THREAD; val++) {
+                        bucket.removeAndGetPrevious(new FixedHash(val, val % HASH_RANGE));
+                    }
+                }
+                writing.set(false);
+            } else {
+                while (writing.get()) {
+                    for (int val = 0; val < KEYS_PER_THREAD; val++) {
+                        Assert.assertEquals("Reader missed key while other keys were changed",
+                                            Integer.valueOf(val),
+                                            bucket.getOrDefault(new FixedHash(val, val % HASH_RANGE), null));
+                    }
+                }
+            }
+        });
+        Assert.assertEquals("Bucket has incorrect number of pairs after writes", KEYS_PER_THREAD,
+                            bucket.getKeyValuePairs().size());
+    }
+
+    @Test
+    public void testRemovedEntry() {
+        final FixedHash key = new FixedHash(0, 0);
+        bucket.put(key, 0);
+        final Map.Entry<FixedHash, Integer> entry = bucket.getEntry(key);
+        bucket.removeAndGetPrevious(key);
+        try {
+            entry.setValue(1);
+            Assert.fail("Was able to change value of removed entry");
+        } catch (IllegalStateException ignored) {
+        }
+        Assert.assertFalse("Change of removed entry resurrected key", bucket.containsKey(key));
+        bucket.put(key, 2);
+        bucket.clear();
+        Assert.assertTrue("Bucket isn't empty after clear", bucket.getKeyValuePairs().isEmpty());
+    }
+
+    private static void runConcurrently(ThreadBody body) throws InterruptedException {
+        final Thread[] threads = new Thread[THREAD_COUNT];
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> body.run(thread));
+            threads[t].setUncaughtExceptionHandler((th, e) -> failures.add(e));
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError("Thread failed", failures.get(0));
+        }
+    }
+
+    private interface ThreadBody {
+
+        void run(int thread);
+    }
+}
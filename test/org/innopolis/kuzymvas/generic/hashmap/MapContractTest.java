@@ -0,0 +1,233 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.innopolis.kuzymvas.generic.datastructures.HashOrderComparator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+@RunWith(Parameterized.class)
+public class MapContractTest {
+
+    private final static int TEST_SIZE = 2000;
+    private final static int KEY_RANGE = 300;
+    private final static int COLLISION_BITS = 6;
+
+    private final String mapName;
+    private final Supplier<Map<String, Integer>> mapSupplier;
+    private Map<String, Integer> map;
+
+    public MapContractTest(String mapName, Supplier<Map<String, Integer>> mapSupplier) {
+        this.mapName = mapName;
+        this.mapSupplier = mapSupplier;
+    }
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> mapsToTest() {
+        return Arrays.asList(new Object[][]{
+                {"BucketAgnosticHashMap(LIST)", (Supplier<Map<String, Integer>>) () -> new BucketAgnosticHashMap<>(
+                        new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), 4, 0.75f)},
+                {"BucketAgnosticHashMap(AVL_TREE)", (Supplier<Map<String, Integer>>) () -> new BucketAgnosticHashMap<>(
+                        new BasicBucketFactory<>(BasicBucketFactory.BucketType.AVL_TREE), 4, 0.75f, true)},
+                {"BucketAgnosticHashMap(ARRAY)", (Supplier<Map<String, Integer>>) () -> new BucketAgnosticHashMap<>(
+                        new BasicBucketFactory<>(BasicBucketFactory.BucketType.ARRAY), 4, 0.75f)},
+                {"BucketAgnosticHashMap(ADAPTIVE)", (Supplier<Map<String, Integer>>) () -> new BucketAgnosticHashMap<>(
+                        new BasicBucketFactory<>(BasicBucketFactory.BucketType.ADAPTIVE, 4, 2), 4, 0.75f)},
+                {"BucketAgnosticHashMap(LOCK_FREE_LIST)", (Supplier<Map<String, Integer>>) () ->
+                        new BucketAgnosticHashMap<>(new BasicBucketFactory<>(
+                                BasicBucketFactory.BucketType.LOCK_FREE_LIST), 4, 0.75f)},
+                {"BucketAgnosticHashMap(PERSISTENT_AVL_TREE)", (Supplier<Map<String, Integer>>) () ->
+                        new BucketAgnosticHashMap<>(new BasicBucketFactory<>(
+                                BasicBucketFactory.BucketType.PERSISTENT_AVL_TREE), 4, 0.75f)},
+                {"BucketAgnosticHashMap(AVL_TREE, hash order)", (Supplier<Map<String, Integer>>) () ->
+                        new BucketAgnosticHashMap<>(new BasicBucketFactory<>(BasicBucketFactory.BucketType.AVL_TREE,
+                                                                             new HashOrderComparator<>()), 4, 0.75f)},
+                {"OpenAddressingHashMap", (Supplier<Map<String, Integer>>) () -> new OpenAddressingHashMap<>(4)},
+                {"RobinHoodHashMap", (Supplier<Map<String, Integer>>) () -> new RobinHoodHashMap<>(4, 0.95f)},
+                {"CuckooHashMap", (Supplier<Map<String, Integer>>) () -> new CuckooHashMap<>(1, 0.95f)},
+                {"SwissHashMap", (Supplier<Map<String, Integer>>) () -> new SwissHashMap<>(16)},
+                {"OffHeapHashMap", (Supplier<Map<String, Integer>>) () -> new OffHeapHashMap<>(
+                        BasicCodecs.STRING, BasicCodecs.INTEGER, new BasicHashStrategy(
+                        BasicHashStrategy.StrategyType.MURMUR3), 4, 0.75f, 256)}
+        });
+    }
+
+    @Before
+    public void setUp() {
+        map = mapSupplier.get();
+    }
+
+    @Test
+    public void testRandomOperations() {
+        final Map<String, Integer> reference = new HashMap<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < TEST_SIZE * 10; i++) {
+            final String key = "key_" + random.nextInt(KEY_RANGE);
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    Assert.assertEquals(mapName + " returned incorrect previous value on put [" + i + "]",
+                                        reference.put(key, i), map.put(key, i));
+                    break;
+                case 2:
+                    Assert.assertEquals(mapName + " returned incorrect value on remove [" + i + "]",
+                                        reference.remove(key), map.remove(key));
+                    break;
+                default:
+                    Assert.assertEquals(mapName + " returned incorrect value on get [" + i + "]",
+                                        reference.get(key), map.get(key));
+                    Assert.assertEquals(mapName + " returned incorrect key presence [" + i + "]",
+                                        reference.containsKey(key), map.containsKey(key));
+            }
+            Assert.assertEquals(mapName + " has incorrect size after operation [" + i + "]",
+                                reference.size(), map.size());
+        }
+        Assert.assertEquals(mapName + " differs from reference map", reference, map);
+        Assert.assertEquals("Reference map differs from " + mapName, map, reference);
+        final Map<String, Integer> copy = mapSupplier.get();
+        copy.putAll(reference);
+        Assert.assertEquals(mapName + " hash code depends on order of insertion", copy.hashCode(), map.hashCode());
+    }
+
+    @Test
+    public void testCollidingKeys() {
+        final List<String> keys = collidingKeys();
+        for (int i = 0; i < keys.size(); i++) {
+            map.put(keys.get(i), i);
+        }
+        Assert.assertEquals(mapName + " lost colliding keys", keys.size(), map.size());
+        for (int i = 0; i < keys.size(); i += 3) {
+            Assert.assertEquals(mapName + " returned incorrect value on removal of colliding key [" + i + "]",
+                                Integer.valueOf(i), map.remove(keys.get(i)));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            Assert.assertEquals(mapName + " has incorrect value for colliding key [" + i + "]",
+                                (i % 3 == 0) ? null : Integer.valueOf(i), map.get(keys.get(i)));
+        }
+    }
+
+    @Test
+    public void testNullValue() {
+        map.put("key", null);
+        Assert.assertTrue(mapName + " lost key with null value", map.containsKey("key"));
+        Assert.assertTrue(mapName + " lost null value", map.containsValue(null));
+        Assert.assertEquals(mapName + " returned default value for key with null value", null,
+                            map.getOrDefault("key", 42));
+        Assert.assertEquals(mapName + " didn't replace null value on putIfAbsent", null, map.putIfAbsent("key", 1));
+        Assert.assertEquals(mapName + " has incorrect value after putIfAbsent", Integer.valueOf(1), map.get("key"));
+    }
+
+    @Test
+    public void testGrowAndShrink() {
+        for (int i = 0; i < TEST_SIZE; i++) {
+            map.put("key_" + i, i);
+        }
+        for (int i = 0; i < TEST_SIZE; i++) {
+            Assert.assertEquals(mapName + " lost value for key [" + i + "] during growth",
+                                Integer.valueOf(i), map.get("key_" + i));
+        }
+        for (int i = 0; i < TEST_SIZE; i++) {
+            map.remove("key_" + i);
+        }
+        Assert.assertTrue(mapName + " isn't empty after removal of all keys", map.isEmpty());
+        map.put("key", 1);
+        Assert.assertEquals(mapName + " is unusable after shrinking", Integer.valueOf(1), map.get("key"));
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        final List<String> keys = collidingKeys();
+        for (int i = 0; i < TEST_SIZE; i++) {
+            keys.add("key_" + i);
+        }
+        for (String key : keys) {
+            map.put(key, key.length());
+        }
+        final Set<String> seen = new HashSet<>();
+        final Iterator<Map.Entry<String, Integer>> iterator = map.entrySet().iterator();
+        int index = 0;
+        while (iterator.hasNext()) {
+            final String key = iterator.next().getKey();
+            Assert.assertTrue(mapName + " iterator returned key [" + key + "] twice", seen.add(key));
+            if (index++ % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        Assert.assertEquals(mapName + " iterator didn't visit all keys", new HashSet<>(keys), seen);
+        Assert.assertEquals(mapName + " has incorrect size after removal through iterator",
+                            keys.size() / 2, map.size());
+        for (String key : map.keySet()) {
+            Assert.assertTrue(mapName + " contains key [" + key + "] that was never put", seen.contains(key));
+            Assert.assertEquals(mapName + " has incorrect value after removal through iterator",
+                                Integer.valueOf(key.length()), map.get(key));
+        }
+    }
+
+    @Test
+    public void testEntrySetValue() {
+        for (int i = 0; i < KEY_RANGE; i++) {
+            map.put("key_" + i, i);
+        }
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            entry.setValue(entry.getValue() + 1);
+        }
+        for (int i = 0; i < KEY_RANGE; i++) {
+            Assert.assertEquals(mapName + " didn't reflect entry value change for key [" + i + "]",
+                                Integer.valueOf(i + 1), map.get("key_" + i));
+        }
+    }
+
+    @Test
+    public void testViews() {
+        for (int i = 0; i < KEY_RANGE; i++) {
+            map.put("key_" + i, i);
+        }
+        Assert.assertTrue(mapName + " key set missing key", map.keySet().contains("key_0"));
+        Assert.assertTrue(mapName + " values missing value", map.values().contains(KEY_RANGE - 1));
+        Assert.assertTrue(mapName + " entry set missing entry",
+                          map.entrySet().contains(new AbstractMap.SimpleEntry<>("key_1", 1)));
+        Assert.assertFalse(mapName + " entry set contains entry with wrong value",
+                           map.entrySet().contains(new AbstractMap.SimpleEntry<>("key_1", 2)));
+        Assert.assertTrue(mapName + " entry set didn't remove entry",
+                          map.entrySet().remove(new AbstractMap.SimpleEntry<>("key_1", 1)));
+        Assert.assertTrue(mapName + " key set didn't remove key", map.keySet().remove("key_2"));
+        Assert.assertEquals(mapName + " has incorrect size after removal through views", KEY_RANGE - 2, map.size());
+        map.keySet().clear();
+        Assert.assertTrue(mapName + " isn't empty after key set was cleared", map.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentModification() {
+        for (int i = 0; i < KEY_RANGE; i++) {
+            map.put("key_" + i, i);
+        }
+        try {
+            for (String key : map.keySet()) {
+                map.remove(key);
+            }
+            Assert.fail(mapName + " iterator didn't detect modification of the map");
+        } catch (ConcurrentModificationException ignored) {
+        }
+    }
+
+    /**
+     * Строит строки с одинаковым хэш кодом из блоков "Aa" и "BB", хэш коды которых совпадают
+     *
+     * @return - список из 2^COLLISION_BITS различных строк с одинаковым хэш кодом
+     */
+    private static List<String> collidingKeys() {
+        final List<String> keys = new ArrayList<>();
+        for (int mask = 0; mask < (1 << COLLISION_BITS); mask++) {
+            final StringBuilder strB = new StringBuilder();
+            for (int bit = 0; bit < COLLISION_BITS; bit++) {
+                strB.append(((mask >> bit) & 1) == 0 ? "Aa" : "BB");
+            }
+            keys.add(strB.toString());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,153 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class MappedHashMapTest {
+
+    private final static int CHUNK_SIZE = 256;
+    private final static int TEST_SIZE = 2000;
+    private final static int KEY_RANGE = 300;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("mapped-hash-map");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        final Map<String, Integer> reference = new HashMap<>();
+        final Random random = new Random(42);
+        for (int round = 0; round < 5; round++) {
+            try (MappedHashMap<String, Integer> map = open()) {
+                Assert.assertEquals("Reopened hash map differs from reference map [" + round + "]", reference, map);
+                for (int i = 0; i < TEST_SIZE; i++) {
+                    final String key = "key_" + random.nextInt(KEY_RANGE);
+                    if (random.nextInt(3) == 0) {
+                        Assert.assertEquals("Hash map returned incorrect value on remove [" + i + "]",
+                                            reference.remove(key), map.remove(key));
+                    } else {
+                        Assert.assertEquals("Hash map returned incorrect previous value on put [" + i + "]",
+                                            reference.put(key, i), map.put(key, i));
+                    }
+                }
+            }
+        }
+        try (MappedHashMap<String, Integer> map = open()) {
+            Assert.assertEquals("Reopened hash map differs from reference map", reference, map);
+        }
+    }
+
+    @Test
+    public void testParametersArePersisted() throws IOException {
+        try (MappedHashMap<String, Integer> map = open()) {
+            for (int i = 0; i < TEST_SIZE; i++) {
+                map.put("key_" + i, i);
+            }
+        }
+        try (MappedHashMap<String, Integer> map = MappedHashMap.open(directory, BasicCodecs.STRING,
+                                                                     BasicCodecs.INTEGER)) {
+            for (int i = 0; i < TEST_SIZE; i++) {
+                map.remove("key_" + i);
+            }
+            Assert.assertEquals("Reopened hash map didn't keep its minimal capacity", 4, map.getCapacity());
+        }
+    }
+
+    @Test
+    public void testUnfinishedModification() throws IOException {
+        final Map<String, Integer> reference = new HashMap<>();
+        final MappedHashMap<String, Integer> map = open();
+        for (int i = 0; i < KEY_RANGE; i++) {
+            map.put("key_" + i, i);
+            reference.put("key_" + i, i);
+        }
+        map.force();
+        // Изменения на месте, перестроение индекса и уплотнение данных после force() не должны портить его состояние
+        for (int i = 0; i < KEY_RANGE; i++) {
+            map.put("key_" + i, -i);
+        }
+        for (int i = 0; i < TEST_SIZE; i++) {
+            map.put("new_key_" + i, i);
+        }
+        for (int i = 0; i < TEST_SIZE; i++) {
+            map.remove("new_key_" + i);
+        }
+        map.clear();
+        map.put("key_0", 1);
+        // Таблица не закрыта, как при аварийном завершении процесса
+        try (MappedHashMap<String, Integer> reopened = open()) {
+            Assert.assertEquals("Hash map wasn't restored to its state at last force", reference, reopened);
+            reopened.put("key", 1);
+        }
+        reference.put("key", 1);
+        try (MappedHashMap<String, Integer> reopened = open()) {
+            Assert.assertEquals("Hash map lost value written before close", reference, reopened);
+        }
+    }
+
+    @Test
+    public void testReleasedFilesAreDeleted() throws IOException {
+        try (MappedHashMap<String, Integer> map = open()) {
+            for (int i = 0; i < TEST_SIZE; i++) {
+                map.put("key_" + i, i);
+            }
+            for (int i = 0; i < TEST_SIZE; i++) {
+                map.remove("key_" + i);
+            }
+            map.put("key", 1);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.assertTrue("Hash map kept files of released buffers", files.count() <= 4);
+        }
+    }
+
+    @Test
+    public void testModificationCopiesOnlyChangedIndexPage() throws IOException {
+        // Индекс из 4 страниц по 2^14 ячеек (по 12 байт) и буфер данных, вмещающий обе пары
+        try (MappedHashMap<String, Integer> map = MappedHashMap.open(directory, BasicCodecs.STRING,
+                                                                     BasicCodecs.INTEGER, 1 << 16, 0.75f, 1024)) {
+            map.put("key", 1);
+            map.force();
+            final long bytesAtForce = countBytes();
+            map.put("other_key", 2);
+            Assert.assertEquals("Modification after force copied more than one index page", bytesAtForce + (12 << 14),
+                                countBytes());
+        }
+    }
+
+    private long countBytes() throws IOException {
+        long bytes = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                bytes += Files.size(file);
+            }
+        }
+        return bytes;
+    }
+
+    private MappedHashMap<String, Integer> open() throws IOException {
+        return MappedHashMap.open(directory, BasicCodecs.STRING, BasicCodecs.INTEGER, 4, 0.75f, CHUNK_SIZE);
+    }
+}
@@ -24,6 +24,12 @@ public class MockBucket<K,V> implements Bucket<K,V> {
         return true;
     }
 
+    @Override
+    public Map.Entry<K, V> putAndGetPrevious(K key, V value) {
+        usedPut = true;
+        return null;
+    }
+
     @Override
     public void replace(K key, V value) throws KeyNotPresentException {
         usedReplace = true;
@@ -32,6 +38,15 @@ public class MockBucket<K,V> implements Bucket<K,V> {
         }
     }
 
+    @Override
+    public Map.Entry<K, V> replaceAndGetPrevious(K key, V value) {
+        usedReplace = true;
+        if (throwExceptions) {
+            return null;
+        }
+        return mockPair;
+    }
+
     @Override
     public V get(Object key) throws KeyNotPresentException {
         usedGet = true;
@@ -49,6 +64,15 @@ public class MockBucket<K,V> implements Bucket<K,V> {
         }
     }
 
+    @Override
+    public Map.Entry<K, V> removeAndGetPrevious(Object key) {
+        usedRemove = true;
+        if (throwExceptions) {
+            return null;
+        }
+        return mockPair;
+    }
+
     @Override
     public boolean containsKey(Object key) {
         usedContainsKey = true;
@@ -80,6 +104,10 @@ public class MockBucket<K,V> implements Bucket<K,V> {
 
     @Override
     public Map.Entry<K, V> getEntry(Object key) {
+        usedGet = true;
+        if (throwExceptions) {
+            return null;
+        }
         return mockPair;
     }
 
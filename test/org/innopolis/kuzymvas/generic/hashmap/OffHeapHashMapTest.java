@@ -0,0 +1,119 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class OffHeapHashMapTest {
+
+    private final static int CHUNK_SIZE = 256;
+    private final static int TEST_SIZE = 1000;
+
+    private OffHeapHashMap<String, String> hashMap;
+
+    @Before
+    public void setUp() {
+        hashMap = new OffHeapHashMap<>(BasicCodecs.STRING, BasicCodecs.STRING,
+                                       new BasicHashStrategy(BasicHashStrategy.StrategyType.MURMUR3), 4, 0.75f,
+                                       CHUNK_SIZE);
+    }
+
+    @Test
+    public void testConstructorException() {
+        try {
+            new OffHeapHashMap<String, String>(null, BasicCodecs.STRING);
+            Assert.fail("Was able to create hash map without key codec");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new OffHeapHashMap<>(BasicCodecs.STRING, BasicCodecs.STRING, 0);
+            Assert.fail("Was able to create hash map with 0 cells");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new OffHeapHashMap<>(BasicCodecs.STRING, BasicCodecs.STRING,
+                                 new BasicHashStrategy(BasicHashStrategy.StrategyType.MURMUR3), 4, 0.75f, 0);
+            Assert.fail("Was able to create hash map with empty chunks");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testNullKeyAndValue() {
+        hashMap.put(null, "null");
+        hashMap.put("", null);
+        Assert.assertEquals("Hash map lost null key", "null", hashMap.get(null));
+        Assert.assertTrue("Hash map lost key with null value", hashMap.containsKey(""));
+        Assert.assertNull("Hash map has incorrect value for key with null value", hashMap.get(""));
+        Assert.assertEquals("Hash map returned incorrect previous null value", null, hashMap.put("", "empty"));
+        Assert.assertEquals("Hash map returned incorrect value on removal of null key", "null",
+                            hashMap.remove(null));
+        Assert.assertFalse("Hash map contains removed null key", hashMap.containsKey(null));
+        Assert.assertEquals("Hash map lost key after removal of null key", "empty", hashMap.get(""));
+    }
+
+    @Test
+    public void testForeignKeyType() {
+        hashMap.put("1", "one");
+        Assert.assertFalse("Hash map found key of another type", hashMap.containsKey(1));
+        Assert.assertNull("Hash map removed key of another type", hashMap.remove(1));
+        Assert.assertEquals("Hash map has incorrect size after removal of key of another type", 1, hashMap.size());
+    }
+
+    @Test
+    public void testLargeRecords() {
+        final StringBuilder strB = new StringBuilder();
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            strB.append(i % 10);
+        }
+        final String large = strB.toString();
+        hashMap.put("small", "value");
+        hashMap.put(large, large);
+        hashMap.put("other", "value");
+        Assert.assertEquals("Hash map lost record larger than chunk", large, hashMap.get(large));
+        Assert.assertEquals("Hash map lost record after record larger than chunk", "value", hashMap.get("other"));
+    }
+
+    @Test
+    public void testCompaction() {
+        for (int i = 0; i < TEST_SIZE; i++) {
+            hashMap.put("key_" + (i % 10), "value_" + i);
+            hashMap.put("removed_" + i, "value");
+            hashMap.remove("removed_" + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("Hash map lost value for key [" + i + "] during compaction",
+                                "value_" + (TEST_SIZE - 10 + i), hashMap.get("key_" + i));
+        }
+        Assert.assertTrue("Hash map didn't release space of replaced and removed records: "
+                          + hashMap.getAllocatedBytes(), hashMap.getAllocatedBytes() < 4 * CHUNK_SIZE);
+    }
+
+    @Test
+    public void testInPlaceReplacement() {
+        hashMap.put("key", "value_1");
+        final long allocated = hashMap.getAllocatedBytes();
+        for (int i = 0; i < TEST_SIZE; i++) {
+            hashMap.put("key", "value_" + (i % 10));
+        }
+        Assert.assertEquals("Hash map wrote new record for value of the same length", allocated,
+                            hashMap.getAllocatedBytes());
+        Assert.assertEquals("Hash map lost replaced value", "value_" + ((TEST_SIZE - 1) % 10), hashMap.get("key"));
+    }
+
+    @Test
+    public void testBasicCodecs() {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        buffer.put(3, BasicCodecs.STRING.encode("Строка"));
+        Assert.assertEquals("String codec didn't restore string", "Строка",
+                            BasicCodecs.STRING.decode(buffer, 3, BasicCodecs.STRING.encode("Строка").length));
+        buffer.put(5, BasicCodecs.INTEGER.encode(-42));
+        Assert.assertEquals("Integer codec didn't restore number", Integer.valueOf(-42),
+                            BasicCodecs.INTEGER.decode(buffer, 5, Integer.BYTES));
+        buffer.put(7, BasicCodecs.LONG.encode(Long.MIN_VALUE + 1));
+        Assert.assertEquals("Long codec didn't restore number", Long.valueOf(Long.MIN_VALUE + 1),
+                            BasicCodecs.LONG.decode(buffer, 7, Long.BYTES));
+    }
+}
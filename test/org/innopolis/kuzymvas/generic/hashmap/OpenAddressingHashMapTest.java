@@ -0,0 +1,100 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+public class OpenAddressingHashMapTest {
+
+    private final static int CAPACITY = 16;
+
+    private OpenAddressingHashMap<FixedHash, Object> hashMap;
+
+    @Before
+    public void setUp() {
+        hashMap = new OpenAddressingHashMap<>(new BasicHashStrategy(BasicHashStrategy.StrategyType.IDENTITY),
+                                              CAPACITY, 0.9f);
+    }
+
+    @Test
+    public void testConstructorException() {
+        try {
+            new OpenAddressingHashMap<FixedHash, Object>(0);
+            Assert.fail("Was able to create hash map with 0 cells");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new OpenAddressingHashMap<FixedHash, Object>(CAPACITY, 1.0f);
+            Assert.fail("Was able to create hash map without free cells");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new OpenAddressingHashMap<FixedHash, Object>(null, CAPACITY, 0.5f);
+            Assert.fail("Was able to create hash map without hash strategy");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testCapacity() {
+        Assert.assertEquals("Hash map capacity isn't a power of two", 16,
+                            new OpenAddressingHashMap<FixedHash, Object>(10).getCapacity());
+        for (int i = 0; i < CAPACITY; i++) {
+            hashMap.put(new FixedHash(i, i), i);
+        }
+        Assert.assertEquals("Hash map didn't grow after exceeding load factor", 2 * CAPACITY,
+                            hashMap.getCapacity());
+    }
+
+    @Test
+    public void testNullKey() {
+        hashMap.put(null, "null");
+        hashMap.put(new FixedHash(0, 0), "zero");
+        Assert.assertEquals("Hash map lost null key", "null", hashMap.get(null));
+        Assert.assertEquals("Hash map returned incorrect value on removal of null key", "null",
+                            hashMap.remove(null));
+        Assert.assertFalse("Hash map contains removed null key", hashMap.containsKey(null));
+        Assert.assertEquals("Hash map lost key after removal of null key", "zero",
+                            hashMap.get(new FixedHash(0, 0)));
+    }
+
+    @Test
+    public void testBackwardShiftAcrossEnd() {
+        // Цепочка из ключей, начальные ячейки которых находятся в конце таблицы, переходит в ее начало
+        final FixedHash[] keys = new FixedHash[6];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new FixedHash(i, CAPACITY - 2 + i / 2);
+            hashMap.put(keys[i], i);
+        }
+        hashMap.remove(keys[0]);
+        hashMap.remove(keys[3]);
+        for (int i = 0; i < keys.length; i++) {
+            Assert.assertEquals("Hash map has incorrect value for key [" + i + "] after backward shift",
+                                (i == 0 || i == 3) ? null : i, hashMap.get(keys[i]));
+        }
+        Assert.assertEquals("Hash map has incorrect size after backward shift", keys.length - 2, hashMap.size());
+    }
+
+    @Test
+    public void testIteratorRemoveAcrossEnd() {
+        final Set<FixedHash> keys = new HashSet<>();
+        for (int i = 0; i < CAPACITY / 2; i++) {
+            final FixedHash key = new FixedHash(i, CAPACITY - 1);
+            keys.add(key);
+            hashMap.put(key, i);
+        }
+        final Set<FixedHash> seen = new HashSet<>();
+        final Iterator<Map.Entry<FixedHash, Object>> iterator = hashMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Assert.assertTrue("Iterator returned key twice", seen.add(iterator.next().getKey()));
+            iterator.remove();
+        }
+        Assert.assertEquals("Iterator didn't visit all keys of wrapped chain", keys, seen);
+        Assert.assertTrue("Hash map isn't empty after removal of all keys through iterator", hashMap.isEmpty());
+    }
+}
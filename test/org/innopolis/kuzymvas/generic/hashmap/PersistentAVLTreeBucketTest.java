@@ -0,0 +1,195 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.innopolis.kuzymvas.generic.datastructures.KeyValuePair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PersistentAVLTreeBucketTest {
+
+    private final static int THREAD_COUNT = 4;
+    private final static int TEST_SIZE = 2000;
+    private final static int HASH_RANGE = 512;
+
+    private PersistentAVLTreeBucket<FixedHash, Integer> bucket;
+
+    @Before
+    public void setUp() {
+        bucket = new PersistentAVLTreeBucket<>();
+    }
+
+    @Test
+    public void testBalance() {
+        for (int val = 0; val < TEST_SIZE; val++) {
+            bucket.put(new FixedHash(val, val), val);
+        }
+        Assert.assertTrue("Tree isn't balanced after sequential inserts", bucket.getHeight() <= maxHeight(TEST_SIZE));
+        for (int val = 0; val < TEST_SIZE; val += 3) {
+            bucket.removeAndGetPrevious(new FixedHash(val, val));
+        }
+        final int size = bucket.getKeyValuePairs().size();
+        Assert.assertEquals("Tree has incorrect number of pairs after removal", TEST_SIZE - (TEST_SIZE + 2) / 3, size);
+        Assert.assertTrue("Tree isn't balanced after removals", bucket.getHeight() <= maxHeight(size));
+    }
+
+    @Test
+    public void testRandomOperationsWithSameHashes() {
+        final Map<FixedHash, Integer> reference = new HashMap<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < TEST_SIZE * 10; i++) {
+            final int val = random.nextInt(HASH_RANGE * 2);
+            final FixedHash key = new FixedHash(val, val % HASH_RANGE / 4);
+            final Map.Entry<FixedHash, Integer> previous;
+            final Integer expected;
+            if (random.nextBoolean()) {
+                expected = reference.put(key, i);
+                previous = bucket.putAndGetPrevious(key, i);
+            } else {
+                expected = reference.remove(key);
+                previous = bucket.removeAndGetPrevious(key);
+            }
+            Assert.assertEquals("Bucket returned incorrect previous value [" + i + "]", expected,
+                                (previous == null) ? null : previous.getValue());
+        }
+        final List<KeyValuePair<FixedHash, Integer>> pairs = bucket.getKeyValuePairs();
+        Assert.assertEquals("Bucket has incorrect number of pairs", reference.size(), pairs.size());
+        for (KeyValuePair<FixedHash, Integer> pair : pairs) {
+            Assert.assertEquals("Bucket has incorrect value", reference.get(pair.getKey()), pair.getValue());
+        }
+        Assert.assertTrue("Tree isn't balanced", bucket.getHeight() <= maxHeight(HASH_RANGE / 4));
+    }
+
+    @Test
+    public void testComparableKeysWithSameHash() {
+        final PersistentAVLTreeBucket<String, Integer> strings = new PersistentAVLTreeBucket<>();
+        final List<String> keys = sameHashStrings(14);
+        for (int i = 0; i < keys.size(); i++) {
+            Assert.assertTrue("Bucket didn't add key with same hash", strings.put(keys.get(i), i));
+        }
+        // Сравнимые ключи с одинаковым хэш кодом должны располагаться в дереве, а не в цепочке одного узла
+        final int minHeight = 32 - Integer.numberOfLeadingZeros(keys.size());
+        Assert.assertTrue("Comparable keys with same hash weren't ordered in tree", strings.getHeight() >= minHeight);
+        Assert.assertTrue("Tree isn't balanced", strings.getHeight() <= maxHeight(keys.size()));
+        for (int i = 0; i < keys.size(); i += 2) {
+            Assert.assertNotNull("Bucket didn't remove key with same hash", strings.removeAndGetPrevious(keys.get(i)));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            Assert.assertEquals("Bucket has incorrect value for key with same hash",
+                                (i % 2 == 0) ? null : Integer.valueOf(i), strings.getOrDefault(keys.get(i), null));
+        }
+    }
+
+    @Test
+    public void testSnapshotReaders() throws InterruptedException {
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        runConcurrently(thread -> {
+            if (thread == 0) {
+                for (int val = 0; val < TEST_SIZE; val++) {
+                    bucket.put(new FixedHash(val, val), val);
+                }
+                writing.set(false);
+            } else {
+                while (writing.get()) {
+                    // Ключи добавляются по возрастанию, поэтому любой снимок содержит ключи 0..n-1
+                    final List<KeyValuePair<FixedHash, Integer>> pairs = bucket.getKeyValuePairs();
+                    for (int i = 0; i < pairs.size(); i++) {
+                        Assert.assertEquals("Snapshot of bucket isn't consistent", Integer.valueOf(i),
+                                            pairs.get(i).getValue());
+                    }
+                    if (!pairs.isEmpty()) {
+                        final int last = pairs.size() - 1;
+                        Assert.assertTrue("Reader missed key present in earlier snapshot",
+                                          bucket.containsKey(new FixedHash(last, last)));
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        runConcurrently(thread -> {
+            for (int i = 0; i < TEST_SIZE; i++) {
+                final int val = thread * TEST_SIZE + i;
+                Assert.assertTrue("Bucket didn't add key of single writer",
+                                  bucket.put(new FixedHash(val, val % HASH_RANGE), val));
+            }
+            for (int i = 0; i < TEST_SIZE; i += 2) {
+                final int val = thread * TEST_SIZE + i;
+                Assert.assertNotNull("Bucket didn't remove key of single writer",
+                                     bucket.removeAndGetPrevious(new FixedHash(val, val % HASH_RANGE)));
+            }
+        });
+        Assert.assertEquals("Bucket has incorrect number of pairs after concurrent writes",
+                            THREAD_COUNT * TEST_SIZE / 2, bucket.getKeyValuePairs().size());
+        for (int val = 1; val < THREAD_COUNT * TEST_SIZE; val += 2) {
+            Assert.assertEquals("Bucket lost value after concurrent writes", Integer.valueOf(val),
+                                bucket.getOrDefault(new FixedHash(val, val % HASH_RANGE), null));
+        }
+    }
+
+    @Test
+    public void testWriteThroughEntry() {
+        final FixedHash key = new FixedHash(0, 0);
+        bucket.put(key, 0);
+        final Map.Entry<FixedHash, Integer> entry = bucket.getEntry(key);
+        Assert.assertEquals("Entry returned incorrect previous value", Integer.valueOf(0), entry.setValue(1));
+        Assert.assertEquals("Entry didn't write value through to bucket", Integer.valueOf(1), bucket.getOrDefault(key, null));
+        bucket.removeAndGetPrevious(key);
+        try {
+            entry.setValue(2);
+            Assert.fail("Was able to change value of removed entry");
+        } catch (IllegalStateException ignored) {
+        }
+        Assert.assertFalse("Change of removed entry resurrected key", bucket.containsKey(key));
+    }
+
+    /**
+     * Строит 2^length строк одинаковой длины из блоков "Aa" и "BB", у которых совпадают хэш коды
+     */
+    private static List<String> sameHashStrings(int length) {
+        final List<String> strings = new ArrayList<>(1 << length);
+        for (int bits = 0; bits < (1 << length); bits++) {
+            final StringBuilder strB = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                strB.append(((bits >> i) & 1) == 0 ? "Aa" : "BB");
+            }
+            strings.add(strB.toString());
+        }
+        return strings;
+    }
+
+    private static int maxHeight(int size) {
+        return (int) Math.ceil(1.45 * Math.log(size + 2) / Math.log(2));
+    }
+
+    private static void runConcurrently(ThreadBody body) throws InterruptedException {
+        final Thread[] threads = new Thread[THREAD_COUNT];
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> body.run(thread));
+            threads[t].setUncaughtExceptionHandler((th, e) -> failures.add(e));
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError("Thread failed", failures.get(0));
+        }
+    }
+
+    private interface ThreadBody {
+
+        void run(int thread);
+    }
+}
@@ -0,0 +1,152 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResizingBAHMTest {
+
+    private final static int INITIAL_BUCKETS = 4;
+    private final static float LOAD_FACTOR = 0.75f;
+    private final static int TEST_SIZE = 1000;
+
+    private BucketAgnosticHashMap<Integer, String> hashMap;
+
+    @Before
+    public void setUp() {
+        hashMap = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), INITIAL_BUCKETS, LOAD_FACTOR);
+    }
+
+    @Test
+    public void testConstructorException() {
+        try {
+            new BucketAgnosticHashMap<>(new BasicBucketFactory<Integer, String>(BasicBucketFactory.BucketType.LIST),
+                                        INITIAL_BUCKETS, 0.0f);
+            Assert.fail("Was able to create hash map with a zero load factor");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            BucketAgnosticHashMap.withExpectedSize(
+                    new BasicBucketFactory<Integer, String>(BasicBucketFactory.BucketType.LIST), -1);
+            Assert.fail("Was able to create hash map with a negative expected size");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testGrow() {
+        for (int i = 0; i < TEST_SIZE; i++) {
+            hashMap.put(i, "Value_" + i);
+            Assert.assertTrue("Hash map load exceeded load factor after put [" + i + "]",
+                              hashMap.size() <= hashMap.getBucketNumber() * LOAD_FACTOR);
+        }
+        Assert.assertEquals("Hash map size is incorrect after growth", TEST_SIZE, hashMap.size());
+        for (int i = 0; i < TEST_SIZE; i++) {
+            Assert.assertEquals("Hash map lost value for key [" + i + "] during growth", "Value_" + i, hashMap.get(i));
+        }
+        Assert.assertEquals("Entry set lost entries during growth", TEST_SIZE, hashMap.entrySet().size());
+    }
+
+    @Test
+    public void testShrink() {
+        for (int i = 0; i < TEST_SIZE; i++) {
+            hashMap.put(i, "Value_" + i);
+        }
+        final int grownBucketNumber = hashMap.getBucketNumber();
+        for (int i = 0; i < TEST_SIZE - 1; i++) {
+            hashMap.remove(i);
+        }
+        Assert.assertTrue("Hash map didn't shrink after mass removal",
+                          hashMap.getBucketNumber() < grownBucketNumber);
+        Assert.assertTrue("Hash map shrunk below its initial bucket number",
+                          hashMap.getBucketNumber() >= INITIAL_BUCKETS);
+        Assert.assertEquals("Hash map lost value during shrinking", "Value_" + (TEST_SIZE - 1),
+                            hashMap.get(TEST_SIZE - 1));
+    }
+
+    @Test
+    public void testFixedSize() {
+        final BucketAgnosticHashMap<Integer, String> fixedMap = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), INITIAL_BUCKETS);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            fixedMap.put(i, "Value_" + i);
+        }
+        Assert.assertEquals("Fixed size hash map changed its bucket number", INITIAL_BUCKETS,
+                            fixedMap.getBucketNumber());
+    }
+
+    @Test
+    public void testExpectedSize() {
+        final BucketAgnosticHashMap<Integer, String> presizedMap = BucketAgnosticHashMap.withExpectedSize(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.AVL_TREE), TEST_SIZE);
+        final int bucketNumber = presizedMap.getBucketNumber();
+        for (int i = 0; i < TEST_SIZE; i++) {
+            presizedMap.put(i, "Value_" + i);
+        }
+        Assert.assertEquals("Presized hash map was rebuilt before reaching expected size", bucketNumber,
+                            presizedMap.getBucketNumber());
+        presizedMap.put(TEST_SIZE, "Value_" + TEST_SIZE);
+        Assert.assertEquals("Presized hash map size is incorrect", TEST_SIZE + 1, presizedMap.size());
+    }
+
+    @Test
+    public void testIncrementalRehash() {
+        final BucketAgnosticHashMap<Integer, String> incrementalMap = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), INITIAL_BUCKETS, LOAD_FACTOR, true);
+        boolean wasRehashing = false;
+        for (int i = 0; i < TEST_SIZE; i++) {
+            incrementalMap.put(i, "Value_" + i);
+            wasRehashing |= incrementalMap.isRehashing();
+            Assert.assertTrue("Hash map lost key [" + i + "] during incremental rehash", incrementalMap.containsKey(i));
+            Assert.assertEquals("Hash map lost value for key [0] during incremental rehash", "Value_0",
+                                incrementalMap.get(0));
+        }
+        Assert.assertTrue("Hash map never rehashed incrementally", wasRehashing);
+        for (int i = 0; i < TEST_SIZE; i += 2) {
+            Assert.assertEquals("Hash map returned incorrect value on removal of key [" + i + "]", "Value_" + i,
+                                incrementalMap.remove(i));
+        }
+        while (incrementalMap.rehashStep(1)) {
+            Assert.assertEquals("Hash map size changed during idle rehash", TEST_SIZE / 2, incrementalMap.size());
+        }
+        Assert.assertFalse("Hash map still rehashing after rehash steps were exhausted",
+                           incrementalMap.isRehashing());
+        for (int i = 0; i < TEST_SIZE; i++) {
+            Assert.assertEquals("Hash map has incorrect contents for key [" + i + "] after incremental rehash",
+                                (i % 2 == 0) ? null : "Value_" + i, incrementalMap.get(i));
+        }
+        Assert.assertEquals("Entry set size differs from hash map after incremental rehash", TEST_SIZE / 2,
+                            incrementalMap.entrySet().size());
+    }
+
+    @Test
+    public void testIncrementalRehashSpreadsWork() {
+        final int[] createdBuckets = new int[1];
+        final BucketAgnosticHashMap<Integer, String> incrementalMap = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<Integer, String>(BasicBucketFactory.BucketType.LIST) {
+                    @Override
+                    public Bucket<Integer, String> createBucket() {
+                        createdBuckets[0]++;
+                        return super.createBucket();
+                    }
+                }, INITIAL_BUCKETS, LOAD_FACTOR, true);
+        for (int i = 0; i < 2 * TEST_SIZE * 10; i++) {
+            final boolean wasRehashing = incrementalMap.isRehashing();
+            final int bucketNumber = incrementalMap.getBucketNumber();
+            final int created = createdBuckets[0];
+            final int key = i % (TEST_SIZE * 10);
+            if (i < TEST_SIZE * 10) {
+                incrementalMap.put(key, "Value_" + key);
+            } else {
+                incrementalMap.remove(key);
+            }
+            if (incrementalMap.getBucketNumber() != bucketNumber) {
+                Assert.assertFalse("Previous rehash wasn't finished before next resize [" + i + "]", wasRehashing);
+            }
+            Assert.assertTrue("Hash map created too many buckets in one operation [" + i + "]",
+                              createdBuckets[0] - created <= 16);
+        }
+        Assert.assertTrue("Hash map isn't empty after removal of all keys", incrementalMap.isEmpty());
+    }
+}
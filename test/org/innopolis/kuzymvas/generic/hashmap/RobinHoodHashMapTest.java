@@ -0,0 +1,84 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RobinHoodHashMapTest {
+
+    private final static int CAPACITY = 16;
+    private final static int TEST_SIZE = 10000;
+
+    private RobinHoodHashMap<FixedHash, Object> hashMap;
+
+    @Before
+    public void setUp() {
+        hashMap = new RobinHoodHashMap<>(new BasicHashStrategy(BasicHashStrategy.StrategyType.IDENTITY),
+                                         CAPACITY, 0.9f);
+    }
+
+    @Test
+    public void testConstructorException() {
+        try {
+            new RobinHoodHashMap<FixedHash, Object>(-1);
+            Assert.fail("Was able to create hash map with negative number of cells");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new RobinHoodHashMap<FixedHash, Object>(CAPACITY, 0.0f);
+            Assert.fail("Was able to create hash map with a zero load factor");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new RobinHoodHashMap<FixedHash, Object>(null, CAPACITY, 0.5f);
+            Assert.fail("Was able to create hash map without hash strategy");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testProbeStatistics() {
+        Assert.assertEquals("Empty hash map has non zero max probe length", 0, hashMap.getMaxProbeLength());
+        Assert.assertEquals("Empty hash map has non zero mean probe length", 0.0, hashMap.getMeanProbeLength(), 0.0);
+        for (int i = 0; i < 4; i++) {
+            hashMap.put(new FixedHash(i, 3), i);
+        }
+        Assert.assertEquals("Max probe length of colliding keys is incorrect", 4, hashMap.getMaxProbeLength());
+        Assert.assertEquals("Mean probe length of colliding keys is incorrect", 2.5,
+                            hashMap.getMeanProbeLength(), 1e-9);
+        hashMap.remove(new FixedHash(0, 3));
+        Assert.assertEquals("Max probe length didn't decrease after removal", 3, hashMap.getMaxProbeLength());
+    }
+
+    @Test
+    public void testDisplacement() {
+        // Ключи с начальной ячейкой 3 вытесняют ключ из ячейки 4, но он остается доступен
+        hashMap.put(new FixedHash(10, 4), 10);
+        for (int i = 0; i < 3; i++) {
+            hashMap.put(new FixedHash(i, 3), i);
+        }
+        hashMap.put(new FixedHash(11, 5), 11);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("Hash map lost displacing key [" + i + "]", i, hashMap.get(new FixedHash(i, 3)));
+        }
+        Assert.assertEquals("Hash map lost displaced key", 10, hashMap.get(new FixedHash(10, 4)));
+        Assert.assertEquals("Hash map lost displacing key", 11, hashMap.get(new FixedHash(11, 5)));
+        Assert.assertNull("Hash map found absent key", hashMap.get(new FixedHash(12, 4)));
+        Assert.assertEquals("Max probe length after displacement is incorrect", 3, hashMap.getMaxProbeLength());
+    }
+
+    @Test
+    public void testHighLoadFactor() {
+        final RobinHoodHashMap<Integer, Integer> denseMap = new RobinHoodHashMap<>(CAPACITY, 0.95f);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            denseMap.put(i, i);
+            Assert.assertTrue("Hash map load exceeded load factor after put [" + i + "]",
+                              denseMap.size() <= denseMap.getCapacity() * 0.95f);
+        }
+        for (int i = 0; i < TEST_SIZE; i++) {
+            Assert.assertEquals("Hash map lost value for key [" + i + "]", Integer.valueOf(i), denseMap.get(i));
+            Assert.assertNull("Hash map found absent key [" + (-i - 1) + "]", denseMap.get(-i - 1));
+        }
+        Assert.assertTrue("Mean probe length is too large at high load factor", denseMap.getMeanProbeLength() < 4.0);
+    }
+}
@@ -24,6 +24,17 @@ public class SingleEntryMockBucket<K,V> implements  Bucket<K,V> {
 
     }
 
+    @Override
+    public Map.Entry<K, V> putAndGetPrevious(K key, V value) {
+        if (pair != null && pair.hasKey(key)) {
+            return new KeyValuePair<>(pair.getKey(), pair.setValue(value));
+        }
+        else {
+            pair = new KeyValuePair<>(key, value);
+            return null;
+        }
+    }
+
     @Override
     public void replace(K key, V value) throws KeyNotPresentException {
         if (pair != null && pair.hasKey(key)) {
@@ -34,6 +45,14 @@ public class SingleEntryMockBucket<K,V> implements  Bucket<K,V> {
         }
     }
 
+    @Override
+    public Map.Entry<K, V> replaceAndGetPrevious(K key, V value) {
+        if (pair != null && pair.hasKey(key)) {
+            return new KeyValuePair<>(pair.getKey(), pair.setValue(value));
+        }
+        return null;
+    }
+
     @Override
     public V get(Object key) throws KeyNotPresentException {
         if (pair != null && pair.hasKey(key)) {
@@ -54,6 +73,16 @@ public class SingleEntryMockBucket<K,V> implements  Bucket<K,V> {
         }
     }
 
+    @Override
+    public Map.Entry<K, V> removeAndGetPrevious(Object key) {
+        if (pair != null && pair.hasKey(key)) {
+            final KeyValuePair<K, V> removed = pair;
+            pair = null;
+            return removed;
+        }
+        return null;
+    }
+
     @Override
     public boolean containsKey(Object key) {
         return (pair != null && pair.hasKey(key));
@@ -0,0 +1,160 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SnapshotBAHMTest {
+
+    private final static int TEST_SIZE = 100_000;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final BucketAgnosticHashMap<String, Integer> map = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), 16, 0.75f);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            map.put("key_" + i, i);
+        }
+        map.put("null", null);
+        final byte[] snapshot = snapshot(map);
+        for (BasicBucketFactory.BucketType bucketType : BasicBucketFactory.BucketType.values()) {
+            final BucketAgnosticHashMap<String, Integer> loaded = new BucketAgnosticHashMap<>(
+                    new BasicBucketFactory<>(bucketType), 16, 0.75f, true);
+            load(loaded, snapshot);
+            Assert.assertEquals("Hash map with " + bucketType + " buckets differs from its snapshot", map, loaded);
+            Assert.assertEquals("Hash map with " + bucketType + " buckets has incorrect size after loading",
+                                map.size(), loaded.size());
+            Assert.assertFalse("Hash map with " + bucketType + " buckets is rehashing after loading",
+                               loaded.isRehashing());
+            Assert.assertTrue("Hash map with " + bucketType + " buckets wasn't presized before loading",
+                              loaded.getBucketNumber() >= map.size() / 0.75);
+        }
+    }
+
+    @Test
+    public void testNullKey() throws IOException {
+        final BucketAgnosticHashMap<String, Integer> map = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST));
+        map.put(null, null);
+        map.put("key", 1);
+        final BucketAgnosticHashMap<String, Integer> loaded = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST));
+        load(loaded, snapshot(map));
+        Assert.assertTrue("Hash map lost null key after loading", loaded.containsKey(null));
+        Assert.assertEquals("Hash map differs from its snapshot", map, loaded);
+    }
+
+    @Test
+    public void testLoadIntoNonEmptyMap() throws IOException {
+        final BucketAgnosticHashMap<String, Integer> map = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.ARRAY), 16, 0.75f);
+        final Map<String, Integer> reference = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            map.put("key_" + i, i);
+            reference.put("key_" + i, i);
+        }
+        final BucketAgnosticHashMap<String, Integer> target = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.ARRAY), 4);
+        for (int i = 500; i < 1500; i++) {
+            target.put("key_" + i, -i);
+            reference.putIfAbsent("key_" + i, -i);
+        }
+        load(target, snapshot(map));
+        Assert.assertEquals("Loading didn't merge snapshot into hash map", reference, target);
+        Assert.assertEquals("Fixed size hash map was resized by loading", 4, target.getBucketNumber());
+    }
+
+    @Test
+    public void testEmptySnapshot() throws IOException {
+        final BucketAgnosticHashMap<String, Integer> map = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST));
+        final BucketAgnosticHashMap<String, Integer> loaded = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST));
+        load(loaded, snapshot(map));
+        Assert.assertTrue("Hash map isn't empty after loading empty snapshot", loaded.isEmpty());
+    }
+
+    @Test
+    public void testCorruptedSnapshot() throws IOException {
+        final BucketAgnosticHashMap<String, Integer> map = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), 16, 0.75f);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            map.put("key_" + i, i);
+        }
+        final byte[] snapshot = snapshot(map);
+        final byte[] corrupted = snapshot.clone();
+        corrupted[corrupted.length / 2] ^= 1;
+        try {
+            load(new BucketAgnosticHashMap<>(new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST)),
+                 corrupted);
+            Assert.fail("Corrupted snapshot was loaded");
+        } catch (IOException ignored) {
+        }
+        try {
+            load(new BucketAgnosticHashMap<>(new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST)),
+                 Arrays.copyOf(snapshot, snapshot.length - 1));
+            Assert.fail("Truncated snapshot was loaded");
+        } catch (EOFException ignored) {
+        }
+        final byte[] otherVersion = snapshot.clone();
+        otherVersion[7]++;
+        try {
+            load(new BucketAgnosticHashMap<>(new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST)),
+                 otherVersion);
+            Assert.fail("Snapshot with corrupted header was loaded");
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Test
+    public void testCorruptedPartitionLength() throws IOException {
+        final BucketAgnosticHashMap<String, Integer> map = new BucketAgnosticHashMap<>(
+                new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST), 16, 0.75f);
+        map.put("key", 1);
+        final byte[] corrupted = snapshot(map);
+        // Длина данных первого раздела следует за заголовком снимка (16 байт) и числом пар раздела
+        corrupted[20] = 0x7f;
+        try {
+            load(new BucketAgnosticHashMap<>(new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST)),
+                 corrupted);
+            Assert.fail("Snapshot with corrupted partition length was loaded");
+        } catch (IOException ignored) {
+        }
+        final Path file = Files.createTempFile("snapshot", ".dat");
+        try {
+            Files.write(file, corrupted);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                new BucketAgnosticHashMap<String, Integer>(
+                        new BasicBucketFactory<>(BasicBucketFactory.BucketType.LIST)).loadFrom(
+                        channel, BasicCodecs.STRING, BasicCodecs.INTEGER);
+                Assert.fail("Snapshot file with corrupted partition length was loaded");
+            } catch (IOException ignored) {
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static byte[] snapshot(BucketAgnosticHashMap<String, Integer> map) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        map.snapshotTo(Channels.newChannel(out), BasicCodecs.STRING, BasicCodecs.INTEGER);
+        return out.toByteArray();
+    }
+
+    private static void load(BucketAgnosticHashMap<String, Integer> map, byte[] snapshot) throws IOException {
+        map.loadFrom(Channels.newChannel(new ByteArrayInputStream(snapshot)), BasicCodecs.STRING,
+                     BasicCodecs.INTEGER);
+    }
+}
@@ -0,0 +1,87 @@
+package org.innopolis.kuzymvas.generic.hashmap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SwissHashMapTest {
+
+    private final static int CAPACITY = 64;
+    private final static int TEST_SIZE = 10000;
+
+    private SwissHashMap<FixedHash, Object> hashMap;
+
+    @Before
+    public void setUp() {
+        hashMap = new SwissHashMap<>(new BasicHashStrategy(BasicHashStrategy.StrategyType.IDENTITY),
+                                     CAPACITY, 0.875f);
+    }
+
+    @Test
+    public void testConstructorException() {
+        try {
+            new SwissHashMap<FixedHash, Object>(0);
+            Assert.fail("Was able to create hash map with 0 cells");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new SwissHashMap<FixedHash, Object>(CAPACITY, 1.0f);
+            Assert.fail("Was able to create hash map without free cells");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new SwissHashMap<FixedHash, Object>(null, CAPACITY, 0.5f);
+            Assert.fail("Was able to create hash map without hash strategy");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testCapacity() {
+        Assert.assertEquals("Hash map has less cells than one group", 16,
+                            new SwissHashMap<FixedHash, Object>(1).getCapacity());
+        Assert.assertEquals("Hash map capacity isn't a power of two", 128,
+                            new SwissHashMap<FixedHash, Object>(100).getCapacity());
+    }
+
+    @Test
+    public void testSameTag() {
+        // Ключи с одинаковой меткой (7 младших бит хэша) в одной группе различаются только через equals
+        for (int i = 0; i < 10; i++) {
+            hashMap.put(new FixedHash(i, 5), i);
+        }
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("Hash map lost key with shared tag [" + i + "]", i, hashMap.get(new FixedHash(i, 5)));
+        }
+        Assert.assertNull("Hash map found absent key with shared tag", hashMap.get(new FixedHash(10, 5)));
+    }
+
+    @Test
+    public void testGroupOverflow() {
+        // Ключи одной группы, не поместившиеся в нее, переходят в следующие группы
+        for (int i = 0; i < 40; i++) {
+            hashMap.put(new FixedHash(i, i << 7), i);
+        }
+        for (int i = 0; i < 40; i += 2) {
+            hashMap.remove(new FixedHash(i, i << 7));
+        }
+        for (int i = 0; i < 40; i++) {
+            Assert.assertEquals("Hash map has incorrect value for key [" + i + "] after removals in full group",
+                                (i % 2 == 0) ? null : i, hashMap.get(new FixedHash(i, i << 7)));
+        }
+    }
+
+    @Test
+    public void testDeletedCellsReuse() {
+        final SwissHashMap<Integer, Integer> churnMap = new SwissHashMap<>(CAPACITY);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            churnMap.put(i, i);
+            churnMap.remove(i - 16);
+        }
+        Assert.assertEquals("Hash map has incorrect size after churn", 16, churnMap.size());
+        Assert.assertEquals("Hash map grew because of deleted cells", CAPACITY, churnMap.getCapacity());
+        for (int i = TEST_SIZE - 16; i < TEST_SIZE; i++) {
+            Assert.assertEquals("Hash map lost key [" + i + "] during churn", Integer.valueOf(i), churnMap.get(i));
+        }
+    }
+}